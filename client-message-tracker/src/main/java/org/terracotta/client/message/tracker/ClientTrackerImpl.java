@@ -18,24 +18,48 @@ package org.terracotta.client.message.tracker;
 
 import org.terracotta.entity.StateDumpCollector;
 
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.terracotta.entity.ClientSourceId;
 
 class ClientTrackerImpl<M, R> implements ClientTracker<M, R> {
 
-  private final ConcurrentMap<ClientSourceId, TrackerImpl<M, R>> objectTrackers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<ClientSourceId, Tracker<M, R>> objectTrackers = new ConcurrentHashMap<>();
+  private final Supplier<Tracker<M, R>> trackerFactory;
 
   public ClientTrackerImpl() {
+    this(TrackerType.SORTED_MAP);
+  }
+
+  public ClientTrackerImpl(TrackerType trackerType) {
+    switch (trackerType) {
+      case SORTED_MAP:
+        this.trackerFactory = TrackerImpl::new;
+        break;
+      case RING_BUFFER:
+        this.trackerFactory = RingBufferTracker::new;
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown tracker type: " + trackerType);
+    }
   }
 
   Stream<SequencedRecordedMessage<M, R>> getTrackedValues() {
     return objectTrackers.entrySet().stream().flatMap(t->t.getValue().getTrackedValues().stream().map(e->convert(t.getKey(), e)));
   }
 
+  /**
+   * @return the trackers of the clients, which reflect the clients tracked or untracked while iterating
+   */
+  Iterator<Map.Entry<ClientSourceId, Tracker<M, R>>> trackers() {
+    return objectTrackers.entrySet().iterator();
+  }
+
   static <M, R> SequencedRecordedMessage<M, R> convert(ClientSourceId cid, TrackerImpl.RequestResponse<M, R> rr) {
     return new SequencedRecordedMessage<M, R>() {
       @Override
@@ -65,8 +89,8 @@ class ClientTrackerImpl<M, R> implements ClientTracker<M, R> {
     };
   }
 
-  TrackerImpl<M, R> getTracker(ClientSourceId clientId) {
-    return objectTrackers.computeIfAbsent(clientId, d -> new TrackerImpl<>());
+  Tracker<M, R> getTracker(ClientSourceId clientId) {
+    return objectTrackers.computeIfAbsent(clientId, d -> trackerFactory.get());
   }
 
   @Override
@@ -81,7 +105,7 @@ class ClientTrackerImpl<M, R> implements ClientTracker<M, R> {
 
   @Override
   public void addStateTo(StateDumpCollector stateDumper) {
-    for (Map.Entry<ClientSourceId, TrackerImpl<M, R>> entry : objectTrackers.entrySet()) {
+    for (Map.Entry<ClientSourceId, Tracker<M, R>> entry : objectTrackers.entrySet()) {
       entry.getValue().addStateTo(stateDumper.subStateDumpCollector(entry.getKey().toString()));
     }
   }
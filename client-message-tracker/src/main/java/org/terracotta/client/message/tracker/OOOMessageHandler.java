@@ -25,7 +25,12 @@ import org.terracotta.entity.StateDumpable;
 
 import com.tc.classloader.CommonComponent;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.function.BiFunction;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 /**
@@ -88,6 +93,40 @@ public interface OOOMessageHandler<M extends EntityMessage, R extends EntityResp
    */
   Stream<RecordedMessage<M, R>> getRecordedMessages();
 
+  /**
+   * Get the tracked messages of a segment as a cursor over chunks of messages, so that they can be synced
+   * incrementally. The messages of each client are ordered by sequence id, and the clients come one after the other,
+   * so that only the messages of one client are held at a time.
+   *
+   * @param segment   selects the requests of the messages of the segment
+   * @param chunkSize the maximum number of messages in a chunk
+   * @return an iterator over the chunks of RecordedMessages, ordered for each client
+   */
+  default Iterator<List<RecordedMessage<M, R>>> getRecordedMessages(Predicate<M> segment, int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+    }
+    Iterator<RecordedMessage<M, R>> messages = getRecordedMessages().filter(m -> segment.test(m.getRequest())).iterator();
+    return new Iterator<List<RecordedMessage<M, R>>>() {
+      @Override
+      public boolean hasNext() {
+        return messages.hasNext();
+      }
+
+      @Override
+      public List<RecordedMessage<M, R>> next() {
+        if (!messages.hasNext()) {
+          throw new NoSuchElementException();
+        }
+        List<RecordedMessage<M, R>> chunk = new ArrayList<>(chunkSize);
+        while (chunk.size() < chunkSize && messages.hasNext()) {
+          chunk.add(messages.next());
+        }
+        return chunk;
+      }
+    };
+  }
+
   /**
    * load all the sequenced messages to the current message tracker
    *
@@ -29,16 +29,26 @@ public class OOOMessageHandlerConfiguration<M extends EntityMessage, R extends E
 
   private final String entityIdentifier;
   private final Predicate<M> trackerPolicy;
+  private final TrackerType trackerType;
 
   public OOOMessageHandlerConfiguration(String entityIdentifier, Predicate<M> trackerPolicy) {
+    this(entityIdentifier, trackerPolicy, TrackerType.SORTED_MAP);
+  }
+
+  public OOOMessageHandlerConfiguration(String entityIdentifier, Predicate<M> trackerPolicy, TrackerType trackerType) {
     this.entityIdentifier = entityIdentifier;
     this.trackerPolicy = trackerPolicy;
+    this.trackerType = trackerType;
   }
 
   public Predicate<M> getTrackerPolicy() {
     return trackerPolicy;
   }
 
+  public TrackerType getTrackerType() {
+    return trackerType;
+  }
+
   public String getEntityIdentifier() {
     return entityIdentifier;
   }
@@ -23,6 +23,8 @@ import org.terracotta.entity.EntityUserException;
 import org.terracotta.entity.InvokeContext;
 import org.terracotta.entity.StateDumpCollector;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
@@ -42,8 +44,12 @@ public class OOOMessageHandlerImpl<M extends EntityMessage, R extends EntityResp
   private final AtomicBoolean checkDuplicates = new AtomicBoolean(true);
 
   public OOOMessageHandlerImpl(Predicate<M> trackerPolicy, DestroyCallback callback) {
+    this(trackerPolicy, TrackerType.SORTED_MAP, callback);
+  }
+
+  public OOOMessageHandlerImpl(Predicate<M> trackerPolicy, TrackerType trackerType, DestroyCallback callback) {
     this.trackerPolicy = trackerPolicy;
-    this.clientMessageTracker = new ClientTrackerImpl<>();
+    this.clientMessageTracker = new ClientTrackerImpl<>(trackerType);
     this.callback = callback;
   }
 
@@ -101,6 +107,11 @@ public class OOOMessageHandlerImpl<M extends EntityMessage, R extends EntityResp
     return clientMessageTracker.getTrackedValues().sorted(comparingLong(SequencedRecordedMessage::getSequenceId)).map(SequencedRecordedMessage::convert);
   }
 
+  @Override
+  public Iterator<List<RecordedMessage<M, R>>> getRecordedMessages(Predicate<M> segment, int chunkSize) {
+    return new RecordedMessageCursor<>(clientMessageTracker, segment, chunkSize);
+  }
+
   @Override
   public void loadRecordedMessages(Stream<RecordedMessage<M, R>> recorded) {
     recorded.forEach(rm-> clientMessageTracker
@@ -0,0 +1,117 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.client.message.tracker;
+
+import org.terracotta.entity.ClientSourceId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+import static java.util.Comparator.comparingLong;
+
+/**
+ * Iterates over the tracked messages of a segment in chunks, client after client, the messages of each client being
+ * ordered by sequence id.
+ * <p>
+ * The messages of a client are only read once the messages of the previous clients have all been handed out, so the
+ * cursor holds the messages of the segment for a single client, and the chunk it is building.
+ */
+class RecordedMessageCursor<M, R> implements Iterator<List<RecordedMessage<M, R>>> {
+
+  private static final Comparator<TrackerImpl.RequestResponse<?, ?>> SEQUENCE_ORDER = comparingLong(TrackerImpl.RequestResponse::getSequenceId);
+
+  private final Iterator<Map.Entry<ClientSourceId, Tracker<M, R>>> trackers;
+  private final Predicate<M> segment;
+  private final int chunkSize;
+  private ClientCursor<M, R> client;
+
+  RecordedMessageCursor(ClientTrackerImpl<M, R> clientTracker, Predicate<M> segment, int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+    }
+    this.trackers = clientTracker.trackers();
+    this.segment = segment;
+    this.chunkSize = chunkSize;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (client == null || !client.hasNext()) {
+      if (!trackers.hasNext()) {
+        // let the messages of the last client be collected
+        client = null;
+        return false;
+      }
+      Map.Entry<ClientSourceId, Tracker<M, R>> tracker = trackers.next();
+      client = new ClientCursor<>(tracker.getKey(), tracker.getValue().getTrackedValues(), segment);
+    }
+    return true;
+  }
+
+  @Override
+  public List<RecordedMessage<M, R>> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    List<RecordedMessage<M, R>> chunk = new ArrayList<>(chunkSize);
+    while (chunk.size() < chunkSize && hasNext()) {
+      chunk.add(client.next());
+    }
+    return chunk;
+  }
+
+  private static class ClientCursor<M, R> {
+    private final ClientSourceId clientSourceId;
+    private final List<TrackerImpl.RequestResponse<M, R>> messages;
+    private int position;
+
+    ClientCursor(ClientSourceId clientSourceId, Collection<TrackerImpl.RequestResponse<M, R>> trackedValues, Predicate<M> segment) {
+      this.clientSourceId = clientSourceId;
+      this.messages = new ArrayList<>(trackedValues.size());
+      boolean sorted = true;
+      long lastSequenceId = Long.MIN_VALUE;
+      for (TrackerImpl.RequestResponse<M, R> trackedValue : trackedValues) {
+        if (segment.test(trackedValue.getRequest())) {
+          sorted &= trackedValue.getSequenceId() >= lastSequenceId;
+          lastSequenceId = trackedValue.getSequenceId();
+          messages.add(trackedValue);
+        }
+      }
+      if (!sorted) {
+        // messages sent concurrently by the client can be tracked out of transaction order
+        messages.sort(SEQUENCE_ORDER);
+      }
+    }
+
+    boolean hasNext() {
+      return position < messages.size();
+    }
+
+    RecordedMessage<M, R> next() {
+      TrackerImpl.RequestResponse<M, R> message = messages.get(position);
+      // let the message be collected once it is synced
+      messages.set(position++, null);
+      return ClientTrackerImpl.convert(clientSourceId, message);
+    }
+  }
+}
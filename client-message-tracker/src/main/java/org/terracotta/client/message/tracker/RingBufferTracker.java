@@ -0,0 +1,148 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.client.message.tracker;
+
+import org.terracotta.entity.StateDumpCollector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link Tracker} exploiting the monotonic transaction ids of a client: the tracked values are stored in a ring
+ * buffer indexed by transaction id, sized to hold every id between the oldest and newest ones tracked.
+ * <p>
+ * Lookups do not lock nor box the ids. Updates are serialized, and reconciling only clears the slots of the ids left
+ * behind, so it is amortized constant time. The buffer grows with the span of the tracked ids, which reconciling
+ * keeps down to the transactions still in flight.
+ */
+class RingBufferTracker<M, R> implements Tracker<M, R> {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private volatile AtomicReferenceArray<TrackerImpl.RequestResponse<M, R>> slots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+  private volatile long reconciledMarker = 0L;
+
+  // the range of the ids that may be tracked, empty when low > high (guarded by this)
+  private long low = Long.MAX_VALUE;
+  private long high = Long.MIN_VALUE;
+
+  @Override
+  public void track(long track, long id, M source, R value) {
+    if (id > 0) {
+      placeTrackedValue(track, id, source, value);
+    }
+  }
+
+  private synchronized void placeTrackedValue(long insert, long id, M req, R value) {
+    long newLow = Math.min(low, id);
+    long newHigh = Math.max(high, id);
+    AtomicReferenceArray<TrackerImpl.RequestResponse<M, R>> slots = this.slots;
+    if (newHigh - newLow >= slots.length()) {
+      slots = resize(slots, newHigh - newLow + 1);
+    }
+    slots.set(index(slots, id), new TrackerImpl.RequestResponse<>(insert, id, req, value));
+    low = newLow;
+    high = newHigh;
+  }
+
+  private AtomicReferenceArray<TrackerImpl.RequestResponse<M, R>> resize(AtomicReferenceArray<TrackerImpl.RequestResponse<M, R>> slots, long span) {
+    if (span > 1 << 30) {
+      throw new IllegalStateException("Too many transactions between " + low + " and " + high + " to track");
+    }
+    int capacity = Integer.highestOneBit((int) span - 1) << 1;
+    AtomicReferenceArray<TrackerImpl.RequestResponse<M, R>> resized = new AtomicReferenceArray<>(capacity);
+    for (long id = low; id <= high; id++) {
+      TrackerImpl.RequestResponse<M, R> entry = slots.get(index(slots, id));
+      if (entry != null) {
+        resized.set(index(resized, id), entry);
+      }
+    }
+    // readers still using the previous buffer keep seeing valid entries
+    this.slots = resized;
+    return resized;
+  }
+
+  @Override
+  public R getTrackedValue(long id) {
+    TrackerImpl.RequestResponse<M, R> entry = get(id);
+    return entry == null ? null : entry.getResponse();
+  }
+
+  @Override
+  public M getTrackedRequest(long id) {
+    TrackerImpl.RequestResponse<M, R> entry = get(id);
+    return entry == null ? null : entry.getRequest();
+  }
+
+  private TrackerImpl.RequestResponse<M, R> get(long id) {
+    AtomicReferenceArray<TrackerImpl.RequestResponse<M, R>> slots = this.slots;
+    TrackerImpl.RequestResponse<M, R> entry = slots.get(index(slots, id));
+    return entry != null && entry.getTransactionId() == id ? entry : null;
+  }
+
+  @Override
+  public synchronized void reconcile(long id) {
+    reconciledMarker = Math.max(id, reconciledMarker);// don't go backwards
+    if (id <= low) {
+      return;
+    }
+    AtomicReferenceArray<TrackerImpl.RequestResponse<M, R>> slots = this.slots;
+    long end = Math.min(id - 1, high);
+    for (long cleared = low; cleared <= end; cleared++) {
+      slots.set(index(slots, cleared), null);
+    }
+    if (id > high) {
+      low = Long.MAX_VALUE;
+      high = Long.MIN_VALUE;
+    } else {
+      low = id;
+    }
+  }
+
+  @Override
+  public boolean wasReconciled(long id) {
+    return id < reconciledMarker;
+  }
+
+  @Override
+  public synchronized Collection<TrackerImpl.RequestResponse<M, R>> getTrackedValues() {
+    List<TrackerImpl.RequestResponse<M, R>> values = new ArrayList<>();
+    AtomicReferenceArray<TrackerImpl.RequestResponse<M, R>> slots = this.slots;
+    for (long id = low; id <= high; id++) {
+      TrackerImpl.RequestResponse<M, R> entry = slots.get(index(slots, id));
+      if (entry != null) {
+        values.add(entry);
+      }
+    }
+    return values;
+  }
+
+  @Override
+  public synchronized void addStateTo(StateDumpCollector stateDumper) {
+    List<Long> ids = new ArrayList<>();
+    for (TrackerImpl.RequestResponse<M, R> entry : getTrackedValues()) {
+      ids.add(entry.getTransactionId());
+    }
+    stateDumper.addState("TrackedResponses", ids);
+  }
+
+  private static int index(AtomicReferenceArray<?> slots, long id) {
+    return (int) id & (slots.length() - 1);
+  }
+}
@@ -18,6 +18,7 @@ package org.terracotta.client.message.tracker;
 
 import org.terracotta.entity.StateDumpable;
 
+import java.util.Collection;
 import java.util.function.Predicate;
 
 /**
@@ -81,4 +82,11 @@ interface Tracker<M, R> extends StateDumpable {
    * @return true if the message has been removed from the cached stream
    */
   boolean wasReconciled(long id);
+
+  /**
+   * Returns the tracked values, ordered by ID.
+   *
+   * @return a copy of the tracked values
+   */
+  Collection<TrackerImpl.RequestResponse<M, R>> getTrackedValues();
 }
@@ -71,7 +71,8 @@ class TrackerImpl<M, R> implements Tracker<M, R> {
     return id < reconciledMarker;
   }
 
-  synchronized Collection<RequestResponse<M, R>> getTrackedValues() {
+  @Override
+  public synchronized Collection<RequestResponse<M, R>> getTrackedValues() {
     return new ArrayList<>(trackedValues.values());
   }
 
@@ -0,0 +1,37 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.client.message.tracker;
+
+import com.tc.classloader.CommonComponent;
+
+/**
+ * The storage used to track the messages and responses of each client.
+ */
+@CommonComponent
+public enum TrackerType {
+  /**
+   * Keeps the messages in a sorted map. Suits any distribution of transaction ids.
+   */
+  SORTED_MAP,
+
+  /**
+   * Keeps the messages in a ring buffer indexed by transaction id, read without locking. Suits clients sending many
+   * messages, as long as the span between the oldest and newest tracked transaction ids stays small, which is the case
+   * when the clients have a bounded number of messages in flight.
+   */
+  RING_BUFFER
+}
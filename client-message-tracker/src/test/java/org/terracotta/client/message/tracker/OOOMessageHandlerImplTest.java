@@ -25,6 +25,7 @@ import org.terracotta.entity.EntityResponse;
 import org.terracotta.entity.InvokeContext;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -242,6 +243,47 @@ public class OOOMessageHandlerImplTest {
     assertThat(trackedResponses2.values(), Matchers.contains(response1, response2));
   }
 
+  @Test
+  public void testRecordedMessagesOfSegmentAreChunkedInSequenceOrderOfEachClient() throws Exception {
+    List<EntityMessage> seg1 = new ArrayList<>();
+    DummyClientSourceId clientSourceId1 = new DummyClientSourceId(1);
+    DummyClientSourceId clientSourceId2 = new DummyClientSourceId(2);
+
+    // client 2 sends its messages concurrently: they are not received in transaction order
+    long[] txnIds = {1, 10, 3, 8, 5, 6, 7, 4, 9, 2};
+    for (long txnId : txnIds) {
+      DummyEntityMessage message = new DummyEntityMessage();
+      if (txnId != 5) {
+        seg1.add(message);
+      }
+      InvokeContext context = new DummyContext(txnId % 2 == 0 ? clientSourceId2 : clientSourceId1, txnId, 1);
+      messageHandler.invoke(context, message, (ctxt, msg) -> new DummyEntityResponse());
+    }
+
+    Iterator<List<RecordedMessage<EntityMessage, EntityResponse>>> chunks = messageHandler.getRecordedMessages(seg1::contains, 4);
+    List<RecordedMessage<EntityMessage, EntityResponse>> messages = new ArrayList<>();
+    List<Integer> chunkSizes = new ArrayList<>();
+    while (chunks.hasNext()) {
+      List<RecordedMessage<EntityMessage, EntityResponse>> chunk = chunks.next();
+      chunkSizes.add(chunk.size());
+      messages.addAll(chunk);
+    }
+
+    assertThat(chunkSizes, Matchers.contains(4, 4, 1));
+    // the clients come one after the other
+    ClientSourceId firstClient = messages.get(0).getClientSourceId();
+    int firstClientCount = firstClient.equals(clientSourceId1) ? 4 : 5;
+    assertThat(messages.subList(0, firstClientCount).stream().allMatch(m -> m.getClientSourceId().equals(firstClient)), is(true));
+    assertThat(transactionIds(messages, clientSourceId1), Matchers.contains(1L, 3L, 7L, 9L));
+    assertThat(transactionIds(messages, clientSourceId2), Matchers.contains(10L, 8L, 6L, 4L, 2L));
+    assertThat(messageHandler.getRecordedMessages().map(RecordedMessage::getTransactionId).collect(Collectors.toList()),
+        Matchers.contains(1L, 10L, 3L, 8L, 5L, 6L, 7L, 4L, 9L, 2L));
+  }
+
+  private static List<Long> transactionIds(List<RecordedMessage<EntityMessage, EntityResponse>> messages, ClientSourceId clientSourceId) {
+    return messages.stream().filter(m -> m.getClientSourceId().equals(clientSourceId)).map(RecordedMessage::getTransactionId).collect(Collectors.toList());
+  }
+
   @Test
   public void testGetTrackedClients() throws Exception {
     EntityMessage message1 = mock(EntityMessage.class);
@@ -0,0 +1,108 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.client.message.tracker;
+
+import org.junit.Test;
+
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class RingBufferTrackerTest {
+
+  @Test
+  public void trackTrackableMessage() throws Exception {
+    RingBufferTracker<String, String> tracker = new RingBufferTracker<>();
+    tracker.track(1L, 1L, "request", "response");
+
+    assertThat(tracker.getTrackedValue(1L), is("response"));
+    assertThat(tracker.getTrackedRequest(1L), is("request"));
+    assertThat(tracker.getTrackedValue(2L), nullValue());
+  }
+
+  @Test
+  public void trackInvalidMessage() throws Exception {
+    RingBufferTracker<String, String> tracker = new RingBufferTracker<>();
+    tracker.track(1L, -1L, "request", "response");  // a message with non-positive message id
+
+    assertThat(tracker.getTrackedValue(-1L), nullValue());
+    assertThat(tracker.getTrackedValues().isEmpty(), is(true));
+  }
+
+  @Test
+  public void reconcile() throws Exception {
+    RingBufferTracker<String, String> tracker = new RingBufferTracker<>();
+    tracker.track(1L, 1L, "request", "response");
+    tracker.track(2L, 2L, "request", "response");
+    tracker.track(3L, 3L, "request", "response");
+
+    tracker.reconcile(1L);
+    assertThat(tracker.getTrackedValue(1L), notNullValue());
+    assertThat(tracker.getTrackedValue(2L), notNullValue());
+    assertThat(tracker.getTrackedValue(3L), notNullValue());
+
+    tracker.reconcile(3L);
+    assertThat(tracker.getTrackedValue(1L), nullValue());
+    assertThat(tracker.getTrackedValue(2L), nullValue());
+    assertThat(tracker.getTrackedValue(3L), notNullValue());
+    assertThat(tracker.wasReconciled(2L), is(true));
+    assertThat(tracker.wasReconciled(3L), is(false));
+
+    tracker.reconcile(2L);
+    assertThat(tracker.getTrackedValue(3L), notNullValue());
+    assertThat(tracker.wasReconciled(2L), is(true));
+
+    tracker.reconcile(10L);
+    assertThat(tracker.getTrackedValue(3L), nullValue());
+    assertThat(tracker.getTrackedValues().isEmpty(), is(true));
+  }
+
+  @Test
+  public void idsWrapAroundTheBuffer() throws Exception {
+    RingBufferTracker<String, String> tracker = new RingBufferTracker<>();
+    for (long id = 1; id <= 1000; id++) {
+      tracker.reconcile(id - 2);
+      tracker.track(id, id, "request-" + id, "response-" + id);
+      assertThat(tracker.getTrackedValue(id), is("response-" + id));
+      assertThat(tracker.getTrackedValue(id - 2), id > 2 ? is("response-" + (id - 2)) : nullValue());
+      assertThat(tracker.getTrackedValue(id - 3), nullValue());
+    }
+  }
+
+  @Test
+  public void bufferGrowsWithTheTrackedSpan() throws Exception {
+    RingBufferTracker<String, String> tracker = new RingBufferTracker<>();
+    for (long id = 100; id >= 1; id -= 3) {
+      tracker.track(id, id, "request-" + id, "response-" + id);
+    }
+
+    for (long id = 1; id <= 100; id++) {
+      assertThat(tracker.getTrackedValue(id), (id - 1) % 3 == 0 ? is("response-" + id) : nullValue());
+    }
+    assertThat(tracker.getTrackedValues().stream().map(TrackerImpl.RequestResponse::getTransactionId).limit(3).collect(Collectors.toList()),
+        is(asList(1L, 4L, 7L)));
+
+    tracker.reconcile(50L);
+    assertThat(tracker.getTrackedValues().size(), is(17));
+    assertThat(tracker.getTrackedValue(49L), nullValue());
+    assertThat(tracker.getTrackedValue(52L), is("response-52"));
+  }
+}
@@ -32,11 +32,13 @@ import org.terracotta.entity.PassiveSynchronizationChannel;
 import org.terracotta.entity.ServiceException;
 import org.terracotta.entity.ServiceRegistry;
 
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Iterator;
+import java.util.List;
 
 public class DemoActiveEntity implements ActiveServerEntity<EntityMessage, EntityResponse> {
 
+  private static final int SYNC_CHUNK_SIZE = 512;
+
   private final OOOMessageHandler<EntityMessage, EntityResponse> messageHandler;
 
   public DemoActiveEntity(ServiceRegistry serviceRegistry) throws ServiceException {
@@ -92,17 +94,22 @@ public class DemoActiveEntity implements ActiveServerEntity<EntityMessage, Entit
 
     // Sync client message tracker state
     int segmentIndex = concurrencyKeyToSegmentIndex(concurrencyKey);
-    messageHandler.getTrackedClients().forEach(clientSourceId -> {
-      Stream<RecordedMessage<EntityMessage, EntityResponse>> trackedResponsesForSegment = messageHandler.getRecordedMessages();
-      EntityMessage clientMessageTrackerSegmentData = new MessageTrackerSyncMessage(trackedResponsesForSegment.collect(Collectors.toList()));
+    Iterator<List<RecordedMessage<EntityMessage, EntityResponse>>> trackedResponsesForSegment =
+        messageHandler.getRecordedMessages(message -> messageToSegmentIndex(message) == segmentIndex, SYNC_CHUNK_SIZE);
+    while (trackedResponsesForSegment.hasNext()) {
+      EntityMessage clientMessageTrackerSegmentData = new MessageTrackerSyncMessage(trackedResponsesForSegment.next());
       passiveSynchronizationChannel.synchronizeToPassive(clientMessageTrackerSegmentData);
-    });
+    }
   }
 
   private int concurrencyKeyToSegmentIndex(int concurrencyKey) {
     return -1;  //Do the proper transformation
   }
 
+  private int messageToSegmentIndex(EntityMessage message) {
+    return -1;  //Do the proper transformation
+  }
+
   @Override
   public void destroy() {
     //no-op
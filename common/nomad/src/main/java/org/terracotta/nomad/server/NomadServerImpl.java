@@ -32,6 +32,9 @@ import org.terracotta.nomad.server.state.NomadStateChange;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -125,8 +128,21 @@ public class NomadServerImpl<T> implements NomadServer<T> {
       ChangeState<T> latestCommittedChangeState = changeState;
       UUID latestCommittedChangeUuid = latestChangeUuid;
       if (changeState.getState() != COMMITTED) {
-        while ((latestCommittedChangeUuid = latestCommittedChangeState.getPrevChangeId()) != null
-            && (latestCommittedChangeState = state.getChangeState(latestCommittedChangeUuid)).getState() != COMMITTED) ;
+        latestCommittedChangeUuid = null;
+        // the history is fetched backward by ranges of increasing size, excluding the latest change
+        long to = changeState.getPrevChangeId() == null ? 0 : state.getChangeCount() - 1;
+        for (long size = 4; to > 0 && latestCommittedChangeUuid == null; size *= 2) {
+          long from = Math.max(0, to - size);
+          List<Map.Entry<UUID, ChangeState<T>>> range = new ArrayList<>(state.getChangeStates(from, to).entrySet());
+          for (int i = range.size() - 1; i >= 0; i--) {
+            if (range.get(i).getValue().getState() == COMMITTED) {
+              latestCommittedChangeUuid = range.get(i).getKey();
+              latestCommittedChangeState = range.get(i).getValue();
+              break;
+            }
+          }
+          to = from;
+        }
       }
 
       return new DiscoverResponse<>(
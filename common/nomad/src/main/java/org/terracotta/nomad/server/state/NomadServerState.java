@@ -21,6 +21,7 @@ import org.terracotta.nomad.server.NomadException;
 import org.terracotta.nomad.server.NomadServerMode;
 
 import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -45,6 +46,24 @@ public interface NomadServerState<T> {
 
   ChangeState<T> getChangeState(UUID changeUuid) throws NomadException;
 
+  /**
+   * @return the number of changes in the change history
+   */
+  long getChangeCount() throws NomadException;
+
+  /**
+   * Fetches a range of the change history, in which the changes are indexed from 0 for the oldest one to
+   * {@code getChangeCount() - 1} for the latest one.
+   * <p>
+   * Implementations are expected to keep an index of the history, so that a range is fetched without walking the
+   * whole change chain.
+   *
+   * @param fromIndex the index of the first change, inclusive
+   * @param toIndex   the index of the last change, exclusive
+   * @return the states of the changes, keyed by change UUID, from the oldest to the latest
+   */
+  LinkedHashMap<UUID, ChangeState<T>> getChangeStates(long fromIndex, long toIndex) throws NomadException;
+
   NomadStateChange<T> newStateChange();
 
   void applyStateChange(NomadStateChange<T> change) throws NomadException;
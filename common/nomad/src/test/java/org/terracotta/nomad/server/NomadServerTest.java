@@ -35,13 +35,18 @@ import org.terracotta.nomad.server.state.MemoryNomadServerState;
 import org.terracotta.nomad.server.state.NomadServerState;
 
 import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -514,6 +519,40 @@ public class NomadServerTest {
     assertRejection(response, BAD, "Received an alive PrepareMessage for a change that already exists: " + uuid, "testhost2", "testuser2");
   }
 
+  @Test
+  public void discoverLatestCommittedChangeAfterRollbacks() throws Exception {
+    when(changeApplicator.tryApply(any(), any())).thenReturn(PotentialApplicationResult.allow("change-applied"));
+
+    UUID committedUuid = UUID.randomUUID();
+    DiscoverResponse<String> discoverResponse = server.discover();
+    server.prepare(new PrepareMessage(discoverResponse.getMutativeMessageCount(), "host", "user", Clock.systemDefaultZone().instant(), committedUuid, 1L, new SimpleNomadChange("change", "summary")));
+    server.commit(new CommitMessage(discoverResponse.getMutativeMessageCount() + 1, "host", "user", Clock.systemDefaultZone().instant(), committedUuid));
+
+    List<UUID> history = new ArrayList<>(Arrays.asList(committedUuid));
+    for (int i = 0; i < 10; i++) {
+      UUID uuid = UUID.randomUUID();
+      history.add(uuid);
+      discoverResponse = server.discover();
+      server.prepare(new PrepareMessage(discoverResponse.getMutativeMessageCount(), "host", "user", Clock.systemDefaultZone().instant(), uuid, discoverResponse.getHighestVersion() + 1, new SimpleNomadChange("change" + i, "summary")));
+      if (i < 9) {
+        server.rollback(new RollbackMessage(discoverResponse.getMutativeMessageCount() + 1, "host", "user", Clock.systemDefaultZone().instant(), uuid));
+      }
+    }
+
+    discoverResponse = server.discover();
+    assertEquals(history.get(10), discoverResponse.getLatestChange().getChangeUuid());
+    assertEquals(ChangeRequestState.PREPARED, discoverResponse.getLatestChange().getState());
+    assertEquals(committedUuid, discoverResponse.getLatestCommittedChange().getChangeUuid());
+
+    assertEquals(11L, state.getChangeCount());
+    assertEquals(history, new ArrayList<>(state.getChangeStates(0, 11).keySet()));
+    assertEquals(history.subList(3, 5), new ArrayList<>(state.getChangeStates(3, 5).keySet()));
+    assertTrue(state.getChangeStates(4, 4).isEmpty());
+
+    verify(changeApplicator, times(11)).tryApply(any(), any());
+    verify(changeApplicator).apply(new SimpleNomadChange("change", "summary"));
+  }
+
   @Test
   public void testCommitWithPrevId() throws Exception {
     when(changeApplicator.tryApply(null, new SimpleNomadChange("change", "summary"))).thenReturn(PotentialApplicationResult.allow("change-applied"));
@@ -23,7 +23,10 @@ import org.terracotta.nomad.server.NomadException;
 import org.terracotta.nomad.server.NomadServerMode;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -40,6 +43,7 @@ import static org.terracotta.nomad.server.state.StateKeys.MUTATIVE_MESSAGE_COUNT
 
 public class MemoryNomadServerState<T> implements NomadServerState<T> {
   private final Map<String, Object> state = new HashMap<>();
+  private final List<UUID> changeIndex = new ArrayList<>();
 
   @Override
   @SuppressWarnings("unchecked")
@@ -60,6 +64,11 @@ public class MemoryNomadServerState<T> implements NomadServerState<T> {
 
     updateMap.put(MUTATIVE_MESSAGE_COUNT, currentMutativeMessageCount + 1);
 
+    String latestChangeUuid = (String) updateMap.get(LATEST_CHANGE_UUID);
+    if (latestChangeUuid != null && !state.containsKey(latestChangeUuid)) {
+      changeIndex.add(UUID.fromString(latestChangeUuid));
+    }
+
     state.putAll(updateMap);
   }
 
@@ -77,6 +86,7 @@ public class MemoryNomadServerState<T> implements NomadServerState<T> {
   @Override
   public void reset() throws NomadException {
     state.clear();
+    changeIndex.clear();
   }
 
   @Override
@@ -151,4 +161,21 @@ public class MemoryNomadServerState<T> implements NomadServerState<T> {
 
     return new ChangeState<T>(requestState, version, prevChangeUuid, change, changeResult, creationHost, creationUser, creationTimestamp, changeResult == null ? null : changeResult.toString());
   }
+
+  @Override
+  public long getChangeCount() {
+    return changeIndex.size();
+  }
+
+  @Override
+  public LinkedHashMap<UUID, ChangeState<T>> getChangeStates(long fromIndex, long toIndex) {
+    if (fromIndex < 0 || fromIndex > toIndex || toIndex > changeIndex.size()) {
+      throw new IllegalArgumentException("Invalid range: [" + fromIndex + ", " + toIndex + "). Change count: " + changeIndex.size());
+    }
+    LinkedHashMap<UUID, ChangeState<T>> range = new LinkedHashMap<>();
+    for (UUID changeUuid : changeIndex.subList((int) fromIndex, (int) toIndex)) {
+      range.put(changeUuid, getChangeState(changeUuid));
+    }
+    return range;
+  }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.reflect;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+/**
+ * Invokes a method through a method handle taking the target and the array of arguments, or by reflection when the
+ * method is not accessible.
+ * <p>
+ * The target and the arguments are checked and converted like {@link Method#invoke(Object, Object...)} does before
+ * calling the method handle, so that only the exceptions thrown by the method itself are reported as
+ * {@link InvocationTargetException}.
+ */
+public final class MethodInvoker {
+
+  private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+  private static final List<Class<?>> PRIMITIVES = Arrays.asList(byte.class, short.class, char.class, int.class, long.class, float.class, double.class);
+  private static final List<Class<?>> WRAPPERS = Arrays.asList(Byte.class, Short.class, Character.class, Integer.class, Long.class, Float.class, Double.class);
+
+  private final Method method;
+  private final boolean isStatic;
+  private final UnaryOperator<Object>[] converters;
+  private final MethodHandle invoker;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public MethodInvoker(Method method) {
+    this.method = Objects.requireNonNull(method);
+    this.isStatic = Modifier.isStatic(method.getModifiers());
+
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    this.converters = new UnaryOperator[parameterTypes.length];
+    for (int i = 0; i < parameterTypes.length; i++) {
+      converters[i] = converter(parameterTypes[i]);
+    }
+
+    MethodHandle invoker;
+    try {
+      invoker = MethodHandles.lookup().unreflect(method);
+      if (isStatic) {
+        invoker = MethodHandles.dropArguments(invoker, 0, Object.class);
+      }
+      invoker = invoker.asSpreader(Object[].class, parameterTypes.length).asType(INVOKER_TYPE);
+    } catch (IllegalAccessException e) {
+      // the method is invoked by reflection
+      invoker = null;
+    }
+    this.invoker = invoker;
+  }
+
+  public Method getMethod() {
+    return method;
+  }
+
+  /**
+   * @throws NullPointerException     if the target is null and the method is not static
+   * @throws IllegalArgumentException if the target is not an instance of the class declaring the method, or if the
+   *                                  arguments do not match the parameters of the method
+   * @throws InvocationTargetException if the method throws an exception
+   */
+  public Object invoke(Object target, Object... arguments) throws IllegalAccessException, InvocationTargetException {
+    if (invoker == null) {
+      return method.invoke(target, arguments);
+    }
+    if (!isStatic && !method.getDeclaringClass().isInstance(Objects.requireNonNull(target))) {
+      throw new IllegalArgumentException("object is not an instance of declaring class");
+    }
+    if (arguments == null) {
+      arguments = new Object[0];
+    }
+    if (arguments.length != converters.length) {
+      throw new IllegalArgumentException("wrong number of arguments");
+    }
+    Object[] args = new Object[arguments.length];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = converters[i].apply(arguments[i]);
+    }
+    try {
+      return invoker.invokeExact(target, args);
+    } catch (Throwable t) {
+      throw new InvocationTargetException(t);
+    }
+  }
+
+  private static UnaryOperator<Object> converter(Class<?> parameterType) {
+    if (!parameterType.isPrimitive()) {
+      return argument -> {
+        if (argument != null && !parameterType.isInstance(argument)) {
+          throw new IllegalArgumentException("argument type mismatch");
+        }
+        return argument;
+      };
+    }
+    if (parameterType == boolean.class) {
+      return argument -> {
+        if (!(argument instanceof Boolean)) {
+          throw new IllegalArgumentException("argument type mismatch");
+        }
+        return argument;
+      };
+    }
+    int to = PRIMITIVES.indexOf(parameterType);
+    return argument -> {
+      int from = argument == null ? -1 : WRAPPERS.indexOf(argument.getClass());
+      if (from == to) {
+        return argument;
+      }
+      // widening primitive conversions: nothing is converted to char, and char is only converted from int onwards
+      if (from < 0 || from > to || to == 2 || from == 2 && to < 3) {
+        throw new IllegalArgumentException("argument type mismatch");
+      }
+      if (from == 2) {
+        argument = (int) (Character) argument;
+      }
+      Number number = (Number) argument;
+      switch (to) {
+        case 1:
+          return number.shortValue();
+        case 3:
+          return number.intValue();
+        case 4:
+          return number.longValue();
+        case 5:
+          return number.floatValue();
+        default:
+          return number.doubleValue();
+      }
+    };
+  }
+}
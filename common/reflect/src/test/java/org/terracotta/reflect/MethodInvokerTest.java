@@ -0,0 +1,87 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.reflect;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MethodInvokerTest {
+
+  @Test
+  public void test_invoke() throws Exception {
+    MethodInvoker invoker = new MethodInvoker(Calculator.class.getMethod("add", long.class, int.class));
+    assertThat(invoker.invoke(new Calculator(), 1L, 2), is(3L));
+    // widening primitive conversions
+    assertThat(invoker.invoke(new Calculator(), 1, (short) 2), is(3L));
+    assertThat(invoker.invoke(new Calculator(), 'a', 'b'), is(195L));
+  }
+
+  @Test
+  public void test_invoke_static() throws Exception {
+    MethodInvoker invoker = new MethodInvoker(Calculator.class.getMethod("negate", int.class));
+    assertThat(invoker.invoke(null, 1), is(-1));
+  }
+
+  @Test
+  public void test_invalid_invocations_are_reported_like_reflection() throws Exception {
+    MethodInvoker invoker = new MethodInvoker(Calculator.class.getMethod("add", long.class, int.class));
+    assertIllegalArgument(invoker, new Calculator(), 1L, 2L);
+    assertIllegalArgument(invoker, new Calculator(), 1L, null);
+    assertIllegalArgument(invoker, new Calculator(), 1L);
+    assertIllegalArgument(invoker, "not a calculator", 1L, 2);
+  }
+
+  @Test
+  public void test_exceptions_of_the_method_are_wrapped() throws Exception {
+    MethodInvoker invoker = new MethodInvoker(Calculator.class.getMethod("divide", int.class, int.class));
+    try {
+      invoker.invoke(new Calculator(), 1, 0);
+      fail();
+    } catch (InvocationTargetException e) {
+      assertThat(e.getTargetException(), is(instanceOf(ArithmeticException.class)));
+    }
+  }
+
+  private static void assertIllegalArgument(MethodInvoker invoker, Object target, Object... arguments) throws Exception {
+    try {
+      invoker.invoke(target, arguments);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public static class Calculator {
+    public long add(long a, int b) {
+      return a + b;
+    }
+
+    public int divide(int a, int b) {
+      return a / b;
+    }
+
+    public static int negate(int a) {
+      return -a;
+    }
+  }
+}
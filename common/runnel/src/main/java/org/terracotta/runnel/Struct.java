@@ -17,9 +17,12 @@
 package org.terracotta.runnel;
 
 import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.decoding.StructReader;
 import org.terracotta.runnel.decoding.fields.Field;
 import org.terracotta.runnel.decoding.fields.StructField;
 import org.terracotta.runnel.encoding.StructEncoder;
+import org.terracotta.runnel.encoding.StructHandle;
+import org.terracotta.runnel.encoding.StructWriter;
 import org.terracotta.runnel.utils.ReadBuffer;
 
 import java.io.PrintStream;
@@ -55,6 +58,27 @@ public class Struct {
     return new StructEncoder<>(root);
   }
 
+  /**
+   * Create a handle to the root of the present structure, from which the handles of its fields can be resolved
+   * to be used with a {@link StructWriter}. Handles are immutable and are meant to be resolved once and reused.
+   * Note: this method is thread-safe.
+   * @return the root struct handle.
+   */
+  public StructHandle handle() {
+    root.checkFullyInitialized();
+    return new StructHandle(root);
+  }
+
+  /**
+   * Create a non-thread safe, reusable writer allowing encoding according to the present structure with
+   * pre-resolved field handles.
+   * Note: this method is thread-safe.
+   * @return the writer.
+   */
+  public StructWriter writer() {
+    return new StructWriter(handle());
+  }
+
   /**
    * Create a non-thread safe decoder allowing decoding according to the present structure.
    * Note: this method is thread-safe.
@@ -66,6 +90,17 @@ public class Struct {
     return new StructDecoder<>(root, new ReadBuffer(byteBuffer));
   }
 
+  /**
+   * Create a non-thread safe, reusable reader allowing decoding according to the present structure without boxing
+   * nor copying. The reader must be {@link StructReader#wrap(ByteBuffer) wrapped} around the data to decode.
+   * Note: this method is thread-safe.
+   * @return the reader.
+   */
+  public StructReader reader() {
+    root.checkFullyInitialized();
+    return new StructReader(root);
+  }
+
   /**
    * Recursively decode a byte buffer according to the present structure and print the decoded outcome to a print stream.
    * Note: this method is thread-safe.
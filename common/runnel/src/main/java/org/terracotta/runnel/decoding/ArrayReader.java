@@ -0,0 +1,110 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding;
+
+import org.terracotta.runnel.decoding.fields.BoolField;
+import org.terracotta.runnel.decoding.fields.ByteBufferField;
+import org.terracotta.runnel.decoding.fields.CharField;
+import org.terracotta.runnel.decoding.fields.Field;
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.decoding.fields.StringField;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The flyweight reader of a value array field, see {@link StructReader}.
+ * Each read method returns the next value of the array, and must match the type of the array's values.
+ * Note: Instances of this class are not thread-safe.
+ */
+public final class ArrayReader {
+
+  private final ReadCursor cursor = new ReadCursor();
+  private final StringView stringView = new StringView();
+  private Class<? extends Field> subFieldClass;
+  private int length;
+
+  ArrayReader() {
+  }
+
+  void wrap(ReadCursor parent, Class<? extends Field> subFieldClass) {
+    int size = parent.getVlqInt();
+    cursor.wrapSlice(parent, size);
+    this.length = cursor.getVlqInt();
+    this.subFieldClass = subFieldClass;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public boolean hasNext() {
+    return !cursor.limitReached();
+  }
+
+  public boolean boolAsBoolean() {
+    checkType(BoolField.class);
+    cursor.expectSize(1);
+    return cursor.getByte() != (byte) 0;
+  }
+
+  public char chrAsChar() {
+    checkType(CharField.class);
+    cursor.expectSize(2);
+    return cursor.getChar();
+  }
+
+  public int int32AsInt() {
+    checkType(Int32Field.class);
+    cursor.expectSize(4);
+    return cursor.getInt();
+  }
+
+  public long int64AsLong() {
+    checkType(Int64Field.class);
+    cursor.expectSize(8);
+    return cursor.getLong();
+  }
+
+  public double fp64AsDouble() {
+    checkType(FloatingPoint64Field.class);
+    cursor.expectSize(8);
+    return cursor.getDouble();
+  }
+
+  public String string() {
+    return stringView().toString();
+  }
+
+  public StringView stringView() {
+    checkType(StringField.class);
+    return StructReader.readStringView(cursor, stringView);
+  }
+
+  public ByteBuffer byteBuffer() {
+    checkType(ByteBufferField.class);
+    return StructReader.readByteBuffer(cursor);
+  }
+
+  private void checkType(Class<? extends Field> expected) {
+    if (subFieldClass != expected) {
+      throw new IllegalArgumentException("Invalid type for array values, expected : '" + expected.getSimpleName() + "' but was '" + subFieldClass.getSimpleName() + "'");
+    }
+  }
+
+}
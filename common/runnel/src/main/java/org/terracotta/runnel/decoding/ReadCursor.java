@@ -0,0 +1,139 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding;
+
+import org.terracotta.runnel.utils.CorruptDataException;
+import org.terracotta.runnel.utils.LimitReachedException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A mutable window over a byte buffer, read with absolute accesses so that neither the buffer's position nor its
+ * limit are ever modified. This is the reusable counterpart of {@link org.terracotta.runnel.utils.ReadBuffer}.
+ */
+final class ReadCursor {
+
+  private ByteBuffer buffer;
+  private int position;
+  private int limit;
+
+  void wrap(ByteBuffer buffer, int position, int limit) {
+    if (limit > buffer.capacity()) {
+      throw new LimitReachedException();
+    }
+    this.buffer = buffer;
+    this.position = position;
+    this.limit = limit;
+  }
+
+  /**
+   * Make this cursor a window of {@code size} bytes starting at the current position of {@code parent}, and move
+   * {@code parent} past that window.
+   */
+  void wrapSlice(ReadCursor parent, int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("size cannot be < 0");
+    }
+    int start = parent.position;
+    parent.skip(size);
+    wrap(parent.buffer, start, start + size);
+  }
+
+  ByteBuffer buffer() {
+    return buffer;
+  }
+
+  int position() {
+    return position;
+  }
+
+  boolean limitReached() {
+    return position == limit;
+  }
+
+  void skip(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("size cannot be < 0");
+    }
+    check(size);
+    position += size;
+  }
+
+  void skipAll() {
+    position = limit;
+  }
+
+  byte getByte() {
+    check(1);
+    return buffer.get(position++);
+  }
+
+  char getChar() {
+    check(2);
+    char value = buffer.getChar(position);
+    position += 2;
+    return value;
+  }
+
+  int getInt() {
+    check(4);
+    int value = buffer.getInt(position);
+    position += 4;
+    return value;
+  }
+
+  long getLong() {
+    check(8);
+    long value = buffer.getLong(position);
+    position += 8;
+    return value;
+  }
+
+  double getDouble() {
+    check(8);
+    double value = buffer.getDouble(position);
+    position += 8;
+    return value;
+  }
+
+  int getVlqInt() {
+    int value = 0;
+    for (int i = 0; i < 5; i++) {
+      int b = getByte();
+      value |= b & 0x7F;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+      value <<= 7;
+    }
+    throw new IllegalArgumentException("Cannot decode value greater than Integer.MAX_VALUE");
+  }
+
+  void expectSize(int expected) {
+    int size = getVlqInt();
+    if (size != expected) {
+      throw new CorruptDataException("Expected field size of " + expected + ", read : " + size);
+    }
+  }
+
+  private void check(int size) {
+    if (position + size > limit) {
+      throw new LimitReachedException();
+    }
+  }
+
+}
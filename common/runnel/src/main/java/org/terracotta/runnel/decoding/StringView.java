@@ -0,0 +1,147 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding;
+
+import org.terracotta.runnel.utils.CorruptDataException;
+import org.terracotta.runnel.utils.StringTool;
+
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+
+/**
+ * An encoded string, as a view over the buffer it was read from. The string is only decoded when
+ * {@link #toString()} is called, and can be compared to a {@code String} without being decoded.
+ * <p>
+ * Like the readers returning them, views are flyweights: a {@link StructReader} or an {@link ArrayReader} re-points
+ * the same view at each string it reads, so a view is only valid until the next string is read by the same reader,
+ * and as long as the content of the underlying buffer is not modified. Call {@link #toString()} to keep the value.
+ */
+public final class StringView {
+
+  private ByteBuffer buffer;
+  private int offset;
+  private int encodedLength;
+  private String decoded;
+
+  StringView() {
+  }
+
+  StringView wrap(ByteBuffer buffer, int offset, int encodedLength) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.encodedLength = encodedLength;
+    this.decoded = null;
+    return this;
+  }
+
+  /**
+   * @return the length of the encoded string, in bytes.
+   */
+  public int encodedLength() {
+    return encodedLength;
+  }
+
+  public boolean isEmpty() {
+    return encodedLength == 0;
+  }
+
+  /**
+   * Compare this view to a string without decoding it.
+   * @param str the string to compare to.
+   * @return true if this view is the encoded form of {@code str}.
+   */
+  public boolean contentEquals(String str) {
+    if (str == null) {
+      return false;
+    }
+    if (decoded != null) {
+      return decoded.equals(str);
+    }
+    int strLength = str.length();
+    if (strLength > encodedLength) {
+      return false;
+    }
+    int pos = offset;
+    int end = offset + encodedLength;
+    for (int i = 0; i < strLength; i++) {
+      char c = str.charAt(i);
+      if (c <= '\u007F' && c != '\u0000') {
+        if (pos + 1 > end || buffer.get(pos) != (byte) c) {
+          return false;
+        }
+        pos++;
+      } else if (c <= '\u07FF') {
+        if (pos + 2 > end
+            || buffer.get(pos) != (byte) (0xC0 | c >>> 6)
+            || buffer.get(pos + 1) != (byte) (0x80 | (c & 0x3F))) {
+          return false;
+        }
+        pos += 2;
+      } else {
+        if (pos + 3 > end
+            || buffer.get(pos) != (byte) (0xE0 | c >>> 12)
+            || buffer.get(pos + 1) != (byte) (0x80 | ((c >>> 6) & 0x3F))
+            || buffer.get(pos + 2) != (byte) (0x80 | (c & 0x3F))) {
+          return false;
+        }
+        pos += 3;
+      }
+    }
+    return pos == end;
+  }
+
+  /**
+   * Decode the string. The decoded string is cached, so subsequent calls do not decode it again.
+   * @return the decoded string.
+   */
+  @Override
+  public String toString() {
+    String s = decoded;
+    if (s == null) {
+      decoded = s = decode();
+    }
+    return s;
+  }
+
+  private String decode() {
+    int end = offset + encodedLength;
+    boolean ascii = true;
+    for (int i = offset; i < end; i++) {
+      byte b = buffer.get(i);
+      if (b <= 0) {
+        ascii = false;
+        break;
+      }
+    }
+    if (ascii) {
+      char[] chars = new char[encodedLength];
+      for (int i = 0; i < encodedLength; i++) {
+        chars[i] = (char) buffer.get(offset + i);
+      }
+      return new String(chars);
+    }
+    ByteBuffer slice = buffer.duplicate();
+    slice.limit(end).position(offset);
+    try {
+      return StringTool.decodeString(slice, encodedLength);
+    } catch (UTFDataFormatException e) {
+      CorruptDataException cde = new CorruptDataException("Unexpected encoding");
+      cde.addSuppressed(e);
+      throw cde;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding;
+
+import org.terracotta.runnel.decoding.fields.StructField;
+
+import java.util.NoSuchElementException;
+
+/**
+ * The flyweight reader of a struct array field, see {@link StructReader}.
+ * Note: Instances of this class are not thread-safe.
+ */
+public final class StructArrayReader {
+
+  private final ReadCursor cursor = new ReadCursor();
+  private final StructReader element;
+  private int length;
+
+  StructArrayReader(StructField structField) {
+    this.element = new StructReader(structField);
+  }
+
+  void wrap(ReadCursor parent) {
+    int size = parent.getVlqInt();
+    cursor.wrapSlice(parent, size);
+    length = cursor.getVlqInt();
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public boolean hasNext() {
+    return !cursor.limitReached();
+  }
+
+  /**
+   * Move to the next element of the array.
+   * @return the reader of the element, which is the same instance for all the elements of the array.
+   */
+  public StructReader next() {
+    if (cursor.limitReached()) {
+      throw new NoSuchElementException();
+    }
+    element.wrap(cursor);
+    return element;
+  }
+
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding;
+
+import org.terracotta.runnel.decoding.fields.ArrayField;
+import org.terracotta.runnel.decoding.fields.BoolField;
+import org.terracotta.runnel.decoding.fields.ByteBufferField;
+import org.terracotta.runnel.decoding.fields.CharField;
+import org.terracotta.runnel.decoding.fields.EnumField;
+import org.terracotta.runnel.decoding.fields.Field;
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.decoding.fields.StringField;
+import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.metadata.FieldSearcher;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A reader allows decoding structured data described by a {@link org.terracotta.runnel.Struct} without boxing
+ * nor copying.
+ * <p>
+ * Contrary to {@link StructDecoder}, primitive values are returned as primitives, with a caller-provided value
+ * returned when the field is absent from the data, strings can be read as {@link StringView}s that are only decoded
+ * on demand, and the readers of nested structs and arrays are flyweights: they are created once per field and then
+ * re-pointed at the data each time the field is read. A nested reader is thus only valid until the same field is read
+ * again, or until its root reader is {@link #wrap(ByteBuffer) wrapped} around another buffer. Likewise, a reader
+ * re-points a single {@link StringView} at each string it reads.
+ * <p>
+ * Fields must be read <i>in the order they were defined in the structure</i>, but reading a nested struct or array
+ * does not require its content to be fully read, nor any {@code end()} call.
+ * Note: Instances of this class are not thread-safe.
+ */
+public final class StructReader {
+
+  private final FieldSearcher fieldSearcher;
+  private final ReadCursor cursor = new ReadCursor();
+  private final StringView stringView = new StringView();
+  private int readAheadIndex = -1;
+
+  private Map<Field, StructReader> structReaders;
+  private Map<Field, StructArrayReader> structArrayReaders;
+  private Map<Field, ArrayReader> arrayReaders;
+
+  public StructReader(StructField structField) {
+    this.fieldSearcher = structField.getMetadata().fieldSearcher();
+  }
+
+  /**
+   * Start reading a structure encoded at the current position of the given byte buffer.
+   * The buffer's position and limit are left untouched.
+   * @param byteBuffer the byte buffer containing the data to be decoded.
+   * @return this.
+   */
+  public StructReader wrap(ByteBuffer byteBuffer) {
+    cursor.wrap(byteBuffer, byteBuffer.position(), byteBuffer.limit());
+    int size = cursor.getVlqInt();
+    cursor.wrap(byteBuffer, cursor.position(), cursor.position() + size);
+    reset();
+    return this;
+  }
+
+  void wrap(ReadCursor parent) {
+    int size = parent.getVlqInt();
+    cursor.wrapSlice(parent, size);
+    reset();
+  }
+
+  private void reset() {
+    fieldSearcher.reset();
+    readAheadIndex = -1;
+  }
+
+  public boolean boolAsBoolean(String name, boolean absentValue) {
+    if (next(name, BoolField.class, null) == null) {
+      return absentValue;
+    }
+    cursor.expectSize(1);
+    return cursor.getByte() != (byte) 0;
+  }
+
+  public char chrAsChar(String name, char absentValue) {
+    if (next(name, CharField.class, null) == null) {
+      return absentValue;
+    }
+    cursor.expectSize(2);
+    return cursor.getChar();
+  }
+
+  public int int32AsInt(String name, int absentValue) {
+    if (next(name, Int32Field.class, null) == null) {
+      return absentValue;
+    }
+    cursor.expectSize(4);
+    return cursor.getInt();
+  }
+
+  public long int64AsLong(String name, long absentValue) {
+    if (next(name, Int64Field.class, null) == null) {
+      return absentValue;
+    }
+    cursor.expectSize(8);
+    return cursor.getLong();
+  }
+
+  public double fp64AsDouble(String name, double absentValue) {
+    if (next(name, FloatingPoint64Field.class, null) == null) {
+      return absentValue;
+    }
+    cursor.expectSize(8);
+    return cursor.getDouble();
+  }
+
+  /**
+   * Decode the raw integer value of an enumeration.
+   * @param name the field name.
+   * @param absentValue the value to return if the field is absent from the data.
+   * @return the raw value, or {@code absentValue}.
+   */
+  public int enmAsInt(String name, int absentValue) {
+    if (next(name, EnumField.class, null) == null) {
+      return absentValue;
+    }
+    cursor.getVlqInt();
+    return cursor.getVlqInt();
+  }
+
+  /**
+   * Decode an enumeration.
+   * @param name the field name.
+   * @param absentValue the value to return if the field is absent from the data, or its value cannot be mapped.
+   * @param <E> the enumeration's actual type.
+   * @return the decoded value, or {@code absentValue}.
+   */
+  @SuppressWarnings("unchecked")
+  public <E> E enm(String name, E absentValue) {
+    EnumField<E> field = next(name, EnumField.class, null);
+    if (field == null) {
+      return absentValue;
+    }
+    cursor.getVlqInt();
+    E value = field.getEnumMapping().toEnum(cursor.getVlqInt());
+    return value == null ? absentValue : value;
+  }
+
+  /**
+   * Decode a character string.
+   * @param name the field name.
+   * @return the decoded value, or null if it was absent from the data.
+   */
+  public String string(String name) {
+    StringView view = stringView(name);
+    return view == null ? null : view.toString();
+  }
+
+  /**
+   * Read a character string without decoding it.
+   * @param name the field name.
+   * @return a view over the encoded value, reused each time a string is read by this reader, or null if it was absent
+   * from the data.
+   */
+  public StringView stringView(String name) {
+    if (next(name, StringField.class, null) == null) {
+      return null;
+    }
+    return readStringView(cursor, stringView);
+  }
+
+  /**
+   * Read a byte buffer without copying it.
+   * @param name the field name.
+   * @return a slice of the underlying buffer, or null if it was absent from the data.
+   */
+  public ByteBuffer byteBuffer(String name) {
+    if (next(name, ByteBufferField.class, null) == null) {
+      return null;
+    }
+    return readByteBuffer(cursor);
+  }
+
+  /**
+   * Read a struct field.
+   * @param name the field name.
+   * @return the reader of the struct, reused each time this field is read, or null if it was absent from the data.
+   */
+  public StructReader struct(String name) {
+    StructField field = next(name, StructField.class, null);
+    if (field == null) {
+      return null;
+    }
+    if (structReaders == null) {
+      structReaders = new IdentityHashMap<>();
+    }
+    StructReader reader = structReaders.get(field);
+    if (reader == null) {
+      reader = new StructReader(field);
+      structReaders.put(field, reader);
+    }
+    reader.wrap(cursor);
+    return reader;
+  }
+
+  /**
+   * Read a struct array field.
+   * @param name the field name.
+   * @return the reader of the array, reused each time this field is read, or null if it was absent from the data.
+   */
+  public StructArrayReader structs(String name) {
+    ArrayField field = next(name, ArrayField.class, StructField.class);
+    if (field == null) {
+      return null;
+    }
+    if (structArrayReaders == null) {
+      structArrayReaders = new IdentityHashMap<>();
+    }
+    StructArrayReader reader = structArrayReaders.get(field);
+    if (reader == null) {
+      reader = new StructArrayReader((StructField) field.subField());
+      structArrayReaders.put(field, reader);
+    }
+    reader.wrap(cursor);
+    return reader;
+  }
+
+  public ArrayReader bools(String name) {
+    return array(name, BoolField.class);
+  }
+
+  public ArrayReader chrs(String name) {
+    return array(name, CharField.class);
+  }
+
+  public ArrayReader int32s(String name) {
+    return array(name, Int32Field.class);
+  }
+
+  public ArrayReader int64s(String name) {
+    return array(name, Int64Field.class);
+  }
+
+  public ArrayReader fp64s(String name) {
+    return array(name, FloatingPoint64Field.class);
+  }
+
+  public ArrayReader strings(String name) {
+    return array(name, StringField.class);
+  }
+
+  public ArrayReader byteBuffers(String name) {
+    return array(name, ByteBufferField.class);
+  }
+
+  private ArrayReader array(String name, Class<? extends Field> subFieldClass) {
+    ArrayField field = next(name, ArrayField.class, subFieldClass);
+    if (field == null) {
+      return null;
+    }
+    if (arrayReaders == null) {
+      arrayReaders = new IdentityHashMap<>();
+    }
+    ArrayReader reader = arrayReaders.get(field);
+    if (reader == null) {
+      reader = new ArrayReader();
+      arrayReaders.put(field, reader);
+    }
+    reader.wrap(cursor, subFieldClass);
+    return reader;
+  }
+
+  static StringView readStringView(ReadCursor cursor, StringView view) {
+    int size = cursor.getVlqInt();
+    int offset = cursor.position();
+    cursor.skip(size);
+    return view.wrap(cursor.buffer(), offset, size);
+  }
+
+  static ByteBuffer readByteBuffer(ReadCursor cursor) {
+    int size = cursor.getVlqInt();
+    int offset = cursor.position();
+    cursor.skip(size);
+    ByteBuffer slice = cursor.buffer().duplicate();
+    slice.limit(offset + size).position(offset);
+    return slice.slice();
+  }
+
+  private <T extends Field> T next(String name, Class<T> fieldClass, Class<? extends Field> subFieldClass) {
+    T field = fieldSearcher.findField(name, fieldClass, subFieldClass);
+    if (cursor.limitReached()) {
+      return null;
+    }
+
+    int index = readAheadIndex > 0 ? readAheadIndex : cursor.getVlqInt();
+    readAheadIndex = -1;
+    // skip all fields with a lower index than the requested field's
+    while (index < field.index()) {
+      int fieldSize = cursor.getVlqInt();
+      cursor.skip(fieldSize);
+      if (cursor.limitReached()) {
+        return null;
+      }
+      index = cursor.getVlqInt();
+    }
+
+    if (index > field.index()) {
+      readAheadIndex = index;
+      return null;
+    }
+    return field;
+  }
+
+}
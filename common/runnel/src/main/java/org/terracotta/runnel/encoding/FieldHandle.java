@@ -0,0 +1,76 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.encoding;
+
+import org.terracotta.runnel.EnumMapping;
+import org.terracotta.runnel.decoding.fields.Field;
+import org.terracotta.runnel.metadata.Metadata;
+
+/**
+ * A value field of a {@link org.terracotta.runnel.Struct}, resolved once by name through a {@link StructHandle}
+ * and then used by a {@link StructWriter} without any further lookup.
+ * Note: Instances of this class are immutable and thread-safe.
+ *
+ * @param <T> the type of value the field accepts.
+ */
+public final class FieldHandle<T> {
+
+  private final String name;
+  private final int index;
+  private final Metadata owner;
+  private final Class<? extends Field> fieldClass;
+  private final Class<? extends Field> subFieldClass;
+  private final EnumMapping<?> enumMapping;
+
+  FieldHandle(String name, int index, Metadata owner, Class<? extends Field> fieldClass, Class<? extends Field> subFieldClass, EnumMapping<?> enumMapping) {
+    this.name = name;
+    this.index = index;
+    this.owner = owner;
+    this.fieldClass = fieldClass;
+    this.subFieldClass = subFieldClass;
+    this.enumMapping = enumMapping;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public int index() {
+    return index;
+  }
+
+  Metadata owner() {
+    return owner;
+  }
+
+  Class<? extends Field> fieldClass() {
+    return fieldClass;
+  }
+
+  Class<? extends Field> subFieldClass() {
+    return subFieldClass;
+  }
+
+  EnumMapping<?> enumMapping() {
+    return enumMapping;
+  }
+
+  @Override
+  public String toString() {
+    return "FieldHandle{name='" + name + "', index=" + index + ", type=" + fieldClass.getSimpleName() + (subFieldClass == null ? "" : "<" + subFieldClass.getSimpleName() + ">") + "}";
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.encoding;
+
+import org.terracotta.runnel.decoding.fields.ArrayField;
+import org.terracotta.runnel.decoding.fields.BoolField;
+import org.terracotta.runnel.decoding.fields.ByteBufferField;
+import org.terracotta.runnel.decoding.fields.CharField;
+import org.terracotta.runnel.decoding.fields.EnumField;
+import org.terracotta.runnel.decoding.fields.Field;
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.decoding.fields.StringField;
+import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.metadata.Metadata;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A struct of a {@link org.terracotta.runnel.Struct}, either the root one or a struct (or struct array) field,
+ * from which the handles of the contained fields can be resolved.
+ * Handles are meant to be resolved once, typically in static fields next to the {@link org.terracotta.runnel.Struct}
+ * they belong to, and then passed to a {@link StructWriter}.
+ * Note: Instances of this class are immutable and thread-safe.
+ */
+public final class StructHandle {
+
+  private final String name;
+  private final int index;
+  private final Metadata metadata;
+  private final Metadata owner;
+  private final boolean array;
+
+  public StructHandle(StructField root) {
+    this(root.name(), -1, root.getMetadata(), null, false);
+  }
+
+  private StructHandle(String name, int index, Metadata metadata, Metadata owner, boolean array) {
+    this.name = name;
+    this.index = index;
+    this.metadata = metadata;
+    this.owner = owner;
+    this.array = array;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public int index() {
+    return index;
+  }
+
+  Metadata metadata() {
+    return metadata;
+  }
+
+  Metadata owner() {
+    return owner;
+  }
+
+  boolean isArray() {
+    return array;
+  }
+
+  public FieldHandle<Boolean> bool(String name) {
+    return resolve(name, BoolField.class, null);
+  }
+
+  public FieldHandle<Character> chr(String name) {
+    return resolve(name, CharField.class, null);
+  }
+
+  @SuppressWarnings("unchecked")
+  public <E> FieldHandle<E> enm(String name) {
+    EnumField<E> field = metadata.fieldSearcher().findField(name, EnumField.class, null);
+    return new FieldHandle<>(name, field.index(), metadata, EnumField.class, null, field.getEnumMapping());
+  }
+
+  public FieldHandle<Integer> int32(String name) {
+    return resolve(name, Int32Field.class, null);
+  }
+
+  public FieldHandle<Long> int64(String name) {
+    return resolve(name, Int64Field.class, null);
+  }
+
+  public FieldHandle<Double> fp64(String name) {
+    return resolve(name, FloatingPoint64Field.class, null);
+  }
+
+  public FieldHandle<String> string(String name) {
+    return resolve(name, StringField.class, null);
+  }
+
+  public FieldHandle<ByteBuffer> byteBuffer(String name) {
+    return resolve(name, ByteBufferField.class, null);
+  }
+
+  public FieldHandle<boolean[]> bools(String name) {
+    return resolve(name, ArrayField.class, BoolField.class);
+  }
+
+  public FieldHandle<char[]> chrs(String name) {
+    return resolve(name, ArrayField.class, CharField.class);
+  }
+
+  public FieldHandle<int[]> int32s(String name) {
+    return resolve(name, ArrayField.class, Int32Field.class);
+  }
+
+  public FieldHandle<long[]> int64s(String name) {
+    return resolve(name, ArrayField.class, Int64Field.class);
+  }
+
+  public FieldHandle<double[]> fp64s(String name) {
+    return resolve(name, ArrayField.class, FloatingPoint64Field.class);
+  }
+
+  public FieldHandle<String[]> strings(String name) {
+    return resolve(name, ArrayField.class, StringField.class);
+  }
+
+  public FieldHandle<ByteBuffer[]> byteBuffers(String name) {
+    return resolve(name, ArrayField.class, ByteBufferField.class);
+  }
+
+  public StructHandle struct(String name) {
+    StructField field = metadata.fieldSearcher().findField(name, StructField.class, null);
+    return new StructHandle(name, field.index(), field.getMetadata(), metadata, false);
+  }
+
+  public StructHandle structs(String name) {
+    ArrayField field = metadata.fieldSearcher().findField(name, ArrayField.class, StructField.class);
+    return new StructHandle(name, field.index(), ((StructField) field.subField()).getMetadata(), metadata, true);
+  }
+
+  private <T> FieldHandle<T> resolve(String name, Class<? extends Field> fieldClass, Class<? extends Field> subFieldClass) {
+    Field field = metadata.fieldSearcher().findField(name, fieldClass, subFieldClass);
+    return new FieldHandle<>(name, field.index(), metadata, fieldClass, subFieldClass, null);
+  }
+
+  @Override
+  public String toString() {
+    return "StructHandle{name='" + name + "', index=" + index + (array ? ", array" : "") + "}";
+  }
+}
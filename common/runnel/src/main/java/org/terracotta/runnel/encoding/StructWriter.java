@@ -0,0 +1,476 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.encoding;
+
+import org.terracotta.runnel.EnumMapping;
+import org.terracotta.runnel.decoding.fields.ArrayField;
+import org.terracotta.runnel.decoding.fields.BoolField;
+import org.terracotta.runnel.decoding.fields.ByteBufferField;
+import org.terracotta.runnel.decoding.fields.CharField;
+import org.terracotta.runnel.decoding.fields.EnumField;
+import org.terracotta.runnel.decoding.fields.Field;
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.decoding.fields.StringField;
+import org.terracotta.runnel.metadata.Metadata;
+import org.terracotta.runnel.utils.StringTool;
+import org.terracotta.runnel.utils.VLQ;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A writer allows encoding structured data described by a {@link org.terracotta.runnel.Struct} using
+ * pre-resolved {@link FieldHandle}s and {@link StructHandle}s.
+ * <p>
+ * Contrary to {@link StructEncoder}, values are written straight into the target buffer as they are passed in:
+ * no intermediate data holder is created, no field is looked up by name and no buffer is allocated per encoding.
+ * The size prefix of a struct or an array is only known once its content has been written, so room for the
+ * largest possible prefix is reserved up front and the content is shifted back once the actual size is known.
+ * The produced bytes are identical to those produced by {@link StructEncoder}.
+ * <p>
+ * A writer can be reused for any number of encodings, either into a caller-supplied buffer ({@link #begin(ByteBuffer)}),
+ * or into a buffer owned by the writer that grows as needed and is reused across encodings ({@link #begin()}).
+ * Note: Instances of this class are not thread-safe.
+ */
+public final class StructWriter {
+
+  private static final int MAX_VLQ_SIZE = 5;
+  private static final int INITIAL_POOLED_CAPACITY = 256;
+
+  private static final byte ROOT = 0;
+  private static final byte STRUCT = 1;
+  private static final byte STRUCT_ARRAY = 2;
+  private static final byte STRUCT_ARRAY_ELEMENT = 3;
+
+  private final Metadata rootMetadata;
+  private final char[] stringSlice = new char[StringTool.SLICE_LENGTH];
+
+  private ByteBuffer pooled;
+  private ByteBuffer buffer;
+  private boolean growable;
+
+  // frame stack, one entry per struct, struct array or struct array element being written
+  private int depth = -1;
+  private byte[] frameKinds = new byte[8];
+  private int[] frameStarts = new int[8];
+  private int[] frameLastIndices = new int[8];
+  private int[] frameCounts = new int[8];
+  private Metadata[] frameMetadata = new Metadata[8];
+
+  public StructWriter(StructHandle root) {
+    if (root.owner() != null) {
+      throw new IllegalArgumentException("Not a root struct handle : " + root);
+    }
+    this.rootMetadata = root.metadata();
+  }
+
+  /**
+   * Start encoding a structure at the current position of the given byte buffer.
+   * Any previous encoding that was not finished is discarded.
+   * @param bb the byte buffer to fill with the encoded structure, which must have enough capacity left.
+   * @return this.
+   */
+  public StructWriter begin(ByteBuffer bb) {
+    return begin(bb, false);
+  }
+
+  /**
+   * Start encoding a structure into a byte buffer owned by this writer. That buffer grows as needed and is reused
+   * by subsequent encodings, so its content must be consumed before {@link #begin()} is called again.
+   * @return this.
+   */
+  public StructWriter begin() {
+    if (pooled == null) {
+      pooled = ByteBuffer.allocate(INITIAL_POOLED_CAPACITY);
+    }
+    pooled.clear();
+    return begin(pooled, true);
+  }
+
+  private StructWriter begin(ByteBuffer bb, boolean growable) {
+    // discard whatever is left of a previous encoding that was not finished
+    Arrays.fill(frameMetadata, null);
+    depth = -1;
+    this.buffer = bb;
+    this.growable = growable;
+    ensureCapacity(MAX_VLQ_SIZE);
+    pushFrame(ROOT, rootMetadata);
+    return this;
+  }
+
+  /**
+   * Finish encoding the structure.
+   * @return the byte buffer the structure was encoded into, positioned right after the encoded structure.
+   * In case of a {@link #begin() writer-owned buffer}, the encoded structure starts at position 0.
+   */
+  public ByteBuffer finish() {
+    if (depth != 0) {
+      throw new IllegalStateException(depth < 0 ? "Encoding has not begun" : "Cannot finish with unterminated struct or array");
+    }
+    closeFrame();
+    ByteBuffer bb = buffer;
+    buffer = null;
+    return bb;
+  }
+
+  public StructWriter bool(FieldHandle<Boolean> handle, boolean value) {
+    writeFieldHeader(handle, BoolField.class, null, 1);
+    buffer.put(value ? (byte) 1 : (byte) 0);
+    return this;
+  }
+
+  public StructWriter chr(FieldHandle<Character> handle, char value) {
+    writeFieldHeader(handle, CharField.class, null, 2);
+    buffer.putChar(value);
+    return this;
+  }
+
+  @SuppressWarnings("unchecked")
+  public <E> StructWriter enm(FieldHandle<E> handle, E value) {
+    checkField(handle, EnumField.class, null);
+    int intValue = ((EnumMapping<E>) handle.enumMapping()).toInt(value);
+    writeFieldHeader(handle, VLQ.encodedSize(intValue));
+    putVlqInt(intValue);
+    return this;
+  }
+
+  public StructWriter int32(FieldHandle<Integer> handle, int value) {
+    writeFieldHeader(handle, Int32Field.class, null, 4);
+    buffer.putInt(value);
+    return this;
+  }
+
+  public StructWriter int64(FieldHandle<Long> handle, long value) {
+    writeFieldHeader(handle, Int64Field.class, null, 8);
+    buffer.putLong(value);
+    return this;
+  }
+
+  public StructWriter fp64(FieldHandle<Double> handle, double value) {
+    writeFieldHeader(handle, FloatingPoint64Field.class, null, 8);
+    buffer.putDouble(value);
+    return this;
+  }
+
+  public StructWriter string(FieldHandle<String> handle, String value) {
+    checkField(handle, StringField.class, null);
+    if (value != null) {
+      int size = StringTool.getEncodedLength(value);
+      writeFieldHeader(handle, size);
+      StringTool.putEncoded(buffer, value, value.length(), stringSlice);
+    }
+    return this;
+  }
+
+  public StructWriter byteBuffer(FieldHandle<ByteBuffer> handle, ByteBuffer value) {
+    checkField(handle, ByteBufferField.class, null);
+    writeFieldHeader(handle, value.remaining());
+    buffer.put(value);
+    return this;
+  }
+
+  public StructWriter bools(FieldHandle<boolean[]> handle, boolean[] values) {
+    writeArrayHeader(handle, BoolField.class, values.length, 1);
+    for (boolean value : values) {
+      buffer.put((byte) 1).put(value ? (byte) 1 : (byte) 0);
+    }
+    return this;
+  }
+
+  public StructWriter chrs(FieldHandle<char[]> handle, char[] values) {
+    writeArrayHeader(handle, CharField.class, values.length, 2);
+    for (char value : values) {
+      buffer.put((byte) 2).putChar(value);
+    }
+    return this;
+  }
+
+  public StructWriter int32s(FieldHandle<int[]> handle, int[] values) {
+    writeArrayHeader(handle, Int32Field.class, values.length, 4);
+    for (int value : values) {
+      buffer.put((byte) 4).putInt(value);
+    }
+    return this;
+  }
+
+  public StructWriter int64s(FieldHandle<long[]> handle, long[] values) {
+    writeArrayHeader(handle, Int64Field.class, values.length, 8);
+    for (long value : values) {
+      buffer.put((byte) 8).putLong(value);
+    }
+    return this;
+  }
+
+  public StructWriter fp64s(FieldHandle<double[]> handle, double[] values) {
+    writeArrayHeader(handle, FloatingPoint64Field.class, values.length, 8);
+    for (double value : values) {
+      buffer.put((byte) 8).putDouble(value);
+    }
+    return this;
+  }
+
+  public StructWriter strings(FieldHandle<String[]> handle, String... values) {
+    return strings(handle, Arrays.asList(values));
+  }
+
+  public StructWriter strings(FieldHandle<String[]> handle, Iterable<String> values) {
+    checkField(handle, ArrayField.class, StringField.class);
+    openArray(handle.index());
+    int count = 0;
+    for (String value : values) {
+      int size = StringTool.getEncodedLength(value);
+      ensureCapacity(MAX_VLQ_SIZE + size);
+      putVlqInt(size);
+      StringTool.putEncoded(buffer, value, value.length(), stringSlice);
+      count++;
+    }
+    frameCounts[depth] = count;
+    closeFrame();
+    return this;
+  }
+
+  public StructWriter byteBuffers(FieldHandle<ByteBuffer[]> handle, ByteBuffer... values) {
+    return byteBuffers(handle, Arrays.asList(values));
+  }
+
+  public StructWriter byteBuffers(FieldHandle<ByteBuffer[]> handle, Iterable<ByteBuffer> values) {
+    checkField(handle, ArrayField.class, ByteBufferField.class);
+    openArray(handle.index());
+    int count = 0;
+    for (ByteBuffer value : values) {
+      int size = value.remaining();
+      ensureCapacity(MAX_VLQ_SIZE + size);
+      putVlqInt(size);
+      buffer.put(value);
+      count++;
+    }
+    frameCounts[depth] = count;
+    closeFrame();
+    return this;
+  }
+
+  /**
+   * Start writing a struct field, which must then be terminated with {@link #end()}.
+   * @param handle the struct field.
+   * @return this.
+   */
+  public StructWriter struct(StructHandle handle) {
+    checkStruct(handle, false);
+    ensureCapacity(2 * MAX_VLQ_SIZE);
+    putVlqInt(handle.index());
+    pushFrame(STRUCT, handle.metadata());
+    return this;
+  }
+
+  /**
+   * Start writing a struct array field, whose elements are started with {@link #add()}.
+   * The array must then be terminated with {@link #end()}.
+   * @param handle the struct array field.
+   * @return this.
+   */
+  public StructWriter structs(StructHandle handle) {
+    checkStruct(handle, true);
+    openArray(handle.index());
+    frameMetadata[depth] = handle.metadata();
+    return this;
+  }
+
+  /**
+   * Start writing a new element of the struct array being written, terminating the previous element if needed.
+   * Like with {@link StructArrayEncoder}, elements to which no field was written are not encoded.
+   * @return this.
+   */
+  public StructWriter add() {
+    if (depth >= 0 && frameKinds[depth] == STRUCT_ARRAY_ELEMENT) {
+      closeFrame();
+    }
+    if (depth < 0 || frameKinds[depth] != STRUCT_ARRAY) {
+      throw new IllegalStateException("Not writing a struct array");
+    }
+    pushFrame(STRUCT_ARRAY_ELEMENT, frameMetadata[depth]);
+    return this;
+  }
+
+  /**
+   * Terminate the struct, struct array or struct array element currently being written.
+   * @return this.
+   */
+  public StructWriter end() {
+    if (depth <= 0) {
+      throw new IllegalStateException("Cannot end root struct");
+    }
+    closeFrame();
+    return this;
+  }
+
+  private void checkField(FieldHandle<?> handle, Class<? extends Field> fieldClass, Class<? extends Field> subFieldClass) {
+    if (depth < 0) {
+      throw new IllegalStateException("Encoding has not begun");
+    }
+    if (frameKinds[depth] == STRUCT_ARRAY) {
+      throw new IllegalStateException("Cannot write field '" + handle.name() + "' in a struct array, add() an element first");
+    }
+    if (handle.owner() != frameMetadata[depth]) {
+      throw new IllegalArgumentException("Field '" + handle.name() + "' does not belong to the struct being written");
+    }
+    if (handle.fieldClass() != fieldClass || handle.subFieldClass() != subFieldClass) {
+      throw new IllegalArgumentException("Invalid type for field '" + handle.name() + "', expected : '" + fieldClass.getSimpleName() + "' but was '" + handle.fieldClass().getSimpleName() + "'");
+    }
+    checkAndAdvanceIndex(handle.name(), handle.index());
+  }
+
+  private void checkStruct(StructHandle handle, boolean array) {
+    if (depth < 0) {
+      throw new IllegalStateException("Encoding has not begun");
+    }
+    if (frameKinds[depth] == STRUCT_ARRAY) {
+      throw new IllegalStateException("Cannot write field '" + handle.name() + "' in a struct array, add() an element first");
+    }
+    if (handle.owner() != frameMetadata[depth]) {
+      throw new IllegalArgumentException("Field '" + handle.name() + "' does not belong to the struct being written");
+    }
+    if (handle.isArray() != array) {
+      throw new IllegalArgumentException("Invalid type for field '" + handle.name() + "', expected : '" + (array ? "StructField array" : "StructField") + "'");
+    }
+    checkAndAdvanceIndex(handle.name(), handle.index());
+  }
+
+  private void checkAndAdvanceIndex(String name, int index) {
+    if (index <= frameLastIndices[depth]) {
+      throw new IllegalArgumentException("No such field left : '" + name + "'");
+    }
+    frameLastIndices[depth] = index;
+  }
+
+  private void writeFieldHeader(FieldHandle<?> handle, Class<? extends Field> fieldClass, Class<? extends Field> subFieldClass, int size) {
+    checkField(handle, fieldClass, subFieldClass);
+    writeFieldHeader(handle, size);
+  }
+
+  private void writeFieldHeader(FieldHandle<?> handle, int size) {
+    ensureCapacity(2 * MAX_VLQ_SIZE + size);
+    putVlqInt(handle.index());
+    putVlqInt(size);
+  }
+
+  private void writeArrayHeader(FieldHandle<?> handle, Class<? extends Field> subFieldClass, int length, int valueSize) {
+    checkField(handle, ArrayField.class, subFieldClass);
+    // every value is prefixed with its size, which always fits in a single byte
+    int size = VLQ.encodedSize(length) + length * (1 + valueSize);
+    writeFieldHeader(handle, size);
+    putVlqInt(length);
+  }
+
+  private void openArray(int index) {
+    ensureCapacity(MAX_VLQ_SIZE);
+    putVlqInt(index);
+    pushFrame(STRUCT_ARRAY, null);
+  }
+
+  private void pushFrame(byte kind, Metadata metadata) {
+    depth++;
+    if (depth == frameKinds.length) {
+      int newLength = depth * 2;
+      frameKinds = Arrays.copyOf(frameKinds, newLength);
+      frameStarts = Arrays.copyOf(frameStarts, newLength);
+      frameLastIndices = Arrays.copyOf(frameLastIndices, newLength);
+      frameCounts = Arrays.copyOf(frameCounts, newLength);
+      frameMetadata = Arrays.copyOf(frameMetadata, newLength);
+    }
+    // reserve room for the size and, for arrays, the length prefixes
+    int reserved = kind == STRUCT_ARRAY ? 2 * MAX_VLQ_SIZE : MAX_VLQ_SIZE;
+    ensureCapacity(reserved);
+    frameKinds[depth] = kind;
+    frameStarts[depth] = buffer.position();
+    frameLastIndices[depth] = -1;
+    frameCounts[depth] = 0;
+    frameMetadata[depth] = metadata;
+    buffer.position(buffer.position() + reserved);
+  }
+
+  private void closeFrame() {
+    byte kind = frameKinds[depth];
+    int start = frameStarts[depth];
+    frameMetadata[depth] = null;
+    int count = frameCounts[depth];
+    depth--;
+
+    if (kind == STRUCT_ARRAY_ELEMENT) {
+      if (buffer.position() - start == MAX_VLQ_SIZE) {
+        // like StructArrayEncoder, do not encode empty elements
+        buffer.position(start);
+        return;
+      }
+      frameCounts[depth]++;
+    }
+
+    int reserved = kind == STRUCT_ARRAY ? 2 * MAX_VLQ_SIZE : MAX_VLQ_SIZE;
+    int contentStart = start + reserved;
+    int contentLength = buffer.position() - contentStart;
+
+    buffer.position(start);
+    if (kind == STRUCT_ARRAY) {
+      putVlqInt(VLQ.encodedSize(count) + contentLength);
+      putVlqInt(count);
+    } else {
+      putVlqInt(contentLength);
+    }
+    int target = buffer.position();
+    move(contentStart, target, contentLength);
+    buffer.position(target + contentLength);
+  }
+
+  private void move(int from, int to, int length) {
+    if (from == to || length == 0) {
+      return;
+    }
+    if (buffer.hasArray()) {
+      byte[] array = buffer.array();
+      int offset = buffer.arrayOffset();
+      System.arraycopy(array, offset + from, array, offset + to, length);
+    } else {
+      // the content is always moved towards the start of the buffer, so a forward copy is safe
+      for (int i = 0; i < length; i++) {
+        buffer.put(to + i, buffer.get(from + i));
+      }
+    }
+  }
+
+  private void putVlqInt(int value) {
+    VLQ.encode(value, buffer);
+  }
+
+  private void ensureCapacity(int size) {
+    if (buffer.remaining() >= size) {
+      return;
+    }
+    if (!growable) {
+      throw new BufferOverflowException();
+    }
+    int position = buffer.position();
+    int newCapacity = Math.max(buffer.capacity() * 2, position + size);
+    ByteBuffer newBuffer = ByteBuffer.allocate(newCapacity);
+    buffer.flip();
+    newBuffer.put(buffer);
+    buffer = newBuffer;
+    pooled = newBuffer;
+  }
+
+}
@@ -31,6 +31,13 @@ public class FieldSearcher {
     this.metadata = metadata;
   }
 
+  /**
+   * Forget about the fields found so far, so that this searcher can be reused from the first field on.
+   */
+  public void reset() {
+    lastIndex = -1;
+  }
+
   public <T extends Field, S extends Field> T findField(String name, Class<T> fieldClazz, Class<S> subFieldClazz) {
     @SuppressWarnings("unchecked")
     T field = (T) metadata.getFieldByName(name);
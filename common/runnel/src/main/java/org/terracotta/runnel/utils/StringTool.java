@@ -327,8 +327,25 @@ public final class StringTool {
   public static void putEncoded(final ByteBuffer buffer,
                                 final String str,
                                 final int strLength) throws BufferOverflowException, ReadOnlyBufferException {
+    putEncoded(buffer, str, strLength, new char[MAX_SLICE_LENGTH]);
+  }
 
-    final char[] slice = new char[MAX_SLICE_LENGTH];
+  /**
+   * Appends the <i>modified</i> UTF-8 representation of a {@code String} to the {@code ByteBuffer} provided,
+   * using a caller-supplied scratch array to avoid a per-call allocation.
+   * The buffer's position is advanced by the number of bytes required by the modified UTF-8 representation.
+   *
+   * @param buffer the {@code ByteBuffer} into which {@code str} is encoded
+   * @param str the {@code String} to encode
+   * @param strLength the length of {@code str}
+   * @param slice a scratch array, of at least {@link #SLICE_LENGTH} characters
+   * @throws BufferOverflowException if {@code buffer} is too small for the UTF-encoded {@code str}
+   * @throws ReadOnlyBufferException if {@code buffer} is read-only
+   */
+  public static void putEncoded(final ByteBuffer buffer,
+                                final String str,
+                                final int strLength,
+                                final char[] slice) throws BufferOverflowException, ReadOnlyBufferException {
     int sz = 0;
     for (int offset = 0; offset < strLength; offset += MAX_SLICE_LENGTH) {
       final int sliceLength = Math.min(MAX_SLICE_LENGTH, strLength - offset);
@@ -495,6 +512,23 @@ public final class StringTool {
     return (int) len;
   }
 
+  /**
+   * Calculates the number of bytes {@link #putEncoded(ByteBuffer, String, int)} writes for a {@code String},
+   * i.e.: its modified UTF-8 encoding without any type byte or length header.
+   *
+   * @param str the {@code String} for which the length is to be calculated
+   * @return the byte length of the raw encoding
+   * @throws NullPointerException if {@code str} is {@code null}
+   * @throws IllegalStateException if the calculated length is greater than {@code Integer.MAX_VALUE}
+   */
+  public static int getEncodedLength(final String str) {
+    long len = getEncodedLen(str);
+    if (len > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Encoded length greater than Integer.MAX_VALUE: " + len);
+    }
+    return (int) len;
+  }
+
   /**
    * Calculates the length of a {@code String} when encoded using modified UTF-8.
    *
@@ -525,6 +559,11 @@ public final class StringTool {
    */
   private static final int MAX_SLICE_LENGTH = 512;
 
+  /**
+   * Minimal length of the scratch array passed to {@link #putEncoded(ByteBuffer, String, int, char[])}.
+   */
+  public static final int SLICE_LENGTH = MAX_SLICE_LENGTH;
+
   /**
    * Return the worst case size needed to store a string.
    *
@@ -0,0 +1,275 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding;
+
+import org.junit.Test;
+import org.terracotta.runnel.EnumMapping;
+import org.terracotta.runnel.EnumMappingBuilder;
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class StructReaderTest {
+
+  enum Color {
+    RED, GREEN, BLUE
+  }
+
+  private static final EnumMapping<Color> COLOR_MAPPING = EnumMappingBuilder.newEnumMappingBuilder(Color.class)
+      .mapping(Color.RED, 1)
+      .mapping(Color.GREEN, 2)
+      .mapping(Color.BLUE, 3)
+      .build();
+
+  private static final Struct ENTRY_STRUCT = StructBuilder.newStructBuilder()
+      .string("key", 10)
+      .int64("value", 20)
+      .build();
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .bool("bool", 10)
+      .chr("chr", 20)
+      .enm("color", 30, COLOR_MAPPING)
+      .int32("int32", 40)
+      .int64("int64", 50)
+      .fp64("fp64", 60)
+      .string("string", 70)
+      .byteBuffer("bytes", 80)
+      .struct("entry", 90, ENTRY_STRUCT)
+      .int32s("int32s", 100)
+      .strings("strings", 110)
+      .structs("entries", 120, ENTRY_STRUCT)
+      .int64("trailer", 130)
+      .build();
+
+  @Test
+  public void testReadAll() throws Exception {
+    ByteBuffer bb = STRUCT.encoder()
+        .bool("bool", true)
+        .chr("chr", 'x')
+        .enm("color", Color.GREEN)
+        .int32("int32", -5)
+        .int64("int64", Long.MAX_VALUE)
+        .fp64("fp64", 1.5)
+        .string("string", "h\u00e9llo \u20ac")
+        .byteBuffer("bytes", ByteBuffer.wrap(new byte[] {1, 2, 3}))
+        .struct("entry")
+          .string("key", "k")
+          .int64("value", 1L)
+        .end()
+        .int32s("int32s").value(1).value(2).end()
+        .strings("strings").value("a").value("b").end()
+        .structs("entries")
+          .add().string("key", "one").int64("value", 1L).end()
+          .add().int64("value", 2L).end()
+        .end()
+        .int64("trailer", 42L)
+        .encode();
+    bb.rewind();
+
+    StructReader reader = STRUCT.reader().wrap(bb);
+
+    assertThat(reader.boolAsBoolean("bool", false), is(true));
+    assertThat(reader.chrAsChar("chr", ' '), is('x'));
+    assertThat(reader.enm("color", Color.BLUE), is(Color.GREEN));
+    assertThat(reader.int32AsInt("int32", 0), is(-5));
+    assertThat(reader.int64AsLong("int64", 0L), is(Long.MAX_VALUE));
+    assertThat(reader.fp64AsDouble("fp64", 0.0), is(1.5));
+    assertThat(reader.string("string"), is("h\u00e9llo \u20ac"));
+    assertThat(reader.byteBuffer("bytes"), is(ByteBuffer.wrap(new byte[] {1, 2, 3})));
+
+    StructReader entry = reader.struct("entry");
+    assertThat(entry.string("key"), is("k"));
+    assertThat(entry.int64AsLong("value", 0L), is(1L));
+
+    ArrayReader int32s = reader.int32s("int32s");
+    assertThat(int32s.length(), is(2));
+    assertThat(int32s.int32AsInt(), is(1));
+    assertThat(int32s.int32AsInt(), is(2));
+    assertThat(int32s.hasNext(), is(false));
+
+    ArrayReader strings = reader.strings("strings");
+    assertThat(strings.string(), is("a"));
+    assertThat(strings.stringView().contentEquals("b"), is(true));
+
+    StructArrayReader entries = reader.structs("entries");
+    assertThat(entries.length(), is(2));
+    StructReader first = entries.next();
+    assertThat(first.string("key"), is("one"));
+    assertThat(first.int64AsLong("value", 0L), is(1L));
+    StructReader second = entries.next();
+    assertThat(second, is(sameInstance(first)));
+    assertThat(second.string("key"), is(nullValue()));
+    assertThat(second.int64AsLong("value", 0L), is(2L));
+    assertThat(entries.hasNext(), is(false));
+
+    assertThat(reader.int64AsLong("trailer", 0L), is(42L));
+    assertThat(bb.position(), is(0));
+  }
+
+  @Test
+  public void testAbsentFieldsReturnSentinels() throws Exception {
+    ByteBuffer bb = STRUCT.encoder()
+        .int64("int64", 7L)
+        .encode();
+    bb.rewind();
+
+    StructReader reader = STRUCT.reader().wrap(bb);
+
+    assertThat(reader.boolAsBoolean("bool", true), is(true));
+    assertThat(reader.enmAsInt("color", -1), is(-1));
+    assertThat(reader.int32AsInt("int32", Integer.MIN_VALUE), is(Integer.MIN_VALUE));
+    assertThat(reader.int64AsLong("int64", -1L), is(7L));
+    assertThat(reader.stringView("string"), is(nullValue()));
+    assertThat(reader.struct("entry"), is(nullValue()));
+    assertThat(reader.int32s("int32s"), is(nullValue()));
+    assertThat(reader.structs("entries"), is(nullValue()));
+    assertThat(reader.int64AsLong("trailer", -1L), is(-1L));
+  }
+
+  @Test
+  public void testUnmappedEnum() throws Exception {
+    EnumMapping<Color> otherMapping = EnumMappingBuilder.newEnumMappingBuilder(Color.class)
+        .mapping(Color.RED, 1)
+        .mapping(Color.GREEN, 2)
+        .mapping(Color.BLUE, 99)
+        .build();
+    ByteBuffer bb = StructBuilder.newStructBuilder()
+        .enm("color", 30, otherMapping)
+        .build()
+        .encoder()
+        .enm("color", Color.BLUE)
+        .encode();
+    bb.rewind();
+
+    StructReader reader = STRUCT.reader().wrap(bb);
+    assertThat(reader.enm("color", Color.RED), is(Color.RED));
+
+    reader.wrap(bb);
+    assertThat(reader.enmAsInt("color", -1), is(99));
+  }
+
+  @Test
+  public void testSkipNestedContent() throws Exception {
+    ByteBuffer bb = STRUCT.encoder()
+        .struct("entry")
+          .string("key", "k")
+          .int64("value", 1L)
+        .end()
+        .structs("entries")
+          .add().string("key", "one").int64("value", 1L).end()
+          .add().string("key", "two").int64("value", 2L).end()
+        .end()
+        .int64("trailer", 42L)
+        .encode();
+    bb.rewind();
+
+    StructReader reader = STRUCT.reader().wrap(bb);
+    assertThat(reader.struct("entry").int64AsLong("value", 0L), is(1L));
+    StructArrayReader entries = reader.structs("entries");
+    assertThat(entries.next().string("key"), is("one"));
+    assertThat(reader.int64AsLong("trailer", 0L), is(42L));
+  }
+
+  @Test
+  public void testReaderIsReusable() throws Exception {
+    StructReader reader = STRUCT.reader();
+    for (int i = 0; i < 3; i++) {
+      ByteBuffer bb = STRUCT.encoder()
+          .string("string", "value-" + i)
+          .struct("entry").int64("value", i).end()
+          .encode();
+      bb.rewind();
+
+      reader.wrap(bb);
+      assertThat(reader.string("string"), is("value-" + i));
+      assertThat(reader.struct("entry").int64AsLong("value", -1L), is((long) i));
+    }
+  }
+
+  @Test
+  public void testStringView() throws Exception {
+    String[] values = {"", "ascii", "h\u00e9llo \u20ac", "nul\u0000char"};
+    for (String value : values) {
+      ByteBuffer bb = STRUCT.encoder().string("string", value).encode();
+      bb.rewind();
+
+      StringView view = STRUCT.reader().wrap(bb).stringView("string");
+      assertThat(view.contentEquals(value), is(true));
+      assertThat(view.contentEquals(value + "x"), is(false));
+      assertThat(view.contentEquals(null), is(false));
+      assertThat(view.isEmpty(), is(value.isEmpty()));
+      assertThat(view.toString(), is(value));
+      assertThat(view.toString(), is(sameInstance(view.toString())));
+    }
+  }
+
+  @Test
+  public void testFlyweightsAreReused() throws Exception {
+    ByteBuffer bb = STRUCT.encoder()
+        .string("string", "s")
+        .struct("entry").string("key", "k").end()
+        .int32s("int32s").value(1).end()
+        .strings("strings").value("a").value("b").end()
+        .encode();
+    bb.rewind();
+
+    StructReader reader = STRUCT.reader().wrap(bb);
+    StringView view = reader.stringView("string");
+    assertThat(view.toString(), is("s"));
+    ArrayReader int32s = reader.int32s("int32s");
+    ArrayReader strings = reader.strings("strings");
+    assertThat(strings, is(not(sameInstance(int32s))));
+    assertThat(int32s.int32AsInt(), is(1));
+    StringView a = strings.stringView();
+    assertThat(a.toString(), is("a"));
+    assertThat(strings.stringView(), is(sameInstance(a)));
+    assertThat(a.toString(), is("b"));
+
+    reader.wrap(bb);
+    assertThat(reader.stringView("string"), is(sameInstance(view)));
+    assertThat(view.toString(), is("s"));
+    assertThat(reader.int32s("int32s"), is(sameInstance(int32s)));
+    assertThat(reader.strings("strings"), is(sameInstance(strings)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testArrayValueTypeIsChecked() throws Exception {
+    ByteBuffer bb = STRUCT.encoder().int32s("int32s").value(1).end().encode();
+    bb.rewind();
+
+    STRUCT.reader().wrap(bb).int32s("int32s").int64AsLong();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFieldsMustBeReadInOrder() throws Exception {
+    ByteBuffer bb = STRUCT.encoder().int32("int32", 1).int64("int64", 2L).encode();
+    bb.rewind();
+
+    StructReader reader = STRUCT.reader().wrap(bb);
+    reader.int64AsLong("int64", 0L);
+    reader.int32AsInt("int32", 0);
+  }
+
+}
@@ -20,6 +20,9 @@ import org.junit.Test;
 import org.terracotta.runnel.Struct;
 import org.terracotta.runnel.StructBuilder;
 import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.encoding.FieldHandle;
+import org.terracotta.runnel.encoding.StructHandle;
+import org.terracotta.runnel.encoding.StructWriter;
 
 import java.nio.ByteBuffer;
 
@@ -82,4 +85,28 @@ public class GettingStarted {
     // end::decodeSimpleStructure[]
   }
 
+  @Test
+  public void writeSimpleStructure() throws Exception {
+    // tag::writeSimpleStructure[]
+    Struct struct = StructBuilder.newStructBuilder() // <1>
+        .string("firstName", 1)
+        .string("lastName", 2)
+        .int64("age", 3)
+        .build();
+
+    StructHandle root = struct.handle(); // <2>
+    FieldHandle<String> firstName = root.string("firstName");
+    FieldHandle<String> lastName = root.string("lastName");
+    FieldHandle<Long> age = root.int64("age");
+
+    StructWriter writer = struct.writer(); // <3>
+
+    ByteBuffer buffer = writer.begin() // <4>
+        .string(firstName, "john") // <5>
+        .string(lastName, "doe")
+        .int64(age, 30)
+        .finish(); // <6>
+    // end::writeSimpleStructure[]
+  }
+
 }
@@ -0,0 +1,250 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.encoding;
+
+import org.junit.Test;
+import org.terracotta.runnel.EnumMapping;
+import org.terracotta.runnel.EnumMappingBuilder;
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.decoding.StructArrayDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+
+public class StructWriterTest {
+
+  enum Color {
+    RED, GREEN
+  }
+
+  private static final EnumMapping<Color> COLOR_MAPPING = EnumMappingBuilder.newEnumMappingBuilder(Color.class)
+      .mapping(Color.RED, 1)
+      .mapping(Color.GREEN, 200)
+      .build();
+
+  private static final Struct ENTRY_STRUCT = StructBuilder.newStructBuilder()
+      .string("key", 10)
+      .int64("value", 20)
+      .build();
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .bool("bool", 10)
+      .chr("chr", 20)
+      .enm("color", 30, COLOR_MAPPING)
+      .int32("int32", 40)
+      .int64("int64", 50)
+      .fp64("fp64", 60)
+      .string("string", 70)
+      .byteBuffer("bytes", 80)
+      .struct("entry", 90, ENTRY_STRUCT)
+      .int32s("int32s", 100)
+      .strings("strings", 110)
+      .structs("entries", 120, ENTRY_STRUCT)
+      .int64("trailer", 130)
+      .build();
+
+  private static final StructHandle ROOT = STRUCT.handle();
+  private static final FieldHandle<Boolean> BOOL = ROOT.bool("bool");
+  private static final FieldHandle<Character> CHR = ROOT.chr("chr");
+  private static final FieldHandle<Color> COLOR = ROOT.enm("color");
+  private static final FieldHandle<Integer> INT32 = ROOT.int32("int32");
+  private static final FieldHandle<Long> INT64 = ROOT.int64("int64");
+  private static final FieldHandle<Double> FP64 = ROOT.fp64("fp64");
+  private static final FieldHandle<String> STRING = ROOT.string("string");
+  private static final FieldHandle<ByteBuffer> BYTES = ROOT.byteBuffer("bytes");
+  private static final StructHandle ENTRY = ROOT.struct("entry");
+  private static final FieldHandle<int[]> INT32S = ROOT.int32s("int32s");
+  private static final FieldHandle<String[]> STRINGS = ROOT.strings("strings");
+  private static final StructHandle ENTRIES = ROOT.structs("entries");
+  private static final FieldHandle<Long> TRAILER = ROOT.int64("trailer");
+  private static final FieldHandle<String> KEY = ENTRY_STRUCT.handle().string("key");
+  private static final FieldHandle<Long> VALUE = ENTRY_STRUCT.handle().int64("value");
+
+  @Test
+  public void testSameBytesAsStructEncoder() throws Exception {
+    ByteBuffer expected = STRUCT.encoder()
+        .bool("bool", true)
+        .chr("chr", 'x')
+        .enm("color", Color.GREEN)
+        .int32("int32", -5)
+        .int64("int64", Long.MAX_VALUE)
+        .fp64("fp64", 1.5)
+        .string("string", "h\u00e9llo \u20ac")
+        .byteBuffer("bytes", ByteBuffer.wrap(new byte[] {1, 2, 3}))
+        .struct("entry")
+          .string("key", "k")
+          .int64("value", 1L)
+        .end()
+        .int32s("int32s").value(1).value(2).value(3).end()
+        .strings("strings").value("a").value(repeat('b', 300)).end()
+        .structs("entries")
+          .add().string("key", "one").int64("value", 1L).end()
+          .add().end()
+          .add().string("key", "two").end()
+        .end()
+        .int64("trailer", 42L)
+        .encode();
+
+    ByteBuffer actual = STRUCT.writer().begin()
+        .bool(BOOL, true)
+        .chr(CHR, 'x')
+        .enm(COLOR, Color.GREEN)
+        .int32(INT32, -5)
+        .int64(INT64, Long.MAX_VALUE)
+        .fp64(FP64, 1.5)
+        .string(STRING, "h\u00e9llo \u20ac")
+        .byteBuffer(BYTES, ByteBuffer.wrap(new byte[] {1, 2, 3}))
+        .struct(ENTRY)
+          .string(KEY, "k")
+          .int64(VALUE, 1L)
+        .end()
+        .int32s(INT32S, new int[] {1, 2, 3})
+        .strings(STRINGS, "a", repeat('b', 300))
+        .structs(ENTRIES)
+          .add().string(KEY, "one").int64(VALUE, 1L).end()
+          .add().end()
+          .add().string(KEY, "two").end()
+        .end()
+        .int64(TRAILER, 42L)
+        .finish();
+
+    actual.flip();
+    expected.rewind();
+    assertThat(actual, is(expected));
+  }
+
+  @Test
+  public void testDecodeWrittenStruct() throws Exception {
+    ByteBuffer bb = STRUCT.writer().begin()
+        .string(STRING, "joe")
+        .structs(ENTRIES)
+          .add().string(KEY, repeat('k', 200)).int64(VALUE, 1L)
+          .add().int64(VALUE, 2L)
+        .end()
+        .end()
+        .finish();
+    bb.flip();
+
+    StructDecoder<Void> decoder = STRUCT.decoder(bb);
+    assertThat(decoder.string("string"), is("joe"));
+    StructArrayDecoder<StructDecoder<Void>> entries = decoder.structs("entries");
+    assertThat(entries.length(), is(2));
+    StructDecoder<StructArrayDecoder<StructDecoder<Void>>> entry = entries.next();
+    assertThat(entry.string("key"), is(repeat('k', 200)));
+    assertThat(entry.int64("value"), is(1L));
+    entry = entries.next();
+    assertThat(entry.string("key"), is(nullValue()));
+    assertThat(entry.int64("value"), is(2L));
+    entries.end();
+    assertThat(decoder.int64("trailer"), is(nullValue()));
+  }
+
+  @Test
+  public void testWriterIsReusable() throws Exception {
+    StructWriter writer = STRUCT.writer();
+    ByteBuffer first = writer.begin().string(STRING, repeat('a', 1000)).finish();
+    assertThat(first.position() > 1000, is(true));
+
+    ByteBuffer second = writer.begin().int32(INT32, 7).finish();
+    second.flip();
+    ByteBuffer expected = STRUCT.encoder().int32("int32", 7).encode();
+    expected.rewind();
+    assertThat(second, is(expected));
+  }
+
+  @Test
+  public void testCallerSuppliedBuffer() throws Exception {
+    ByteBuffer bb = ByteBuffer.allocateDirect(64);
+    bb.position(3);
+    STRUCT.writer().begin(bb)
+        .struct(ENTRY).string(KEY, "key").end()
+        .int64(TRAILER, 1L)
+        .finish();
+
+    ByteBuffer expected = STRUCT.encoder()
+        .struct("entry").string("key", "key").end()
+        .int64("trailer", 1L)
+        .encode();
+    bb.limit(bb.position());
+    bb.position(3);
+    expected.rewind();
+    assertThat(bb, is(expected));
+  }
+
+  @Test(expected = BufferOverflowException.class)
+  public void testCallerSuppliedBufferTooSmall() throws Exception {
+    STRUCT.writer().begin(ByteBuffer.allocate(8)).string(STRING, "way too long for that buffer");
+  }
+
+  @Test
+  public void testFieldsMustBeWrittenInOrder() throws Exception {
+    StructWriter writer = STRUCT.writer().begin().int64(INT64, 1L);
+    try {
+      writer.int32(INT32, 1);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testHandleFromOtherStructIsRejected() throws Exception {
+    StructWriter writer = STRUCT.writer().begin();
+    try {
+      writer.string(KEY, "key");
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEnumHandleTypeIsChecked() throws Exception {
+    FieldHandle<Integer> notAnEnum = ROOT.int32("int32");
+    STRUCT.writer().begin().enm(notAnEnum, 1);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCannotFinishUnterminatedStruct() throws Exception {
+    STRUCT.writer().begin().struct(ENTRY).string(KEY, "key").finish();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCannotWriteFieldInStructArrayWithoutElement() throws Exception {
+    STRUCT.writer().begin().structs(ENTRIES).string(KEY, "key");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCannotEndRoot() throws Exception {
+    STRUCT.writer().begin().end();
+  }
+
+  private static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.terracotta.persistence.sanskrit.SanskritImpl.APPEND_LOG_FILE;
+import static org.terracotta.persistence.sanskrit.SanskritImpl.HASH_0_FILE;
+import static org.terracotta.persistence.sanskrit.SanskritImpl.HASH_1_FILE;
+import static org.terracotta.persistence.sanskrit.SanskritImpl.getHashFromFile;
+import static org.terracotta.persistence.sanskrit.Snapshot.SNAPSHOT_0_FILE;
+import static org.terracotta.persistence.sanskrit.Snapshot.SNAPSHOT_1_FILE;
+
+/**
+ * Converts a Sanskrit directory to another {@link RecordFormat}.
+ * <p>
+ * The records of the source directory are checked and re-encoded into the target directory, which must be empty.
+ * The mapper reads the changes of the source records, so that they can be written in the target format.
+ * The source directory is left untouched: once the conversion has succeeded, the directories can be swapped while no
+ * Sanskrit instance is using them.
+ */
+public class AppendLogConverter {
+
+  public static void convert(FilesystemDirectory source, FilesystemDirectory target, RecordFormat format, SanskritMapper mapper) throws SanskritException {
+    try (
+        DirectoryLock sourceLock = source.lock();
+        DirectoryLock targetLock = target.lock()
+    ) {
+      for (String file : new String[]{APPEND_LOG_FILE, HASH_0_FILE, HASH_1_FILE, SNAPSHOT_0_FILE, SNAPSHOT_1_FILE, StoreFormat.FORMAT_FILE}) {
+        try (FileData fileData = target.getFileData(file)) {
+          if (fileData != null) {
+            throw new SanskritException("Target directory is not empty: found " + file);
+          }
+        }
+      }
+
+      List<String> ignored = new ArrayList<>();
+      String hash0 = getHashFromFile(source, HASH_0_FILE, ignored);
+      String hash1 = getHashFromFile(source, HASH_1_FILE, ignored);
+      // the source could have been written with any group commit batch size
+      HashChecker hashChecker = new HashChecker(hash0, hash1, Integer.MAX_VALUE);
+
+      Snapshot snapshot0 = Snapshot.read(source, SNAPSHOT_0_FILE, ignored);
+      Snapshot snapshot1 = Snapshot.read(source, SNAPSHOT_1_FILE, ignored);
+      Snapshot snapshot = Snapshot.latest(snapshot0, snapshot1);
+      if (snapshot != null) {
+        hashChecker.check(HashUtils.generateHash(snapshot.getChainHash()));
+      }
+
+      AppendLogReplay replay = new AppendLogReplay(hashChecker, snapshot, snapshot0 != null && snapshot1 != null);
+      ByteArrayOutputStream records = new ByteArrayOutputStream();
+      String[] lastHash = {snapshot == null ? null : snapshot.getChainHash()};
+
+      try (FileData appendLog = source.getFileData(APPEND_LOG_FILE)) {
+        RecordFormat sourceFormat = appendLog == null ? null : RecordFormat.of(appendLog);
+        if (sourceFormat != null) {
+          replay.replay(sourceFormat.reader(appendLog), record ->
+              lastHash[0] = format.append(records, lastHash[0], record.getVersion(), record.getTimestamp(), record.getChange(mapper), mapper));
+        }
+      }
+
+      if (records.size() > 0) {
+        try (FileData appendLog = target.create(APPEND_LOG_FILE, false)) {
+          write(appendLog, ByteBuffer.wrap(format.header()));
+          write(appendLog, ByteBuffer.wrap(records.toByteArray()));
+        }
+      }
+
+      if (snapshot != null) {
+        try (FileData snapshotData = target.create(snapshot.getFile(), false)) {
+          write(snapshotData, StandardCharsets.UTF_8.encode(snapshot.toText()));
+        }
+      }
+
+      // the records of the target are all covered by its hash file
+      StoreFormat storeFormat = new StoreFormat(1, format);
+      if (!storeFormat.equals(StoreFormat.DEFAULT)) {
+        storeFormat.write(target);
+      }
+
+      // the hash file is written last, so that an interrupted conversion leaves nothing that can be loaded
+      if (lastHash[0] != null) {
+        try (FileData hashFile = target.create(HASH_0_FILE, false)) {
+          write(hashFile, StandardCharsets.UTF_8.encode(HashUtils.generateHash(lastHash[0])));
+        }
+      }
+    } catch (IOException e) {
+      throw new SanskritException(e);
+    }
+  }
+
+  private static void write(FileData fileData, ByteBuffer bytes) throws IOException {
+    while (bytes.hasRemaining()) {
+      fileData.write(bytes);
+    }
+    fileData.force(false);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+import org.terracotta.persistence.sanskrit.change.SanskritChange;
+
+/**
+ * Reads the records of an append log one after the other.
+ */
+interface AppendLogReader {
+
+  /**
+   * Reads the next record.
+   *
+   * @return false if there is no more complete record to read
+   */
+  boolean next() throws SanskritException;
+
+  String getVersion();
+
+  String getTimestamp();
+
+  /**
+   * @return the change stored in the current record, which stays valid after moving to the next record
+   */
+  SanskritChange getChange(SanskritMapper mapper) throws SanskritException;
+
+  /**
+   * @return the hash stored with the current record
+   */
+  String getHash();
+
+  /**
+   * @return the hash of the current record, as chained to the given previous record hash
+   */
+  String computeHash(String previousHash);
+
+  /**
+   * Marks the end of the current record as the end of the valid content of the append log.
+   */
+  void mark();
+
+  long getMark();
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays the records of an append log, checking their hash chain and which of them are covered by the hash files.
+ */
+final class AppendLogReplay {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AppendLogReplay.class);
+
+  interface RecordConsumer {
+    void accept(AppendLogReader record) throws SanskritException;
+  }
+
+  private final HashChecker hashChecker;
+  private final boolean afterSnapshot;
+  private boolean skipAll;
+  private String lastHash;
+  private long recordCount;
+
+  /**
+   * @param hashChecker   the checker of the hash files
+   * @param snapshot      the snapshot the append log follows, or null if there is none
+   * @param skipAll       true if the records of the append log are already part of the snapshot
+   */
+  AppendLogReplay(HashChecker hashChecker, Snapshot snapshot, boolean skipAll) {
+    this.hashChecker = hashChecker;
+    this.afterSnapshot = snapshot != null;
+    this.skipAll = skipAll;
+    this.lastHash = snapshot == null ? null : snapshot.getChainHash();
+  }
+
+  /**
+   * Passes the records covered by the hash files to the consumer.
+   *
+   * @return the end of the last accepted record
+   */
+  long replay(AppendLogReader reader, RecordConsumer consumer) throws SanskritException {
+    // records not covered by a hash file are dropped, but still chained with each other
+    String chainHash = lastHash;
+    long idx = 0;
+    while (reader.next()) {
+      idx++;
+      String hash = reader.getHash();
+
+      LOGGER.trace("replay(): record {}: timestamp={}, version={}, hash={}", idx, reader.getTimestamp(), reader.getVersion(), hash);
+
+      // the first compaction can be interrupted before emptying the append log, which then starts from scratch
+      if (idx == 1 && afterSnapshot && hash.equals(reader.computeHash(null))) {
+        skipAll = true;
+      }
+      if (skipAll) {
+        LOGGER.trace("replay(): record {}: already in snapshot", idx);
+        continue;
+      }
+
+      String expectedHash = reader.computeHash(chainHash);
+      if (!hash.equals(expectedHash)) {
+        throw new SanskritException("Hash mismatch. Got: " + hash + ". Computed: " + expectedHash);
+      }
+
+      String hashedHash = HashUtils.generateHash(hash);
+      boolean acceptRecord = hashChecker.check(hashedHash);
+
+      LOGGER.trace("replay(): record {}: hash={}, hashedHash={}, acceptRecord={}", idx, hash, hashedHash, acceptRecord);
+
+      if (acceptRecord) {
+        reader.mark();
+        consumer.accept(reader);
+        lastHash = hash;
+        recordCount++;
+      }
+      chainHash = hash;
+    }
+    return reader.getMark();
+  }
+
+  /**
+   * @return the hash of the last accepted record, or of the snapshot if there is none
+   */
+  String getLastHash() {
+    return lastHash;
+  }
+
+  long getRecordCount() {
+    return recordCount;
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+import org.terracotta.persistence.sanskrit.change.SanskritChange;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A length-prefixed binary append log format.
+ * <p>
+ * The log starts with a header made of {@link #MAGIC} and the version of the format. Each record is then made of:
+ * <ul>
+ *   <li>the length of the record body, as an int</li>
+ *   <li>the body: the format version and timestamp of the record, each as an int length followed by UTF-8 bytes, then
+ *   the int length of the data of the record, followed by the data as encoded by {@link BinaryChangeCodec}</li>
+ *   <li>the CRC-32 of the body, as an int</li>
+ *   <li>the hash of the record, as 20 raw bytes, computed over the raw bytes of the previous hash and of the body</li>
+ * </ul>
+ * A record that extends past the end of the log, or the last record of the log when its CRC does not match, is the
+ * result of an interrupted write and ends the log.
+ */
+final class BinaryAppendLog {
+  static final byte[] MAGIC = {0, 'S', 'K', 'R'};
+  static final byte VERSION = 1;
+
+  private static final int HASH_LENGTH = 20;
+  private static final int MIN_BODY_LENGTH = 3 * Integer.BYTES;
+
+  private BinaryAppendLog() {
+  }
+
+  static byte[] header() {
+    byte[] header = Arrays.copyOf(MAGIC, MAGIC.length + 1);
+    header[MAGIC.length] = VERSION;
+    return header;
+  }
+
+  static String append(ByteArrayOutputStream out, String previousHash, String version, String timestamp, SanskritChange change, SanskritMapper mapper) throws SanskritException {
+    byte[] versionBytes = version.getBytes(StandardCharsets.UTF_8);
+    byte[] timestampBytes = timestamp.getBytes(StandardCharsets.UTF_8);
+    byte[] dataBytes = BinaryChangeCodec.encode(change, mapper);
+    int bodyLength = MIN_BODY_LENGTH + versionBytes.length + timestampBytes.length + dataBytes.length;
+
+    ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + bodyLength + Integer.BYTES + HASH_LENGTH);
+    record.putInt(bodyLength);
+    record.putInt(versionBytes.length).put(versionBytes);
+    record.putInt(timestampBytes.length).put(timestampBytes);
+    record.putInt(dataBytes.length).put(dataBytes);
+    record.putInt(crc(record.array(), Integer.BYTES, bodyLength));
+
+    String hash = HashUtils.generateHash(previousHash, ByteBuffer.wrap(record.array(), Integer.BYTES, bodyLength));
+    record.put(HashUtils.fromHexText(hash));
+
+    out.write(record.array(), 0, record.capacity());
+    return hash;
+  }
+
+  private static int crc(byte[] bytes, int offset, int length) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes, offset, length);
+    return (int) crc.getValue();
+  }
+
+  static final class Reader implements AppendLogReader {
+    private final DataInputStream input;
+    private final long size;
+    private long position;
+    private long mark;
+    private byte[] body;
+    private String version;
+    private String timestamp;
+    private int dataOffset;
+    private int dataLength;
+    private String hash;
+
+    Reader(FileData appendLog) throws IOException, SanskritException {
+      this.size = appendLog.size();
+      this.input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(appendLog)));
+
+      byte[] header = new byte[MAGIC.length + 1];
+      if (size < header.length) {
+        // interrupted while writing the header
+        this.position = size;
+        return;
+      }
+      input.readFully(header);
+      if (!Arrays.equals(header, header())) {
+        throw new SanskritException("Unsupported append log format: " + HashUtils.toHexText(header));
+      }
+      this.position = header.length;
+    }
+
+    @Override
+    public boolean next() throws SanskritException {
+      try {
+        if (size - position < Integer.BYTES) {
+          return false;
+        }
+        int bodyLength = input.readInt();
+        long recordLength = Integer.BYTES + (long) bodyLength + Integer.BYTES + HASH_LENGTH;
+        if (bodyLength < 0 || size - position < recordLength) {
+          return false;
+        }
+
+        body = new byte[bodyLength];
+        input.readFully(body);
+        int crc = input.readInt();
+        byte[] hashBytes = new byte[HASH_LENGTH];
+        input.readFully(hashBytes);
+        long recordStart = position;
+        position += recordLength;
+
+        if (bodyLength < MIN_BODY_LENGTH || crc != crc(body, 0, bodyLength)) {
+          if (position == size) {
+            return false;
+          }
+          throw new SanskritException("Corrupted record at offset: " + recordStart);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        try {
+          version = getString(buffer);
+          timestamp = getString(buffer);
+          dataLength = buffer.getInt();
+          dataOffset = buffer.position();
+          if (dataLength < 0 || dataLength > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length: " + dataLength);
+          }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+          throw new SanskritException("Invalid record at offset: " + recordStart, e);
+        }
+        hash = HashUtils.toHexText(hashBytes);
+        return true;
+      } catch (IOException e) {
+        throw new SanskritException(e);
+      }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+      int length = buffer.getInt();
+      if (length < 0 || length > buffer.remaining()) {
+        throw new IllegalArgumentException("Invalid length: " + length);
+      }
+      String s = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + length);
+      return s;
+    }
+
+    @Override
+    public String getVersion() {
+      return version;
+    }
+
+    @Override
+    public String getTimestamp() {
+      return timestamp;
+    }
+
+    @Override
+    public SanskritChange getChange(SanskritMapper mapper) throws SanskritException {
+      // the body of each record is a new array, which the change can keep
+      return BinaryChangeCodec.decode(body, dataOffset, dataLength, version, mapper);
+    }
+
+    @Override
+    public String getHash() {
+      return hash;
+    }
+
+    @Override
+    public String computeHash(String previousHash) {
+      return HashUtils.generateHash(previousHash, ByteBuffer.wrap(body));
+    }
+
+    @Override
+    public void mark() {
+      mark = position;
+    }
+
+    @Override
+    public long getMark() {
+      return mark;
+    }
+  }
+}
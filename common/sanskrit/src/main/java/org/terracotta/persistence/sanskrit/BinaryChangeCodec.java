@@ -0,0 +1,323 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+import org.terracotta.persistence.sanskrit.change.SanskritChange;
+import org.terracotta.persistence.sanskrit.change.SanskritChangeVisitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the data of a record of the {@link BinaryAppendLog binary append log}.
+ * <p>
+ * The data starts with a kind byte:
+ * <ul>
+ *   <li>{@link #CHANGE}: the operations of the change follow, each as an operation byte and an int-length UTF-8 key,
+ *   followed for a set by the tagged value</li>
+ *   <li>{@link #TEXT}: the UTF-8 text of the change, as produced by the mapper, follows. This is used when the change
+ *   holds a value the mapper cannot turn into maps, lists, strings, numbers and booleans.</li>
+ * </ul>
+ */
+final class BinaryChangeCodec {
+  static final byte TEXT = 0;
+  static final byte CHANGE = 1;
+
+  private static final byte OP_SET = 1;
+  private static final byte OP_REMOVE = 2;
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INT = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte BOOLEAN = 5;
+  private static final byte BIG_INTEGER = 6;
+  private static final byte BIG_DECIMAL = 7;
+  private static final byte MAP = 8;
+  private static final byte LIST = 9;
+
+  private BinaryChangeCodec() {
+  }
+
+  static byte[] encode(SanskritChange change, SanskritMapper mapper) throws SanskritException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Encoder encoder = new Encoder(new DataOutputStream(bytes), mapper);
+    try {
+      encoder.out.writeByte(CHANGE);
+      change.accept(encoder);
+    } catch (UnsupportedValueException e) {
+      byte[] text = mapper.toString(change).getBytes(StandardCharsets.UTF_8);
+      bytes.reset();
+      bytes.write(TEXT);
+      bytes.write(text, 0, text.length);
+    } catch (IOException e) {
+      throw new SanskritException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @return the change stored in the given data, which must not be modified afterwards
+   */
+  static SanskritChange decode(byte[] data, int offset, int length, String version, SanskritMapper mapper) throws SanskritException {
+    if (length == 0) {
+      throw new SanskritException("Empty record data");
+    }
+    switch (data[offset]) {
+      case TEXT:
+        String text = new String(data, offset + 1, length - 1, StandardCharsets.UTF_8);
+        return visitor -> mapper.fromString(text, version, visitor);
+      case CHANGE:
+        return visitor -> replay(ByteBuffer.wrap(data, offset + 1, length - 1), version, visitor);
+      default:
+        throw new SanskritException("Unsupported record data kind: " + data[offset]);
+    }
+  }
+
+  private static void replay(ByteBuffer buffer, String version, SanskritChangeVisitor visitor) throws SanskritException {
+    try {
+      while (buffer.hasRemaining()) {
+        byte op = buffer.get();
+        String key = getString(buffer);
+        switch (op) {
+          case OP_SET:
+            visitor.set(key, getValue(buffer), version);
+            break;
+          case OP_REMOVE:
+            visitor.removeKey(key);
+            break;
+          default:
+            throw new SanskritException("Unsupported operation: " + op);
+        }
+      }
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new SanskritException("Invalid record data", e);
+    }
+  }
+
+  private static Object getValue(ByteBuffer buffer) throws SanskritException {
+    byte tag = buffer.get();
+    switch (tag) {
+      case NULL:
+        return null;
+      case STRING:
+        return getString(buffer);
+      case INT:
+        return buffer.getInt();
+      case LONG:
+        return buffer.getLong();
+      case DOUBLE:
+        return buffer.getDouble();
+      case BOOLEAN:
+        return buffer.get() != 0;
+      case BIG_INTEGER:
+        return new BigInteger(getString(buffer));
+      case BIG_DECIMAL:
+        return new BigDecimal(getString(buffer));
+      case MAP: {
+        int size = getSize(buffer);
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+          map.put(getString(buffer), getValue(buffer));
+        }
+        return map;
+      }
+      case LIST: {
+        int size = getSize(buffer);
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+          list.add(getValue(buffer));
+        }
+        return list;
+      }
+      default:
+        throw new SanskritException("Unsupported value type: " + tag);
+    }
+  }
+
+  private static int getSize(ByteBuffer buffer) {
+    int size = buffer.getInt();
+    // each entry takes at least one byte
+    if (size < 0 || size > buffer.remaining()) {
+      throw new IllegalArgumentException("Invalid size: " + size);
+    }
+    return size;
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    int length = getSize(buffer);
+    String s = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+    buffer.position(buffer.position() + length);
+    return s;
+  }
+
+  /**
+   * Thrown when a change holds a value that cannot be encoded, so that the change is stored as text instead.
+   */
+  private static final class UnsupportedValueException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedValueException() {
+      super(null, null, false, false);
+    }
+  }
+
+  private static final class Encoder implements SanskritChangeVisitor {
+    private final DataOutputStream out;
+    private final SanskritMapper mapper;
+
+    Encoder(DataOutputStream out, SanskritMapper mapper) {
+      this.out = out;
+      this.mapper = mapper;
+    }
+
+    @Override
+    public void setString(String key, String value) throws SanskritException {
+      set(key, value, null);
+    }
+
+    @Override
+    public void setLong(String key, long value) throws SanskritException {
+      set(key, value, null);
+    }
+
+    @Override
+    public void setObject(String key, SanskritObject value) throws SanskritException {
+      set(key, value, null);
+    }
+
+    @Override
+    public void set(String key, Object value, String version) throws SanskritException {
+      try {
+        out.writeByte(OP_SET);
+        writeString(out, key);
+        writeValue(value, true);
+      } catch (IOException e) {
+        throw new SanskritException(e);
+      }
+    }
+
+    @Override
+    public void removeKey(String key) {
+      try {
+        out.writeByte(OP_REMOVE);
+        writeString(out, key);
+      } catch (IOException e) {
+        throw new UncheckedSanskritException(e);
+      }
+    }
+
+    private void writeValue(Object value, boolean convert) throws IOException, SanskritException {
+      if (value == null) {
+        out.writeByte(NULL);
+      } else if (value instanceof String) {
+        out.writeByte(STRING);
+        writeString(out, (String) value);
+      } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+        out.writeByte(INT);
+        out.writeInt(((Number) value).intValue());
+      } else if (value instanceof Long) {
+        out.writeByte(LONG);
+        out.writeLong((Long) value);
+      } else if (value instanceof Double || value instanceof Float) {
+        out.writeByte(DOUBLE);
+        out.writeDouble(((Number) value).doubleValue());
+      } else if (value instanceof Boolean) {
+        out.writeByte(BOOLEAN);
+        out.writeBoolean((Boolean) value);
+      } else if (value instanceof BigInteger) {
+        out.writeByte(BIG_INTEGER);
+        writeString(out, value.toString());
+      } else if (value instanceof BigDecimal) {
+        out.writeByte(BIG_DECIMAL);
+        writeString(out, value.toString());
+      } else if (value instanceof SanskritObject) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        ((SanskritObject) value).accept(new MapVisitor(map));
+        writeValue(map, convert);
+      } else if (value instanceof Map) {
+        Map<?, ?> map = (Map<?, ?>) value;
+        out.writeByte(MAP);
+        out.writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          if (!(entry.getKey() instanceof String)) {
+            throw new UnsupportedValueException();
+          }
+          writeString(out, (String) entry.getKey());
+          writeValue(entry.getValue(), convert);
+        }
+      } else if (value instanceof List) {
+        List<?> list = (List<?>) value;
+        out.writeByte(LIST);
+        out.writeInt(list.size());
+        for (Object element : list) {
+          writeValue(element, convert);
+        }
+      } else if (convert) {
+        // a complex object, which is stored as the tree the mapper reads it back from
+        writeValue(mapper.toTree(value), false);
+      } else {
+        throw new UnsupportedValueException();
+      }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static final class MapVisitor implements SanskritVisitor {
+    private final Map<String, Object> map;
+
+    MapVisitor(Map<String, Object> map) {
+      this.map = map;
+    }
+
+    @Override
+    public void setString(String key, String value) {
+      map.put(key, value);
+    }
+
+    @Override
+    public void setLong(String key, long value) {
+      map.put(key, value);
+    }
+
+    @Override
+    public void setObject(String key, SanskritObject value) {
+      map.put(key, value);
+    }
+
+    @Override
+    public void set(String key, Object value, String version) {
+      map.put(key, value);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+/**
+ * Controls when {@link SanskritImpl} compacts its append log.
+ * <p>
+ * Compacting writes a snapshot of the whole Sanskrit state, together with the hash of the last record of the append
+ * log, and then empties the append log. On startup, the snapshot is loaded first and only the records appended after
+ * it are replayed, so that startup time no longer grows with the number of changes ever made.
+ * <p>
+ * Note: the records of a compacted append log are lost, only their result is kept in the snapshot.
+ */
+public final class Compaction {
+  private static final Compaction DISABLED = new Compaction(0);
+
+  private final int maxRecords;
+
+  private Compaction(int maxRecords) {
+    this.maxRecords = maxRecords;
+  }
+
+  /**
+   * @return the default behavior, where the append log is never compacted
+   */
+  public static Compaction disabled() {
+    return DISABLED;
+  }
+
+  /**
+   * @param maxRecords the number of records the append log can contain before being compacted
+   */
+  public static Compaction afterRecords(int maxRecords) {
+    if (maxRecords < 1) {
+      throw new IllegalArgumentException("Invalid record count: " + maxRecords);
+    }
+    return new Compaction(maxRecords);
+  }
+
+  public int getMaxRecords() {
+    return maxRecords;
+  }
+
+  boolean isDue(long recordsInLog) {
+    return maxRecords > 0 && recordsInLog >= maxRecords;
+  }
+
+  @Override
+  public String toString() {
+    return maxRecords > 0 ? "Compaction{maxRecords=" + maxRecords + '}' : "Compaction{disabled}";
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Controls how {@link SanskritImpl} coalesces the records appended by concurrent callers.
+ * <p>
+ * The records of a group are written to the append log in a single write, followed by a single fsync and a single
+ * rotation of the hash files. Each caller of {@link Sanskrit#applyChange} still only returns once its own record is
+ * durable. The leader of a group waits for at most {@code maxBatchLatency} for other records to join the group, unless
+ * the group reaches {@code maxBatchSize} records first. With no latency, a group is made of the records appended
+ * while the previous group was being written, so a record appended on its own is never delayed.
+ * <p>
+ * Note: a crash can leave up to {@code maxBatchSize} records that are not covered by the hash files. The batch size
+ * is recorded next to the append log, so that these records are still checked against it when the append log is
+ * reopened with a smaller one.
+ */
+public final class GroupCommit {
+  private static final GroupCommit DISABLED = new GroupCommit(1, Duration.ZERO);
+
+  private final int maxBatchSize;
+  private final Duration maxBatchLatency;
+
+  private GroupCommit(int maxBatchSize, Duration maxBatchLatency) {
+    this.maxBatchSize = maxBatchSize;
+    this.maxBatchLatency = maxBatchLatency;
+  }
+
+  /**
+   * @return the default behavior, where each record is written and synced on its own
+   */
+  public static GroupCommit disabled() {
+    return DISABLED;
+  }
+
+  public static GroupCommit of(int maxBatchSize, Duration maxBatchLatency) {
+    Objects.requireNonNull(maxBatchLatency);
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("Invalid batch size: " + maxBatchSize);
+    }
+    if (maxBatchLatency.isNegative()) {
+      throw new IllegalArgumentException("Invalid batch latency: " + maxBatchLatency);
+    }
+    return maxBatchSize == 1 ? DISABLED : new GroupCommit(maxBatchSize, maxBatchLatency);
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public Duration getMaxBatchLatency() {
+    return maxBatchLatency;
+  }
+
+  @Override
+  public String toString() {
+    return "GroupCommit{maxBatchSize=" + maxBatchSize + ", maxBatchLatency=" + maxBatchLatency + '}';
+  }
+}
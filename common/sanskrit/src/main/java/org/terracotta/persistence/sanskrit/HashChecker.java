@@ -29,12 +29,23 @@ public class HashChecker {
   private static final Logger LOGGER = LoggerFactory.getLogger(HashChecker.class);
 
   private final Map<String, String> hashes = new HashMap<>(2);
-  private boolean laterHash;
+  private final int maxRecordsPerHash;
+  private int laterHashes;
+  private int hashesBetweenFinalHashes;
   private String removedFirst;
   private int hashCount;
 
   public HashChecker(String hash0, String hash1) {
-    LOGGER.trace("HashChecker({}, {})", hash0, hash1);
+    this(hash0, hash1, 1);
+  }
+
+  /**
+   * @param maxRecordsPerHash the maximum number of records that can be covered by a single hash file, which is greater
+   *                          than one when records are group committed
+   */
+  public HashChecker(String hash0, String hash1, int maxRecordsPerHash) {
+    LOGGER.trace("HashChecker({}, {}, {})", hash0, hash1, maxRecordsPerHash);
+    this.maxRecordsPerHash = maxRecordsPerHash;
     if (hash0 != null) {
       hashes.put(hash0, "hash0");
       hashCount++;
@@ -47,10 +58,9 @@ public class HashChecker {
 
   public boolean check(String hash) throws SanskritException {
     if (hashes.isEmpty()) {
-      if (laterHash) {
+      if (++laterHashes > maxRecordsPerHash) {
         throw new SanskritException("Found hashes after the last recorded hash");
       }
-      laterHash = true;
       LOGGER.trace("check({}): {}", hash, false);
       return false;
     }
@@ -63,7 +73,7 @@ public class HashChecker {
         removedFirst = removed;
       }
     } else {
-      if (removedFirst != null) {
+      if (removedFirst != null && ++hashesBetweenFinalHashes >= maxRecordsPerHash) {
         throw new SanskritException("Found extra hash between final hashes: " + hash);
       }
     }
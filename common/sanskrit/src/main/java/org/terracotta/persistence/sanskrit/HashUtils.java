@@ -19,6 +19,7 @@ package org.terracotta.persistence.sanskrit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -38,6 +39,8 @@ public class HashUtils {
       0xba, 0x69, 0x49, 0x45, 0xd8, 0x1b, 0x49, 0xc9
   );
 
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
   private static byte[] toBytes(int... ints) {
     byte[] bytes = new byte[ints.length];
 
@@ -62,24 +65,58 @@ public class HashUtils {
     return toHexText(Arrays.copyOf(digest(input), 20));
   }
 
+  /**
+   * Chains the hash of some raw bytes to a previous hash, without building any intermediate string.
+   */
+  public static String generateHash(String previousHash, ByteBuffer input) {
+    MessageDigest digester = newDigester();
+    if (previousHash != null) {
+      digester.update(fromHexText(previousHash));
+    }
+    digester.update(input.duplicate());
+    digester.update(PRIVATE_BYTES);
+    return toHexText(Arrays.copyOf(digester.digest(), 20));
+  }
+
   private static byte[] digest(byte[] input) {
+    MessageDigest digester = newDigester();
+    digester.update(input);
+    digester.update(PRIVATE_BYTES);
+    return digester.digest();
+  }
+
+  private static MessageDigest newDigester() {
     try {
-      MessageDigest digester = MessageDigest.getInstance("SHA-512");
-      digester.update(input);
-      digester.update(PRIVATE_BYTES);
-      return digester.digest();
+      return MessageDigest.getInstance("SHA-512");
     } catch (NoSuchAlgorithmException e) {
       throw new AssertionError("Missing hash algorithm: SHA-512");
     }
   }
 
-  private static String toHexText(byte[] input) {
-    StringBuilder sb = new StringBuilder(input.length * 2);
+  static byte[] fromHexText(String input) {
+    if (input.length() % 2 != 0) {
+      throw new IllegalArgumentException("Invalid hash: " + input);
+    }
+    byte[] bytes = new byte[input.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      int high = Character.digit(input.charAt(2 * i), 16);
+      int low = Character.digit(input.charAt(2 * i + 1), 16);
+      if (high < 0 || low < 0) {
+        throw new IllegalArgumentException("Invalid hash: " + input);
+      }
+      bytes[i] = (byte) (high << 4 | low);
+    }
+    return bytes;
+  }
+
+  static String toHexText(byte[] input) {
+    char[] chars = new char[input.length * 2];
 
-    for (byte b : input) {
-      sb.append(String.format("%02x", b));
+    for (int i = 0; i < input.length; i++) {
+      chars[2 * i] = HEX_DIGITS[(input[i] >> 4) & 0xF];
+      chars[2 * i + 1] = HEX_DIGITS[input[i] & 0xF];
     }
 
-    return sb.toString();
+    return new String(chars);
   }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+import org.terracotta.persistence.sanskrit.change.SanskritChange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The format of the records of a Sanskrit append log.
+ * <p>
+ * The format of an existing append log is detected when it is read, and new records are always appended in that
+ * format. The configured format only applies to new append logs, including the ones emptied by a compaction.
+ * {@link AppendLogConverter} converts an existing append log from one format to the other.
+ */
+public enum RecordFormat {
+  /**
+   * The original text format, made of lines.
+   */
+  TEXT {
+    @Override
+    byte[] header() {
+      return new byte[0];
+    }
+
+    @Override
+    String append(ByteArrayOutputStream out, String previousHash, String version, String timestamp, SanskritChange change, SanskritMapper mapper) throws SanskritException {
+      return TextAppendLog.append(out, previousHash, version, timestamp, mapper.toString(change));
+    }
+
+    @Override
+    AppendLogReader reader(FileData appendLog) {
+      return new TextAppendLog.Reader(appendLog);
+    }
+  },
+
+  /**
+   * A length-prefixed binary format, with changes encoded in binary, a CRC per record and hashes computed over raw bytes.
+   */
+  BINARY {
+    @Override
+    byte[] header() {
+      return BinaryAppendLog.header();
+    }
+
+    @Override
+    String append(ByteArrayOutputStream out, String previousHash, String version, String timestamp, SanskritChange change, SanskritMapper mapper) throws SanskritException {
+      return BinaryAppendLog.append(out, previousHash, version, timestamp, change, mapper);
+    }
+
+    @Override
+    AppendLogReader reader(FileData appendLog) throws IOException, SanskritException {
+      return new BinaryAppendLog.Reader(appendLog);
+    }
+  };
+
+  /**
+   * @return the bytes an append log in this format starts with
+   */
+  abstract byte[] header();
+
+  /**
+   * Encodes a record at the end of the given stream.
+   *
+   * @return the hash of the record
+   */
+  abstract String append(ByteArrayOutputStream out, String previousHash, String version, String timestamp, SanskritChange change, SanskritMapper mapper) throws SanskritException;
+
+  abstract AppendLogReader reader(FileData appendLog) throws IOException, SanskritException;
+
+  /**
+   * Detects the format of an append log, and rewinds it.
+   *
+   * @return the format, or null if the append log is empty
+   */
+  static RecordFormat of(FileData appendLog) throws IOException {
+    ByteBuffer first = ByteBuffer.allocate(1);
+    appendLog.position(0);
+    int read = appendLog.read(first);
+    appendLog.position(0);
+    if (read <= 0) {
+      return null;
+    }
+    // a text append log starts with a printable character
+    return first.get(0) == BinaryAppendLog.MAGIC[0] ? BINARY : TEXT;
+  }
+}
@@ -29,9 +29,13 @@ import static org.terracotta.persistence.sanskrit.Owner.own;
 public interface Sanskrit extends AutoCloseable {
 
   static Sanskrit init(FilesystemDirectory filesystemDirectory, SanskritMapper mapper) throws SanskritException {
+    return init(filesystemDirectory, mapper, SanskritOptions.defaults());
+  }
+
+  static Sanskrit init(FilesystemDirectory filesystemDirectory, SanskritMapper mapper, SanskritOptions options) throws SanskritException {
     try (
         Owner<DirectoryLock, IOException> lockOwner = own(filesystemDirectory.lock(), IOException.class);
-        Owner<SanskritImpl, SanskritException> sanskritOwner = own(new SanskritImpl(filesystemDirectory, mapper), SanskritException.class)
+        Owner<SanskritImpl, SanskritException> sanskritOwner = own(new SanskritImpl(filesystemDirectory, mapper, options), SanskritException.class)
     ) {
       return new LockReleasingSanskrit(
           new PersistentFailSanskrit(
@@ -22,136 +22,152 @@ import org.terracotta.persistence.sanskrit.change.SanskritChange;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
-import static org.terracotta.persistence.sanskrit.MarkableLineParser.LS;
+import static org.terracotta.persistence.sanskrit.Snapshot.SNAPSHOT_0_FILE;
+import static org.terracotta.persistence.sanskrit.Snapshot.SNAPSHOT_1_FILE;
 
 /**
  * The main class for reading and writing a Sanskrit append log.
- * This class is intended to be used by a single thread and so it is not thread-safe.
+ * <p>
+ * Concurrent callers are serialized, and their records can be coalesced into a single write and fsync of the append
+ * log according to the {@link GroupCommit} settings of its {@link SanskritOptions}. A call to {@link #applyChange(SanskritChange)} only returns once
+ * its record is durable, but the change is visible to readers as soon as it is applied in memory.
+ * <p>
+ * The append log can be compacted into a snapshot of the whole state according to the {@link Compaction} settings.
+ * New append logs are written in the configured {@link RecordFormat}, while existing ones keep their own format.
  */
 @SuppressFBWarnings("CT_CONSTRUCTOR_THROW")
 public class SanskritImpl implements Sanskrit {
   private static final Logger LOGGER = LoggerFactory.getLogger(SanskritImpl.class);
 
-  private static final String APPEND_LOG_FILE = "append.log";
-  private static final String HASH_0_FILE = "hash0";
-  private static final String HASH_1_FILE = "hash1";
-  private static final String FORMAT_VERSION = "format version: ";
+  static final String APPEND_LOG_FILE = "append.log";
+  static final String HASH_0_FILE = "hash0";
+  static final String HASH_1_FILE = "hash1";
 
   private final FilesystemDirectory filesystemDirectory;
   private final SanskritMapper mapper;
+  private final GroupCommit groupCommit;
+  private final Compaction compaction;
+  private final RecordFormat recordFormat;
+
+  // guards the in-memory state and the pending records: the append log itself is only written by the flushing thread
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition batchFull = lock.newCondition();
+  private final Condition flushed = lock.newCondition();
 
   private volatile MutableSanskritObject data;
   private volatile String lastHash;
   private volatile String nextHashFile;
+  private RecordFormat logFormat;
+  private StoreFormat storeFormat;
+  private String snapshotFile;
+  private long snapshotGeneration;
+  private long recordsInLog;
+
+  private final ByteArrayOutputStream pendingEntries = new ByteArrayOutputStream();
+  private int pendingCount;
+  private String pendingHash;
+  private long appendedCount;
+  private long flushedCount;
+  private boolean flushing;
+  private Exception flushFailure;
 
   public SanskritImpl(FilesystemDirectory filesystemDirectory, SanskritMapper mapper) throws SanskritException {
+    this(filesystemDirectory, mapper, SanskritOptions.defaults());
+  }
+
+  public SanskritImpl(FilesystemDirectory filesystemDirectory, SanskritMapper mapper, SanskritOptions options) throws SanskritException {
     this.filesystemDirectory = filesystemDirectory;
     this.mapper = mapper;
-    init();
+    this.groupCommit = options.getGroupCommit();
+    this.compaction = options.getCompaction();
+    this.recordFormat = options.getRecordFormat();
+    lock.lock();
+    try {
+      init();
+    } finally {
+      lock.unlock();
+    }
   }
 
   private void init() throws SanskritException {
     lastHash = null;
     nextHashFile = null;
+    logFormat = recordFormat;
+    snapshotFile = null;
+    snapshotGeneration = 0;
+    recordsInLog = 0;
     this.data = newMutableSanskritObject();
 
     try {
       List<String> filesToDelete = new ArrayList<>();
-      String hash0 = getHashFromFile(HASH_0_FILE, filesToDelete);
-      String hash1 = getHashFromFile(HASH_1_FILE, filesToDelete);
-      HashChecker hashChecker = new HashChecker(hash0, hash1);
+      String hash0 = getHashFromFile(filesystemDirectory, HASH_0_FILE, filesToDelete);
+      String hash1 = getHashFromFile(filesystemDirectory, HASH_1_FILE, filesToDelete);
+      // the records left uncovered by a crash depend on the batch size they were written with, not the configured one
+      storeFormat = StoreFormat.read(filesystemDirectory, filesToDelete);
+      int recordedBatchSize = storeFormat == null ? 1 : storeFormat.getMaxBatchSize();
+      HashChecker hashChecker = new HashChecker(hash0, hash1, Math.max(recordedBatchSize, groupCommit.getMaxBatchSize()));
 
       MutableSanskritObject result = newMutableSanskritObject();
 
+      Snapshot snapshot0 = Snapshot.read(filesystemDirectory, SNAPSHOT_0_FILE, filesToDelete);
+      Snapshot snapshot1 = Snapshot.read(filesystemDirectory, SNAPSHOT_1_FILE, filesToDelete);
+      Snapshot snapshot = Snapshot.latest(snapshot0, snapshot1);
+      // two complete snapshots means that a compaction was interrupted before it could empty the append log
+      boolean compactionInterrupted = snapshot0 != null && snapshot1 != null;
+
+      if (snapshot != null) {
+        LOGGER.trace("init(): snapshot {}: generation={}, chainHash={}", snapshot.getFile(), snapshot.getGeneration(), snapshot.getChainHash());
+        if (compactionInterrupted) {
+          filesToDelete.add(Snapshot.otherFile(snapshot.getFile()));
+        }
+        SanskritChange change = new TextAppendLog.TextChange(snapshot.getData(), snapshot.getVersion(), mapper);
+        change.accept(result);
+        onNewRecord(snapshot.getTimestamp(), change);
+        // the snapshot stands for the record it was taken at, which the current hash file can cover
+        hashChecker.check(HashUtils.generateHash(snapshot.getChainHash()));
+        snapshotFile = snapshot.getFile();
+        snapshotGeneration = snapshot.getGeneration();
+      }
+
+      AppendLogReplay replay = new AppendLogReplay(hashChecker, snapshot, compactionInterrupted);
+
       try (FileData appendLog = filesystemDirectory.getFileData(APPEND_LOG_FILE)) {
-        if (appendLog != null) {
-          InputStream appendLogStream = new BufferedInputStream(Channels.newInputStream(appendLog));
-          MarkableLineParser parser = new MarkableLineParser(appendLogStream);
-          Stream<String> lines = parser.lines();
-          Stream<Deque<String>> records = groupByEmptyLines(lines);
-
-          AtomicReference<SanskritException> error = new AtomicReference<>();
-          AtomicLong counter = new AtomicLong();
-          try {
-            records.forEach(record -> {
-              try {
-                if (record.size() < 3) {
-                  throw new SanskritException("Invalid record");
-                }
-
-                long idx = counter.incrementAndGet();
-
-                String timestamp;
-                String version;
-                String first = record.removeFirst();
-                if (first.startsWith(FORMAT_VERSION)) {
-                  // V2 and so on
-                  timestamp = record.removeFirst();
-                  version = first.substring(16);
-                } else {
-                  // V1 change format don't have a version flag
-                  timestamp = first;
-                  version = "";
-                }
-                String hash = record.removeLast();
-                String data = String.join(LS, record);
-
-                LOGGER.trace("init(): record {}: timestamp={}, version={}, hash={}, data={}", idx, timestamp, version, hash, data);
-
-                hash = checkHash(timestamp, data, hash);
-                String hashedHash = HashUtils.generateHash(hash);
-                boolean acceptRecord = hashChecker.check(hashedHash);
-
-                LOGGER.trace("init(): record {}: hash={}, hashedHash={}, acceptRecord={}", idx, hash, hashedHash, acceptRecord);
-
-                if (acceptRecord) {
-                  parser.mark();
-                  mapper.fromString(data, version, result);
-                  onNewRecord(timestamp, data);
-                  lastHash = hash;
-                }
-              } catch (SanskritException e) {
-                error.set(e);
-                throw new UncheckedSanskritException(e);
-              }
-            });
-          } catch (UncheckedSanskritException e) {
-            if (error.get() != null) {
-              throw error.get();
-            } else {
-              throw e;
-            }
+        RecordFormat format = appendLog == null ? null : RecordFormat.of(appendLog);
+        if (format == null) {
+          filesToDelete.add(APPEND_LOG_FILE);
+        } else {
+          if (storeFormat != null && format != storeFormat.getRecordFormat()) {
+            throw new SanskritException("Append log format: " + format + " does not match the recorded format: " + storeFormat.getRecordFormat());
           }
+          long mark = replay.replay(format.reader(appendLog), record -> {
+            SanskritChange change = record.getChange(mapper);
+            change.accept(result);
+            onNewRecord(record.getTimestamp(), change);
+          });
 
-          long mark = parser.getMark();
           if (mark == 0) {
-            filesToDelete.add("append.log");
+            filesToDelete.add(APPEND_LOG_FILE);
           } else {
-            try {
-              appendLog.truncate(mark);
-            } catch (IOException e) {
-              throw new SanskritException(e);
-            }
+            appendLog.truncate(mark);
+            logFormat = format;
           }
         }
       }
 
+      lastHash = replay.getLastHash();
+      recordsInLog = replay.getRecordCount();
+
       String hashToDelete = getHashToDelete(hashChecker);
       if (hashToDelete != null) {
         filesToDelete.add(hashToDelete);
@@ -165,6 +181,9 @@ public class SanskritImpl implements Sanskrit {
 
       nextHashFile = hashChecker.nextHashFile();
 
+      // the next records are written with the configured batch size, and the ones read above are all covered
+      writeStoreFormat(logFormat);
+
       this.data = result;
     } catch (IOException e) {
       throw new SanskritException(e);
@@ -175,10 +194,39 @@ public class SanskritImpl implements Sanskrit {
     return hashChecker.done();
   }
 
+  /**
+   * Records the settings the next records are written with, before any of them is written.
+   */
+  private void writeStoreFormat(RecordFormat format) throws SanskritException {
+    StoreFormat current = new StoreFormat(groupCommit.getMaxBatchSize(), format);
+    if (current.equals(storeFormat) || storeFormat == null && current.equals(StoreFormat.DEFAULT)) {
+      return;
+    }
+    current.write(filesystemDirectory);
+    storeFormat = current;
+  }
+
+  /**
+   * Called for each record loaded when the append log is opened, with the change it holds.
+   * <p>
+   * By default, passes the records stored as text to {@link #onNewRecord(String, String)}.
+   */
+  protected void onNewRecord(String timestamp, SanskritChange change) throws SanskritException {
+    if (change instanceof TextAppendLog.TextChange) {
+      onNewRecord(timestamp, ((TextAppendLog.TextChange) change).getData());
+    }
+  }
+
+  /**
+   * Called for each record of the text format loaded when the append log is opened, with its text.
+   *
+   * @deprecated override {@link #onNewRecord(String, SanskritChange)} instead, which is called for all the formats
+   */
+  @Deprecated
   protected void onNewRecord(String timestamp, String data) throws SanskritException {
   }
 
-  private String getHashFromFile(String hashFile, List<String> filesToDelete) throws SanskritException {
+  static String getHashFromFile(FilesystemDirectory filesystemDirectory, String hashFile, List<String> filesToDelete) throws SanskritException {
     LOGGER.trace("getHashFromFile({}, {})", hashFile, filesToDelete);
 
     ByteBuffer hashBuffer = ByteBuffer.allocate(40);
@@ -215,67 +263,58 @@ public class SanskritImpl implements Sanskrit {
     return hash;
   }
 
-  String checkHash(String timestamp, String data, String hash) throws SanskritException {
-    String expectedHash = calculateHash(timestamp, data);
-    if (!hash.equals(expectedHash)) {
-      throw new SanskritException("Hash mismatch. Got: " + hash + ". Computed: " + expectedHash);
-    }
-    return hash;
-  }
-
-  String calculateHash(String timestamp, String data) {
-    LOGGER.trace("calculateHash({}, {})", timestamp, data);
-    if (lastHash == null) {
-      return HashUtils.generateHash(
-          timestamp,
-          LS,
-          data
-      );
-    } else {
-      return HashUtils.generateHash(
-          lastHash,
-          LS,
-          LS,
-          timestamp,
-          LS,
-          data
-      );
-    }
-  }
-
-  private Stream<Deque<String>> groupByEmptyLines(Stream<String> lines) {
-    return StreamSupport.stream(new GroupingSpliterator(lines), false);
-  }
-
   @Override
   public void close() {
   }
 
   @Override
   public String getString(String key) throws SanskritException {
-    return data.getString(key);
+    lock.lock();
+    try {
+      return data.getString(key);
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
   public Long getLong(String key) throws SanskritException {
-    return data.getLong(key);
+    lock.lock();
+    try {
+      return data.getLong(key);
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
   public SanskritObject getObject(String key) throws SanskritException {
-    final SanskritObject found = data.getObject(key);
-    if (found == null) {
-      return null;
+    lock.lock();
+    try {
+      final SanskritObject found = data.getObject(key);
+      if (found == null) {
+        return null;
+      }
+      SanskritObjectImpl copy = new SanskritObjectImpl(mapper);
+      found.accept(copy);
+      return copy;
+    } finally {
+      lock.unlock();
     }
-    SanskritObjectImpl copy = new SanskritObjectImpl(mapper);
-    found.accept(copy);
-    return copy;
   }
 
   @Override
   public void applyChange(SanskritChange change) throws SanskritException {
-    change.accept(data);
-    appendChange(change);
+    lock.lock();
+    try {
+      checkFlushFailure();
+      // the change must not be visible to a compaction before its record is pending
+      awaitRoomInBatch();
+      change.accept(data);
+      appendChange(change);
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
@@ -285,39 +324,242 @@ public class SanskritImpl implements Sanskrit {
 
   @Override
   public void reset() throws SanskritException {
+    lock.lock();
     try {
+      // records of concurrent callers must not end up in the new append log
+      awaitIdle();
       filesystemDirectory.delete(HASH_0_FILE);
       filesystemDirectory.delete(HASH_1_FILE);
       filesystemDirectory.backup(APPEND_LOG_FILE);
+      filesystemDirectory.backup(SNAPSHOT_0_FILE);
+      filesystemDirectory.backup(SNAPSHOT_1_FILE);
+      filesystemDirectory.backup(StoreFormat.FORMAT_FILE);
       init();
     } catch (IOException e) {
       throw new SanskritException(e);
+    } finally {
+      lock.unlock();
     }
   }
 
   private void appendChange(SanskritChange change) throws SanskritException {
-    String data = mapper.toString(change);
-    LOGGER.trace("appendChange(): {}", data);
-    appendChange(data);
+    String timestamp = getTimestamp();
+    appendRecord(timestamp, change);
   }
 
-  private void appendChange(String data) throws SanskritException {
-    String timestamp = getTimestamp();
-    appendRecord(timestamp, data);
+  void appendRecord(String timestamp, SanskritChange change) throws SanskritException {
+    lock.lock();
+    try {
+      LOGGER.trace("appendRecord({})", timestamp);
+      awaitRoomInBatch();
+      String hash = logFormat.append(pendingEntries, lastHash, mapper.getCurrentFormatVersion(), timestamp, change, mapper);
+      pendingHash = hash;
+      lastHash = hash;
+      if (++pendingCount >= groupCommit.getMaxBatchSize()) {
+        batchFull.signal();
+      }
+      awaitFlushed(++appendedCount);
+      // compacting requires the in-memory state to be the one of the append log
+      if (compaction.isDue(recordsInLog) && !flushing && pendingCount == 0) {
+        compactLog();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Writes a snapshot of the current state and empties the append log, once all the pending records are durable.
+   */
+  public void compact() throws SanskritException {
+    lock.lock();
+    try {
+      awaitIdle();
+      compactLog();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void compactLog() throws SanskritException {
+    checkFlushFailure();
+    if (lastHash == null) {
+      return;
+    }
+
+    Snapshot snapshot = new Snapshot(
+        Snapshot.otherFile(snapshotFile),
+        mapper.getCurrentFormatVersion(),
+        snapshotGeneration + 1,
+        lastHash,
+        getTimestamp(),
+        mapper.toString(visitor -> data.accept(visitor)));
+    String previousSnapshotFile = snapshotFile;
+    LOGGER.trace("compactLog(): {}, {} records", snapshot.getFile(), recordsInLog);
+
+    // like a flush, the compaction owns the append log until it is done, so the records appended meanwhile are
+    // pending until then, and they go to the emptied append log, in the configured format
+    flushing = true;
+    logFormat = recordFormat;
+    try {
+      int holds = unlockFully();
+      try {
+        writeSnapshot(snapshot, previousSnapshotFile);
+        writeStoreFormat(recordFormat);
+      } finally {
+        relock(holds);
+      }
+      snapshotFile = snapshot.getFile();
+      snapshotGeneration = snapshot.getGeneration();
+      recordsInLog = 0;
+    } catch (SanskritException | RuntimeException e) {
+      // appending to an append log that was not emptied would corrupt it
+      flushFailure = e;
+      throw e;
+    } finally {
+      flushing = false;
+      flushed.signalAll();
+    }
+  }
+
+  private void writeSnapshot(Snapshot snapshot, String previousSnapshotFile) throws SanskritException {
+    // the previous snapshot must be deleted last: until then, a crash leaves two complete snapshots and
+    // the next startup knows that the append log is already part of the new one
+    try {
+      filesystemDirectory.delete(snapshot.getFile());
+      try (FileData snapshotData = filesystemDirectory.create(snapshot.getFile(), false)) {
+        write(snapshotData, snapshot.toText());
+      }
+      try (FileData appendLog = filesystemDirectory.getFileData(APPEND_LOG_FILE)) {
+        if (appendLog != null) {
+          appendLog.truncate(0);
+          appendLog.force(true);
+        }
+      }
+      if (previousSnapshotFile != null) {
+        filesystemDirectory.delete(previousSnapshotFile);
+      }
+    } catch (IOException e) {
+      throw new SanskritException(e);
+    }
   }
 
-  void appendRecord(String timestamp, String data) throws SanskritException {
-    LOGGER.trace("appendRecord({}, {})", timestamp, data);
-    String hash = calculateHash(timestamp, data);
-    appendEntry((FORMAT_VERSION + mapper.getCurrentFormatVersion()) + LS + timestamp + LS + data + LS + hash + LS + LS, hash);
+  /**
+   * Blocks until the given record is durable, either by flushing the pending records if no other thread is doing so,
+   * or by waiting for the thread currently flushing.
+   */
+  private void awaitFlushed(long recordCount) throws SanskritException {
+    while (flushedCount < recordCount) {
+      checkFlushFailure();
+      if (flushing) {
+        flushed.awaitUninterruptibly();
+      } else {
+        flush();
+      }
+    }
+  }
+
+  /**
+   * Blocks until a record can join the pending group: a group must not be larger than the batch size the hash files
+   * are checked against on startup.
+   */
+  private void awaitRoomInBatch() throws SanskritException {
+    while (pendingCount >= groupCommit.getMaxBatchSize()) {
+      checkFlushFailure();
+      if (flushing) {
+        flushed.awaitUninterruptibly();
+      } else {
+        flush();
+      }
+    }
+  }
+
+  /**
+   * Blocks until all the records appended so far are durable, and no flush or compaction is in progress.
+   */
+  private void awaitIdle() throws SanskritException {
+    awaitFlushed(appendedCount);
+    while (flushing) {
+      flushed.awaitUninterruptibly();
+      awaitFlushed(appendedCount);
+    }
+  }
+
+  private void flush() throws SanskritException {
+    flushing = true;
+    try {
+      awaitBatch();
+
+      byte[] logEntries = pendingEntries.toByteArray();
+      String hash = pendingHash;
+      RecordFormat format = logFormat;
+      long recordCount = appendedCount;
+      int batchSize = pendingCount;
+      LOGGER.trace("flush(): {} records", batchSize);
+      pendingEntries.reset();
+      pendingCount = 0;
+
+      int holds = unlockFully();
+      try {
+        appendEntry(format, logEntries, hash);
+      } finally {
+        relock(holds);
+      }
+      flushedCount = recordCount;
+      recordsInLog += batchSize;
+    } catch (SanskritException | RuntimeException e) {
+      flushFailure = e;
+      throw e;
+    } finally {
+      flushing = false;
+      flushed.signalAll();
+    }
+  }
+
+  /**
+   * Releases the lock for the duration of some IO, so that readers and appenders are not blocked by the disk.
+   * The lock is held more than once when the record comes from {@link #applyChange(SanskritChange)}.
+   *
+   * @return the number of holds to restore with {@link #relock(int)}
+   */
+  private int unlockFully() {
+    int holds = lock.getHoldCount();
+    for (int i = 0; i < holds; i++) {
+      lock.unlock();
+    }
+    return holds;
+  }
+
+  private void relock(int holds) {
+    for (int i = 0; i < holds; i++) {
+      lock.lock();
+    }
+  }
+
+  private void awaitBatch() {
+    long remaining = groupCommit.getMaxBatchLatency().toNanos();
+    while (pendingCount < groupCommit.getMaxBatchSize() && remaining > 0) {
+      try {
+        remaining = batchFull.awaitNanos(remaining);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private void checkFlushFailure() throws SanskritException {
+    if (flushFailure != null) {
+      throw new SanskritException("Failed to write to the append log", flushFailure);
+    }
   }
 
   private String getTimestamp() {
     return Instant.now().toString();
   }
 
-  private void appendEntry(String logEntry, String entryHash) throws SanskritException {
-    LOGGER.trace("appendEntry({}, {})", logEntry, entryHash);
+  private void appendEntry(RecordFormat format, byte[] logEntries, String entryHash) throws SanskritException {
+    LOGGER.trace("appendEntry({} bytes, {})", logEntries.length, entryHash);
     String finalHash = HashUtils.generateHash(entryHash);
     LOGGER.trace("appendEntry({}): finalHash: {}", entryHash, finalHash);
 
@@ -325,13 +567,14 @@ public class SanskritImpl implements Sanskrit {
         FileData appendLog = getAppendLogForAppend();
         FileData hashFile = createNewHashFile()
     ) {
-      write(appendLog, logEntry);
+      if (appendLog.size() == 0) {
+        write(appendLog, ByteBuffer.wrap(format.header()), false);
+      }
+      write(appendLog, ByteBuffer.wrap(logEntries), true);
       write(hashFile, finalHash);
 
       nextHashFile = flipHashFile();
       filesystemDirectory.delete(nextHashFile);
-
-      lastHash = entryHash;
     } catch (IOException e) {
       throw new SanskritException(e);
     }
@@ -364,14 +607,18 @@ public class SanskritImpl implements Sanskrit {
   }
 
   private void write(FileData fileData, String text) throws SanskritException {
-    try {
-      ByteBuffer bytes = StandardCharsets.UTF_8.encode(text);
+    write(fileData, StandardCharsets.UTF_8.encode(text), true);
+  }
 
+  private void write(FileData fileData, ByteBuffer bytes, boolean force) throws SanskritException {
+    try {
       while (bytes.hasRemaining()) {
         fileData.write(bytes);
       }
 
-      fileData.force(false);
+      if (force) {
+        fileData.force(false);
+      }
     } catch (IOException e) {
       throw new SanskritException(e);
     }
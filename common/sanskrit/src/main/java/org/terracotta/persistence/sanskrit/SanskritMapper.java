@@ -30,4 +30,14 @@ public interface SanskritMapper {
   String getCurrentFormatVersion();
 
   <T> T map(SanskritObject src, Class<T> dest, String version) throws SanskritException;
+
+  /**
+   * Converts a complex value set on a change into the maps, lists, strings, numbers, booleans and nulls that
+   * {@link #fromString(String, String, SanskritChangeVisitor)} would read it back as, so that it can be stored in binary.
+   *
+   * @return the converted value, or the value itself if it cannot be converted, in which case the change is stored as text
+   */
+  default Object toTree(Object value) throws SanskritException {
+    return value;
+  }
 }
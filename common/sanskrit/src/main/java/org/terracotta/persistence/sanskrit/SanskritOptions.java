@@ -0,0 +1,77 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+import java.util.Objects;
+
+/**
+ * The settings of a Sanskrit append log: how concurrent appends are grouped, when the append log is compacted and
+ * in which format new append logs are written. The defaults are the original behavior.
+ * <p>
+ * Note: versions without these settings cannot reopen a directory that was written with them: they do not read the
+ * snapshots of a compacted append log nor the binary records, and they do not accept more than one record left
+ * uncovered by the hash files after a crash.
+ */
+public final class SanskritOptions {
+  private static final SanskritOptions DEFAULTS = new SanskritOptions(GroupCommit.disabled(), Compaction.disabled(), RecordFormat.TEXT);
+
+  private final GroupCommit groupCommit;
+  private final Compaction compaction;
+  private final RecordFormat recordFormat;
+
+  private SanskritOptions(GroupCommit groupCommit, Compaction compaction, RecordFormat recordFormat) {
+    this.groupCommit = Objects.requireNonNull(groupCommit);
+    this.compaction = Objects.requireNonNull(compaction);
+    this.recordFormat = Objects.requireNonNull(recordFormat);
+  }
+
+  /**
+   * @return the default settings: no group commit, no compaction and the text format
+   */
+  public static SanskritOptions defaults() {
+    return DEFAULTS;
+  }
+
+  public SanskritOptions withGroupCommit(GroupCommit groupCommit) {
+    return new SanskritOptions(groupCommit, compaction, recordFormat);
+  }
+
+  public SanskritOptions withCompaction(Compaction compaction) {
+    return new SanskritOptions(groupCommit, compaction, recordFormat);
+  }
+
+  public SanskritOptions withRecordFormat(RecordFormat recordFormat) {
+    return new SanskritOptions(groupCommit, compaction, recordFormat);
+  }
+
+  public GroupCommit getGroupCommit() {
+    return groupCommit;
+  }
+
+  public Compaction getCompaction() {
+    return compaction;
+  }
+
+  public RecordFormat getRecordFormat() {
+    return recordFormat;
+  }
+
+  @Override
+  public String toString() {
+    return "SanskritOptions{groupCommit=" + groupCommit + ", compaction=" + compaction + ", recordFormat=" + recordFormat + '}';
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.terracotta.persistence.sanskrit.MarkableLineParser.LS;
+import static org.terracotta.persistence.sanskrit.TextAppendLog.FORMAT_VERSION;
+
+/**
+ * A snapshot of the whole Sanskrit state, taken when compacting the append log.
+ * <p>
+ * A snapshot is stored as lines: the format version, the generation of the snapshot, the hash of the last record of
+ * the append log at the time of the snapshot, a timestamp and the data lines, followed by the hash of all of these.
+ */
+final class Snapshot {
+  private static final Logger LOGGER = LoggerFactory.getLogger(Snapshot.class);
+
+  static final String SNAPSHOT_0_FILE = "snapshot0";
+  static final String SNAPSHOT_1_FILE = "snapshot1";
+
+  private final String file;
+  private final String version;
+  private final long generation;
+  private final String chainHash;
+  private final String timestamp;
+  private final String data;
+
+  Snapshot(String file, String version, long generation, String chainHash, String timestamp, String data) {
+    this.file = file;
+    this.version = version;
+    this.generation = generation;
+    this.chainHash = chainHash;
+    this.timestamp = timestamp;
+    this.data = data;
+  }
+
+  String getFile() {
+    return file;
+  }
+
+  String getVersion() {
+    return version;
+  }
+
+  long getGeneration() {
+    return generation;
+  }
+
+  String getChainHash() {
+    return chainHash;
+  }
+
+  String getTimestamp() {
+    return timestamp;
+  }
+
+  String getData() {
+    return data;
+  }
+
+  String toText() {
+    String body = FORMAT_VERSION + version + LS
+        + generation + LS
+        + chainHash + LS
+        + timestamp + LS
+        + data + LS;
+    return body + HashUtils.generateHash(body) + LS;
+  }
+
+  static String otherFile(String snapshotFile) {
+    return SNAPSHOT_0_FILE.equals(snapshotFile) ? SNAPSHOT_1_FILE : SNAPSHOT_0_FILE;
+  }
+
+  static Snapshot latest(Snapshot snapshot0, Snapshot snapshot1) {
+    if (snapshot0 == null) {
+      return snapshot1;
+    }
+    if (snapshot1 == null) {
+      return snapshot0;
+    }
+    return snapshot0.generation > snapshot1.generation ? snapshot0 : snapshot1;
+  }
+
+  /**
+   * @return the snapshot stored in the given file, or null if there is none or if it is incomplete, in which case the
+   * file is added to the files to delete
+   */
+  static Snapshot read(FilesystemDirectory filesystemDirectory, String snapshotFile, List<String> filesToDelete) throws SanskritException {
+    String text;
+    try (FileData fileData = filesystemDirectory.getFileData(snapshotFile)) {
+      if (fileData == null) {
+        return null;
+      }
+      ByteBuffer bytes = ByteBuffer.allocate((int) fileData.size());
+      while (bytes.hasRemaining()) {
+        if (fileData.read(bytes) == -1) {
+          break;
+        }
+      }
+      bytes.flip();
+      text = StandardCharsets.UTF_8.decode(bytes).toString();
+    } catch (IOException e) {
+      throw new SanskritException(e);
+    }
+
+    String[] lines = text.split(LS, -1);
+    int bodyLength = text.lastIndexOf(LS, text.length() - LS.length() - 1) + LS.length();
+    if (lines.length < 7 || !text.endsWith(LS) || !lines[0].startsWith(FORMAT_VERSION)
+        || !lines[lines.length - 2].equals(HashUtils.generateHash(text.substring(0, bodyLength)))) {
+      // an incomplete snapshot can only be the result of an interrupted compaction
+      LOGGER.trace("read({}): <incomplete>", snapshotFile);
+      filesToDelete.add(snapshotFile);
+      return null;
+    }
+
+    try {
+      Snapshot snapshot = new Snapshot(
+          snapshotFile,
+          lines[0].substring(FORMAT_VERSION.length()),
+          Long.parseLong(lines[1]),
+          lines[2],
+          lines[3],
+          String.join(LS, Arrays.asList(lines).subList(4, lines.length - 2)));
+      LOGGER.trace("read({}): generation: {}", snapshotFile, snapshot.generation);
+      return snapshot;
+    } catch (NumberFormatException e) {
+      throw new SanskritException("Invalid snapshot: " + snapshotFile, e);
+    }
+  }
+}
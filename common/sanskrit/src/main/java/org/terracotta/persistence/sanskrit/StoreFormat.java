@@ -0,0 +1,151 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+import static org.terracotta.persistence.sanskrit.MarkableLineParser.LS;
+
+/**
+ * The settings an append log was written with, which are needed to check it when it is reopened: the group commit
+ * batch size, which bounds the number of records a crash can leave uncovered by the hash files, and the format of
+ * its records.
+ * <p>
+ * The format file is stored as lines: the batch size and the record format, followed by the hash of these. It is only
+ * written once the settings differ from the original behavior, so that a directory which never used them is left as
+ * it was.
+ */
+final class StoreFormat {
+  private static final Logger LOGGER = LoggerFactory.getLogger(StoreFormat.class);
+
+  static final String FORMAT_FILE = "format";
+  static final StoreFormat DEFAULT = new StoreFormat(1, RecordFormat.TEXT);
+
+  private static final String BATCH_SIZE = "batch size: ";
+  private static final String RECORD_FORMAT = "record format: ";
+
+  private final int maxBatchSize;
+  private final RecordFormat recordFormat;
+
+  StoreFormat(int maxBatchSize, RecordFormat recordFormat) {
+    this.maxBatchSize = maxBatchSize;
+    this.recordFormat = Objects.requireNonNull(recordFormat);
+  }
+
+  int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  RecordFormat getRecordFormat() {
+    return recordFormat;
+  }
+
+  String toText() {
+    String body = BATCH_SIZE + maxBatchSize + LS
+        + RECORD_FORMAT + recordFormat.name() + LS;
+    return body + HashUtils.generateHash(body) + LS;
+  }
+
+  void write(FilesystemDirectory filesystemDirectory) throws SanskritException {
+    LOGGER.trace("write(): {}", this);
+    try {
+      filesystemDirectory.delete(FORMAT_FILE);
+      try (FileData fileData = filesystemDirectory.create(FORMAT_FILE, false)) {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(toText());
+        while (bytes.hasRemaining()) {
+          fileData.write(bytes);
+        }
+        fileData.force(false);
+      }
+    } catch (IOException e) {
+      throw new SanskritException(e);
+    }
+  }
+
+  /**
+   * The format file is written before any record depending on it, so an incomplete one can only be the result of an
+   * interrupted write, after which the append log is still in the previous format.
+   *
+   * @return the format stored in the directory, or null if there is none or if it is incomplete, in which case the
+   * file is added to the files to delete
+   */
+  static StoreFormat read(FilesystemDirectory filesystemDirectory, List<String> filesToDelete) throws SanskritException {
+    String text;
+    try (FileData fileData = filesystemDirectory.getFileData(FORMAT_FILE)) {
+      if (fileData == null) {
+        return null;
+      }
+      ByteBuffer bytes = ByteBuffer.allocate((int) fileData.size());
+      while (bytes.hasRemaining()) {
+        if (fileData.read(bytes) == -1) {
+          break;
+        }
+      }
+      bytes.flip();
+      text = StandardCharsets.UTF_8.decode(bytes).toString();
+    } catch (IOException e) {
+      throw new SanskritException(e);
+    }
+
+    String[] lines = text.split(LS, -1);
+    if (lines.length != 4 || !lines[3].isEmpty() || !lines[0].startsWith(BATCH_SIZE) || !lines[1].startsWith(RECORD_FORMAT)
+        || !lines[2].equals(HashUtils.generateHash(lines[0] + LS + lines[1] + LS))) {
+      LOGGER.trace("read(): <incomplete>");
+      filesToDelete.add(FORMAT_FILE);
+      return null;
+    }
+
+    try {
+      StoreFormat format = new StoreFormat(
+          Integer.parseInt(lines[0].substring(BATCH_SIZE.length())),
+          RecordFormat.valueOf(lines[1].substring(RECORD_FORMAT.length())));
+      LOGGER.trace("read(): {}", format);
+      return format;
+    } catch (IllegalArgumentException e) {
+      throw new SanskritException("Invalid format file: " + text, e);
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    StoreFormat that = (StoreFormat) o;
+    return maxBatchSize == that.maxBatchSize && recordFormat == that.recordFormat;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(maxBatchSize, recordFormat);
+  }
+
+  @Override
+  public String toString() {
+    return "StoreFormat{maxBatchSize=" + maxBatchSize + ", recordFormat=" + recordFormat + '}';
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+import org.terracotta.persistence.sanskrit.change.SanskritChange;
+import org.terracotta.persistence.sanskrit.change.SanskritChangeVisitor;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Deque;
+import java.util.Spliterator;
+
+import static org.terracotta.persistence.sanskrit.MarkableLineParser.LS;
+
+/**
+ * The original append log format: each record is made of a format version line, a timestamp line, the data lines and
+ * a hash line, followed by an empty line. The hash of a record is computed over the text of the previous hash, the
+ * timestamp and the data.
+ */
+final class TextAppendLog {
+  static final String FORMAT_VERSION = "format version: ";
+
+  private TextAppendLog() {
+  }
+
+  /**
+   * A change stored as text, which is only parsed when it is visited.
+   */
+  static final class TextChange implements SanskritChange {
+    private final String data;
+    private final String version;
+    private final SanskritMapper mapper;
+
+    TextChange(String data, String version, SanskritMapper mapper) {
+      this.data = data;
+      this.version = version;
+      this.mapper = mapper;
+    }
+
+    String getData() {
+      return data;
+    }
+
+    @Override
+    public void accept(SanskritChangeVisitor visitor) throws SanskritException {
+      mapper.fromString(data, version, visitor);
+    }
+  }
+
+  static String append(ByteArrayOutputStream out, String previousHash, String version, String timestamp, String data) {
+    String hash = hash(previousHash, timestamp, data);
+    byte[] bytes = (FORMAT_VERSION + version + LS + timestamp + LS + data + LS + hash + LS + LS).getBytes(StandardCharsets.UTF_8);
+    out.write(bytes, 0, bytes.length);
+    return hash;
+  }
+
+  static String hash(String previousHash, String timestamp, String data) {
+    if (previousHash == null) {
+      return HashUtils.generateHash(
+          timestamp,
+          LS,
+          data
+      );
+    } else {
+      return HashUtils.generateHash(
+          previousHash,
+          LS,
+          LS,
+          timestamp,
+          LS,
+          data
+      );
+    }
+  }
+
+  static final class Reader implements AppendLogReader {
+    private final MarkableLineParser parser;
+    private final Spliterator<Deque<String>> records;
+    private Deque<String> record;
+    private String version;
+    private String timestamp;
+    private String data;
+    private String hash;
+
+    Reader(FileData appendLog) {
+      this.parser = new MarkableLineParser(new BufferedInputStream(Channels.newInputStream(appendLog)));
+      this.records = new GroupingSpliterator(parser.lines());
+    }
+
+    @Override
+    public boolean next() throws SanskritException {
+      if (!records.tryAdvance(r -> record = r)) {
+        return false;
+      }
+
+      if (record.size() < 3) {
+        throw new SanskritException("Invalid record");
+      }
+
+      String first = record.removeFirst();
+      if (first.startsWith(FORMAT_VERSION)) {
+        // V2 and so on
+        timestamp = record.removeFirst();
+        version = first.substring(FORMAT_VERSION.length());
+      } else {
+        // V1 change format don't have a version flag
+        timestamp = first;
+        version = "";
+      }
+      hash = record.removeLast();
+      data = String.join(LS, record);
+      return true;
+    }
+
+    @Override
+    public String getVersion() {
+      return version;
+    }
+
+    @Override
+    public String getTimestamp() {
+      return timestamp;
+    }
+
+    @Override
+    public SanskritChange getChange(SanskritMapper mapper) {
+      return new TextChange(data, version, mapper);
+    }
+
+    @Override
+    public String getHash() {
+      return hash;
+    }
+
+    @Override
+    public String computeHash(String previousHash) {
+      return hash(previousHash, timestamp, data);
+    }
+
+    @Override
+    public void mark() {
+      parser.mark();
+    }
+
+    @Override
+    public long getMark() {
+      return parser.getMark();
+    }
+  }
+}
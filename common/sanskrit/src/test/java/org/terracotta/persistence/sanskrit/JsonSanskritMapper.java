@@ -66,6 +66,15 @@ public class JsonSanskritMapper implements SanskritMapper {
     }
   }
 
+  @Override
+  public Object toTree(Object value) throws SanskritException {
+    try {
+      return json.map(value);
+    } catch (RuntimeException e) {
+      throw new SanskritException(e);
+    }
+  }
+
   private static void set(Map<String, Object> src, SanskritChangeVisitor dest, String version) throws SanskritException {
     for (Map.Entry<String, Object> entry : src.entrySet()) {
       dest.set(entry.getKey(), entry.getValue(), version);
@@ -24,16 +24,29 @@ import org.terracotta.persistence.sanskrit.change.SanskritChangeBuilder;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.terracotta.persistence.sanskrit.MarkableLineParser.LS;
 
 public class SanskritTest {
   private static final String NO_MATCH_HASH = "0000000000000000000000000000000000000000";
+  private static final GroupCommit GROUP_COMMIT = GroupCommit.of(4, Duration.ofSeconds(30));
+  private static final SanskritOptions GROUPED = SanskritOptions.defaults().withGroupCommit(GROUP_COMMIT);
+  private static final SanskritOptions BINARY = SanskritOptions.defaults().withRecordFormat(RecordFormat.BINARY);
   private final SanskritMapper mapper = new JsonSanskritMapper();
   private MemoryFilesystemDirectory filesystemDirectory;
 
@@ -440,6 +453,424 @@ public class SanskritTest {
     }
   }
 
+  @Test
+  public void initGroupOfRecordsNoFinalHash() throws Exception {
+    LogInfo logInfo = LogUtil.createLog(makeMap("key", "value1"), makeMap("key", "value2"), makeMap("key", "value3"));
+    createFileWithContent("append.log", logInfo.getText());
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper, GROUPED)) {
+      assertNull(sanskrit.getString("key"));
+    }
+
+    assertNullFiles("append.log", "hash0", "hash1");
+  }
+
+  @Test
+  public void initGroupOfRecordsBetweenFullHashes() throws Exception {
+    LogInfo logInfo = LogUtil.createLog(makeMap("key", "value1"), makeMap("key", "value2"), makeMap("key", "value3"));
+    createFileWithContent("append.log", logInfo.getText());
+    createFileWithContent("hash0", logInfo.getHash(0));
+    createFileWithContent("hash1", logInfo.getHash());
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper, GROUPED)) {
+      assertEquals("value3", sanskrit.getString("key"));
+    }
+
+    assertAppendLog(logInfo.getText());
+    assertFile("hash1", logInfo.getHash());
+    assertNullFiles("hash0");
+  }
+
+  @Test
+  public void groupOfRecordsReopenedWithSmallerBatchSize() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper, GROUPED)) {
+      assertNull(sanskrit.getString("key"));
+    }
+    assertFile("format", new StoreFormat(GROUP_COMMIT.getMaxBatchSize(), RecordFormat.TEXT).toText());
+
+    // a crash leaves a group of records after the one covered by the hash file
+    LogInfo logInfo = LogUtil.createLog(makeMap("key", "value1"), makeMap("key", "value2"), makeMap("key", "value3"), makeMap("key", "value4"));
+    createFileWithContent("append.log", logInfo.getText());
+    createFileWithContent("hash0", logInfo.getHash(0));
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper)) {
+      assertEquals("value1", sanskrit.getString("key"));
+    }
+
+    // the next records are written one at a time
+    assertFile("format", StoreFormat.DEFAULT.toText());
+  }
+
+  @Test
+  public void recordFormatMismatch() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper, BINARY)) {
+      sanskrit.setString("key", "value");
+    }
+    assertFile("format", new StoreFormat(1, RecordFormat.BINARY).toText());
+
+    new StoreFormat(1, RecordFormat.TEXT).write(filesystemDirectory);
+
+    loadAndFail();
+  }
+
+  @Test
+  public void defaultFormatNotRecorded() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper)) {
+      sanskrit.setString("key", "value");
+    }
+
+    assertNullFiles("format");
+  }
+
+  @Test
+  public void groupCommitConcurrentWriters() throws Exception {
+    int writers = GROUP_COMMIT.getMaxBatchSize();
+    ExecutorService executor = Executors.newFixedThreadPool(writers);
+    int forceCount;
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper, GROUPED)) {
+      forceCount = filesystemDirectory.getForceCount();
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < writers; i++) {
+        String key = "key" + i;
+        futures.add(executor.submit(() -> {
+          sanskrit.setString(key, "value");
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // a single batch: one sync of the append log and one of the new hash file
+    assertEquals(forceCount + 2, filesystemDirectory.getForceCount());
+
+    loadAndAssertState(makeMap("key0", "value", "key1", "value", "key2", "value", "key3", "value"));
+  }
+
+  @Test
+  public void readersAreNotBlockedBySync() throws Exception {
+    CountDownLatch syncing = new CountDownLatch(1);
+    CountDownLatch synced = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper)) {
+      sanskrit.setString("key", "value1");
+      filesystemDirectory.onForce(() -> {
+        syncing.countDown();
+        try {
+          synced.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      Future<?> writer = executor.submit(() -> {
+        sanskrit.setString("key", "value2");
+        return null;
+      });
+
+      assertTrue(syncing.await(30, TimeUnit.SECONDS));
+      // the change is applied in memory, and the writer holds the lock twice while its record is synced
+      Future<String> reader = executor.submit(() -> sanskrit.getString("key"));
+      assertEquals("value2", reader.get(30, TimeUnit.SECONDS));
+      assertFalse(writer.isDone());
+
+      synced.countDown();
+      writer.get();
+    } finally {
+      synced.countDown();
+      executor.shutdownNow();
+    }
+
+    loadAndAssertState(makeMap("key", "value2"));
+  }
+
+  @Test
+  public void compactAfterRecords() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper, SanskritOptions.defaults().withCompaction(Compaction.afterRecords(2)))) {
+      sanskrit.setString("key1", "value1");
+      sanskrit.setString("key2", "value2");
+      assertEquals("", getFileText("append.log"));
+      sanskrit.setString("key3", "value3");
+    }
+
+    assertNullFiles("snapshot1");
+    loadAndAssertState(makeMap("key1", "value1", "key2", "value2", "key3", "value3"));
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper, SanskritOptions.defaults().withCompaction(Compaction.afterRecords(2)))) {
+      sanskrit.setString("key1", "value");
+    }
+
+    assertNullFiles("snapshot0");
+    assertEquals("", getFileText("append.log"));
+    loadAndAssertState(makeMap("key1", "value", "key2", "value2", "key3", "value3"));
+  }
+
+  @Test
+  public void compactEmpty() throws Exception {
+    try (SanskritImpl sanskrit = new SanskritImpl(filesystemDirectory, mapper)) {
+      sanskrit.compact();
+    }
+
+    assertNullFiles("append.log", "hash0", "hash1", "snapshot0", "snapshot1");
+  }
+
+  @Test
+  public void interruptedFirstCompaction() throws Exception {
+    String appendLog;
+    try (SanskritImpl sanskrit = new SanskritImpl(filesystemDirectory, mapper)) {
+      sanskrit.setString("key1", "value1");
+      sanskrit.setString("key2", "value2");
+      appendLog = getFileText("append.log");
+      sanskrit.compact();
+    }
+
+    // as if the append log was not emptied
+    filesystemDirectory.delete("append.log");
+    createFileWithContent("append.log", appendLog);
+
+    loadAndAssertState(makeMap("key1", "value1", "key2", "value2"));
+    assertNullFiles("append.log", "snapshot1");
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper)) {
+      sanskrit.setString("key3", "value3");
+    }
+    loadAndAssertState(makeMap("key1", "value1", "key2", "value2", "key3", "value3"));
+  }
+
+  @Test
+  public void interruptedCompaction() throws Exception {
+    String appendLog;
+    String snapshot;
+    try (SanskritImpl sanskrit = new SanskritImpl(filesystemDirectory, mapper)) {
+      sanskrit.setString("key1", "value1");
+      sanskrit.compact();
+      sanskrit.setString("key2", "value2");
+      sanskrit.setString("key1", "value");
+      appendLog = getFileText("append.log");
+      snapshot = getFileText("snapshot0");
+      sanskrit.compact();
+    }
+
+    // as if the append log was not emptied and the previous snapshot not deleted
+    filesystemDirectory.delete("append.log");
+    createFileWithContent("append.log", appendLog);
+    createFileWithContent("snapshot0", snapshot);
+
+    loadAndAssertState(makeMap("key1", "value", "key2", "value2"));
+    assertNullFiles("append.log", "snapshot0");
+  }
+
+  @Test
+  public void incompleteSnapshot() throws Exception {
+    String snapshot;
+    try (SanskritImpl sanskrit = new SanskritImpl(filesystemDirectory, mapper)) {
+      sanskrit.setString("key1", "value1");
+      sanskrit.compact();
+      sanskrit.setString("key2", "value2");
+      snapshot = getFileText("snapshot0");
+    }
+
+    // as if the next compaction was interrupted while writing its snapshot
+    createFileWithContent("snapshot1", snapshot.substring(0, snapshot.length() - 10));
+
+    loadAndAssertState(makeMap("key1", "value1", "key2", "value2"));
+    assertNullFiles("snapshot1");
+  }
+
+  @Test
+  public void snapshotWithoutMatchingHash() throws Exception {
+    try (SanskritImpl sanskrit = new SanskritImpl(filesystemDirectory, mapper)) {
+      sanskrit.setString("key1", "value1");
+      sanskrit.compact();
+    }
+
+    filesystemDirectory.delete("hash0");
+    filesystemDirectory.delete("hash1");
+    createFileWithContent("hash0", NO_MATCH_HASH);
+
+    loadAndFail();
+  }
+
+  @Test
+  public void textRecordsPassedToDeprecatedHook() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper)) {
+      sanskrit.setString("key1", "value1");
+      sanskrit.setLong("key2", 2L);
+    }
+
+    List<String> records = new ArrayList<>();
+    try (SanskritImpl sanskrit = new SanskritImpl(filesystemDirectory, mapper) {
+      @Override
+      @SuppressWarnings("deprecation")
+      protected void onNewRecord(String timestamp, String data) {
+        records.add(data);
+      }
+    }) {
+      assertEquals("value1", sanskrit.getString("key1"));
+    }
+
+    assertEquals(2, records.size());
+    assertTrue(records.get(0).contains("value1"));
+  }
+
+  @Test
+  public void binaryRecords() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper, BINARY)) {
+      sanskrit.setString("key1", "value1");
+      sanskrit.setLong("key2", 2L);
+    }
+
+    assertEquals(0, getFileBytes("append.log")[0]);
+    loadAndAssertState(makeMap("key1", "value1", "key2", 2L));
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper)) {
+      sanskrit.setString("key1", "value");
+    }
+
+    assertEquals(0, getFileBytes("append.log")[0]);
+    loadAndAssertState(makeMap("key1", "value", "key2", 2L));
+  }
+
+  @Test
+  public void binaryRecordsEncodeChangesWithoutText() throws Exception {
+    TestData.Tomato tomato = new TestData.Tomato(new TestData.TomatoCooking(), "red");
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper, BINARY)) {
+      SanskritObjectImpl object = new SanskritObjectImpl(mapper);
+      object.setString("subkey1", "abc");
+      object.setLong("subkey2", 1L);
+      object.set("tomato", tomato, null);
+      sanskrit.setObject("key1", object);
+      sanskrit.setString("key2", "value2");
+      sanskrit.removeKey("key2");
+    }
+
+    assertEquals(-1, new String(getFileBytes("append.log"), StandardCharsets.ISO_8859_1).indexOf('{'));
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper)) {
+      SanskritObject object = sanskrit.getObject("key1");
+      assertEquals("abc", object.getString("subkey1"));
+      assertEquals(1L, (long) object.getLong("subkey2"));
+      assertEquals(tomato, object.get("tomato", TestData.Tomato.class, null));
+      assertNull(sanskrit.getString("key2"));
+    }
+  }
+
+  @Test
+  public void binaryRecordsFallBackToText() throws Exception {
+    TestData.Tomato tomato = new TestData.Tomato(new TestData.TomatoCooking(), "red");
+    SanskritMapper textOnlyMapper = new JsonSanskritMapper() {
+      @Override
+      public Object toTree(Object value) {
+        return value;
+      }
+    };
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, textOnlyMapper, BINARY)) {
+      SanskritObjectImpl object = new SanskritObjectImpl(textOnlyMapper);
+      object.set("tomato", tomato, null);
+      sanskrit.setObject("key1", object);
+      sanskrit.setString("key2", "value2");
+    }
+
+    assertTrue(new String(getFileBytes("append.log"), StandardCharsets.ISO_8859_1).contains("{"));
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper)) {
+      assertEquals(tomato, sanskrit.getObject("key1").get("tomato", TestData.Tomato.class, null));
+      assertEquals("value2", sanskrit.getString("key2"));
+    }
+  }
+
+  @Test
+  public void textRecordsKeptWithBinaryFormat() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper)) {
+      sanskrit.setString("key1", "value1");
+    }
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper, BINARY)) {
+      sanskrit.setString("key2", "value2");
+    }
+
+    assertEquals(true, getFileText("append.log").startsWith("format version: "));
+    loadAndAssertState(makeMap("key1", "value1", "key2", "value2"));
+  }
+
+  @Test
+  public void binaryPartialRecord() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper, BINARY)) {
+      sanskrit.setString("key1", "value1");
+    }
+    int size = getFileBytes("append.log").length;
+    String hash = getFileText("hash0");
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper)) {
+      sanskrit.setString("key2", "value2");
+    }
+
+    filesystemDirectory.delete("hash0");
+    filesystemDirectory.delete("hash1");
+    createFileWithContent("hash0", hash);
+    truncateFile("append.log", getFileBytes("append.log").length - 3);
+
+    loadAndAssertState(makeMap("key1", "value1"), "key2");
+    assertEquals(size, getFileBytes("append.log").length);
+  }
+
+  @Test
+  public void binaryCorruptedRecord() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper, BINARY)) {
+      sanskrit.setString("key1", "value1");
+      sanskrit.setString("key2", "value2");
+    }
+
+    byte[] bytes = getFileBytes("append.log");
+    int valueOffset = new String(bytes, StandardCharsets.ISO_8859_1).indexOf("value1");
+    bytes[valueOffset] = 'V';
+    filesystemDirectory.delete("append.log");
+    try (FileData fileData = filesystemDirectory.create("append.log", false)) {
+      fileData.write(ByteBuffer.wrap(bytes));
+    }
+
+    loadAndFail();
+  }
+
+  @Test
+  public void convertRecordFormat() throws Exception {
+    try (SanskritImpl sanskrit = new SanskritImpl(filesystemDirectory, mapper)) {
+      sanskrit.setString("key1", "value1");
+      sanskrit.setString("key2", "value2");
+      sanskrit.compact();
+      sanskrit.setString("key3", "value3");
+      sanskrit.setString("key1", "value");
+    }
+
+    MemoryFilesystemDirectory text = filesystemDirectory;
+    String textAppendLog = getFileText("append.log");
+    MemoryFilesystemDirectory binary = new MemoryFilesystemDirectory();
+    AppendLogConverter.convert(text, binary, RecordFormat.BINARY, mapper);
+
+    filesystemDirectory = binary;
+    assertEquals(0, getFileBytes("append.log")[0]);
+    loadAndAssertState(makeMap("key1", "value", "key2", "value2", "key3", "value3"));
+
+    filesystemDirectory = new MemoryFilesystemDirectory();
+    AppendLogConverter.convert(binary, filesystemDirectory, RecordFormat.TEXT, mapper);
+    assertAppendLog(textAppendLog);
+    loadAndAssertState(makeMap("key1", "value", "key2", "value2", "key3", "value3"));
+  }
+
+  @Test(expected = SanskritException.class)
+  public void convertToNonEmptyDirectory() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper)) {
+      sanskrit.setString("key1", "value1");
+    }
+
+    MemoryFilesystemDirectory target = new MemoryFilesystemDirectory();
+    AppendLogConverter.convert(filesystemDirectory, target, RecordFormat.BINARY, mapper);
+    AppendLogConverter.convert(filesystemDirectory, target, RecordFormat.BINARY, mapper);
+  }
+
   @Test(expected = SanskritException.class)
   public void shouldBeUnusableAfterFailure() throws Exception {
     try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper)) {
@@ -559,6 +990,20 @@ public class SanskritTest {
     }
   }
 
+  private byte[] getFileBytes(String filename) throws IOException {
+    try (FileData fileData = filesystemDirectory.getFileData(filename)) {
+      ByteBuffer bytes = ByteBuffer.allocate((int) fileData.size());
+      fileData.read(bytes);
+      return bytes.array();
+    }
+  }
+
+  private void truncateFile(String filename, long size) throws IOException {
+    try (FileData fileData = filesystemDirectory.getFileData(filename)) {
+      fileData.truncate(size);
+    }
+  }
+
   private void assertNullFiles(String... filenames) throws Exception {
     for (String filename : filenames) {
       assertNull(filesystemDirectory.getFileData(filename));
@@ -0,0 +1,51 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.diagnostic.client;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Calls to a diagnostic service which are recorded, and then sent to the server in one request when executed.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * DiagnosticBatch<TopologyService> batch = diagnosticService.batch(TopologyService.class);
+ * Supplier<NodeContext> nodeContext = batch.add(TopologyService::getRuntimeNodeContext);
+ * Supplier<Boolean> mustBeRestarted = batch.add(TopologyService::mustBeRestarted);
+ * batch.execute();
+ * }</pre>
+ */
+public interface DiagnosticBatch<T> {
+
+  /**
+   * Records a call
+   *
+   * @param call a function calling one method of the service
+   * @return the result of the call, available once the batch is executed. Getting it throws the exception a call
+   * made through the {@link DiagnosticService#getProxy(Class)} proxy would have thrown, if any.
+   */
+  <R> Supplier<R> add(Function<T, R> call);
+
+  /**
+   * Sends all the calls recorded to the server in one request.
+   * <p>
+   * The calls are sent one by one if the server does not support batches. They are not sent again if the batch fails,
+   * since it may have been executed: each call then fails with the error of the batch.
+   */
+  void execute() throws DiagnosticOperationTimeoutException, DiagnosticConnectionException;
+}
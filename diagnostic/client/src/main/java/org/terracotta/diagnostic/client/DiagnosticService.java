@@ -48,6 +48,13 @@ public interface DiagnosticService extends DiagnosticMBeanSupport, Closeable {
 
   <T> T getProxy(Class<T> type) throws DiagnosticOperationTimeoutException, DiagnosticOperationExecutionException, DiagnosticConnectionException, DiagnosticOperationUnsupportedException;
 
+  /**
+   * Creates a batch of calls to a diagnostic service, which are sent to the server in one request instead of one
+   * request per call. The result of a call to a service or method which does not exist on the server throws a
+   * {@link DiagnosticOperationUnsupportedException}.
+   */
+  <T> DiagnosticBatch<T> batch(Class<T> type);
+
   @Override
   void close();
 
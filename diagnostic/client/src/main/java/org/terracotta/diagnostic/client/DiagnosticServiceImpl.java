@@ -22,7 +22,10 @@ import org.terracotta.common.struct.Version;
 import org.terracotta.connection.Connection;
 import org.terracotta.connection.Diagnostics;
 import org.terracotta.diagnostic.common.Base64DiagnosticCodec;
+import org.terracotta.diagnostic.common.DiagnosticBatchRequest;
+import org.terracotta.diagnostic.common.DiagnosticBatchResponse;
 import org.terracotta.diagnostic.common.DiagnosticCodec;
+import org.terracotta.diagnostic.common.DiagnosticException;
 import org.terracotta.diagnostic.common.DiagnosticRequest;
 import org.terracotta.diagnostic.common.DiagnosticResponse;
 import org.terracotta.diagnostic.common.EmptyParameterDiagnosticCodec;
@@ -30,10 +33,15 @@ import org.terracotta.diagnostic.model.KitInformation;
 import org.terracotta.diagnostic.model.LogicalServerState;
 import org.terracotta.exception.ConnectionClosedException;
 
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -60,6 +68,9 @@ class DiagnosticServiceImpl implements DiagnosticService {
   private final Diagnostics delegate;
   private final DiagnosticCodec<String> codec;
 
+  // false once we know the server does not support batches
+  private volatile boolean batchSupported = true;
+
   DiagnosticServiceImpl(Connection connection, Diagnostics delegate, DiagnosticCodec<?> codec) {
     this.connection = requireNonNull(connection);
     this.delegate = requireNonNull(delegate);
@@ -107,6 +118,15 @@ class DiagnosticServiceImpl implements DiagnosticService {
     }));
   }
 
+  @Override
+  public <T> DiagnosticBatch<T> batch(Class<T> type) {
+    requireNonNull(type);
+    if (!type.isInterface()) {
+      throw new IllegalArgumentException("Interface expected");
+    }
+    return new Batch<>(type);
+  }
+
   @Override
   public void close() {
     try {
@@ -253,6 +273,11 @@ class DiagnosticServiceImpl implements DiagnosticService {
     String encodedReq = codec.serialize(request);
     String encodedRes = invokeWithArg(MBEAN_DIAGNOSTIC_REQUEST_HANDLER, "request", encodedReq);
     DiagnosticResponse<T> response = codec.deserialize(encodedRes, DiagnosticResponse.class);
+    return decode(response, returnType);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T decode(DiagnosticResponse<T> response, Class<T> returnType) throws DiagnosticOperationExecutionException {
     response.getError().map(DiagnosticOperationExecutionException::new).ifPresent(e -> {
       throw e;
     });
@@ -263,6 +288,146 @@ class DiagnosticServiceImpl implements DiagnosticService {
             response.getBody());
   }
 
+  private final class Batch<T> implements DiagnosticBatch<T> {
+
+    private final Class<T> serviceType;
+    private final T recorder;
+    private final List<Call<?>> calls = new ArrayList<>();
+    private Call<?> recorded;
+
+    Batch(Class<T> serviceType) {
+      this.serviceType = serviceType;
+      this.recorder = serviceType.cast(Proxy.newProxyInstance(serviceType.getClassLoader(), new Class<?>[]{serviceType}, (proxy, method, args) -> {
+        if (method.getDeclaringClass() == Object.class || recorded != null) {
+          throw new IllegalArgumentException("A batched call must only call one method of " + serviceType.getName());
+        }
+        recorded = new Call<>(method, args == null ? new Object[0] : args);
+        return defaultValue(method.getReturnType());
+      }));
+    }
+
+    @Override
+    public <R> Supplier<R> add(Function<T, R> call) {
+      recorded = null;
+      call.apply(recorder);
+      if (recorded == null) {
+        throw new IllegalArgumentException("A batched call must call one method of " + serviceType.getName());
+      }
+      calls.add(recorded);
+      @SuppressWarnings("unchecked")
+      Supplier<R> result = (Supplier<R>) recorded;
+      recorded = null;
+      return result;
+    }
+
+    @Override
+    public void execute() throws DiagnosticOperationTimeoutException, DiagnosticConnectionException {
+      LOGGER.trace("execute({}, {})", serviceType.getName(), calls.size());
+      if (calls.isEmpty()) {
+        return;
+      }
+      if (batchSupported) {
+        List<DiagnosticRequest> requests = new ArrayList<>(calls.size());
+        for (Call<?> call : calls) {
+          requests.add(new DiagnosticRequest(serviceType, call.method.getName(), call.args));
+        }
+        try {
+          String encodedRes = invokeWithArg(MBEAN_DIAGNOSTIC_REQUEST_HANDLER, "requestBatch", codec.serialize(new DiagnosticBatchRequest(requests)));
+          List<DiagnosticResponse<?>> responses = codec.deserialize(encodedRes, DiagnosticBatchResponse.class).getResponses();
+          if (responses.size() != calls.size()) {
+            throw new DiagnosticOperationExecutionException("Expected " + calls.size() + " responses but got " + responses.size());
+          }
+          for (int i = 0; i < calls.size(); i++) {
+            calls.get(i).complete(responses.get(i));
+          }
+          return;
+        } catch (DiagnosticOperationUnsupportedException e) {
+          // the server does not support batches (older version): the calls are sent one by one
+          LOGGER.debug("Diagnostic batches are not supported: {}", e.getMessage());
+          batchSupported = false;
+        } catch (DiagnosticOperationExecutionException e) {
+          if (!isUnknownOperation(e)) {
+            // the batch may have been executed, at least partly: the calls are not sent again, and they all fail
+            LOGGER.debug("Diagnostic batch failed: {}", e.getMessage(), e);
+            for (Call<?> call : calls) {
+              call.fail(e);
+            }
+            return;
+          }
+          LOGGER.debug("Diagnostic batches are not supported: {}", e.getMessage());
+          batchSupported = false;
+        }
+      }
+      for (Call<?> call : calls) {
+        call.complete(() -> invokeEncoded(serviceType, call.method.getName(), call.method.getReturnType(), call.args));
+      }
+    }
+  }
+
+  /**
+   * The MBean of a server which does not have an operation answers with an Invalid JMX error
+   * containing the JMX message "No such operation: requestBatch".
+   */
+  private static boolean isUnknownOperation(DiagnosticOperationExecutionException e) {
+    return e.getMessage() != null && e.getMessage().contains("No such operation");
+  }
+
+  private static final class Call<R> implements Supplier<R> {
+
+    private final Method method;
+    private final Object[] args;
+    private boolean completed;
+    private R result;
+    private DiagnosticException error;
+
+    Call(Method method, Object[] args) {
+      this.method = method;
+      this.args = args;
+    }
+
+    @SuppressWarnings("unchecked")
+    void complete(DiagnosticResponse<?> response) {
+      complete(() -> {
+        if (response == null) {
+          // see DiagnosticRequestHandler#findService
+          throw new DiagnosticOperationUnsupportedException(MESSAGE_UNKNOWN_COMMAND);
+        }
+        return decode((DiagnosticResponse<Object>) response, (Class<Object>) method.getReturnType());
+      });
+    }
+
+    @SuppressWarnings("unchecked")
+    void complete(Supplier<?> result) {
+      try {
+        this.result = (R) result.get();
+      } catch (DiagnosticOperationUnsupportedException | DiagnosticOperationExecutionException e) {
+        this.error = e;
+      }
+      this.completed = true;
+    }
+
+    void fail(DiagnosticException error) {
+      this.error = error;
+      this.completed = true;
+    }
+
+    @Override
+    public R get() {
+      if (!completed) {
+        throw new IllegalStateException("Batch not executed");
+      }
+      if (error != null) {
+        throw error;
+      }
+      return result;
+    }
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    // the recorder proxy cannot return null for a primitive type: this is the zero value of the type
+    return type.isPrimitive() && type != void.class ? Array.get(Array.newInstance(type, 1), 0) : null;
+  }
+
   private String execute(Supplier<String> execution) throws DiagnosticOperationTimeoutException, DiagnosticOperationExecutionException, DiagnosticConnectionException {
     return execute(false, execution);
   }
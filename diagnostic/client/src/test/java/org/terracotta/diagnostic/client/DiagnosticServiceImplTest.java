@@ -28,6 +28,8 @@ import org.terracotta.connection.Connection;
 import org.terracotta.connection.Diagnostics;
 import org.terracotta.diagnostic.client.json.TestModule;
 import org.terracotta.diagnostic.common.Base64DiagnosticCodec;
+import org.terracotta.diagnostic.common.DiagnosticBatchRequest;
+import org.terracotta.diagnostic.common.DiagnosticBatchResponse;
 import org.terracotta.diagnostic.common.DiagnosticRequest;
 import org.terracotta.diagnostic.common.DiagnosticResponse;
 import org.terracotta.diagnostic.common.EmptyParameterDiagnosticCodec;
@@ -40,7 +42,10 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Objects;
+import java.util.function.Supplier;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.instanceOf;
@@ -52,6 +57,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -277,6 +283,127 @@ public class DiagnosticServiceImplTest {
     assertThat(javaFoodService.cook(in), is(equalTo(out)));
   }
 
+  @Test
+  public void test_batch() {
+    // parameter checking
+    {
+      assertThat(
+          () -> service.batch(null),
+          is(throwing(instanceOf(NullPointerException.class))));
+      assertThat(
+          () -> service.batch(Object.class),
+          is(throwing(instanceOf(IllegalArgumentException.class)).andMessage(is(equalTo("Interface expected")))));
+    }
+
+    DiagnosticBatch<FoodService> batch = service.batch(FoodService.class);
+
+    // a batched call must call exactly one method
+    {
+      assertThat(
+          () -> batch.add(foodService -> null),
+          is(throwing(instanceOf(IllegalArgumentException.class))));
+      assertThat(
+          () -> batch.add(foodService -> foodService.cook(foodService.cook(null))),
+          is(throwing(instanceOf(IllegalArgumentException.class))));
+    }
+
+    Beef in1 = new Beef(1, true, "AAA");
+    Beef in2 = new Beef(2, true, "AA");
+    Beef in3 = new Beef(3, true, "A");
+    Supplier<Food> cooked = batch.add(foodService -> foodService.cook(in1));
+    Supplier<Food> failed = batch.add(foodService -> foodService.cook(in2));
+    Supplier<Food> unknown = batch.add(foodService -> foodService.cook(in3));
+    assertThat(
+        cooked::get,
+        is(throwing(instanceOf(IllegalStateException.class)).andMessage(is(equalTo("Batch not executed")))));
+
+    // one request is sent with all the calls, and each call gets its result
+    when(diagnostics.invokeWithArg(eq(MBEAN_DIAGNOSTIC_REQUEST_HANDLER), eq("requestBatch"), anyString())).thenReturn(encode(new DiagnosticBatchResponse(asList(
+        new DiagnosticResponse<>(new Beef(2, false, "AA")),
+        new DiagnosticResponse<>(null, new IllegalArgumentException("error message")),
+        null))));
+    batch.execute();
+
+    verify(jsonCodec).serialize(new DiagnosticBatchRequest(asList(
+        new DiagnosticRequest(FoodService.class, "cook", in1),
+        new DiagnosticRequest(FoodService.class, "cook", in2),
+        new DiagnosticRequest(FoodService.class, "cook", in3))));
+    assertThat(json.map(cooked.get()), is(equalTo(json.map(new Beef(2, false, "AA")))));
+    assertThat(
+        failed::get,
+        is(throwing(instanceOf(DiagnosticOperationExecutionException.class)).andMessage(containsString(IllegalArgumentException.class.getName() + ": error message"))));
+    assertThat(
+        unknown::get,
+        is(throwing(instanceOf(DiagnosticOperationUnsupportedException.class)).andMessage(is(equalTo(MESSAGE_UNKNOWN_COMMAND)))));
+  }
+
+  @Test
+  public void test_batch_not_supported() {
+    // older servers without the requestBatch operation
+    for (String answer : asList(MESSAGE_UNKNOWN_COMMAND, MESSAGE_INVALID_JMX + ": No such operation: requestBatch")) {
+      reset(diagnostics);
+      DiagnosticService diagnosticService = DiagnosticServiceFactory.getDiagnosticService(connection, diagnostics, jsonCodec);
+      when(diagnostics.invokeWithArg(eq(MBEAN_DIAGNOSTIC_REQUEST_HANDLER), eq("requestBatch"), anyString())).thenReturn(answer);
+      when(diagnostics.invokeWithArg(eq(MBEAN_DIAGNOSTIC_REQUEST_HANDLER), eq("request"), anyString())).thenReturn(encode(new DiagnosticResponse<>(new Beef(2, false, "AA"))));
+
+      for (int i = 0; i < 2; i++) {
+        DiagnosticBatch<FoodService> batch = diagnosticService.batch(FoodService.class);
+        Supplier<Food> cooked = batch.add(foodService -> foodService.cook(new Beef(1, true, "AAA")));
+        batch.execute();
+        assertThat(json.map(cooked.get()), is(equalTo(json.map(new Beef(2, false, "AA")))));
+      }
+
+      // the calls are sent one by one, and no batch is sent anymore
+      verify(diagnostics, times(1)).invokeWithArg(eq(MBEAN_DIAGNOSTIC_REQUEST_HANDLER), eq("requestBatch"), anyString());
+      verify(diagnostics, times(2)).invokeWithArg(eq(MBEAN_DIAGNOSTIC_REQUEST_HANDLER), eq("request"), anyString());
+    }
+  }
+
+  @Test
+  public void test_batch_failure() {
+    when(diagnostics.invokeWithArg(eq(MBEAN_DIAGNOSTIC_REQUEST_HANDLER), eq("requestBatch"), anyString())).thenReturn(
+        MESSAGE_INVALID_JMX,
+        encode(new DiagnosticBatchResponse(singletonList(new DiagnosticResponse<>(new Beef(3, false, "A"))))));
+
+    // the calls of a failed batch may have been executed: they are not sent again, and they fail
+    DiagnosticBatch<FoodService> batch = service.batch(FoodService.class);
+    Supplier<Food> failed = batch.add(foodService -> foodService.cook(new Beef(1, true, "AAA")));
+    batch.execute();
+    assertThat(
+        failed::get,
+        is(throwing(instanceOf(DiagnosticOperationExecutionException.class)).andMessage(is(equalTo(MESSAGE_INVALID_JMX)))));
+
+    // but the next batches are still sent
+    batch = service.batch(FoodService.class);
+    Supplier<Food> cooked = batch.add(foodService -> foodService.cook(new Beef(1, true, "AAA")));
+    batch.execute();
+    assertThat(json.map(cooked.get()), is(equalTo(json.map(new Beef(3, false, "A")))));
+
+    verify(diagnostics, times(2)).invokeWithArg(eq(MBEAN_DIAGNOSTIC_REQUEST_HANDLER), eq("requestBatch"), anyString());
+    verify(diagnostics, never()).invokeWithArg(eq(MBEAN_DIAGNOSTIC_REQUEST_HANDLER), eq("request"), anyString());
+  }
+
+  @Test
+  public void test_batch_missing_responses() {
+    when(diagnostics.invokeWithArg(eq(MBEAN_DIAGNOSTIC_REQUEST_HANDLER), eq("requestBatch"), anyString())).thenReturn(encode(new DiagnosticBatchResponse(singletonList(new DiagnosticResponse<>(new Beef(3, false, "A"))))));
+
+    // the server has not answered each call, but has executed the batch: the calls are not sent again, and they fail
+    DiagnosticBatch<FoodService> batch = service.batch(FoodService.class);
+    Supplier<Food> cooked1 = batch.add(foodService -> foodService.cook(new Beef(1, true, "AAA")));
+    Supplier<Food> cooked2 = batch.add(foodService -> foodService.cook(new Beef(2, true, "AA")));
+    batch.execute();
+    for (Supplier<Food> cooked : asList(cooked1, cooked2)) {
+      assertThat(
+          cooked::get,
+          is(throwing(instanceOf(DiagnosticOperationExecutionException.class)).andMessage(is(equalTo("Expected 2 responses but got 1")))));
+    }
+    verify(diagnostics, never()).invokeWithArg(eq(MBEAN_DIAGNOSTIC_REQUEST_HANDLER), eq("request"), anyString());
+  }
+
+  private String encode(Object response) {
+    return new EmptyParameterDiagnosticCodec().around(new Base64DiagnosticCodec()).around(jsonCodec).serialize(response);
+  }
+
 
   public interface FoodService {
     Food cook(Food food);
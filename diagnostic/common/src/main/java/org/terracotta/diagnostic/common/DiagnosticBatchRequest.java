@@ -0,0 +1,71 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.diagnostic.common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Several diagnostic requests sent in one message, which are executed in order.
+ * The server answers with a {@link DiagnosticBatchResponse} containing one response per request.
+ */
+public class DiagnosticBatchRequest implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final List<DiagnosticRequest> requests;
+
+  // For Json
+  private DiagnosticBatchRequest() {
+    this(Collections.emptyList());
+  }
+
+  public DiagnosticBatchRequest(List<DiagnosticRequest> requests) {
+    this.requests = new ArrayList<>(requireNonNull(requests));
+  }
+
+  public List<DiagnosticRequest> getRequests() {
+    return Collections.unmodifiableList(requests);
+  }
+
+  public int size() {
+    return requests.size();
+  }
+
+  @Override
+  public String toString() {
+    return "DiagnosticBatchRequest{requests=" + requests + '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    DiagnosticBatchRequest that = (DiagnosticBatchRequest) o;
+    return requests.equals(that.requests);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(requests);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.diagnostic.common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The responses of a {@link DiagnosticBatchRequest}, in the order of the requests.
+ * <p>
+ * The response of a request which cannot be executed because its service or method is unknown is null.
+ */
+public class DiagnosticBatchResponse implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final List<DiagnosticResponse<?>> responses;
+
+  // For Json
+  private DiagnosticBatchResponse() {
+    this(Collections.emptyList());
+  }
+
+  public DiagnosticBatchResponse(List<DiagnosticResponse<?>> responses) {
+    this.responses = new ArrayList<>(requireNonNull(responses));
+  }
+
+  public List<DiagnosticResponse<?>> getResponses() {
+    return Collections.unmodifiableList(responses);
+  }
+
+  public int size() {
+    return responses.size();
+  }
+
+  @Override
+  public String toString() {
+    return "DiagnosticBatchResponse{responses=" + responses.size() + '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    DiagnosticBatchResponse that = (DiagnosticBatchResponse) o;
+    return responses.equals(that.responses);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(responses);
+  }
+}
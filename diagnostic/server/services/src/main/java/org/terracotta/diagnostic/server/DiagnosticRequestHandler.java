@@ -19,13 +19,18 @@ package org.terracotta.diagnostic.server;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terracotta.diagnostic.common.Base64DiagnosticCodec;
+import org.terracotta.diagnostic.common.DiagnosticBatchRequest;
+import org.terracotta.diagnostic.common.DiagnosticBatchResponse;
 import org.terracotta.diagnostic.common.DiagnosticCodec;
 import org.terracotta.diagnostic.common.DiagnosticRequest;
+import org.terracotta.diagnostic.common.DiagnosticResponse;
 import org.terracotta.diagnostic.common.EmptyParameterDiagnosticCodec;
 
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -68,13 +73,29 @@ public class DiagnosticRequestHandler extends StandardMBean implements Diagnosti
   public String request(String payload) {
     requireNonNull(payload);
     DiagnosticRequest request = codec.deserialize(payload, DiagnosticRequest.class);
-    return findService(request.getServiceInterface().getName())
-        .flatMap(diagnosticServiceDescriptor -> diagnosticServiceDescriptor.invoke(request.getMethodName(), request.getArguments()))
+    return invoke(request)
         .map(codec::serialize)
-        .orElseGet(() -> {
-          LOGGER.warn("Unable to execute diagnostic request: " + request);
-          return MESSAGE_UNKNOWN_COMMAND;
-        });
+        .orElse(MESSAGE_UNKNOWN_COMMAND);
+  }
+
+  @Override
+  public String requestBatch(String payload) {
+    requireNonNull(payload);
+    DiagnosticBatchRequest batch = codec.deserialize(payload, DiagnosticBatchRequest.class);
+    List<DiagnosticResponse<?>> responses = new ArrayList<>(batch.size());
+    for (DiagnosticRequest request : batch.getRequests()) {
+      responses.add(invoke(request).orElse(null));
+    }
+    return codec.serialize(new DiagnosticBatchResponse(responses));
+  }
+
+  private Optional<DiagnosticResponse<?>> invoke(DiagnosticRequest request) {
+    Optional<DiagnosticResponse<?>> response = findService(request.getServiceInterface().getName())
+        .flatMap(diagnosticServiceDescriptor -> diagnosticServiceDescriptor.invoke(request.getMethodName(), request.getArguments()));
+    if (!response.isPresent()) {
+      LOGGER.warn("Unable to execute diagnostic request: " + request);
+    }
+    return response;
   }
 
   <T> DiagnosticServiceDescriptor<T> add(Class<T> serviceInterface, T serviceImplementation, Runnable onClose) {
@@ -25,4 +25,12 @@ public interface DiagnosticRequestHandlerMBean {
   boolean hasServiceInterface(String serviceName);
 
   String request(String payload);
+
+  /**
+   * Executes several requests at once
+   *
+   * @param payload an encoded {@link org.terracotta.diagnostic.common.DiagnosticBatchRequest}
+   * @return an encoded {@link org.terracotta.diagnostic.common.DiagnosticBatchResponse}
+   */
+  String requestBatch(String payload);
 }
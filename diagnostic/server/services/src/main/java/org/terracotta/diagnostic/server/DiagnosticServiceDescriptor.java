@@ -21,16 +21,17 @@ import org.slf4j.LoggerFactory;
 import org.terracotta.diagnostic.common.DiagnosticResponse;
 import org.terracotta.diagnostic.server.api.DiagnosticServicesRegistration;
 import org.terracotta.diagnostic.server.api.Expose;
+import org.terracotta.reflect.MethodInvoker;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.List;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
 
@@ -45,6 +46,9 @@ final class DiagnosticServiceDescriptor<T> implements DiagnosticServicesRegistra
   private final T serviceImplementation;
   private final Set<String> mBeans = ConcurrentHashMap.newKeySet();
   private final Runnable onClose;
+  // dispatch table, built once when the service is registered
+  private final Map<String, MethodInvoker> methods = new HashMap<>();
+  private final Set<String> overloadedMethods = new HashSet<>();
 
   DiagnosticServiceDescriptor(Class<T> serviceInterface, T serviceImplementation, Runnable onClose) {
     if (!serviceInterface.isInterface()) {
@@ -53,6 +57,12 @@ final class DiagnosticServiceDescriptor<T> implements DiagnosticServicesRegistra
     this.serviceInterface = requireNonNull(serviceInterface);
     this.serviceImplementation = requireNonNull(serviceImplementation);
     this.onClose = requireNonNull(onClose);
+    for (Method method : serviceInterface.getMethods()) {
+      if (methods.putIfAbsent(method.getName(), new MethodInvoker(method)) != null) {
+        overloadedMethods.add(method.getName());
+      }
+    }
+    overloadedMethods.forEach(methods::remove);
   }
 
   @Override
@@ -93,14 +103,12 @@ final class DiagnosticServiceDescriptor<T> implements DiagnosticServicesRegistra
     return Objects.equals(serviceInterface, this.serviceInterface.getName());
   }
 
-  private Optional<Method> findMethod(String methodName) {
-    List<Method> list = Stream.of(serviceInterface.getMethods())
-        .filter(method -> method.getName().equals(methodName))
-        .collect(Collectors.toList());
-    if (list.size() > 1) {
+  private Optional<MethodInvoker> findMethod(String methodName) {
+    MethodInvoker method = methods.get(methodName);
+    if (method == null && overloadedMethods.contains(methodName)) {
       throw new AssertionError("Method overloading not yet supported: " + serviceInterface.getName());
     }
-    return list.stream().findAny();
+    return Optional.ofNullable(method);
   }
 
   Optional<String> discoverMBeanName() {
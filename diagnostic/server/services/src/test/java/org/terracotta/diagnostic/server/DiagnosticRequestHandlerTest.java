@@ -17,12 +17,15 @@
 package org.terracotta.diagnostic.server;
 
 import org.junit.Test;
+import org.terracotta.diagnostic.common.DiagnosticBatchRequest;
+import org.terracotta.diagnostic.common.DiagnosticBatchResponse;
 import org.terracotta.diagnostic.common.DiagnosticRequest;
 import org.terracotta.diagnostic.common.DiagnosticResponse;
 import org.terracotta.diagnostic.common.JsonDiagnosticCodec;
 import org.terracotta.json.DefaultJsonFactory;
 import org.terracotta.json.gson.GsonModule;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
@@ -38,7 +41,7 @@ import static org.terracotta.testing.ExceptionMatcher.throwing;
  */
 public class DiagnosticRequestHandlerTest {
 
-  private final JsonDiagnosticCodec codec = new JsonDiagnosticCodec(new DefaultJsonFactory().withModule((GsonModule) builder -> builder.allowClassLoading(MyService.class)));
+  private final JsonDiagnosticCodec codec = new JsonDiagnosticCodec(new DefaultJsonFactory().withModule((GsonModule) builder -> builder.allowClassLoading(MyService.class, MyService2.class)));
   private final DiagnosticRequestHandler handler = DiagnosticRequestHandler.withCodec(codec);
 
   private final Runnable noop = () -> {
@@ -114,6 +117,24 @@ public class DiagnosticRequestHandlerTest {
     assertThat(response.hasError(), is(false));
   }
 
+  @Test
+  public void test_requestBatch() {
+    assertThat(
+        () -> handler.requestBatch(null),
+        is(throwing(instanceOf(NullPointerException.class))));
+
+    handler.add(MyService.class, new MyService() {}, noop);
+    DiagnosticBatchRequest batch = new DiagnosticBatchRequest(asList(
+        new DiagnosticRequest(MyService.class, "hello", "you"),
+        new DiagnosticRequest(MyService2.class, "hello", "me"),
+        new DiagnosticRequest(MyService.class, "hello", "me")));
+    DiagnosticBatchResponse response = handler.getCodec().deserialize(handler.requestBatch(handler.getCodec().serialize(batch)), DiagnosticBatchResponse.class);
+    assertThat(response.size(), is(equalTo(3)));
+    assertThat(response.getResponses().get(0).getBody(), is(equalTo("Hello you!")));
+    assertThat(response.getResponses().get(1), is(nullValue()));
+    assertThat(response.getResponses().get(2).getBody(), is(equalTo("Hello me!")));
+  }
+
   public interface MyService {
     default String hello(String name) { return "Hello " + name + "!";}
   }
@@ -97,6 +97,17 @@ public class DiagnosticServiceDescriptorTest {
       assertThat(response.getBody(), is(nullValue()));
       assertThat(response.getError().get(), containsString(IllegalArgumentException.class.getName() + ": argument type mismatch"));
     }
+    // invoke with widened args
+    {
+      DiagnosticResponse<?> response = descriptor.invoke("widen", 1).get();
+      assertThat(response.hasError(), is(false));
+      assertThat(response.getBody(), is(equalTo(1L)));
+    }
+    // invoke with null primitive arg
+    {
+      DiagnosticResponse<?> response = descriptor.invoke("widen", (Object) null).get();
+      assertThat(response.getError().get(), containsString(IllegalArgumentException.class.getName()));
+    }
     // invoke error
     {
       DiagnosticResponse<?> response = descriptor.invoke("fail").get();
@@ -114,6 +125,8 @@ public class DiagnosticServiceDescriptorTest {
 
     default void withArgs(String arg) {}
 
+    default long widen(long l) { return l; }
+
     default void fail() { throw new IllegalArgumentException("failed");}
   }
 
@@ -22,6 +22,7 @@ import org.terracotta.dynamic_config.api.model.LockContext;
 import org.terracotta.dynamic_config.api.model.Node;
 import org.terracotta.dynamic_config.api.model.NodeContext;
 import org.terracotta.dynamic_config.api.service.ConfigurationConsistencyAnalyzer;
+import org.terracotta.dynamic_config.api.service.TopologyService;
 import org.terracotta.dynamic_config.cli.api.nomad.DefaultNomadManager;
 import org.terracotta.inet.HostPort;
 import org.terracotta.nomad.messages.ChangeDetails;
@@ -34,11 +35,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeSet;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static java.lang.System.lineSeparator;
@@ -98,11 +101,22 @@ public class DiagnosticAction extends RemoteAction {
     Collection<HostPort> onlineActivatedNodes = sort(configurationConsistencyAnalyzer.getOnlineNodesActivated().keySet());
     Collection<HostPort> onlineInConfigurationNodes = sort(configurationConsistencyAnalyzer.getOnlineNodesInConfiguration().keySet());
     Collection<HostPort> onlineInRepairNodes = sort(configurationConsistencyAnalyzer.getOnlineNodesInRepair().keySet());
+
+    // the flags of each online node are read in one request
+    Map<HostPort, Supplier<Boolean>> mustBeRestarted = new HashMap<>();
+    Map<HostPort, Supplier<Boolean>> hasIncompleteChange = new HashMap<>();
+    onlineNodes.forEach(hostPort -> batchTopologyService(hostPort, batch -> {
+      mustBeRestarted.put(hostPort, batch.add(TopologyService::mustBeRestarted));
+      hasIncompleteChange.put(hostPort, batch.add(TopologyService::hasIncompleteChange));
+    }));
     Collection<HostPort> nodesPendingRestart = sort(allNodes.keySet().stream()
         .map(Node.Endpoint::getHostPort)
         .filter(onlineNodes::contains)
-        .filter(this::mustBeRestarted)
+        .filter(hostPort -> mustBeRestarted.get(hostPort).get())
         .collect(toSet()));
+    Collection<HostPort> nodesWithIncompleteChange = onlineNodes.stream()
+        .filter(hostPort -> hasIncompleteChange.get(hostPort).get())
+        .collect(toSet());
 
     if ("text".equals(outputFormat)) {
       output.out(toText(
@@ -112,7 +126,8 @@ public class DiagnosticAction extends RemoteAction {
           onlineActivatedNodes,
           onlineInConfigurationNodes,
           onlineInRepairNodes,
-          nodesPendingRestart));
+          nodesPendingRestart,
+          nodesWithIncompleteChange));
     } else if ("json".equals(outputFormat)) {
       output.out(toJson(
           configurationConsistencyAnalyzer,
@@ -133,7 +148,8 @@ public class DiagnosticAction extends RemoteAction {
                         Collection<HostPort> onlineActivatedNodes,
                         Collection<HostPort> onlineInConfigurationNodes,
                         Collection<HostPort> onlineInRepairNodes,
-                        Collection<HostPort> nodesPendingRestart) {
+                        Collection<HostPort> nodesPendingRestart,
+                        Collection<HostPort> nodesWithIncompleteChange) {
 
     StringBuilder sb = new StringBuilder();
 
@@ -205,7 +221,7 @@ public class DiagnosticAction extends RemoteAction {
                 "YES" :
                 "NO")
             .append(lineSeparator());
-        sb.append(" - Node configuration change in progress: ").append(hasIncompleteChange(endpoint) ?
+        sb.append(" - Node configuration change in progress: ").append(nodesWithIncompleteChange.contains(endpoint.getHostPort()) ?
                 "YES" :
                 "NO")
             .append(lineSeparator());
@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import org.terracotta.common.struct.Measure;
 import org.terracotta.common.struct.TimeUnit;
 import org.terracotta.common.struct.Tuple2;
+import org.terracotta.diagnostic.client.DiagnosticBatch;
 import org.terracotta.diagnostic.client.DiagnosticService;
 import org.terracotta.diagnostic.client.connection.DiagnosticServiceProvider;
 import org.terracotta.diagnostic.client.connection.DiagnosticServices;
@@ -492,6 +493,17 @@ public abstract class RemoteAction implements Runnable {
     }
   }
 
+  /**
+   * Sends the calls recorded by the consumer to the topology service of a node in one request
+   */
+  protected final void batchTopologyService(HostPort hostPort, Consumer<DiagnosticBatch<TopologyService>> calls) {
+    try (DiagnosticService diagnosticService = diagnosticServiceProvider.fetchDiagnosticService(hostPort.createInetSocketAddress())) {
+      DiagnosticBatch<TopologyService> batch = diagnosticService.batch(TopologyService.class);
+      calls.accept(batch);
+      batch.execute();
+    }
+  }
+
   protected final void doWithTopologyService(Endpoint endpoint, Consumer<TopologyService> fn) {
     doWithTopologyService(endpoint.getHostPort(), fn);
   }
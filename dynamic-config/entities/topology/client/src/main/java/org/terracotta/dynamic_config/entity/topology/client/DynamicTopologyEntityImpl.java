@@ -31,15 +31,21 @@ import org.terracotta.entity.EndpointDelegate;
 import org.terracotta.entity.EntityClientEndpoint;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENTS;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_HAS_INCOMPLETE_CHANGE;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_LICENSE;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_MUST_BE_RESTARTED;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_RESYNC;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_RUNTIME_CLUSTER;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_UPCOMING_CLUSTER;
 
@@ -54,6 +60,15 @@ class DynamicTopologyEntityImpl implements DynamicTopologyEntity {
 
   private volatile Listener listener = new Listener() {};
 
+  // since V4: topology received with the events, on which the next deltas are applied in place.
+  // Only accessed by the thread delivering the messages from the server.
+  private Cluster cluster;
+  private long topologyVersion = -1;
+  // active server instance numbering the versions of the topology, which restart after a failover
+  private long topologyEpoch;
+  // events received while waiting for the whole topology requested with REQ_RESYNC, or null if not waiting
+  private List<Response> pending;
+
   public DynamicTopologyEntityImpl(EntityClientEndpoint<Message, Response> endpoint, Settings settings) {
     this.endpoint = endpoint;
     this.settings = settings == null ? new Settings() : settings;
@@ -63,34 +78,8 @@ class DynamicTopologyEntityImpl implements DynamicTopologyEntity {
       public void handleMessage(Response messageFromServer) {
         try {
           LOGGER.trace("handleMessage({})", messageFromServer);
-          switch (messageFromServer.getType()) {
-            case EVENT_NODE_ADDITION: {
-              List<Object> payload = messageFromServer.getPayload();
-              listener.onNodeAddition((Cluster) payload.get(0), (UID) payload.get(1));
-              break;
-            }
-            case EVENT_NODE_REMOVAL: {
-              List<Object> payload = messageFromServer.getPayload();
-              listener.onNodeRemoval((Cluster) payload.get(0), (UID) payload.get(1), (Node) payload.get(2));
-              break;
-            }
-            case EVENT_SETTING_CHANGED: {
-              List<Object> payload = messageFromServer.getPayload();
-              listener.onSettingChange((Cluster) payload.get(0), (Configuration) payload.get(1));
-              break;
-            }
-            case EVENT_STRIPE_ADDITION: {
-              List<Object> payload = messageFromServer.getPayload();
-              listener.onStripeAddition((Cluster) payload.get(0), (UID) payload.get(1));
-              break;
-            }
-            case EVENT_STRIPE_REMOVAL: {
-              List<Object> payload = messageFromServer.getPayload();
-              listener.onStripeRemoval((Cluster) payload.get(0), (Stripe) payload.get(1));
-              break;
-            }
-            default:
-              throw new AssertionError(messageFromServer);
+          for (Response event : receive(messageFromServer)) {
+            fire(event);
           }
         } catch (RuntimeException e) {
           LOGGER.error("Error handling message: " + messageFromServer + ": " + e.getMessage(), e);
@@ -109,6 +98,153 @@ class DynamicTopologyEntityImpl implements DynamicTopologyEntity {
     });
   }
 
+  private void fire(Response event) {
+    List<Object> payload = event.getPayload();
+    switch (event.getType()) {
+      case EVENT_NODE_ADDITION: {
+        listener.onNodeAddition((Cluster) payload.get(0), (UID) payload.get(1));
+        break;
+      }
+      case EVENT_NODE_REMOVAL: {
+        listener.onNodeRemoval((Cluster) payload.get(0), (UID) payload.get(1), (Node) payload.get(2));
+        break;
+      }
+      case EVENT_SETTING_CHANGED: {
+        listener.onSettingChange((Cluster) payload.get(0), (Configuration) payload.get(1));
+        break;
+      }
+      case EVENT_STRIPE_ADDITION: {
+        listener.onStripeAddition((Cluster) payload.get(0), (UID) payload.get(1));
+        break;
+      }
+      case EVENT_STRIPE_REMOVAL: {
+        listener.onStripeRemoval((Cluster) payload.get(0), (Stripe) payload.get(1));
+        break;
+      }
+      default:
+        throw new AssertionError(event);
+    }
+  }
+
+  /**
+   * @return the events to deliver following the reception of a message from the server, where the first element of
+   * the payload is the cluster resulting from the event
+   */
+  private List<Response> receive(Response message) {
+    long version = message.getTopologyVersion();
+    if (version < 0) {
+      // the server does not support versioned topologies: events contain the whole cluster
+      return singletonList(message);
+    }
+    if (message.getType() == REQ_RESYNC && pending == null) {
+      // a whole topology was received since the resync was requested
+      LOGGER.trace("Ignoring the topology version {}: already resynchronized with version {}", version, topologyVersion);
+      return emptyList();
+    }
+    List<Response> events = new ArrayList<>(1);
+    if (!message.isDelta()) {
+      cluster = message.getType() == REQ_RESYNC ? message.getPayload() : (Cluster) message.<List<Object>>getPayload().get(0);
+      topologyVersion = version;
+      topologyEpoch = message.getTopologyEpoch();
+      if (pending != null) {
+        // the events received while resynchronizing are delivered against the whole topology which includes them
+        List<Response> received = pending;
+        pending = null;
+        for (Response event : received) {
+          if (event.getTopologyEpoch() != topologyEpoch) {
+            // sent by the active server before a failover: the versions cannot be compared, and the topology of the
+            // new active server supersedes the changes
+            LOGGER.debug("Dropping the topology change {}: received before a failover", event);
+          } else if (event.getTopologyVersion() <= version) {
+            changes(event).forEach(change -> events.add(withCluster(change)));
+          } else {
+            events.addAll(receive(event));
+          }
+        }
+      }
+      if (message.getType() != REQ_RESYNC) {
+        changes(message).forEach(change -> events.add(withCluster(change)));
+      }
+    } else if (pending != null) {
+      pending.add(message);
+    } else {
+      List<Response> applied = cluster != null && message.getTopologyEpoch() == topologyEpoch && message.getBaseTopologyVersion() == topologyVersion ? apply(message) : null;
+      if (applied != null) {
+        topologyVersion = version;
+        events.addAll(applied);
+      } else {
+        // we have missed some changes, or the active server has changed: the server will send the whole topology, and
+        // the events received until then are kept
+        LOGGER.warn("Unable to apply the topology change {} to the topology version {} of epoch {}: requesting the whole topology", message, topologyVersion, topologyEpoch);
+        cluster = null;
+        pending = new ArrayList<>();
+        pending.add(message);
+        endpoint.message(new Message(REQ_RESYNC)).invoke();
+      }
+    }
+    return events;
+  }
+
+  /**
+   * @return the changes an event is made of: since V4, several changes can be coalesced into one event, in which case
+   * they follow the resulting cluster in its payload
+   */
+  private static List<Response> changes(Response event) {
+    if (event.getType() != EVENTS) {
+      return singletonList(event);
+    }
+    List<Object> payload = event.getPayload();
+    return payload.subList(1, payload.size()).stream().map(Response.class::cast).collect(toList());
+  }
+
+  // the listener receives a copy since the deltas are applied in place
+  private Response withCluster(Response event) {
+    List<Object> payload = new ArrayList<>(event.<List<Object>>getPayload());
+    payload.set(0, cluster.clone());
+    return new Response(event.getType(), payload);
+  }
+
+  /**
+   * @return the events to deliver once the changes of a delta are applied to the topology, each one with the topology
+   * resulting from it, or null if they cannot be applied
+   */
+  private List<Response> apply(Response delta) {
+    List<Response> events = new ArrayList<>(1);
+    for (Response change : changes(delta)) {
+      if (!applyChange(change)) {
+        return null;
+      }
+      events.add(withCluster(change));
+    }
+    return events;
+  }
+
+  private boolean applyChange(Response delta) {
+    List<Object> payload = delta.getPayload();
+    try {
+      switch (delta.getType()) {
+        case EVENT_NODE_ADDITION:
+          cluster.getStripe((UID) payload.get(2)).get().addNode((Node) payload.get(3));
+          return true;
+        case EVENT_NODE_REMOVAL:
+          return cluster.getStripe((UID) payload.get(1)).get().removeNode(((Node) payload.get(2)).getUID());
+        case EVENT_SETTING_CHANGED:
+          ((Configuration) payload.get(1)).apply(cluster);
+          return true;
+        case EVENT_STRIPE_ADDITION:
+          cluster.addStripe((Stripe) payload.get(2));
+          return true;
+        case EVENT_STRIPE_REMOVAL:
+          return cluster.removeStripe(((Stripe) payload.get(1)).getUID());
+        default:
+          throw new AssertionError(delta);
+      }
+    } catch (RuntimeException e) {
+      LOGGER.warn("Error applying topology change: " + delta + ": " + e.getMessage(), e);
+      return false;
+    }
+  }
+
   @Override
   public void close() {
     endpoint.close();
@@ -0,0 +1,235 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.dynamic_config.entity.topology.client;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.terracotta.dynamic_config.api.model.Cluster;
+import org.terracotta.dynamic_config.api.model.Configuration;
+import org.terracotta.dynamic_config.api.model.Node;
+import org.terracotta.dynamic_config.api.model.Stripe;
+import org.terracotta.dynamic_config.api.model.UID;
+import org.terracotta.dynamic_config.entity.topology.common.Codec;
+import org.terracotta.dynamic_config.entity.topology.common.Message;
+import org.terracotta.dynamic_config.entity.topology.common.Response;
+import org.terracotta.entity.EndpointDelegate;
+import org.terracotta.entity.EntityClientEndpoint;
+import org.terracotta.entity.Invocation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.terracotta.dynamic_config.api.model.Testing.N_UIDS;
+import static org.terracotta.dynamic_config.api.model.Testing.S_UIDS;
+import static org.terracotta.dynamic_config.api.model.Testing.newTestCluster;
+import static org.terracotta.dynamic_config.api.model.Testing.newTestNode;
+import static org.terracotta.dynamic_config.api.model.Testing.newTestStripe;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENTS;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_NODE_ADDITION;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_SETTING_CHANGED;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_STRIPE_ADDITION;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_STRIPE_REMOVAL;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_RESYNC;
+
+public class DynamicTopologyEntityImplTest {
+
+  @SuppressWarnings("unchecked")
+  private final EntityClientEndpoint<Message, Response> endpoint = mock(EntityClientEndpoint.class);
+  @SuppressWarnings("unchecked")
+  private final Invocation<Response> invocation = mock(Invocation.class);
+
+  // clusters received by the listener
+  private final List<Cluster> received = new ArrayList<>();
+
+  private final Stripe stripe1 = newTestStripe("stripe1", S_UIDS[1]).addNodes(newTestNode("node1", "localhost", 9410, N_UIDS[1]));
+  private final Stripe stripe2 = newTestStripe("stripe2", S_UIDS[2]).addNodes(newTestNode("node2", "localhost", 9411, N_UIDS[2]));
+  private final Stripe stripe3 = newTestStripe("stripe3", S_UIDS[3]).addNodes(newTestNode("node3", "localhost", 9412, N_UIDS[3]));
+  private final Node node4 = newTestNode("node4", "localhost", 9413, N_UIDS[4]);
+  private final Cluster cluster = newTestCluster("foo", stripe1.clone());
+
+  // the messages sent to the delegate contain copies of the model, as if they were decoded
+  private EndpointDelegate<Response> delegate;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    when(endpoint.message(any())).thenReturn(invocation);
+
+    DynamicTopologyEntityImpl entity = new DynamicTopologyEntityImpl(endpoint, null);
+    entity.setListener(new DynamicTopologyEntity.Listener() {
+      @Override
+      public void onNodeAddition(Cluster cluster, UID addedNodeUID) {
+        received.add(cluster);
+      }
+
+      @Override
+      public void onStripeAddition(Cluster cluster, UID addedStripeUID) {
+        received.add(cluster);
+      }
+
+      @Override
+      public void onStripeRemoval(Cluster cluster, Stripe removedStripe) {
+        received.add(cluster);
+      }
+
+      @Override
+      public void onSettingChange(Cluster cluster, Configuration configuration) {
+        received.add(cluster);
+      }
+    });
+
+    ArgumentCaptor<EndpointDelegate<Response>> captor = ArgumentCaptor.forClass(EndpointDelegate.class);
+    verify(endpoint).setDelegate(captor.capture());
+    delegate = captor.getValue();
+  }
+
+  @Test
+  public void test_deltas_are_applied_to_the_topology() {
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(cluster.clone(), stripe1.getUID()), Codec.V4, 1, -1));
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(null, stripe2.getUID(), stripe2.clone()), Codec.V4, 2, 1));
+    delegate.handleMessage(new Response(EVENT_SETTING_CHANGED, asList(null, Configuration.valueOf("cluster-name=bar")), Codec.V4, 3, 2));
+    delegate.handleMessage(new Response(EVENT_STRIPE_REMOVAL, asList(null, stripe1), Codec.V4, 4, 3));
+
+    assertThat(received.size(), is(4));
+    assertThat(received.get(0), is(equalTo(cluster)));
+    assertThat(received.get(1), is(equalTo(newTestCluster("foo", stripe1, stripe2))));
+    assertThat(received.get(2), is(equalTo(newTestCluster("bar", stripe1, stripe2))));
+    assertThat(received.get(3), is(equalTo(newTestCluster("bar", stripe2))));
+    // the listener receives copies of the topology the next deltas are applied to
+    assertThat(received.get(1), is(not(sameInstance(received.get(2)))));
+    verify(endpoint, never()).message(new Message(REQ_RESYNC));
+  }
+
+  @Test
+  public void test_coalesced_changes_are_delivered_one_by_one() {
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(cluster.clone(), stripe1.getUID()), Codec.V4, 1, -1));
+    delegate.handleMessage(new Response(EVENTS, asList(null,
+        new Response(EVENT_STRIPE_ADDITION, asList(null, stripe2.getUID(), stripe2.clone())),
+        new Response(EVENT_SETTING_CHANGED, asList(null, Configuration.valueOf("cluster-name=bar")))), Codec.V4, 2, 1));
+
+    assertThat(received.size(), is(3));
+    assertThat(received.get(1), is(equalTo(newTestCluster("foo", stripe1, stripe2))));
+    assertThat(received.get(2), is(equalTo(newTestCluster("bar", stripe1, stripe2))));
+    verify(endpoint, never()).message(new Message(REQ_RESYNC));
+  }
+
+  @Test
+  public void test_missed_changes_are_delivered_against_the_resync_topology() {
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(cluster.clone(), stripe1.getUID()), Codec.V4, 1, -1));
+
+    // version 2 is missed: the whole topology is requested, and the events received until then are kept
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(null, stripe3.getUID(), stripe3.clone()), Codec.V4, 3, 2));
+    delegate.handleMessage(new Response(EVENT_NODE_ADDITION, asList(null, node4.getUID(), stripe3.getUID(), node4), Codec.V4, 4, 3));
+    assertThat(received.size(), is(1));
+    verify(endpoint).message(new Message(REQ_RESYNC));
+
+    // the server has sent version 4 before handling the resync
+    Cluster resync = newTestCluster("foo", stripe1, stripe2, stripe3.clone().addNodes(node4));
+    delegate.handleMessage(new Response(REQ_RESYNC, resync.clone(), Codec.V4, 4, -1));
+    assertThat(received.size(), is(3));
+    assertThat(received.get(1), is(equalTo(resync)));
+    assertThat(received.get(2), is(equalTo(resync)));
+
+    // the next deltas apply to the resync topology
+    delegate.handleMessage(new Response(EVENT_STRIPE_REMOVAL, asList(null, stripe2), Codec.V4, 5, 4));
+    assertThat(received.size(), is(4));
+    assertThat(received.get(3), is(equalTo(newTestCluster("foo", stripe1, stripe3.clone().addNodes(node4)))));
+    verify(endpoint).message(new Message(REQ_RESYNC));
+  }
+
+  @Test
+  public void test_events_after_the_resync_topology_are_applied_to_it() {
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(cluster.clone(), stripe1.getUID()), Codec.V4, 1, -1));
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(null, stripe3.getUID(), stripe3.clone()), Codec.V4, 3, 2));
+
+    // the server handles the resync at version 3, and then fires version 4
+    Cluster resync = newTestCluster("foo", stripe1.clone(), stripe2.clone(), stripe3.clone());
+    delegate.handleMessage(new Response(EVENT_NODE_ADDITION, asList(null, node4.getUID(), stripe3.getUID(), node4), Codec.V4, 4, 3));
+    delegate.handleMessage(new Response(REQ_RESYNC, resync.clone(), Codec.V4, 3, -1));
+
+    assertThat(received.size(), is(3));
+    assertThat(received.get(1), is(equalTo(resync)));
+    assertThat(received.get(2), is(equalTo(newTestCluster("foo", stripe1, stripe2, stripe3.clone().addNodes(node4)))));
+    verify(endpoint).message(new Message(REQ_RESYNC));
+  }
+
+  @Test
+  public void test_duplicate_resync_topology_is_ignored() {
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(cluster.clone(), stripe1.getUID()), Codec.V4, 1, -1));
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(null, stripe3.getUID(), stripe3.clone()), Codec.V4, 3, 2));
+    Cluster resync = newTestCluster("foo", stripe1.clone(), stripe2.clone(), stripe3.clone());
+    delegate.handleMessage(new Response(REQ_RESYNC, resync.clone(), Codec.V4, 3, -1));
+    assertThat(received.size(), is(2));
+
+    delegate.handleMessage(new Response(REQ_RESYNC, resync.clone(), Codec.V4, 3, -1));
+    assertThat(received.size(), is(2));
+
+    delegate.handleMessage(new Response(EVENT_STRIPE_REMOVAL, asList(null, stripe3), Codec.V4, 4, 3));
+    assertThat(received.size(), is(3));
+    assertThat(received.get(2), is(equalTo(newTestCluster("foo", stripe1, stripe2))));
+    verify(endpoint).message(new Message(REQ_RESYNC));
+  }
+
+  @Test
+  public void test_changes_of_another_active_server_are_not_applied_on_the_version_of_the_previous_one() {
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(cluster.clone(), stripe1.getUID()), Codec.V4, 1, -1, 1));
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(null, stripe2.getUID(), stripe2.clone()), Codec.V4, 2, 1, 1));
+
+    // failover: the new active server has its own versions, where version 2 is a topology without stripe 2
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(null, stripe3.getUID(), stripe3.clone()), Codec.V4, 3, 2, 2));
+    assertThat(received.size(), is(2));
+    verify(endpoint).message(new Message(REQ_RESYNC));
+
+    Cluster resync = newTestCluster("foo", stripe1.clone(), stripe3.clone());
+    delegate.handleMessage(new Response(REQ_RESYNC, resync.clone(), Codec.V4, 3, -1, 2));
+    assertThat(received.size(), is(3));
+    assertThat(received.get(2), is(equalTo(resync)));
+
+    delegate.handleMessage(new Response(EVENT_STRIPE_REMOVAL, asList(null, stripe3), Codec.V4, 4, 3, 2));
+    assertThat(received.size(), is(4));
+    assertThat(received.get(3), is(equalTo(newTestCluster("foo", stripe1))));
+  }
+
+  @Test
+  public void test_pending_changes_are_dropped_when_the_topology_of_another_active_server_is_received() {
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(cluster.clone(), stripe1.getUID()), Codec.V4, 1, -1, 1));
+    delegate.handleMessage(new Response(EVENT_STRIPE_ADDITION, asList(null, stripe3.getUID(), stripe3.clone()), Codec.V4, 3, 2, 1));
+    verify(endpoint).message(new Message(REQ_RESYNC));
+
+    // failover: the resync is handled by the new active server, which has its own versions
+    Cluster resync = newTestCluster("foo", stripe1.clone(), stripe2.clone(), stripe3.clone());
+    delegate.handleMessage(new Response(REQ_RESYNC, resync.clone(), Codec.V4, 1, -1, 2));
+    assertThat(received.size(), is(1));
+
+    delegate.handleMessage(new Response(EVENT_STRIPE_REMOVAL, asList(null, stripe2), Codec.V4, 2, 1, 2));
+    assertThat(received.size(), is(2));
+    assertThat(received.get(1), is(equalTo(newTestCluster("foo", stripe1, stripe3))));
+    verify(endpoint).message(new Message(REQ_RESYNC));
+  }
+}
@@ -22,20 +22,31 @@ import org.terracotta.dynamic_config.api.model.Cluster;
 import org.terracotta.dynamic_config.api.model.Configuration;
 import org.terracotta.dynamic_config.api.model.License;
 import org.terracotta.dynamic_config.api.model.Node;
+import org.terracotta.dynamic_config.api.model.PropertyHolder;
+import org.terracotta.dynamic_config.api.model.Requirement;
+import org.terracotta.dynamic_config.api.model.Scope;
+import org.terracotta.dynamic_config.api.model.Setting;
 import org.terracotta.dynamic_config.api.model.Stripe;
 import org.terracotta.dynamic_config.api.model.UID;
+import org.terracotta.dynamic_config.api.model.Version;
 import org.terracotta.dynamic_config.api.service.ClusterFactory;
 import org.terracotta.dynamic_config.api.service.Props;
 import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.MessageCodecException;
 import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.decoding.ArrayDecoder;
 import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.encoding.ArrayEncoder;
+import org.terracotta.runnel.encoding.StructArrayEncoder;
 import org.terracotta.runnel.encoding.StructEncoder;
 
 import java.nio.ByteBuffer;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -44,6 +55,7 @@ import java.util.Properties;
 import static java.util.Arrays.asList;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.IntStream.rangeClosed;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENTS;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_NODE_ADDITION;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_NODE_REMOVAL;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_SETTING_CHANGED;
@@ -52,6 +64,7 @@ import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_ST
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_HAS_INCOMPLETE_CHANGE;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_LICENSE;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_MUST_BE_RESTARTED;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_RESYNC;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_RUNTIME_CLUSTER;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_UPCOMING_CLUSTER;
 import static org.terracotta.runnel.EnumMappingBuilder.newEnumMappingBuilder;
@@ -66,6 +79,62 @@ public class Codec implements MessageCodec<Message, Response> {
 
   private static final DateTimeFormatter DT_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd", Locale.ENGLISH);
 
+  /**
+   * Version of the clients which are not sending their protocol version: clusters, stripes and nodes are encoded as property texts
+   */
+  public static final int V2 = 2;
+
+  /**
+   * Clusters, stripes and nodes are encoded as structures of settings
+   */
+  public static final int V3 = 3;
+
+  /**
+   * The topology is versioned: events only carry the change made to the topology of the client, unless it has to be
+   * sent in full (snapshot) because the server does not know the version the client has
+   */
+  public static final int V4 = 4;
+
+  public static final int CURRENT_VERSION = V4;
+
+  // since V3: settings of a cluster, stripe or node, as they would be written (not expanded) in a config file
+  private static final Struct SETTINGS = newStructBuilder()
+      .string("name", 10)
+      .string("value", 20)
+      .build();
+
+  private static final Struct NODE = newStructBuilder()
+      .structs("settings", 10, SETTINGS)
+      .build();
+
+  private static final Struct STRIPE = newStructBuilder()
+      .structs("settings", 10, SETTINGS)
+      .structs("nodes", 20, NODE)
+      .build();
+
+  // since V3: the settings sent for a cluster, stripe or node, by name: the ones exported in a config file, and the
+  // hidden ones
+  private static final Map<Scope, Map<String, Setting>> SETTINGS_BY_SCOPE = new EnumMap<>(Scope.class);
+
+  static {
+    for (Scope scope : Scope.values()) {
+      Map<String, Setting> settings = new LinkedHashMap<>();
+      for (Setting setting : Setting.values()) {
+        if (Version.CURRENT.amongst(setting.getVersions())
+            && (setting.isUserExportable() || setting.requires(Requirement.HIDDEN))
+            && setting.isScope(scope)) {
+          settings.put(setting.toString(), setting);
+        }
+      }
+      SETTINGS_BY_SCOPE.put(scope, settings);
+    }
+  }
+
+  private static final Struct CLUSTER = newStructBuilder()
+      .structs("settings", 10, SETTINGS)
+      .structs("stripes", 20, STRIPE)
+      .build();
+
   private final Struct struct = newStructBuilder()
       .enm("type", 10, newEnumMappingBuilder(Type.class)
           .mapping(REQ_LICENSE, 1)
@@ -78,6 +147,8 @@ public class Codec implements MessageCodec<Message, Response> {
           .mapping(EVENT_SETTING_CHANGED, 8)
           .mapping(EVENT_STRIPE_ADDITION, 9)
           .mapping(EVENT_STRIPE_REMOVAL, 10)
+          .mapping(REQ_RESYNC, 11)
+          .mapping(EVENTS, 12)
           .build())
       .struct(REQ_LICENSE.name(), 20, newStructBuilder()
           .string("date", 10)
@@ -92,33 +163,51 @@ public class Codec implements MessageCodec<Message, Response> {
           .build())
       .bool(REQ_HAS_INCOMPLETE_CHANGE.name(), 30)
       .bool(REQ_MUST_BE_RESTARTED.name(), 40)
-      .string(REQ_RUNTIME_CLUSTER.name(), 50)
-      .string(REQ_UPCOMING_CLUSTER.name(), 60)
+      .string(REQ_RUNTIME_CLUSTER.name(), 50) // V2 (deprecated)
+      .string(REQ_UPCOMING_CLUSTER.name(), 60) // V2 (deprecated)
       .struct(EVENT_NODE_ADDITION.name(), 70, newStructBuilder()
-          .string("stripeUID", 10) // V1 (deprecated)
+          .string("stripeUID", 10) // V1 (deprecated), since V4 in deltas
           .string("node", 20)  // V1 (deprecated)
           .string("nodeUID", 30) // since V2
-          .string("cluster", 40) // since V2
+          .string("cluster", 40) // V2 (deprecated)
+          .struct("clusterV3", 50, CLUSTER) // since V3
+          .struct("nodeV4", 60, NODE) // since V4 in deltas
           .build())
       .struct(EVENT_NODE_REMOVAL.name(), 80, newStructBuilder()
           .string("stripeUID", 10)
-          .string("node", 20)
-          .string("cluster", 30) // since V2
+          .string("node", 20) // V2 (deprecated)
+          .string("cluster", 30) // V2 (deprecated)
+          .struct("nodeV3", 40, NODE) // since V3
+          .struct("clusterV3", 50, CLUSTER) // since V3
           .build())
       .struct(EVENT_SETTING_CHANGED.name(), 90, newStructBuilder()
           .string("configuration", 10)
-          .string("cluster", 20)
+          .string("cluster", 20) // V2 (deprecated)
+          .struct("clusterV3", 30, CLUSTER) // since V3
           .build())
       .string(EVENT_STRIPE_ADDITION.name(), 100) // V1 (deprecated)
       .string(EVENT_STRIPE_REMOVAL.name(), 110) // V1 (deprecated)
       .struct("EVENT_STRIPE_ADDITION_V2", 120, newStructBuilder()  // since V2
           .string("stripeUID", 10)
-          .string("cluster", 20)
+          .string("cluster", 20) // V2 (deprecated)
+          .struct("clusterV3", 30, CLUSTER) // since V3
+          .struct("stripeV4", 40, STRIPE) // since V4 in deltas
           .build())
       .struct("EVENT_STRIPE_REMOVAL_V2", 130, newStructBuilder()  // since V2
-          .string("stripe", 10)
-          .string("cluster", 20)
+          .string("stripe", 10) // V2 (deprecated)
+          .string("cluster", 20) // V2 (deprecated)
+          .struct("stripeV3", 30, STRIPE) // since V3
+          .struct("clusterV3", 40, CLUSTER) // since V3
           .build())
+      .int32("version", 140) // since V3: protocol version of the client sending a message
+      .struct("REQ_RUNTIME_CLUSTER_V3", 150, CLUSTER) // since V3
+      .struct("REQ_UPCOMING_CLUSTER_V3", 160, CLUSTER) // since V3
+      .int64("topologyVersion", 170) // since V4: version of the topology once an event is applied
+      .int64("baseTopologyVersion", 180) // since V4: version of the topology a delta event applies to
+      .int64("topologyEpoch", 185) // since V4: identifier of the active server instance numbering the versions
+      .struct(REQ_RESYNC.name(), 190, CLUSTER) // since V4: whole topology sent to a client which cannot apply a delta
+      .byteBuffers(EVENTS.name(), 200) // since V4: changes coalesced into one event, each encoded as a delta
+      .struct("EVENTS_CLUSTER", 210, CLUSTER) // since V4: topology resulting from the changes, when sent in full
       .build();
 
   @Override
@@ -127,6 +216,7 @@ public class Codec implements MessageCodec<Message, Response> {
     try {
       return struct.encoder()
           .enm("type", message.getType())
+          .int32("version", message.getVersion())
           .encode()
           .array();
     } catch (RuntimeException e) {
@@ -137,7 +227,10 @@ public class Codec implements MessageCodec<Message, Response> {
   @Override
   public Message decodeMessage(byte[] bytes) throws MessageCodecException {
     try {
-      final Message message = new Message(struct.decoder(ByteBuffer.wrap(bytes)).<Type>enm("type").get());
+      StructDecoder<Void> decoder = struct.decoder(ByteBuffer.wrap(bytes));
+      Type type = decoder.<Type>enm("type").get();
+      Integer version = decoder.int32("version");
+      final Message message = new Message(type, version == null ? V2 : version);
       LOGGER.trace("decodeMessage(): {}", message);
       return message;
     } catch (RuntimeException e) {
@@ -148,96 +241,193 @@ public class Codec implements MessageCodec<Message, Response> {
   @Override
   public byte[] encodeResponse(Response response) throws MessageCodecException {
     LOGGER.trace("encodeResponse({})", response);
+    byte[] encoded = response.getEncoded(this);
+    if (encoded != null) {
+      // the encoded bytes are shared by all the recipients of the response: they must not be modified
+      return encoded;
+    }
     try {
       Type type = response.getType();
-      StructEncoder<Void> encoder = struct.encoder();
-      encoder.enm("type", type);
-      switch (type) {
-        case REQ_LICENSE: {
-          License license = response.getPayload();
-          if (license != null) {
-            encoder.struct(type.name())
-                .string("date", license.getExpiryDate().format(DT_FORMATTER))
-                .structs("limits", license.getCapabilities().entrySet(), (entryEncoder, entry) -> entryEncoder
-                    .string("name", entry.getKey())
-                    .int64("value", entry.getValue()))
-                .structs("flags", license.getFlags().entrySet(), (entryEncoder, entry) -> entryEncoder
-                    .string("name", entry.getKey())
-                    .bool("value", entry.getValue()));
-          }
-          break;
+      // since V4: the cluster is not sent in a delta event, but the changed element is
+      boolean delta = response.isDelta();
+      StructEncoder<Void> encoder = encoder(response, delta);
+      if (response.getTopologyVersion() >= 0) {
+        encoder.int64("topologyVersion", response.getTopologyVersion());
+        if (delta) {
+          encoder.int64("baseTopologyVersion", response.getBaseTopologyVersion());
         }
-        case REQ_HAS_INCOMPLETE_CHANGE:
-        case REQ_MUST_BE_RESTARTED: {
-          encoder.bool(type.name(), response.getPayload());
-          break;
+        encoder.int64("topologyEpoch", response.getTopologyEpoch());
+      }
+      if (type == REQ_RESYNC && response.getPayload() != null) {
+        encoder.struct(type.name(), response.<Cluster>getPayload(), Codec::encodeCluster);
+      }
+      if (type == EVENTS) {
+        List<Object> payload = response.getPayload();
+        ArrayEncoder<ByteBuffer, StructEncoder<Void>> changes = encoder.byteBuffers(type.name());
+        for (Object o : payload.subList(1, payload.size())) {
+          Response change = (Response) o;
+          changes.value(ByteBuffer.wrap(encoder(new Response(change.getType(), change.getPayload(), V4), true).encode().array()));
         }
-        case REQ_RUNTIME_CLUSTER:
-        case REQ_UPCOMING_CLUSTER: {
+        changes.end();
+        if (!delta) {
+          encoder.struct("EVENTS_CLUSTER", (Cluster) payload.get(0), Codec::encodeCluster);
+        }
+      }
+      encoded = encoder.encode().array();
+      response.setEncoded(this, encoded);
+      return encoded;
+    } catch (RuntimeException e) {
+      LOGGER.error("encodeResponse({}): {}", response, e.getMessage(), e);
+      throw new MessageCodecException(e.getMessage(), e);
+    }
+  }
+
+  private StructEncoder<Void> encoder(Response response, boolean delta) {
+    Type type = response.getType();
+    boolean v3 = response.getVersion() >= V3;
+    StructEncoder<Void> encoder = struct.encoder();
+    encoder.enm("type", type);
+    switch (type) {
+      case REQ_LICENSE: {
+        License license = response.getPayload();
+        if (license != null) {
+          encoder.struct(type.name())
+              .string("date", license.getExpiryDate().format(DT_FORMATTER))
+              .structs("limits", license.getCapabilities().entrySet(), (entryEncoder, entry) -> entryEncoder
+                  .string("name", entry.getKey())
+                  .int64("value", entry.getValue()))
+              .structs("flags", license.getFlags().entrySet(), (entryEncoder, entry) -> entryEncoder
+                  .string("name", entry.getKey())
+                  .bool("value", entry.getValue()));
+        }
+        break;
+      }
+      case REQ_HAS_INCOMPLETE_CHANGE:
+      case REQ_MUST_BE_RESTARTED: {
+        encoder.bool(type.name(), response.getPayload());
+        break;
+      }
+      case REQ_RESYNC:
+      case EVENTS: {
+        // the topology and the changes are encoded after the version
+        break;
+      }
+      case REQ_RUNTIME_CLUSTER:
+      case REQ_UPCOMING_CLUSTER: {
+        if (v3) {
+          encoder.struct(type.name() + "_V3", response.<Cluster>getPayload(), Codec::encodeCluster);
+        } else {
           encoder.string(type.name(), encodeCluster(response.getPayload()));
-          break;
         }
-        case EVENT_NODE_ADDITION: {
-          List<Object> oo = response.getPayload();
-          Cluster cluster = (Cluster) oo.get(0);
-          UID addedNodeUID = (UID) oo.get(1);
+        break;
+      }
+      case EVENT_NODE_ADDITION: {
+        List<Object> oo = response.getPayload();
+        Cluster cluster = (Cluster) oo.get(0);
+        UID addedNodeUID = (UID) oo.get(1);
+        if (delta) {
+          encoder.struct(type.name())
+              .string("stripeUID", cluster.getStripeByNode(addedNodeUID).get().getUID().toString())
+              .string("nodeUID", addedNodeUID.toString())
+              .struct("nodeV4", cluster.getNode(addedNodeUID).get(), Codec::encodeNode);
+        } else if (v3) {
+          encoder.struct(type.name())
+              .string("nodeUID", addedNodeUID.toString())
+              .struct("clusterV3", cluster, Codec::encodeCluster);
+        } else {
           encoder.struct(type.name())
               .string("stripeUID", cluster.getStripeByNode(addedNodeUID).get().getUID().toString()) // V1 (deprecated)
               .string("node", encodeNode(cluster.getNode(addedNodeUID).get())) // V1 (deprecated)
               .string("nodeUID", addedNodeUID.toString()) // since V2
               .string("cluster", encodeCluster(cluster)); // since V2
-          break;
         }
-        case EVENT_NODE_REMOVAL: {
-          List<Object> oo = response.getPayload();
-          Cluster cluster = (Cluster) oo.get(0);
-          UID stripeUID = (UID) oo.get(1);
-          Node node = (Node) oo.get(2);
+        break;
+      }
+      case EVENT_NODE_REMOVAL: {
+        List<Object> oo = response.getPayload();
+        Cluster cluster = (Cluster) oo.get(0);
+        UID stripeUID = (UID) oo.get(1);
+        Node node = (Node) oo.get(2);
+        if (delta) {
+          encoder.struct(type.name())
+              .string("stripeUID", stripeUID.toString())
+              .struct("nodeV3", node, Codec::encodeNode);
+        } else if (v3) {
+          encoder.struct(type.name())
+              .string("stripeUID", stripeUID.toString())
+              .struct("nodeV3", node, Codec::encodeNode)
+              .struct("clusterV3", cluster, Codec::encodeCluster);
+        } else {
           encoder.struct(type.name())
               .string("stripeUID", stripeUID.toString())
               .string("node", encodeNode(node))
               .string("cluster", encodeCluster(cluster)); // since V2
-          break;
         }
-        case EVENT_SETTING_CHANGED: {
-          List<Object> oo = response.getPayload();
+        break;
+      }
+      case EVENT_SETTING_CHANGED: {
+        List<Object> oo = response.getPayload();
+        if (delta) {
+          encoder.struct(type.name())
+              .string("configuration", encodeConfiguration((Configuration) oo.get(1)));
+        } else if (v3) {
+          encoder.struct(type.name())
+              .string("configuration", encodeConfiguration((Configuration) oo.get(1)))
+              .struct("clusterV3", (Cluster) oo.get(0), Codec::encodeCluster);
+        } else {
           encoder.struct(type.name())
               .string("configuration", encodeConfiguration((Configuration) oo.get(1)))
               .string("cluster", encodeCluster((Cluster) oo.get(0)));
-          break;
         }
-        case EVENT_STRIPE_ADDITION: {
-          List<Object> oo = response.getPayload();
-          Cluster cluster = (Cluster) oo.get(0);
-          UID stripeUID = (UID) oo.get(1);
+        break;
+      }
+      case EVENT_STRIPE_ADDITION: {
+        List<Object> oo = response.getPayload();
+        Cluster cluster = (Cluster) oo.get(0);
+        UID stripeUID = (UID) oo.get(1);
+        if (delta) {
+          encoder.struct("EVENT_STRIPE_ADDITION_V2")
+              .string("stripeUID", stripeUID.toString())
+              .struct("stripeV4", cluster.getStripe(stripeUID).get(), Codec::encodeStripe);
+        } else if (v3) {
+          encoder.struct("EVENT_STRIPE_ADDITION_V2")
+              .string("stripeUID", stripeUID.toString())
+              .struct("clusterV3", cluster, Codec::encodeCluster);
+        } else {
           // V1 (deprecated)
           encoder.string(type.name(), encodeStripe(cluster.getStripe(stripeUID).get()));
           // since V2
           encoder.struct("EVENT_STRIPE_ADDITION_V2")
               .string("stripeUID", stripeUID.toString())
               .string("cluster", encodeCluster(cluster));
-          break;
         }
-        case EVENT_STRIPE_REMOVAL: {
-          List<Object> oo = response.getPayload();
-          Cluster cluster = (Cluster) oo.get(0);
-          Stripe stripe = (Stripe) oo.get(1);
+        break;
+      }
+      case EVENT_STRIPE_REMOVAL: {
+        List<Object> oo = response.getPayload();
+        Cluster cluster = (Cluster) oo.get(0);
+        Stripe stripe = (Stripe) oo.get(1);
+        if (delta) {
+          encoder.struct("EVENT_STRIPE_REMOVAL_V2")
+              .struct("stripeV3", stripe, Codec::encodeStripe);
+        } else if (v3) {
+          encoder.struct("EVENT_STRIPE_REMOVAL_V2")
+              .struct("stripeV3", stripe, Codec::encodeStripe)
+              .struct("clusterV3", cluster, Codec::encodeCluster);
+        } else {
           // V1 (deprecated)
           encoder.string(type.name(), encodeStripe(stripe));
           // since V2
           encoder.struct("EVENT_STRIPE_REMOVAL_V2")
               .string("stripe", encodeStripe(stripe))
               .string("cluster", encodeCluster(cluster));
-          break;
         }
-        default:
-          throw new UnsupportedOperationException(type.name());
+        break;
       }
-      return encoder.encode().array();
-    } catch (RuntimeException e) {
-      LOGGER.error("encodeResponse({}): {}", response, e.getMessage(), e);
-      throw new MessageCodecException(e.getMessage(), e);
+      default:
+        throw new UnsupportedOperationException(type.name());
     }
+    return encoder;
   }
 
   @Override
@@ -263,43 +453,115 @@ public class Codec implements MessageCodec<Message, Response> {
         case REQ_HAS_INCOMPLETE_CHANGE:
         case REQ_MUST_BE_RESTARTED:
           return new Response(type, decoder.bool(type.name()));
+        case REQ_RESYNC: {
+          // since V4: the whole topology and its version
+          Long topologyVersion = decoder.int64("topologyVersion");
+          long topologyEpoch = epoch(decoder);
+          StructDecoder<?> cluster = decoder.struct(type.name());
+          return cluster == null ? new Response(type, null) : new Response(type, decodeCluster(cluster), V4, topologyVersion, -1, topologyEpoch);
+        }
+        case EVENTS: {
+          // since V4: the changes coalesced into one event, after the resulting cluster, which is null in a delta
+          long topologyVersion = decoder.int64("topologyVersion");
+          Long baseTopologyVersion = decoder.int64("baseTopologyVersion");
+          long topologyEpoch = epoch(decoder);
+          List<Object> payload = new ArrayList<>();
+          payload.add(null);
+          ArrayDecoder<ByteBuffer, StructDecoder<Void>> changes = decoder.byteBuffers(type.name());
+          for (int i = 0; i < changes.length(); i++) {
+            ByteBuffer change = changes.value();
+            byte[] encoded = new byte[change.remaining()];
+            change.get(encoded);
+            payload.add(decodeResponse(encoded));
+          }
+          changes.end();
+          StructDecoder<?> cluster = decoder.struct("EVENTS_CLUSTER");
+          if (cluster != null) {
+            payload.set(0, decodeCluster(cluster));
+          }
+          return new Response(type, payload, V4, topologyVersion, baseTopologyVersion == null ? -1 : baseTopologyVersion, topologyEpoch);
+        }
         case REQ_RUNTIME_CLUSTER:
-        case REQ_UPCOMING_CLUSTER:
-          return new Response(type, decodeCluster(decoder.string(type.name())));
+        case REQ_UPCOMING_CLUSTER: {
+          String cluster = decoder.string(type.name());
+          if (cluster != null) {
+            return new Response(type, decodeCluster(cluster));
+          }
+          // since V3
+          return new Response(type, decodeCluster(decoder.struct(type.name() + "_V3")), V3);
+        }
         case EVENT_NODE_ADDITION: {
           // since V2
           StructDecoder<?> event = decoder.struct(type.name());
+          String stripeUID = event.string("stripeUID");
           UID nodeUID = UID.valueOf(event.string("nodeUID"));
-          Cluster cluster = decodeCluster(event.string("cluster"));
-          return new Response(type, asList(cluster, nodeUID));
+          String cluster = event.string("cluster");
+          if (cluster != null) {
+            return new Response(type, asList(decodeCluster(cluster), nodeUID));
+          }
+          // since V3
+          StructDecoder<?> clusterV3 = event.struct("clusterV3");
+          if (clusterV3 != null) {
+            return event(decoder, type, asList(decodeCluster(clusterV3), nodeUID));
+          }
+          // since V4: delta
+          Node node = decodeNode(event.struct("nodeV4"));
+          return event(decoder, type, asList(null, nodeUID, UID.valueOf(stripeUID), node));
         }
         case EVENT_NODE_REMOVAL: {
           // since V2
           StructDecoder<?> event = decoder.struct(type.name());
           UID stripeUID = UID.valueOf(event.string("stripeUID"));
-          Node removedNode = decodeNode(event.string("node"));
-          Cluster cluster = decodeCluster(event.string("cluster"));
-          return new Response(type, asList(cluster, stripeUID, removedNode));
+          String removedNode = event.string("node");
+          String cluster = event.string("cluster");
+          if (cluster != null) {
+            return new Response(type, asList(decodeCluster(cluster), stripeUID, decodeNode(removedNode)));
+          }
+          // since V3
+          Node node = decodeNode(event.struct("nodeV3"));
+          StructDecoder<?> clusterV3 = event.struct("clusterV3");
+          return event(decoder, type, asList(clusterV3 == null ? null : decodeCluster(clusterV3), stripeUID, node));
         }
         case EVENT_SETTING_CHANGED: {
           StructDecoder<?> event = decoder.struct(type.name());
           final String configuration = event.string("configuration");
           final String cluster = event.string("cluster");
-          return new Response(type, asList(decodeCluster(cluster), decodeConfiguration(configuration)));
+          if (cluster != null) {
+            return new Response(type, asList(decodeCluster(cluster), decodeConfiguration(configuration)));
+          }
+          // since V3
+          StructDecoder<?> clusterV3 = event.struct("clusterV3");
+          return event(decoder, type, asList(clusterV3 == null ? null : decodeCluster(clusterV3), decodeConfiguration(configuration)));
         }
         case EVENT_STRIPE_ADDITION: {
           // since V2
           StructDecoder<?> event = decoder.struct("EVENT_STRIPE_ADDITION_V2");
           UID stripeUID = UID.valueOf(event.string("stripeUID"));
-          Cluster cluster = decodeCluster(event.string("cluster"));
-          return new Response(type, asList(cluster, stripeUID));
+          String cluster = event.string("cluster");
+          if (cluster != null) {
+            return new Response(type, asList(decodeCluster(cluster), stripeUID));
+          }
+          // since V3
+          StructDecoder<?> clusterV3 = event.struct("clusterV3");
+          if (clusterV3 != null) {
+            return event(decoder, type, asList(decodeCluster(clusterV3), stripeUID));
+          }
+          // since V4: delta
+          Stripe stripe = decodeStripe(event.struct("stripeV4"));
+          return event(decoder, type, asList(null, stripeUID, stripe));
         }
         case EVENT_STRIPE_REMOVAL:
           // since V2
           StructDecoder<?> event = decoder.struct("EVENT_STRIPE_REMOVAL_V2");
-          Stripe stripe = decodeStripe(event.string("stripe"));
-          Cluster cluster = decodeCluster(event.string("cluster"));
-          return new Response(type, asList(cluster, stripe));
+          String stripe = event.string("stripe");
+          String cluster = event.string("cluster");
+          if (cluster != null) {
+            return new Response(type, asList(decodeCluster(cluster), decodeStripe(stripe)));
+          }
+          // since V3
+          Stripe removedStripe = decodeStripe(event.struct("stripeV3"));
+          StructDecoder<?> clusterV3 = event.struct("clusterV3");
+          return event(decoder, type, asList(clusterV3 == null ? null : decodeCluster(clusterV3), removedStripe));
         default:
           throw new UnsupportedOperationException(type.name());
       }
@@ -309,6 +571,27 @@ public class Codec implements MessageCodec<Message, Response> {
     }
   }
 
+  /**
+   * Decodes the topology versions of an event encoded in V3 or later.
+   * <p>
+   * The cluster of a delta event (since V4) is null, and the elements required to apply the change are
+   * appended to the payload: the stripe UID and the node for a node addition, the stripe for a stripe addition.
+   */
+  private static Response event(StructDecoder<Void> decoder, Type type, List<Object> payload) {
+    Long topologyVersion = decoder.int64("topologyVersion");
+    if (topologyVersion == null) {
+      return new Response(type, payload, V3);
+    }
+    // since V4
+    Long baseTopologyVersion = decoder.int64("baseTopologyVersion");
+    return new Response(type, payload, V4, topologyVersion, baseTopologyVersion == null ? -1 : baseTopologyVersion, epoch(decoder));
+  }
+
+  private static long epoch(StructDecoder<Void> decoder) {
+    Long topologyEpoch = decoder.int64("topologyEpoch");
+    return topologyEpoch == null ? 0 : topologyEpoch;
+  }
+
   // the encode / decode methods below re-uses the inner mapping mechanism we have
 
   private String encodeCluster(Cluster cluster) {
@@ -329,7 +612,10 @@ public class Codec implements MessageCodec<Message, Response> {
 
   private Node decodeNode(String payload) {
     requireNonNull(payload);
-    Properties properties = Props.load(payload);
+    return decodeNode(Props.load(payload));
+  }
+
+  private Node decodeNode(Properties properties) {
     Node node = new Node();
     Cluster cluster = new Cluster(new Stripe().addNode(node));
     properties.stringPropertyNames().forEach(key -> Configuration.valueOf("stripe.1.node.1." + key, properties.getProperty(key)).apply(cluster));
@@ -345,7 +631,10 @@ public class Codec implements MessageCodec<Message, Response> {
 
   private Stripe decodeStripe(String payload) {
     requireNonNull(payload);
-    final Properties properties = Props.load(payload);
+    return decodeStripe(Props.load(payload));
+  }
+
+  private Stripe decodeStripe(Properties properties) {
     final int count = Integer.parseInt(properties.remove("nodes").toString());
     final Stripe stripe = new Stripe();
     final Cluster cluster = new Cluster(stripe);
@@ -354,6 +643,69 @@ public class Codec implements MessageCodec<Message, Response> {
     return stripe;
   }
 
+  // structural encoding since V3: the settings are read from and written to the model directly, without generating
+  // and parsing a properties text, and each value is validated by its setting when it is set
+
+  private static void encodeCluster(StructEncoder<?> encoder, Cluster cluster) {
+    encodeSettings(encoder, cluster);
+    encoder.structs("stripes", cluster.getStripes(), Codec::encodeStripe);
+  }
+
+  private static void encodeStripe(StructEncoder<?> encoder, Stripe stripe) {
+    encodeSettings(encoder, stripe);
+    encoder.structs("nodes", stripe.getNodes(), Codec::encodeNode);
+  }
+
+  private static void encodeNode(StructEncoder<?> encoder, Node node) {
+    encodeSettings(encoder, node);
+  }
+
+  private static void encodeSettings(StructEncoder<?> encoder, PropertyHolder o) {
+    StructArrayEncoder<? extends StructEncoder<?>> settings = encoder.structs("settings");
+    for (Setting setting : SETTINGS_BY_SCOPE.get(o.getScope()).values()) {
+      setting.getProperty(o).ifPresent(value -> settings.add()
+          .string("name", setting.toString())
+          .string("value", value)
+          .end());
+    }
+    settings.end();
+  }
+
+  private static Cluster decodeCluster(StructDecoder<?> decoder) {
+    requireNonNull(decoder);
+    Cluster cluster = new Cluster();
+    decodeSettings(decoder, cluster);
+    decoder.structs("stripes").forEachRemaining(stripe -> cluster.addStripe(decodeStripe(stripe)));
+    return cluster;
+  }
+
+  private static Stripe decodeStripe(StructDecoder<?> decoder) {
+    requireNonNull(decoder);
+    Stripe stripe = new Stripe();
+    decodeSettings(decoder, stripe);
+    decoder.structs("nodes").forEachRemaining(node -> stripe.addNode(decodeNode(node)));
+    return stripe;
+  }
+
+  private static Node decodeNode(StructDecoder<?> decoder) {
+    requireNonNull(decoder);
+    Node node = new Node();
+    decodeSettings(decoder, node);
+    return node;
+  }
+
+  private static void decodeSettings(StructDecoder<?> decoder, PropertyHolder o) {
+    Map<String, Setting> settings = SETTINGS_BY_SCOPE.get(o.getScope());
+    decoder.structs("settings").forEachRemaining(settingDecoder -> {
+      // settings unknown or not supported by this version are ignored, like they are when parsing a config
+      Setting setting = settings.get(settingDecoder.string("name"));
+      String value = settingDecoder.string("value");
+      if (setting != null) {
+        setting.setProperty(o, value);
+      }
+    });
+  }
+
   private String encodeConfiguration(Configuration configuration) {
     requireNonNull(configuration);
     return configuration.toString();
@@ -28,19 +28,33 @@ import static java.util.Objects.requireNonNull;
 public class Message implements EntityMessage {
 
   private final Type type;
+  private final int version;
 
   public Message(Type type) {
+    this(type, Codec.CURRENT_VERSION);
+  }
+
+  /**
+   * @param version the protocol version of the client sending this message, that the server uses to encode its responses
+   */
+  public Message(Type type, int version) {
     this.type = requireNonNull(type);
+    this.version = version;
   }
 
   public Type getType() {
     return type;
   }
 
+  public int getVersion() {
+    return version;
+  }
+
   @Override
   public String toString() {
     return "Message{" +
         "type=" + type +
+        ", version=" + version +
         '}';
   }
 
@@ -49,11 +63,11 @@ public class Message implements EntityMessage {
     if (this == o) return true;
     if (!(o instanceof Message)) return false;
     Message that = (Message) o;
-    return getType() == that.getType();
+    return getType() == that.getType() && getVersion() == that.getVersion();
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(getType());
+    return Objects.hash(getType(), getVersion());
   }
 }
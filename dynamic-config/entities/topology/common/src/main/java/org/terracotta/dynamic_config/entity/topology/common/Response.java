@@ -32,15 +32,106 @@ public class Response implements EntityMessage, EntityResponse {
 
   private final Object payload;
 
+  private final int version;
+
+  private final long topologyVersion;
+
+  private final long baseTopologyVersion;
+
+  private final long topologyEpoch;
+
+  private volatile Encoded encoded;
+
   public Response(Type type, Object payload) {
+    this(type, payload, Codec.V2);
+  }
+
+  /**
+   * @param version the protocol version to use to encode this response, which must be supported by the client receiving it
+   */
+  public Response(Type type, Object payload, int version) {
+    this(type, payload, version, -1, -1);
+  }
+
+  /**
+   * Event of a versioned topology (since V4).
+   *
+   * @param topologyVersion     the version of the topology once the event is applied
+   * @param baseTopologyVersion the version of the topology the event applies to, in which case only the change is
+   *                            sent, or -1 to send the whole topology (snapshot)
+   */
+  public Response(Type type, Object payload, int version, long topologyVersion, long baseTopologyVersion) {
+    this(type, payload, version, topologyVersion, baseTopologyVersion, 0);
+  }
+
+  /**
+   * Event of a versioned topology (since V4), sent by an active server instance.
+   *
+   * @param topologyEpoch identifier of the active server instance numbering the versions of the topology, which
+   *                      restart after a failover
+   */
+  public Response(Type type, Object payload, int version, long topologyVersion, long baseTopologyVersion, long topologyEpoch) {
     this.type = requireNonNull(type);
     this.payload = payload;
+    this.version = version;
+    this.topologyVersion = topologyVersion;
+    this.baseTopologyVersion = baseTopologyVersion;
+    this.topologyEpoch = topologyEpoch;
   }
 
   public Type getType() {
     return type;
   }
 
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * @return the version of the topology once this event is applied, or -1 if the topology is not versioned
+   */
+  public long getTopologyVersion() {
+    return topologyVersion;
+  }
+
+  /**
+   * @return the version of the topology this event applies to, or -1 if this event carries the whole topology
+   */
+  public long getBaseTopologyVersion() {
+    return baseTopologyVersion;
+  }
+
+  /**
+   * @return the identifier of the active server instance the version of the topology comes from: versions of different
+   * epochs cannot be compared
+   */
+  public long getTopologyEpoch() {
+    return topologyEpoch;
+  }
+
+  /**
+   * @return true if this event only carries the change made to the topology, and not the resulting cluster
+   */
+  public boolean isDelta() {
+    return baseTopologyVersion >= 0;
+  }
+
+  /**
+   * @param codec the codec, compared by identity
+   * @return the bytes this response was last encoded to by the given codec, or null
+   */
+  byte[] getEncoded(Object codec) {
+    Encoded encoded = this.encoded;
+    return encoded != null && encoded.codec == codec ? encoded.bytes : null;
+  }
+
+  /**
+   * Records the encoded form of this response, so that an event fired to several clients is only encoded once.
+   */
+  void setEncoded(Object codec, byte[] bytes) {
+    this.encoded = new Encoded(codec, bytes);
+  }
+
   @SuppressWarnings("unchecked")
   public <T> T getPayload() {
     return (T) payload;
@@ -51,6 +142,7 @@ public class Response implements EntityMessage, EntityResponse {
     return "Response{" +
         "type=" + type +
         ", payload=" + payload +
+        (topologyVersion < 0 ? "" : ", topologyVersion=" + topologyVersion + ", baseTopologyVersion=" + baseTopologyVersion + ", topologyEpoch=" + topologyEpoch) +
         '}';
   }
 
@@ -67,4 +159,14 @@ public class Response implements EntityMessage, EntityResponse {
   public int hashCode() {
     return Objects.hash(getType(), getPayload());
   }
+
+  private static final class Encoded {
+    private final Object codec;
+    private final byte[] bytes;
+
+    Encoded(Object codec, byte[] bytes) {
+      this.codec = codec;
+      this.bytes = bytes;
+    }
+  }
 }
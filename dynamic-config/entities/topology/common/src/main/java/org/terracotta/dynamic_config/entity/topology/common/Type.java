@@ -29,5 +29,7 @@ public enum Type {
   EVENT_NODE_REMOVAL,
   EVENT_SETTING_CHANGED,
   EVENT_STRIPE_ADDITION,
-  EVENT_STRIPE_REMOVAL
+  EVENT_STRIPE_REMOVAL,
+  REQ_RESYNC, // since V4
+  EVENTS // since V4: changes coalesced into one versioned event
 }
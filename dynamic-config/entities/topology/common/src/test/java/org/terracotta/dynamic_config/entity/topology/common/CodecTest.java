@@ -17,6 +17,7 @@
 package org.terracotta.dynamic_config.entity.topology.common;
 
 import org.junit.Test;
+import org.terracotta.common.struct.MemoryUnit;
 import org.terracotta.dynamic_config.api.model.Cluster;
 import org.terracotta.dynamic_config.api.model.Configuration;
 import org.terracotta.dynamic_config.api.model.License;
@@ -24,17 +25,25 @@ import org.terracotta.dynamic_config.api.model.Node;
 import org.terracotta.dynamic_config.api.model.Stripe;
 import org.terracotta.dynamic_config.api.model.Testing;
 import org.terracotta.entity.MessageCodecException;
+import org.terracotta.runnel.EnumMapping;
+import org.terracotta.runnel.Struct;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.terracotta.dynamic_config.api.model.Testing.newTestNode;
 import static org.terracotta.dynamic_config.api.model.Testing.newTestStripe;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENTS;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_NODE_ADDITION;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_NODE_REMOVAL;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_SETTING_CHANGED;
@@ -43,13 +52,31 @@ import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_ST
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_HAS_INCOMPLETE_CHANGE;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_LICENSE;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_MUST_BE_RESTARTED;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_RESYNC;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_RUNTIME_CLUSTER;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_UPCOMING_CLUSTER;
+import static org.terracotta.runnel.EnumMappingBuilder.newEnumMappingBuilder;
+import static org.terracotta.runnel.StructBuilder.newStructBuilder;
+import static org.terracotta.testing.ExceptionMatcher.throwing;
 
-/**
- * @author Mathieu Carbou
- */
 public class CodecTest {
+
+  // wire values of the message types, as encoded by all the protocol versions
+  private static final EnumMapping<Type> TYPES = newEnumMappingBuilder(Type.class)
+      .mapping(REQ_LICENSE, 1)
+      .mapping(REQ_HAS_INCOMPLETE_CHANGE, 2)
+      .mapping(REQ_MUST_BE_RESTARTED, 3)
+      .mapping(REQ_RUNTIME_CLUSTER, 4)
+      .mapping(REQ_UPCOMING_CLUSTER, 5)
+      .mapping(EVENT_NODE_ADDITION, 6)
+      .mapping(EVENT_NODE_REMOVAL, 7)
+      .mapping(EVENT_SETTING_CHANGED, 8)
+      .mapping(EVENT_STRIPE_ADDITION, 9)
+      .mapping(EVENT_STRIPE_REMOVAL, 10)
+      .mapping(REQ_RESYNC, 11)
+      .mapping(EVENTS, 12)
+      .build();
+
   @Test
   public void test_encode_decode() throws MessageCodecException {
     Node node = newTestNode("foo", "localhost", 9410);
@@ -78,17 +105,198 @@ public class CodecTest {
     test(EVENT_STRIPE_REMOVAL, asList(cluster, stripe));
   }
 
+  @Test
+  public void test_encode_decode_v3() throws MessageCodecException {
+    Node node = newTestNode("foo", "localhost", 9410);
+    Node node2 = newTestNode("foo2", "localhost", 9411);
+    Stripe stripe = newTestStripe("stripe1").addNodes(node, node2);
+    Cluster cluster = Testing.newTestCluster("bar", stripe).putOffheapResource("main", 512, MemoryUnit.MB);
+
+    test(REQ_RUNTIME_CLUSTER, cluster, Codec.V3);
+    test(REQ_UPCOMING_CLUSTER, cluster, Codec.V3);
+
+    test(EVENT_NODE_ADDITION, asList(cluster, node.getUID()), Codec.V3);
+    test(EVENT_NODE_REMOVAL, asList(cluster, stripe.getUID(), node), Codec.V3);
+
+    test(EVENT_SETTING_CHANGED, asList(cluster, Configuration.valueOf("cluster-name=foo")), Codec.V3);
+
+    test(EVENT_STRIPE_ADDITION, asList(cluster, stripe.getUID()), Codec.V3);
+    test(EVENT_STRIPE_REMOVAL, asList(cluster, stripe), Codec.V3);
+
+    Codec codec = new Codec();
+    assertThat(codec.encodeResponse(new Response(REQ_RUNTIME_CLUSTER, cluster, Codec.V3)).length < codec.encodeResponse(new Response(REQ_RUNTIME_CLUSTER, cluster)).length, is(true));
+  }
+
+  @Test
+  public void test_encode_decode_v4() throws MessageCodecException {
+    Node node = newTestNode("foo", "localhost", 9410);
+    Node node2 = newTestNode("foo2", "localhost", 9411);
+    Stripe stripe = newTestStripe("stripe1").addNodes(node, node2);
+    Cluster cluster = Testing.newTestCluster("bar", stripe).putOffheapResource("main", 512, MemoryUnit.MB);
+    Codec codec = new Codec();
+
+    // snapshot
+    Response snapshot = new Response(EVENT_NODE_ADDITION, asList(cluster, node.getUID()), Codec.V4, 5, -1);
+    Response decoded = codec.decodeResponse(codec.encodeResponse(snapshot));
+    assertThat(decoded, is(equalTo(snapshot)));
+    assertThat(decoded.getVersion(), is(Codec.V4));
+    assertThat(decoded.getTopologyVersion(), is(5L));
+    assertThat(decoded.isDelta(), is(false));
+
+    // deltas
+    Response delta = new Response(EVENT_NODE_ADDITION, asList(cluster, node.getUID()), Codec.V4, 5, 4, 42);
+    byte[] bytes = codec.encodeResponse(delta);
+    assertThat(bytes.length < codec.encodeResponse(snapshot).length, is(true));
+    decoded = codec.decodeResponse(bytes);
+    assertThat(decoded.isDelta(), is(true));
+    assertThat(decoded.getTopologyVersion(), is(5L));
+    assertThat(decoded.getBaseTopologyVersion(), is(4L));
+    assertThat(decoded.getTopologyEpoch(), is(42L));
+    assertThat(decoded.getPayload(), is(equalTo(asList(null, node.getUID(), stripe.getUID(), node))));
+
+    decoded = codec.decodeResponse(codec.encodeResponse(new Response(EVENT_NODE_REMOVAL, asList(cluster, stripe.getUID(), node), Codec.V4, 5, 4)));
+    assertThat(decoded.getPayload(), is(equalTo(asList(null, stripe.getUID(), node))));
+
+    decoded = codec.decodeResponse(codec.encodeResponse(new Response(EVENT_SETTING_CHANGED, asList(cluster, Configuration.valueOf("cluster-name=foo")), Codec.V4, 5, 4)));
+    assertThat(decoded.getPayload(), is(equalTo(asList(null, Configuration.valueOf("cluster-name=foo")))));
+
+    decoded = codec.decodeResponse(codec.encodeResponse(new Response(EVENT_STRIPE_ADDITION, asList(cluster, stripe.getUID()), Codec.V4, 5, 4)));
+    assertThat(decoded.getPayload(), is(equalTo(asList(null, stripe.getUID(), stripe))));
+
+    decoded = codec.decodeResponse(codec.encodeResponse(new Response(EVENT_STRIPE_REMOVAL, asList(cluster, stripe), Codec.V4, 5, 4)));
+    assertThat(decoded.getPayload(), is(equalTo(asList(null, stripe))));
+
+    // resync
+    Response resync = new Response(REQ_RESYNC, cluster, Codec.V4, 5, -1, 42);
+    decoded = codec.decodeResponse(codec.encodeResponse(resync));
+    assertThat(decoded, is(equalTo(resync)));
+    assertThat(decoded.getTopologyVersion(), is(5L));
+    assertThat(decoded.getTopologyEpoch(), is(42L));
+    assertThat(decoded.isDelta(), is(false));
+
+    decoded = codec.decodeResponse(codec.encodeResponse(new Response(REQ_RESYNC, null)));
+    assertThat(decoded, is(equalTo(new Response(REQ_RESYNC, null))));
+  }
+
+  @Test
+  public void test_encode_decode_coalesced_events() throws MessageCodecException {
+    Node node = newTestNode("foo", "localhost", 9410);
+    Stripe stripe = newTestStripe("stripe1").addNodes(node);
+    Cluster cluster = Testing.newTestCluster("bar", stripe);
+    Cluster renamed = cluster.clone().setName("baz");
+    Codec codec = new Codec();
+    List<Object> payload = asList(renamed,
+        new Response(EVENT_NODE_ADDITION, asList(cluster, node.getUID())),
+        new Response(EVENT_SETTING_CHANGED, asList(renamed, Configuration.valueOf("cluster-name=baz"))));
+
+    // deltas: each change is sent without the cluster
+    Response decoded = codec.decodeResponse(codec.encodeResponse(new Response(EVENTS, payload, Codec.V4, 5, 4, 42)));
+    assertThat(decoded.getType(), is(EVENTS));
+    assertThat(decoded.getTopologyVersion(), is(5L));
+    assertThat(decoded.getBaseTopologyVersion(), is(4L));
+    assertThat(decoded.getTopologyEpoch(), is(42L));
+    List<Object> changes = decoded.getPayload();
+    assertThat(changes.size(), is(3));
+    assertThat(changes.get(0), is(nullValue()));
+    assertThat(((Response) changes.get(1)).getType(), is(EVENT_NODE_ADDITION));
+    assertThat(((Response) changes.get(1)).getPayload(), is(equalTo(asList(null, node.getUID(), stripe.getUID(), node))));
+    assertThat(((Response) changes.get(2)).getType(), is(EVENT_SETTING_CHANGED));
+    assertThat(((Response) changes.get(2)).getPayload(), is(equalTo(asList(null, Configuration.valueOf("cluster-name=baz")))));
+
+    // snapshot: the changes are followed by the resulting cluster
+    decoded = codec.decodeResponse(codec.encodeResponse(new Response(EVENTS, payload, Codec.V4, 5, -1)));
+    assertThat(decoded.isDelta(), is(false));
+    changes = decoded.getPayload();
+    assertThat(changes.get(0), is(equalTo(renamed)));
+    assertThat(((Response) changes.get(2)).getPayload(), is(equalTo(asList(null, Configuration.valueOf("cluster-name=baz")))));
+  }
+
+  @Test
+  public void test_response_encoded_once() throws MessageCodecException {
+    Node node = newTestNode("foo", "localhost", 9410);
+    Cluster cluster = Testing.newTestCluster("bar", newTestStripe("stripe1").addNodes(node));
+    Response response = new Response(EVENT_NODE_ADDITION, asList(cluster, node.getUID()), Codec.V3);
+
+    Codec codec = new Codec();
+    byte[] bytes = codec.encodeResponse(response);
+    assertThat(codec.encodeResponse(response), is(sameInstance(bytes)));
+    assertThat(new Codec().encodeResponse(response), is(not(sameInstance(bytes))));
+  }
+
+  @Test
+  public void test_decode_message_without_version() throws MessageCodecException {
+    // message of a client older than V3, which has no version field
+    Struct v2 = newStructBuilder()
+        .enm("type", 10, TYPES)
+        .build();
+    byte[] bytes = v2.encoder().enm("type", REQ_RUNTIME_CLUSTER).encode().array();
+
+    Codec codec = new Codec();
+    assertThat(codec.decodeMessage(bytes).getType(), is(REQ_RUNTIME_CLUSTER));
+    assertThat(codec.decodeMessage(bytes).getVersion(), is(Codec.V2));
+    assertThat(codec.decodeMessage(codec.encodeMessage(new Message(REQ_RUNTIME_CLUSTER))).getVersion(), is(Codec.CURRENT_VERSION));
+  }
+
+  @Test
+  public void test_decode_v3_cluster_is_validated() {
+    Struct settings = newStructBuilder()
+        .string("name", 10)
+        .string("value", 20)
+        .build();
+    Struct node = newStructBuilder()
+        .structs("settings", 10, settings)
+        .build();
+    Struct stripe = newStructBuilder()
+        .structs("settings", 10, settings)
+        .structs("nodes", 20, node)
+        .build();
+    Struct v3 = newStructBuilder()
+        .enm("type", 10, TYPES)
+        .struct("REQ_RUNTIME_CLUSTER_V3", 150, newStructBuilder()
+            .structs("settings", 10, settings)
+            .structs("stripes", 20, stripe)
+            .build())
+        .build();
+    byte[] bytes = v3.encoder()
+        .enm("type", REQ_RUNTIME_CLUSTER)
+        .struct("REQ_RUNTIME_CLUSTER_V3")
+        .structs("settings", asList("cluster-name", "client-reconnect-window"), (encoder, name) -> encoder
+            .string("name", name)
+            .string("value", name.equals("cluster-name") ? "bar" : "foo"))
+        .structs("stripes", asList("stripe1"), (stripeEncoder, stripeName) -> stripeEncoder
+            .structs("settings", asList("stripe-name"), (encoder, name) -> encoder
+                .string("name", name)
+                .string("value", stripeName))
+            .structs("nodes", asList("node1"), (nodeEncoder, nodeName) -> nodeEncoder
+                .structs("settings", asList("name", "hostname"), (encoder, name) -> encoder
+                    .string("name", name)
+                    .string("value", name.equals("name") ? nodeName : "localhost"))))
+        .end()
+        .encode()
+        .array();
+
+    // the invalid reconnect window is rejected by its setting when it is set on the decoded cluster
+    assertThat(
+        () -> new Codec().decodeResponse(bytes),
+        is(throwing(instanceOf(MessageCodecException.class))));
+  }
+
   private static void test(Type type, Object payload) throws MessageCodecException {
+    test(type, payload, Codec.V2);
+  }
+
+  private static void test(Type type, Object payload, int version) throws MessageCodecException {
     Codec codec = new Codec();
 
-    Message message = new Message(type);
+    Message message = new Message(type, version);
     byte[] bytes = codec.encodeMessage(message);
     Message decodedMessage = codec.decodeMessage(bytes);
     assertThat(decodedMessage, is(equalTo(message)));
 
-    Response response = new Response(type, payload);
+    Response response = new Response(type, payload, version);
     bytes = codec.encodeResponse(response);
     Response decodedResponse = codec.decodeResponse(bytes);
     assertThat(decodedResponse, is(equalTo(response)));
+    assertThat(decodedResponse.getVersion(), is(version));
   }
 }
\ No newline at end of file
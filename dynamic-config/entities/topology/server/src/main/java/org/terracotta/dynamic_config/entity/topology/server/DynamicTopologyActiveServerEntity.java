@@ -21,12 +21,15 @@ import org.slf4j.LoggerFactory;
 import org.terracotta.dynamic_config.api.model.Cluster;
 import org.terracotta.dynamic_config.api.model.Configuration;
 import org.terracotta.dynamic_config.api.model.Node;
+import org.terracotta.dynamic_config.api.model.NodeContext;
 import org.terracotta.dynamic_config.api.model.Stripe;
 import org.terracotta.dynamic_config.api.model.UID;
 import org.terracotta.dynamic_config.api.model.nomad.SettingNomadChange;
 import org.terracotta.dynamic_config.api.service.TopologyService;
+import org.terracotta.dynamic_config.entity.topology.common.Codec;
 import org.terracotta.dynamic_config.entity.topology.common.Message;
 import org.terracotta.dynamic_config.entity.topology.common.Response;
+import org.terracotta.dynamic_config.entity.topology.common.Type;
 import org.terracotta.dynamic_config.api.server.DynamicConfigEventService;
 import org.terracotta.dynamic_config.api.server.DynamicConfigListener;
 import org.terracotta.dynamic_config.api.server.EventRegistration;
@@ -39,48 +42,92 @@ import org.terracotta.entity.EntityUserException;
 import org.terracotta.entity.MessageCodecException;
 import org.terracotta.entity.PassiveSynchronizationChannel;
 import org.terracotta.entity.StateDumpCollector;
+import org.terracotta.nomad.messages.AcceptRejectResponse;
+import org.terracotta.nomad.messages.CommitMessage;
+import org.terracotta.nomad.server.ChangeState;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Arrays.asList;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENTS;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_NODE_ADDITION;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_NODE_REMOVAL;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_SETTING_CHANGED;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_STRIPE_ADDITION;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_STRIPE_REMOVAL;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_RESYNC;
 
 
 public class DynamicTopologyActiveServerEntity implements ActiveServerEntity<Message, Response> {
   private static final Logger LOGGER = LoggerFactory.getLogger(DynamicTopologyActiveServerEntity.class);
 
+  // since V4: maximum time, in milliseconds, during which the changes fired are coalesced into one event, or 0 to send
+  // each change on its own
+  private static final long COALESCING_WINDOW = Long.getLong("terracotta.config.topology.coalescingWindow", 100);
+
   private final TopologyService topologyService;
   private final DynamicConfigEventService eventService;
   private final ClientCommunicator clientCommunicator;
-  private final Collection<ClientDescriptor> clients = ConcurrentHashMap.newKeySet();
+  private final long coalescingWindow;
+  // protocol version of each client, known once the client has sent a message
+  private final ConcurrentMap<ClientDescriptor, Integer> clients = new ConcurrentHashMap<>();
+  // since V4: version of the topology each client has, known once a whole topology has been sent to it
+  private final Map<ClientDescriptor, Long> topologyVersions = new HashMap<>();
+
+  // identifier of this active entity: the versions of the topology restart in another epoch after a failover
+  private final long topologyEpoch = ThreadLocalRandom.current().nextLong();
+  // guarded by topologyVersions: the version of the topology is incremented at each event sent
+  private long topologyVersion;
+  // topology resulting from the last event sent
+  private Cluster lastCluster;
+  // changes fired since the last event sent: they are sent as one event at the end of the Nomad commit which fired
+  // them, or once the coalescing window has elapsed if no commit ends
+  private final List<Response> changes = new ArrayList<>();
+  private ScheduledFuture<?> scheduledFlush;
 
   private volatile EventRegistration eventRegistration;
+  private volatile ScheduledExecutorService scheduler;
 
   public DynamicTopologyActiveServerEntity(TopologyService topologyService, DynamicConfigEventService eventService, ClientCommunicator clientCommunicator) {
+    this(topologyService, eventService, clientCommunicator, COALESCING_WINDOW);
+  }
+
+  DynamicTopologyActiveServerEntity(TopologyService topologyService, DynamicConfigEventService eventService, ClientCommunicator clientCommunicator, long coalescingWindow) {
     this.topologyService = requireNonNull(topologyService);
     this.eventService = requireNonNull(eventService);
     this.clientCommunicator = requireNonNull(clientCommunicator);
+    this.coalescingWindow = coalescingWindow;
   }
 
   @Override
   public void loadExisting() {
+    // the entity is loaded on the server becoming active after a failover
+    listen();
   }
 
   @Override
   public void connected(ClientDescriptor clientDescriptor) {
-    clients.add(clientDescriptor);
+    clients.put(clientDescriptor, Codec.V2);
   }
 
   @Override
   public void disconnected(ClientDescriptor clientDescriptor) {
     clients.remove(clientDescriptor);
+    synchronized (topologyVersions) {
+      topologyVersions.remove(clientDescriptor);
+    }
   }
 
   @Override
@@ -98,6 +145,10 @@ public class DynamicTopologyActiveServerEntity implements ActiveServerEntity<Mes
       eventRegistration.unregister();
       eventRegistration = null;
     }
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
   }
 
   @Override
@@ -109,12 +160,14 @@ public class DynamicTopologyActiveServerEntity implements ActiveServerEntity<Mes
   @Override
   public Response invokeActive(ActiveInvokeContext<Response> context, Message message) throws EntityUserException {
     LOGGER.trace("invokeActive({})", message);
+    int version = Math.min(message.getVersion(), Codec.CURRENT_VERSION);
+    clients.replace(context.getClientDescriptor(), version);
     switch (message.getType()) {
       case REQ_UPCOMING_CLUSTER: {
-        return new Response(message.getType(), topologyService.getUpcomingNodeContext().getCluster());
+        return new Response(message.getType(), topologyService.getUpcomingNodeContext().getCluster(), version);
       }
       case REQ_RUNTIME_CLUSTER: {
-        return new Response(message.getType(), topologyService.getRuntimeNodeContext().getCluster());
+        return new Response(message.getType(), topologyService.getRuntimeNodeContext().getCluster(), version);
       }
       case REQ_MUST_BE_RESTARTED: {
         return new Response(message.getType(), topologyService.mustBeRestarted());
@@ -125,6 +178,10 @@ public class DynamicTopologyActiveServerEntity implements ActiveServerEntity<Mes
       case REQ_LICENSE: {
         return new Response(message.getType(), topologyService.getLicense().orElse(null));
       }
+      case REQ_RESYNC: {
+        resync(context.getClientDescriptor());
+        return new Response(message.getType(), null);
+      }
       default:
         throw new AssertionError(message);
     }
@@ -132,59 +189,147 @@ public class DynamicTopologyActiveServerEntity implements ActiveServerEntity<Mes
 
   @Override
   public void addStateTo(StateDumpCollector stateDumpCollector) {
-    stateDumpCollector.addState("clients", clients.stream().map(Object::toString).collect(toList()));
+    stateDumpCollector.addState("clients", clients.keySet().stream().map(Object::toString).collect(toList()));
   }
 
   private void listen() {
     if (eventRegistration == null) {
+      if (coalescingWindow > 0) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+          Thread thread = new Thread(r, "DynamicTopologyEntity-events");
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
       eventRegistration = eventService.register(new DynamicConfigListener() {
         @Override
         public void onNodeAddition(UID stripeUID, Node addedNode) {
           Cluster cluster = topologyService.getRuntimeNodeContext().getCluster();
           cluster.getStripe(stripeUID).get().addNode(addedNode);
-          fire(new Response(EVENT_NODE_ADDITION, asList(cluster, addedNode.getUID())));
+          fire(EVENT_NODE_ADDITION, asList(cluster, addedNode.getUID()));
         }
 
         @Override
         public void onNodeRemoval(UID stripeUID, Node removedNode) {
           Cluster cluster = topologyService.getRuntimeNodeContext().getCluster();
           cluster.getStripe(stripeUID).get().removeNode(removedNode.getUID());
-          fire(new Response(EVENT_NODE_REMOVAL, asList(cluster, stripeUID, removedNode)));
+          fire(EVENT_NODE_REMOVAL, asList(cluster, stripeUID, removedNode));
         }
 
         @Override
         public void onStripeAddition(Stripe addedStripe) {
           Cluster cluster = topologyService.getRuntimeNodeContext().getCluster();
           cluster.addStripe(addedStripe);
-          fire(new Response(EVENT_STRIPE_ADDITION, asList(cluster, addedStripe.getUID())));
+          fire(EVENT_STRIPE_ADDITION, asList(cluster, addedStripe.getUID()));
         }
 
         @Override
         public void onStripeRemoval(Stripe removedStripe) {
           Cluster cluster = topologyService.getRuntimeNodeContext().getCluster();
           cluster.removeStripe(removedStripe.getUID());
-          fire(new Response(EVENT_STRIPE_REMOVAL, asList(cluster, removedStripe)));
+          fire(EVENT_STRIPE_REMOVAL, asList(cluster, removedStripe));
         }
 
         @Override
         public void onSettingChanged(SettingNomadChange change, Cluster updated) {
           Configuration configuration = change.toConfiguration(updated);
-          fire(new Response(EVENT_SETTING_CHANGED, asList(updated, configuration)));
+          fire(EVENT_SETTING_CHANGED, asList(updated, configuration));
+        }
+
+        @Override
+        public void onNomadCommit(CommitMessage message, AcceptRejectResponse response, ChangeState<NodeContext> changeState) {
+          // the changes applied by a commit are fired before it ends
+          flush();
         }
       });
     }
   }
 
-  private void fire(Response msg) {
-    if (!clients.isEmpty()) {
-      LOGGER.trace("fire({}): clients: {}", msg, clients);
-      for (ClientDescriptor client : clients) {
-        try {
-          clientCommunicator.sendNoResponse(client, msg);
-        } catch (MessageCodecException e) {
-          throw new AssertionError(e); // should never occur
+  private void fire(Type type, List<Object> payload) {
+    synchronized (topologyVersions) {
+      changes.add(new Response(type, payload));
+      if (scheduler == null) {
+        flush();
+      } else if (changes.size() == 1) {
+        scheduledFlush = scheduler.schedule(this::flush, coalescingWindow, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  /**
+   * Sends the changes fired since the last event as one event, and increments the version of the topology once.
+   */
+  private void flush() {
+    synchronized (topologyVersions) {
+      if (scheduledFlush != null) {
+        scheduledFlush.cancel(false);
+        scheduledFlush = null;
+      }
+      if (changes.isEmpty()) {
+        return;
+      }
+      List<Response> fired = new ArrayList<>(changes);
+      changes.clear();
+      long version = ++topologyVersion;
+      lastCluster = (Cluster) fired.get(fired.size() - 1).<List<Object>>getPayload().get(0);
+      if (!clients.isEmpty()) {
+        LOGGER.trace("flush({}): version: {}, clients: {}", fired, version, clients.keySet());
+        // each client receives the event encoded with the protocol version it supports:
+        // the response of each version is only encoded once, and its bytes are sent to all the clients of that version.
+        // Before V4, each change is sent on its own.
+        // Since V4, a client having the previous version of the topology only receives the changes (delta),
+        // and the other ones receive the whole topology (snapshot).
+        Map<Integer, List<Response>> responses = new HashMap<>(2);
+        Type type = fired.size() == 1 ? fired.get(0).getType() : EVENTS;
+        List<Object> payload = fired.size() == 1 ? fired.get(0).getPayload() : events(fired);
+        Response delta = null;
+        Response snapshot = null;
+        for (Map.Entry<ClientDescriptor, Integer> entry : clients.entrySet()) {
+          ClientDescriptor client = entry.getKey();
+          int protocolVersion = entry.getValue();
+          if (protocolVersion < Codec.V4) {
+            responses.computeIfAbsent(protocolVersion, v -> fired.stream().map(change -> new Response(change.getType(), change.getPayload(), v)).collect(toList()))
+                .forEach(response -> send(client, response));
+          } else {
+            Long clientVersion = topologyVersions.put(client, version);
+            if (clientVersion != null && clientVersion == version - 1) {
+              send(client, delta == null ? delta = new Response(type, payload, Codec.V4, version, version - 1, topologyEpoch) : delta);
+            } else {
+              send(client, snapshot == null ? snapshot = new Response(type, payload, Codec.V4, version, -1, topologyEpoch) : snapshot);
+            }
+          }
         }
       }
     }
   }
+
+  // payload of the changes coalesced into one event: the resulting cluster, followed by the changes
+  private List<Object> events(List<Response> fired) {
+    List<Object> payload = new ArrayList<>(fired.size() + 1);
+    payload.add(lastCluster);
+    payload.addAll(fired);
+    return payload;
+  }
+
+  /**
+   * Called by a client which cannot apply a delta to its topology: the whole topology and its version are sent to this
+   * client, in order with the events, so that the next events are deltas on this version.
+   * The events sent before are delivered by the client against this topology.
+   */
+  private void resync(ClientDescriptor client) {
+    synchronized (topologyVersions) {
+      LOGGER.trace("resync({}): version: {}", client, topologyVersion);
+      Cluster cluster = lastCluster != null ? lastCluster : topologyService.getRuntimeNodeContext().getCluster();
+      topologyVersions.put(client, topologyVersion);
+      send(client, new Response(REQ_RESYNC, cluster, Codec.V4, topologyVersion, -1, topologyEpoch));
+    }
+  }
+
+  private void send(ClientDescriptor client, Response response) {
+    try {
+      clientCommunicator.sendNoResponse(client, response);
+    } catch (MessageCodecException e) {
+      throw new AssertionError(e); // should never occur
+    }
+  }
 }
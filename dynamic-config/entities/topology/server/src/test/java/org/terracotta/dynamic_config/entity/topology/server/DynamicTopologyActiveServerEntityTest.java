@@ -0,0 +1,181 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.dynamic_config.entity.topology.server;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.terracotta.dynamic_config.api.model.Cluster;
+import org.terracotta.dynamic_config.api.model.NodeContext;
+import org.terracotta.dynamic_config.api.model.nomad.SettingNomadChange;
+import org.terracotta.dynamic_config.api.server.DynamicConfigEventService;
+import org.terracotta.dynamic_config.api.server.DynamicConfigListener;
+import org.terracotta.dynamic_config.api.service.TopologyService;
+import org.terracotta.dynamic_config.entity.topology.common.Message;
+import org.terracotta.dynamic_config.entity.topology.common.Response;
+import org.terracotta.entity.ActiveInvokeContext;
+import org.terracotta.entity.ClientCommunicator;
+import org.terracotta.entity.ClientDescriptor;
+import org.terracotta.entity.EntityResponse;
+
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.terracotta.dynamic_config.api.model.Setting.CLUSTER_NAME;
+import static org.terracotta.dynamic_config.api.model.Testing.N_UIDS;
+import static org.terracotta.dynamic_config.api.model.Testing.newTestCluster;
+import static org.terracotta.dynamic_config.api.model.Testing.newTestNode;
+import static org.terracotta.dynamic_config.api.model.Testing.newTestStripe;
+import static org.terracotta.dynamic_config.api.model.nomad.Applicability.cluster;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENTS;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.EVENT_SETTING_CHANGED;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_RESYNC;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_RUNTIME_CLUSTER;
+
+public class DynamicTopologyActiveServerEntityTest {
+
+  private final TopologyService topologyService = mock(TopologyService.class);
+  private final DynamicConfigEventService eventService = mock(DynamicConfigEventService.class);
+  private final ClientCommunicator clientCommunicator = mock(ClientCommunicator.class);
+  private final ClientDescriptor client = mock(ClientDescriptor.class);
+  @SuppressWarnings("unchecked")
+  private final ActiveInvokeContext<Response> context = mock(ActiveInvokeContext.class);
+
+  private final Cluster cluster = newTestCluster("foo", newTestStripe("stripe1").addNodes(newTestNode("node1", "localhost", 9410, N_UIDS[1])));
+  // the changes are only sent at the end of a commit
+  private final DynamicTopologyActiveServerEntity entity = new DynamicTopologyActiveServerEntity(topologyService, eventService, clientCommunicator, HOURS.toMillis(1));
+
+  private DynamicConfigListener listener;
+
+  @Before
+  public void setUp() throws Exception {
+    when(topologyService.getRuntimeNodeContext()).thenReturn(new NodeContext(cluster, N_UIDS[1]));
+    when(context.getClientDescriptor()).thenReturn(client);
+
+    entity.createNew();
+    ArgumentCaptor<DynamicConfigListener> captor = ArgumentCaptor.forClass(DynamicConfigListener.class);
+    verify(eventService).register(captor.capture());
+    listener = captor.getValue();
+
+    // the client supports the versioned topologies once it has sent a message
+    entity.connected(client);
+    entity.invokeActive(context, new Message(REQ_RUNTIME_CLUSTER));
+  }
+
+  @Test
+  public void test_resync_sends_the_topology_on_which_the_next_deltas_apply() throws Exception {
+    assertThat(entity.invokeActive(context, new Message(REQ_RESYNC)).getPayload(), is(nullValue()));
+    Cluster bar = setClusterName("bar");
+
+    List<Response> sent = sent(2);
+    assertThat(sent.get(0).getType(), is(REQ_RESYNC));
+    assertThat(sent.get(0).getPayload(), is(equalTo(cluster)));
+    assertThat(sent.get(0).getTopologyVersion(), is(0L));
+    assertThat(sent.get(0).isDelta(), is(false));
+
+    assertThat(sent.get(1).getType(), is(EVENT_SETTING_CHANGED));
+    assertThat(sent.get(1).<List<Object>>getPayload().get(0), is(equalTo(bar)));
+    assertThat(sent.get(1).getTopologyVersion(), is(1L));
+    assertThat(sent.get(1).getBaseTopologyVersion(), is(0L));
+  }
+
+  @Test
+  public void test_resync_sends_the_topology_of_the_last_event() throws Exception {
+    setClusterName("bar");
+    Cluster baz = setClusterName("baz");
+    entity.invokeActive(context, new Message(REQ_RESYNC));
+    Cluster qux = setClusterName("qux");
+
+    List<Response> sent = sent(4);
+    assertThat(sent.get(0).isDelta(), is(false));
+    assertThat(sent.get(1).isDelta(), is(true));
+
+    assertThat(sent.get(2).getType(), is(REQ_RESYNC));
+    assertThat(sent.get(2).getPayload(), is(equalTo(baz)));
+    assertThat(sent.get(2).getTopologyVersion(), is(2L));
+
+    assertThat(sent.get(3).<List<Object>>getPayload().get(0), is(equalTo(qux)));
+    assertThat(sent.get(3).getTopologyVersion(), is(3L));
+    assertThat(sent.get(3).getBaseTopologyVersion(), is(2L));
+  }
+
+  @Test
+  public void test_changes_of_a_commit_are_sent_as_one_event() throws Exception {
+    Cluster foo = setClusterName("foo");
+    Cluster bar = foo.clone().setName("bar");
+    Cluster baz = bar.clone().setName("baz");
+    listener.onSettingChanged(SettingNomadChange.set(cluster(), CLUSTER_NAME, "bar"), bar);
+    listener.onSettingChanged(SettingNomadChange.set(cluster(), CLUSTER_NAME, "baz"), baz);
+    assertThat(sent(1).size(), is(1));
+    listener.onNomadCommit(null, null, null);
+
+    List<Response> sent = sent(2);
+    assertThat(sent.get(1).getType(), is(EVENTS));
+    assertThat(sent.get(1).getTopologyVersion(), is(2L));
+    assertThat(sent.get(1).getBaseTopologyVersion(), is(1L));
+    List<Object> payload = sent.get(1).getPayload();
+    assertThat(payload.size(), is(3));
+    assertThat(payload.get(0), is(equalTo(baz)));
+    assertThat(((Response) payload.get(1)).<List<Object>>getPayload().get(0), is(equalTo(bar)));
+    assertThat(((Response) payload.get(2)).<List<Object>>getPayload().get(0), is(equalTo(baz)));
+  }
+
+  @Test
+  public void test_versions_restart_in_another_epoch_after_a_failover() throws Exception {
+    setClusterName("bar");
+    entity.invokeActive(context, new Message(REQ_RESYNC));
+    List<Response> sent = sent(2);
+    assertThat(sent.get(1).getTopologyVersion(), is(1L));
+    assertThat(sent.get(1).getTopologyEpoch(), is(sent.get(0).getTopologyEpoch()));
+
+    // the entity loaded on the server becoming active listens to the changes, and numbers its versions from 0
+    DynamicTopologyActiveServerEntity promoted = new DynamicTopologyActiveServerEntity(topologyService, eventService, clientCommunicator, HOURS.toMillis(1));
+    promoted.loadExisting();
+    verify(eventService, times(2)).register(any(DynamicConfigListener.class));
+    promoted.connected(client);
+    promoted.invokeActive(context, new Message(REQ_RESYNC));
+
+    sent = sent(3);
+    assertThat(sent.get(2).getTopologyVersion(), is(0L));
+    assertThat(sent.get(2).getTopologyEpoch(), is(not(sent.get(0).getTopologyEpoch())));
+  }
+
+  private Cluster setClusterName(String name) {
+    Cluster updated = cluster.clone().setName(name);
+    listener.onSettingChanged(SettingNomadChange.set(cluster(), CLUSTER_NAME, name), updated);
+    listener.onNomadCommit(null, null, null);
+    return updated;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Response> sent(int count) throws Exception {
+    ArgumentCaptor<EntityResponse> captor = ArgumentCaptor.forClass(EntityResponse.class);
+    verify(clientCommunicator, times(count)).sendNoResponse(same(client), captor.capture());
+    return (List<Response>) (List<?>) captor.getAllValues();
+  }
+}
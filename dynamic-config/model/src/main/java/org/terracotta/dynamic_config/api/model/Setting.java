@@ -1092,7 +1092,7 @@ public enum Setting {
     return permissions.stream().anyMatch(permissions -> permissions.allows(clusterState) && permissions.allows(operation) && permissions.allows(scope));
   }
 
-  private boolean isUserExportable() {
+  public boolean isUserExportable() {
     return !requires(HIDDEN) && permissions.stream().anyMatch(Permission::isUserExportable);
   }
 
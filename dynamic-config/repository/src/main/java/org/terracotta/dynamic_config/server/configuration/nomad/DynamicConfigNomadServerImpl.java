@@ -36,6 +36,7 @@ import org.terracotta.nomad.server.state.NomadServerState;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -260,9 +261,12 @@ public class DynamicConfigNomadServerImpl extends NomadServerImpl<NodeContext> i
     lock.readLock().lock();
     try {
       LinkedList<NomadChangeInfo> output = new LinkedList<>();
-      UUID changeUuid = state.getLatestChangeUuid();
-      while (changeUuid != null) {
-        ChangeState<NodeContext> changeState = state.getChangeState(changeUuid);
+      // the history is fetched backward through its index, one change at a time: the changes before the last
+      // activation are neither loaded nor checked
+      for (long index = state.getChangeCount() - 1; index >= 0; index--) {
+        Map.Entry<UUID, ChangeState<NodeContext>> entry = state.getChangeStates(index, index + 1).entrySet().iterator().next();
+        UUID changeUuid = entry.getKey();
+        ChangeState<NodeContext> changeState = entry.getValue();
         output.addFirst(
           new NomadChangeInfo(
             changeUuid,
@@ -277,7 +281,9 @@ public class DynamicConfigNomadServerImpl extends NomadServerImpl<NodeContext> i
         );
         // We have arrived at a starting point of a sync when we reach the first ClusterActivationNomadChange
         // or FormatUpgradeNomadChange or when there is no more changes
-        changeUuid = changeState.getChange() instanceof ClusterActivationNomadChange ? null : changeState.getPrevChangeId();
+        if (changeState.getChange() instanceof ClusterActivationNomadChange) {
+          break;
+        }
       }
       return output;
     } finally {
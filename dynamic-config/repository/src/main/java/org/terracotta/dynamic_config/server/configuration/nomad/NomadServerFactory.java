@@ -50,13 +50,17 @@ import org.terracotta.nomad.messages.RollbackMessage;
 import org.terracotta.nomad.server.ChangeApplicator;
 import org.terracotta.nomad.server.ChangeState;
 import org.terracotta.nomad.server.NomadException;
+import org.terracotta.persistence.sanskrit.Compaction;
+import org.terracotta.persistence.sanskrit.GroupCommit;
 import org.terracotta.persistence.sanskrit.Sanskrit;
 import org.terracotta.persistence.sanskrit.SanskritException;
 import org.terracotta.persistence.sanskrit.SanskritMapper;
+import org.terracotta.persistence.sanskrit.SanskritOptions;
 import org.terracotta.persistence.sanskrit.file.FileBasedFilesystemDirectory;
 
 import java.nio.file.Path;
 import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 
 import static java.util.Collections.singletonList;
@@ -64,10 +68,24 @@ import static java.util.Collections.singletonList;
 public class NomadServerFactory {
   private static final Logger LOGGER = LoggerFactory.getLogger(NomadServerFactory.class);
 
+  // Sanskrit settings that have to be opted into, because the versions without them cannot open a config repository
+  // written with them anymore:
+  // - the changes made while the previous ones are being synced are synced together, without delaying a lone change
+  // - the append log is compacted into a snapshot so that startup does not replay every change ever made
+  public static final SanskritOptions GROUPED_AND_COMPACTED = SanskritOptions.defaults()
+      .withGroupCommit(GroupCommit.of(16, Duration.ZERO))
+      .withCompaction(Compaction.afterRecords(1000));
+
   private final Json.Factory jsonFactory;
+  private final SanskritOptions sanskritOptions;
 
   public NomadServerFactory(Json.Factory jsonFactory) {
+    this(jsonFactory, SanskritOptions.defaults());
+  }
+
+  public NomadServerFactory(Json.Factory jsonFactory, SanskritOptions sanskritOptions) {
     this.jsonFactory = jsonFactory.withModule(new SanskritJsonModule());
+    this.sanskritOptions = sanskritOptions;
   }
 
   public DynamicConfigNomadServer createServer(NomadConfigurationManager configurationManager,
@@ -78,7 +96,7 @@ public class NomadServerFactory {
 
     SanskritMapper mapper = new SanskritJsonMapper(jsonFactory);
 
-    Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper);
+    Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, mapper, sanskritOptions);
 
     Path clusterDir = configurationManager.getClusterPath();
     InitialConfigStorage configStorage = new InitialConfigStorage(new ConfigStorageAdapter(new FileConfigStorage(clusterDir, nodeName)) {
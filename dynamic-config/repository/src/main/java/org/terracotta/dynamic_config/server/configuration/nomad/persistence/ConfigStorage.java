@@ -23,6 +23,14 @@ public interface ConfigStorage {
 
   void saveConfig(long version, NodeContext config) throws ConfigStorageException;
 
+  /**
+   * @return a value that changes whenever the config saved for this version is modified, or null if modifications
+   * cannot be detected, in which case the config has to be reloaded each time it is needed
+   */
+  default Object getConfigStamp(long version) throws ConfigStorageException {
+    return null;
+  }
+
   /**
    * Clear the saved configs
    */
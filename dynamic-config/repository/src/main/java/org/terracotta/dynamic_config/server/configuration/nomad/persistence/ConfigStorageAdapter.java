@@ -35,6 +35,9 @@ public class ConfigStorageAdapter implements ConfigStorage {
   @Override
   public void saveConfig(long version, NodeContext config) throws ConfigStorageException {delegate.saveConfig(version, config);}
 
+  @Override
+  public Object getConfigStamp(long version) throws ConfigStorageException {return delegate.getConfigStamp(version);}
+
   @Override
   public void reset() throws ConfigStorageException {
     delegate.reset();
@@ -31,9 +31,12 @@ import org.terracotta.dynamic_config.api.service.Props;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicReference;
@@ -131,6 +134,19 @@ public class FileConfigStorage implements ConfigStorage {
     }
   }
 
+  @Override
+  public Object getConfigStamp(long version) throws ConfigStorageException {
+    Path file = toPath(version);
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      return Arrays.asList(attributes.lastModifiedTime(), attributes.size(), attributes.fileKey());
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      throw new ConfigStorageException(e);
+    }
+  }
+
   @Override
   public void reset() throws ConfigStorageException {
     String time = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd.HHmmss.SSS"));
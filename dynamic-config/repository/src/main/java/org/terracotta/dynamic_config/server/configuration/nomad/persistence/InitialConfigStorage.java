@@ -47,6 +47,15 @@ public class InitialConfigStorage implements ConfigStorage {
     underlying.saveConfig(version, config);
   }
 
+  @Override
+  public Object getConfigStamp(long version) throws ConfigStorageException {
+    if (version == INITIAL_VERSION) {
+      return null;
+    }
+
+    return underlying.getConfigStamp(version);
+  }
+
   @Override
   public void reset() throws ConfigStorageException {
     underlying.reset();
@@ -35,4 +35,6 @@ public interface NomadSanskritKeys {
   String CHANGE_CREATION_USER = "creationUser";
   String CHANGE_CREATION_TIMESTAMP = "creationTimestamp";
   String PREV_CHANGE_UUID = "prevChangeUuid";
+  String CHANGE_COUNT = "changeCount";
+  String CHANGE_INDEX = "changeIndex.";
 }
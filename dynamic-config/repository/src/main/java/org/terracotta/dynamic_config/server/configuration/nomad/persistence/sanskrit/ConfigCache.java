@@ -0,0 +1,113 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.dynamic_config.server.configuration.nomad.persistence.sanskrit;
+
+import org.terracotta.dynamic_config.server.configuration.nomad.persistence.Config;
+import org.terracotta.dynamic_config.server.configuration.nomad.persistence.ConfigStorage;
+import org.terracotta.dynamic_config.server.configuration.nomad.persistence.ConfigStorageException;
+import org.terracotta.dynamic_config.server.configuration.nomad.persistence.HashComputer;
+import org.terracotta.nomad.server.NomadException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the configs loaded from a {@link ConfigStorage}, keyed by version, which also remembers the hash
+ * each config was successfully checked against.
+ * <p>
+ * A config is only cached when the storage can tell when it is modified (see {@link ConfigStorage#getConfigStamp(long)}),
+ * and is reloaded as soon as its stamp changes. Callers get their own copy of the cached config.
+ */
+class ConfigCache {
+  private final ConfigStorage configStorage;
+  private final HashComputer hashComputer;
+  private final Map<Long, CachedConfig> configs;
+
+  ConfigCache(ConfigStorage configStorage, HashComputer hashComputer, int maxSize) {
+    this.configStorage = configStorage;
+    this.hashComputer = hashComputer;
+    this.configs = new LinkedHashMap<Long, CachedConfig>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, CachedConfig> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  Config getConfig(long version) throws ConfigStorageException {
+    CachedConfig cached = load(version);
+    return cached.stamp == null ? cached.config : copy(cached.config);
+  }
+
+  /**
+   * @return the config of this version, after having checked that its hash is the expected one
+   */
+  Config getConfig(long version, String expectedHash) throws ConfigStorageException, NomadException {
+    CachedConfig cached = load(version);
+    if (!expectedHash.equals(cached.checkedHash)) {
+      hashComputer.checkHash(cached.config, expectedHash);
+      cached.checkedHash = expectedHash;
+    }
+    return cached.stamp == null ? cached.config : copy(cached.config);
+  }
+
+  synchronized void invalidate(long version) {
+    configs.remove(version);
+  }
+
+  synchronized void clear() {
+    configs.clear();
+  }
+
+  private CachedConfig load(long version) throws ConfigStorageException {
+    Object stamp = configStorage.getConfigStamp(version);
+    if (stamp != null) {
+      synchronized (this) {
+        CachedConfig cached = configs.get(version);
+        if (cached != null && stamp.equals(cached.stamp)) {
+          return cached;
+        }
+      }
+    }
+
+    // the stamp is read before loading, so that a concurrent modification is detected on the next load
+    CachedConfig cached = new CachedConfig(configStorage.getConfig(version), stamp);
+    if (stamp != null) {
+      synchronized (this) {
+        configs.put(version, cached);
+      }
+    }
+    return cached;
+  }
+
+  private static Config copy(Config config) {
+    return new Config(config.getTopology().clone(), config.getVersion());
+  }
+
+  private static class CachedConfig {
+    private final Config config;
+    private final Object stamp;
+    private volatile String checkedHash;
+
+    private CachedConfig(Config config, Object stamp) {
+      this.config = config;
+      this.stamp = stamp;
+    }
+  }
+}
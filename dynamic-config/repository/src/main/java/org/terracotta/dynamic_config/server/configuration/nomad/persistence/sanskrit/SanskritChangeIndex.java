@@ -0,0 +1,126 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.dynamic_config.server.configuration.nomad.persistence.sanskrit;
+
+import org.terracotta.persistence.sanskrit.Sanskrit;
+import org.terracotta.persistence.sanskrit.SanskritException;
+import org.terracotta.persistence.sanskrit.SanskritObject;
+import org.terracotta.persistence.sanskrit.change.SanskritChangeBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.terracotta.dynamic_config.server.configuration.nomad.persistence.NomadSanskritKeys.CHANGE_COUNT;
+import static org.terracotta.dynamic_config.server.configuration.nomad.persistence.NomadSanskritKeys.CHANGE_INDEX;
+import static org.terracotta.dynamic_config.server.configuration.nomad.persistence.NomadSanskritKeys.LATEST_CHANGE_UUID;
+import static org.terracotta.dynamic_config.server.configuration.nomad.persistence.NomadSanskritKeys.PREV_CHANGE_UUID;
+
+/**
+ * The index of the change history, persisted in Sanskrit alongside the changes: {@code CHANGE_COUNT} holds the number
+ * of changes, and the UUID of the change at index {@code i} (the oldest change being at index 0) is held by the key
+ * {@code CHANGE_INDEX + i}.
+ * <p>
+ * A history written before the index existed is indexed by walking the change chain once, and this index is persisted
+ * along with the next change.
+ */
+class SanskritChangeIndex {
+  private final Sanskrit sanskrit;
+  private volatile WalkedChain walkedChain;
+
+  SanskritChangeIndex(Sanskrit sanskrit) {
+    this.sanskrit = sanskrit;
+  }
+
+  long getChangeCount() throws SanskritException {
+    Long count = sanskrit.getLong(CHANGE_COUNT);
+    return count != null ? count : walkChain().size();
+  }
+
+  List<UUID> getChangeUuids(long fromIndex, long toIndex) throws SanskritException {
+    Long count = sanskrit.getLong(CHANGE_COUNT);
+    List<UUID> chain = count == null ? walkChain() : null;
+    long changeCount = count != null ? count : chain.size();
+    if (fromIndex < 0 || fromIndex > toIndex || toIndex > changeCount) {
+      throw new IllegalArgumentException("Invalid range: [" + fromIndex + ", " + toIndex + "). Change count: " + changeCount);
+    }
+    if (chain != null) {
+      return new ArrayList<>(chain.subList((int) fromIndex, (int) toIndex));
+    }
+
+    List<UUID> uuids = new ArrayList<>((int) (toIndex - fromIndex));
+    for (long index = fromIndex; index < toIndex; index++) {
+      String uuid = sanskrit.getString(CHANGE_INDEX + index);
+      if (uuid == null) {
+        throw new SanskritException("Missing change at index: " + index);
+      }
+      uuids.add(UUID.fromString(uuid));
+    }
+    return uuids;
+  }
+
+  /**
+   * Adds the index entry of a new change to the given Sanskrit change.
+   */
+  void append(SanskritChangeBuilder changeBuilder, UUID changeUuid) throws SanskritException {
+    Long count = sanskrit.getLong(CHANGE_COUNT);
+    if (count == null) {
+      List<UUID> chain = walkChain();
+      for (int index = 0; index < chain.size(); index++) {
+        changeBuilder.setString(CHANGE_INDEX + index, chain.get(index).toString());
+      }
+      count = (long) chain.size();
+    }
+    changeBuilder.setString(CHANGE_INDEX + count, changeUuid.toString());
+    changeBuilder.setLong(CHANGE_COUNT, count + 1);
+  }
+
+  private List<UUID> walkChain() throws SanskritException {
+    String latestChangeUuid = sanskrit.getString(LATEST_CHANGE_UUID);
+    WalkedChain walked = walkedChain;
+    if (walked != null && Objects.equals(walked.latestChangeUuid, latestChangeUuid)) {
+      return walked.uuids;
+    }
+
+    LinkedList<UUID> uuids = new LinkedList<>();
+    String uuid = latestChangeUuid;
+    while (uuid != null) {
+      uuids.addFirst(UUID.fromString(uuid));
+      SanskritObject change = sanskrit.getObject(uuid);
+      uuid = change == null ? null : change.getString(PREV_CHANGE_UUID);
+    }
+    List<UUID> chain = Collections.unmodifiableList(new ArrayList<>(uuids));
+    walkedChain = new WalkedChain(latestChangeUuid, chain);
+    return chain;
+  }
+
+  /**
+   * The chain walked for a history written before the index existed, kept until the latest change moves.
+   */
+  private static class WalkedChain {
+    private final String latestChangeUuid;
+    private final List<UUID> uuids;
+
+    WalkedChain(String latestChangeUuid, List<UUID> uuids) {
+      this.latestChangeUuid = latestChangeUuid;
+      this.uuids = uuids;
+    }
+  }
+}
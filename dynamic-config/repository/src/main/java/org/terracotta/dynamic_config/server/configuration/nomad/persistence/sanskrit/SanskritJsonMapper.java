@@ -76,6 +76,15 @@ public class SanskritJsonMapper implements SanskritMapper {
     }
   }
 
+  @Override
+  public Object toTree(Object value) throws SanskritException {
+    try {
+      return getJson(getCurrentFormatVersion()).map(value);
+    } catch (RuntimeException e) {
+      throw new SanskritException(e);
+    }
+  }
+
   private Json getJson(String version) {
     final String v = version == null ? getCurrentFormatVersion() : version;
     final Json json = mappers.get(v);
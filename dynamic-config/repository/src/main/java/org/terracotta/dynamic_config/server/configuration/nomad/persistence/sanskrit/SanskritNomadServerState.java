@@ -35,6 +35,7 @@ import org.terracotta.persistence.sanskrit.SanskritObject;
 import org.terracotta.persistence.sanskrit.change.SanskritChangeBuilder;
 
 import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -57,14 +58,27 @@ import static org.terracotta.dynamic_config.server.configuration.nomad.persisten
 import static org.terracotta.dynamic_config.server.configuration.nomad.persistence.NomadSanskritKeys.PREV_CHANGE_UUID;
 
 public class SanskritNomadServerState implements NomadServerState<NodeContext> {
+  private static final int DEFAULT_CONFIG_CACHE_SIZE = 32;
+
   private final Sanskrit sanskrit;
   private final ConfigStorage configStorage;
   private final HashComputer hashComputer;
+  private final ConfigCache configCache;
+  private final SanskritChangeIndex changeIndex;
 
   public SanskritNomadServerState(Sanskrit sanskrit, ConfigStorage configStorage, HashComputer hashComputer) {
+    this(sanskrit, configStorage, hashComputer, DEFAULT_CONFIG_CACHE_SIZE);
+  }
+
+  /**
+   * @param configCacheSize the maximum number of config versions kept parsed and hash-checked in memory
+   */
+  public SanskritNomadServerState(Sanskrit sanskrit, ConfigStorage configStorage, HashComputer hashComputer, int configCacheSize) {
     this.sanskrit = sanskrit;
     this.configStorage = configStorage;
     this.hashComputer = hashComputer;
+    this.configCache = new ConfigCache(configStorage, hashComputer, configCacheSize);
+    this.changeIndex = new SanskritChangeIndex(sanskrit);
   }
 
   @Override
@@ -149,9 +163,9 @@ public class SanskritNomadServerState implements NomadServerState<NodeContext> {
       Instant creationTimestamp = Instant.parse(child.getString(CHANGE_CREATION_TIMESTAMP));
 
       // loads the config file as it was written by the nomad system
-      Config config = configStorage.getConfig(version);
+      Config config;
       try {
-        hashComputer.checkHash(config, expectedHash);
+        config = configCache.getConfig(version, expectedHash);
       } catch (NomadException e) {
         throw new NomadException("Bad hash for change: " + changeUuid + ". " + e.getMessage());
       }
@@ -162,6 +176,32 @@ public class SanskritNomadServerState implements NomadServerState<NodeContext> {
     }
   }
 
+  @Override
+  public long getChangeCount() throws NomadException {
+    try {
+      return changeIndex.getChangeCount();
+    } catch (SanskritException e) {
+      throw new NomadException("Failed to read change history", e);
+    }
+  }
+
+  @Override
+  public LinkedHashMap<UUID, ChangeState<NodeContext>> getChangeStates(long fromIndex, long toIndex) throws NomadException {
+    try {
+      LinkedHashMap<UUID, ChangeState<NodeContext>> changeStates = new LinkedHashMap<>();
+      for (UUID changeUuid : changeIndex.getChangeUuids(fromIndex, toIndex)) {
+        ChangeState<NodeContext> changeState = getChangeState(changeUuid);
+        if (changeState == null) {
+          throw new NomadException("Missing change: " + changeUuid);
+        }
+        changeStates.put(changeUuid, changeState);
+      }
+      return changeStates;
+    } catch (SanskritException e) {
+      throw new NomadException("Failed to read change history", e);
+    }
+  }
+
   @Override
   public NomadStateChange<NodeContext> newStateChange() {
     SanskritChangeBuilder changeBuilder = SanskritChangeBuilder.newChange();
@@ -183,7 +223,11 @@ public class SanskritNomadServerState implements NomadServerState<NodeContext> {
       Long version = sanskritChange.getChangeVersion();
       if (version != null) {
         NodeContext changeResult = sanskritChange.getChangeResult();
-        configStorage.saveConfig(version, changeResult);
+        try {
+          configStorage.saveConfig(version, changeResult);
+        } finally {
+          configCache.invalidate(version);
+        }
       }
 
       sanskrit.applyChange(sanskritChange.getSanskritChange());
@@ -199,7 +243,7 @@ public class SanskritNomadServerState implements NomadServerState<NodeContext> {
       return Optional.empty();
     }
     try {
-      final Config config = configStorage.getConfig(currentVersion);
+      final Config config = configCache.getConfig(currentVersion);
       return Optional.of(config.getTopology());
     } catch (ConfigStorageException e) {
       throw new NomadException("Failed to load current configuration", e);
@@ -209,6 +253,7 @@ public class SanskritNomadServerState implements NomadServerState<NodeContext> {
   @Override
   public void reset() throws NomadException {
     NomadException error = null;
+    configCache.clear();
     try {
       sanskrit.reset();
     } catch (SanskritException e) {
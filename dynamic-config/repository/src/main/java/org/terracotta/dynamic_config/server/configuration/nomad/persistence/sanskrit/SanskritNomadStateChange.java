@@ -141,6 +141,7 @@ public class SanskritNomadStateChange implements NomadStateChange<NodeContext> {
       child.setString(CHANGE_CREATION_HOST, changeRequest.getCreationHost());
       child.setString(CHANGE_CREATION_USER, changeRequest.getCreationUser());
       child.setString(CHANGE_CREATION_TIMESTAMP, changeRequest.getCreationTimestamp().toString());
+      new SanskritChangeIndex(sanskrit).append(changeBuilder, changeUuid);
     } catch (SanskritException e) {
       throw new NomadException(e);
     }
@@ -21,11 +21,15 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Properties;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import org.junit.Rule;
@@ -67,4 +71,26 @@ public class FileConfigStorageTest {
     Config loaded = storage.getConfig(1L);
     assertThat(loaded.getTopology(), is(topology));
   }
+
+  @Test
+  public void configStamp() throws Exception {
+    Path root = temporaryFolder.getRoot();
+
+    NodeContext topology = new NodeContext(
+        newTestCluster("bar",
+            newTestStripe("stripe1").addNodes(
+                newTestNode("node-1", "localhost").setUID(Testing.N_UIDS[1]))),
+        Testing.N_UIDS[1]);
+
+    FileConfigStorage storage = new FileConfigStorage(root, "node-1");
+
+    assertThat(storage.getConfigStamp(1L), is(nullValue()));
+    storage.saveConfig(1L, topology);
+    Object stamp = storage.getConfigStamp(1L);
+    assertThat(stamp, is(notNullValue()));
+    assertThat(storage.getConfigStamp(1L), is(equalTo(stamp)));
+
+    Files.write(root.resolve("node-1.1.properties"), "modified".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    assertThat(storage.getConfigStamp(1L), is(not(equalTo(stamp))));
+  }
 }
\ No newline at end of file
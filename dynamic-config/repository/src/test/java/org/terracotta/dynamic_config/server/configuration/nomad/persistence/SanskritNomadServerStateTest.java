@@ -49,6 +49,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.terracotta.dynamic_config.api.model.Setting.OFFHEAP_RESOURCES;
@@ -198,6 +202,49 @@ public class SanskritNomadServerStateTest {
     assertEquals("set offheap-resources.primary-server-resource=2GB", change.getSummary());
   }
 
+  @Test
+  public void getChangeRequestCachesVerifiedConfig() throws Exception {
+    UUID uuid = UUID.randomUUID();
+    SettingNomadChange settingNomadChange = SettingNomadChange.set(Applicability.cluster(), OFFHEAP_RESOURCES, "primary-server-resource", "2GB");
+
+    MutableSanskritObject changeObject = sanskrit.newMutableSanskritObject();
+    changeObject.setString("state", "COMMITTED");
+    changeObject.setLong("version", 1L);
+    changeObject.set("operation", settingNomadChange, Version.CURRENT.getValue());
+    changeObject.setString("changeResultHash", "1063a7c79380cc1c8372c1f78d1104eefdeed073");
+    changeObject.setString("creationHost", "host");
+    changeObject.setString("creationUser", "user");
+    changeObject.setString("creationTimestamp", now.toString());
+
+    when(sanskrit.getObject(uuid.toString())).thenReturn(changeObject);
+    when(configStorage.getConfigStamp(1L)).thenReturn("stamp1");
+    when(configStorage.getConfig(1L)).thenReturn(new Config(topology, Version.CURRENT));
+    HashComputer hashComputer = spy(new DefaultHashComputer());
+    state = new SanskritNomadServerState(sanskrit, configStorage, hashComputer);
+
+    assertEquals(topology, state.getChangeState(uuid).getChangeResult());
+    assertEquals(topology, state.getChangeState(uuid).getChangeResult());
+    verify(configStorage, times(1)).getConfig(1L);
+    verify(hashComputer, times(1)).checkHash(any(Config.class), anyString());
+
+    // the cached config is never handed out
+    state.getChangeState(uuid).getChangeResult().getCluster().setName("foo");
+    assertEquals(topology, state.getChangeState(uuid).getChangeResult());
+
+    // a modified file is reloaded and checked again
+    when(configStorage.getConfigStamp(1L)).thenReturn("stamp2");
+    assertEquals(topology, state.getChangeState(uuid).getChangeResult());
+    assertEquals(topology, state.getChangeState(uuid).getChangeResult());
+    verify(configStorage, times(2)).getConfig(1L);
+    verify(hashComputer, times(2)).checkHash(any(Config.class), anyString());
+
+    // saving a config invalidates its version
+    state.applyStateChange(state.newStateChange().createChange(uuid, new ChangeRequest<>(COMMITTED, 1L, null, settingNomadChange, topology, "host", "user", now)));
+    assertEquals(topology, state.getChangeState(uuid).getChangeResult());
+    verify(configStorage, times(3)).getConfig(1L);
+    verify(hashComputer, times(3)).checkHash(any(Config.class), anyString());
+  }
+
   @Test
   public void makeFirstChange() throws Exception {
     runChangeTest(1L);
@@ -249,6 +296,8 @@ public class SanskritNomadServerStateTest {
     assertThat(sanskritChangeValues.getString("lastMutationHost"), is("host2"));
     assertThat(sanskritChangeValues.getString("lastMutationUser"), is("user2"));
     assertThat(sanskritChangeValues.getString("lastMutationTimestamp"), is(now.toString()));
+    assertThat(sanskritChangeValues.getLong("changeCount"), is(1L));
+    assertThat(sanskritChangeValues.getString("changeIndex.0"), is(uuid.toString()));
 
     SanskritObject changeDetails = sanskritChangeValues.getObject(uuid.toString());
     assertThat(changeDetails.getString("state"), is("COMMITTED"));
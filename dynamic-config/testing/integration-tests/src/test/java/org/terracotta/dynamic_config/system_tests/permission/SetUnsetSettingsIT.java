@@ -26,6 +26,7 @@ import org.terracotta.persistence.sanskrit.SanskritException;
 import org.terracotta.persistence.sanskrit.SanskritImpl;
 import org.terracotta.persistence.sanskrit.SanskritMapper;
 import org.terracotta.persistence.sanskrit.SanskritObject;
+import org.terracotta.persistence.sanskrit.change.SanskritChange;
 import org.terracotta.persistence.sanskrit.file.FileBasedFilesystemDirectory;
 
 import java.io.IOException;
@@ -139,9 +140,9 @@ public class SetUnsetSettingsIT extends DynamicConfigIT {
     SanskritMapper mapper = new SanskritJsonMapper(jsonFactory);
     new SanskritImpl(new FileBasedFilesystemDirectory(pathToAppendLog), mapper) {
       @Override
-      public void onNewRecord(String timeStamp, String data) throws SanskritException {
+      public void onNewRecord(String timeStamp, SanskritChange change) throws SanskritException {
         MutableSanskritObject visitor = newMutableSanskritObject();
-        mapper.fromString(data, null, visitor);
+        change.accept(visitor);
         res.add(visitor);
       }
     };
@@ -0,0 +1,62 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.lease;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.connection.Connection;
+
+import java.io.IOException;
+
+/**
+ * Periodically checks the lease of a connection, and closes the connection once the lease is lost.
+ */
+class LeaseExpiryConnectionKillingTask implements LeaseScheduler.Task {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LeaseExpiryConnectionKillingTask.class);
+
+  static final long CHECK_INTERVAL_MILLIS = 200L;
+
+  private final LeaseMaintainer leaseMaintainer;
+  private final Connection connection;
+
+  LeaseExpiryConnectionKillingTask(LeaseMaintainer leaseMaintainer, Connection connection) {
+    this.leaseMaintainer = leaseMaintainer;
+    this.connection = connection;
+  }
+
+  @Override
+  public long run() {
+    Lease lease = leaseMaintainer.getCurrentLease();
+
+    if (!(lease instanceof NullLease)) {
+      boolean validLease = lease.isValidAndContiguous(lease);
+      if (!validLease) {
+        try {
+          LOGGER.info("Lease lost, so closing connection to server: " + lease);
+          connection.close();
+        } catch (IOException e) {
+          LOGGER.error("Closing connection, due to lease expiry, caused an error", e);
+        } catch (IllegalStateException e) {
+          // Already closed.
+        }
+        return -1;
+      }
+    }
+
+    return CHECK_INTERVAL_MILLIS;
+  }
+}
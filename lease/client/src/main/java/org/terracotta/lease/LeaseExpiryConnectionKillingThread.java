@@ -16,25 +16,23 @@
  */
 package org.terracotta.lease;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.terracotta.connection.Connection;
 
 import java.io.Closeable;
 import java.io.IOException;
 
+/**
+ * A thread dedicated to closing a connection once its lease is lost.
+ * {@link LeaseMaintainerFactory} now runs the same checks for all connections on the shared {@link LeaseScheduler}.
+ */
 public class LeaseExpiryConnectionKillingThread extends Thread implements Closeable {
-  private static final Logger LOGGER = LoggerFactory.getLogger(LeaseExpiryConnectionKillingThread.class);
-
-  private final LeaseMaintainer leaseMaintainer;
-  private final Connection connection;
+  private final LeaseExpiryConnectionKillingTask task;
   private final TimeSource timeSource;
 
   private volatile boolean shutdown = false;
 
   LeaseExpiryConnectionKillingThread(LeaseMaintainer leaseMaintainer, Connection connection, TimeSource timeSource) {
-    this.leaseMaintainer = leaseMaintainer;
-    this.connection = connection;
+    this.task = new LeaseExpiryConnectionKillingTask(leaseMaintainer, connection);
     this.timeSource = timeSource;
     setName("LeaseExpiryConnectionKillingThread");
     setDaemon(true);
@@ -44,24 +42,12 @@ public class LeaseExpiryConnectionKillingThread extends Thread implements Closea
   public void run() {
     while (!shutdown) {
       try {
-        Lease lease = leaseMaintainer.getCurrentLease();
-
-        if (!(lease instanceof NullLease)) {
-          boolean validLease = lease.isValidAndContiguous(lease);
-          if (!validLease) {
-            try {
-              LOGGER.info("Lease lost, so closing connection to server: " + lease);
-              connection.close();
-            } catch (IOException e) {
-              LOGGER.error("Closing connection, due to lease expiry, caused an error", e);
-            } catch (IllegalStateException e) {
-              // Already closed.
-            }
-            return;
-          }
+        long waitLength = task.run();
+        if (waitLength < 0) {
+          return;
         }
 
-        timeSource.sleep(200L);
+        timeSource.sleep(waitLength);
       } catch (InterruptedException e) {
         //reloop and check
       } finally {
@@ -16,6 +16,7 @@
  */
 package org.terracotta.lease;
 
+import java.io.Closeable;
 import java.util.Properties;
 
 import org.slf4j.Logger;
@@ -27,9 +28,14 @@ import org.terracotta.exception.EntityNotProvidedException;
 import org.terracotta.exception.EntityVersionMismatchException;
 import static org.terracotta.lease.LeaseEntityConstants.ENTITY_NAME;
 import static org.terracotta.lease.LeaseEntityConstants.ENTITY_VERSION;
+import static org.terracotta.lease.LeaseScheduler.TaskType.EXPIRY_CHECK;
+import static org.terracotta.lease.LeaseScheduler.TaskType.REFRESH;
 
 /**
  * Allows creation of a LeaseMaintainer on a specified connection.
+ * <p>
+ * The leases of all the connections are refreshed and checked by the shared {@link LeaseScheduler} of their
+ * {@link TimeSource}.
  */
 public class LeaseMaintainerFactory {
   private static final Logger LOGGER = LoggerFactory.getLogger(LeaseMaintainerFactory.class);
@@ -48,13 +54,10 @@ public class LeaseMaintainerFactory {
     LeaseMaintainerImpl leaseMaintainer = new LeaseMaintainerImpl(leaseAcquirer, timeSource);
     leaseReconnectListener.setUnderlying(leaseMaintainer);
 
-    LeaseMaintenanceThread leaseMaintenanceThread = new LeaseMaintenanceThread(leaseMaintainer, timeSource);
-    LeaseExpiryConnectionKillingThread leaseExpiryConnectionKillingThread = new LeaseExpiryConnectionKillingThread(leaseMaintainer, connection, timeSource);
+    Closeable leaseMaintenance = LeaseScheduler.schedule(timeSource, new LeaseMaintenanceTask(leaseMaintainer), REFRESH);
+    Closeable leaseExpiryConnectionKilling = LeaseScheduler.schedule(timeSource, new LeaseExpiryConnectionKillingTask(leaseMaintainer, connection), EXPIRY_CHECK);
 
-    leaseMaintenanceThread.start();
-    leaseExpiryConnectionKillingThread.start();
-
-    return new CleaningLeaseMaintainer(leaseMaintainer, connection, leaseMaintenanceThread, leaseExpiryConnectionKillingThread);
+    return new CleaningLeaseMaintainer(leaseMaintainer, connection, leaseMaintenance, leaseExpiryConnectionKilling);
   }
 
   private static LeaseAcquirer getLeaseAcquirer(Connection connection, LeaseReconnectListener leaseReconnectListener) {
@@ -0,0 +1,68 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.lease;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.exception.ConnectionClosedException;
+
+/**
+ * Refreshes the lease of a connection, and then waits for the lease to need refreshing again.
+ */
+class LeaseMaintenanceTask implements LeaseScheduler.Task {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LeaseMaintenanceTask.class);
+
+  private final LeaseMaintainerImpl leaseMaintainer;
+
+  LeaseMaintenanceTask(LeaseMaintainerImpl leaseMaintainer) {
+    this.leaseMaintainer = leaseMaintainer;
+  }
+
+  @Override
+  public long run() {
+    try {
+      long waitLength = leaseMaintainer.refreshLease();
+
+      if (LOGGER.isDebugEnabled()) {
+        LOGGER.debug("Lease refresh wait: " + waitLength);
+      }
+
+      return Math.max(0, waitLength);
+    } catch (InterruptedException e) {
+      //retry, unless the task was closed
+      return 0;
+    } catch (LeaseException e) {
+      if (containsCause(e, ConnectionClosedException.class)) {
+        return -1;
+      } else {
+        LOGGER.error("Error obtaining lease", e);
+        return 0;
+      }
+    }
+  }
+
+  private boolean containsCause(Throwable failure, Class<? extends Throwable> cause) {
+    Throwable intermediate = failure;
+    do {
+      if (cause.isInstance(intermediate)) {
+        return true;
+      }
+    } while ((intermediate = intermediate.getCause()) != null);
+
+    return false;
+  }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.lease;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the periodic lease tasks of all the connections using the same {@link TimeSource}, rather than dedicating
+ * threads to each connection.
+ * <p>
+ * The tasks waiting for their next run are ordered by deadline in a priority queue, watched by a single timer thread
+ * that hands the tasks that are due to pools of workers: one per {@link TaskType}, so that refreshes blocked on an
+ * unreachable server cannot delay the expiry checks that close its connections. The expiry checks share a small,
+ * bounded pool, while the refresh pool grows past the refreshes that are blocked, so that the refreshes of the other
+ * connections are never queued behind them. The scheduler of a time source is created when its first task is
+ * scheduled, and its threads are stopped once all its tasks have been closed or have stopped.
+ */
+class LeaseScheduler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LeaseScheduler.class);
+  private static final long IDLE_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  private static final long WORKER_KEEP_ALIVE_SECONDS = 60L;
+  static final int WORKER_COUNT = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+  private static final Map<TimeSource, LeaseScheduler> SCHEDULERS = new HashMap<>();
+
+  enum TaskType {
+    /**
+     * Refreshes a lease. It may block on the server for as long as the server does not answer, and is interrupted
+     * when it is closed.
+     */
+    REFRESH("LeaseSchedulerWorker-", true, true),
+
+    /**
+     * Checks a lease for expiry. It is never interrupted, as it may be closing the connection.
+     */
+    EXPIRY_CHECK("LeaseSchedulerExpiryWorker-", false, false);
+
+    private final String threadNamePrefix;
+    private final boolean interruptible;
+    private final boolean blocking;
+
+    TaskType(String threadNamePrefix, boolean interruptible, boolean blocking) {
+      this.threadNamePrefix = threadNamePrefix;
+      this.interruptible = interruptible;
+      this.blocking = blocking;
+    }
+  }
+
+  /**
+   * A task run periodically by the scheduler.
+   */
+  interface Task {
+    /**
+     * @return the number of milliseconds to wait before running the task again, or a negative value if the task must
+     * not be run again
+     */
+    long run();
+  }
+
+  private final TimeSource timeSource;
+  private final Thread timer;
+  private final Map<TaskType, ThreadPoolExecutor> workers = new EnumMap<>(TaskType.class);
+  private final PriorityQueue<ScheduledTask> queue = new PriorityQueue<>((a, b) -> Long.signum(a.deadline - b.deadline));
+
+  // guarded by SCHEDULERS
+  private int taskCount;
+
+  // guarded by this
+  private boolean stopped;
+  private boolean sleeping;
+  private long wakeUpTime;
+
+  private LeaseScheduler(TimeSource timeSource) {
+    this.timeSource = timeSource;
+    this.timer = new Thread(this::runTimer, "LeaseScheduler");
+    this.timer.setDaemon(true);
+    for (TaskType type : TaskType.values()) {
+      AtomicInteger workerId = new AtomicInteger();
+      ThreadFactory workerFactory = runnable -> {
+        Thread thread = new Thread(runnable, type.threadNamePrefix + workerId.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      };
+      ThreadPoolExecutor pool;
+      if (type.blocking) {
+        // a task that is due is handed to an idle worker, or to a new one if they are all busy
+        pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(), workerFactory);
+      } else {
+        pool = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), workerFactory);
+        pool.allowCoreThreadTimeOut(true);
+      }
+      workers.put(type, pool);
+    }
+  }
+
+  /**
+   * Schedules a task to be run right away, and then periodically until it is closed or asks not to be run again.
+   *
+   * @param timeSource the time source to measure the delays between the runs of the task with
+   * @param task the task to run
+   * @param type the type of the task, which tells the workers running it and whether closing it interrupts it
+   * @return a handle closing the task
+   */
+  static Closeable schedule(TimeSource timeSource, Task task, TaskType type) {
+    LeaseScheduler scheduler;
+    synchronized (SCHEDULERS) {
+      scheduler = SCHEDULERS.get(timeSource);
+      if (scheduler == null) {
+        scheduler = new LeaseScheduler(timeSource);
+        scheduler.timer.start();
+        SCHEDULERS.put(timeSource, scheduler);
+      }
+      scheduler.taskCount++;
+    }
+
+    ScheduledTask scheduledTask = new ScheduledTask(scheduler, task, type);
+    scheduler.enqueue(scheduledTask, 0L);
+    return scheduledTask;
+  }
+
+  static int getSchedulerCount() {
+    synchronized (SCHEDULERS) {
+      return SCHEDULERS.size();
+    }
+  }
+
+  private static void release(LeaseScheduler scheduler) {
+    synchronized (SCHEDULERS) {
+      if (--scheduler.taskCount == 0) {
+        SCHEDULERS.remove(scheduler.timeSource);
+        scheduler.stop();
+      }
+    }
+  }
+
+  private synchronized void enqueue(ScheduledTask task, long delayMillis) {
+    if (stopped) {
+      return;
+    }
+    task.deadline = timeSource.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+    queue.add(task);
+    if (sleeping && task.deadline - wakeUpTime < 0) {
+      timer.interrupt();
+    }
+  }
+
+  private synchronized void remove(ScheduledTask task) {
+    queue.remove(task);
+  }
+
+  private synchronized void stop() {
+    stopped = true;
+    queue.clear();
+    timer.interrupt();
+    for (ThreadPoolExecutor pool : workers.values()) {
+      pool.shutdown();
+    }
+  }
+
+  private void runTimer() {
+    while (true) {
+      long waitMillis;
+      synchronized (this) {
+        if (stopped) {
+          return;
+        }
+
+        long now = timeSource.nanoTime();
+        ScheduledTask next;
+        while ((next = queue.peek()) != null && next.deadline - now <= 0) {
+          ScheduledTask due = queue.poll();
+          workers.get(due.type).execute(due);
+        }
+
+        if (next == null) {
+          waitMillis = IDLE_WAIT_MILLIS;
+        } else {
+          long waitNanos = next.deadline - now;
+          waitMillis = TimeUnit.NANOSECONDS.toMillis(waitNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+        }
+        wakeUpTime = now + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        sleeping = true;
+      }
+
+      try {
+        timeSource.sleep(waitMillis);
+      } catch (InterruptedException e) {
+        // an earlier task was scheduled, or the scheduler was stopped
+      }
+
+      synchronized (this) {
+        sleeping = false;
+        // clear an interrupt that arrived after the sleep
+        Thread.interrupted();
+      }
+    }
+  }
+
+  private static class ScheduledTask implements Runnable, Closeable {
+    private final LeaseScheduler scheduler;
+    private final Task task;
+    private final TaskType type;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    // guarded by scheduler
+    private long deadline;
+
+    // guarded by this
+    private boolean closed;
+    private Thread runner;
+
+    ScheduledTask(LeaseScheduler scheduler, Task task, TaskType type) {
+      this.scheduler = scheduler;
+      this.task = task;
+      this.type = type;
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        runner = Thread.currentThread();
+      }
+
+      long waitLength = -1;
+      try {
+        waitLength = task.run();
+      } catch (RuntimeException e) {
+        LOGGER.error("Unexpected error running lease task: " + task, e);
+      }
+
+      boolean rescheduled;
+      synchronized (this) {
+        runner = null;
+        rescheduled = !closed && waitLength >= 0;
+        if (rescheduled) {
+          scheduler.enqueue(this, waitLength);
+        }
+      }
+
+      if (!rescheduled) {
+        releaseScheduler();
+      }
+    }
+
+    @Override
+    public void close() {
+      synchronized (this) {
+        closed = true;
+        if (type.interruptible && runner != null) {
+          runner.interrupt();
+        }
+      }
+      scheduler.remove(this);
+      releaseScheduler();
+    }
+
+    private void releaseScheduler() {
+      if (released.compareAndSet(false, true)) {
+        release(scheduler);
+      }
+    }
+  }
+}
@@ -16,8 +16,12 @@
  */
 package org.terracotta.lease;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
@@ -28,7 +32,6 @@ import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
-import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.terracotta.connection.Connection;
 import org.terracotta.connection.entity.EntityRef;
@@ -37,8 +40,8 @@ import static org.terracotta.lease.LeaseEntityConstants.ENTITY_VERSION;
 
 @RunWith(MockitoJUnitRunner.class)
 public class LeaseMaintainerFactoryTest {
-  @Spy
-  private TestTimeSource timeSource = new TestTimeSource();
+  private final TestTimeSource timeSource = new TestTimeSource();
+  private final List<Long> acquisitions = new CopyOnWriteArrayList<>();
 
   @Mock
   private Connection connection;
@@ -53,32 +56,39 @@ public class LeaseMaintainerFactoryTest {
   public void before() throws Exception {
     when(connection.getEntityRef(LeaseAcquirer.class, ENTITY_VERSION, ENTITY_NAME)).thenReturn(entityRef);
     when(entityRef.fetchEntity(any())).thenReturn(leaseAcquirer);
-    when(leaseAcquirer.acquireLease()).thenReturn(6000L);
+    when(leaseAcquirer.acquireLease()).thenAnswer(invocation -> {
+      acquisitions.add(timeSource.nanoTime());
+      return 6000L;
+    });
   }
 
   @Test
   public void objectsWiredTogetherCorrectly() throws Exception {
     LeaseMaintainer leaseMaintainer = LeaseMaintainerFactory.createLeaseMaintainer(connection, timeSource);
 
-    assertTrue(timeSource.waitUntilSleeping(60, TimeUnit.SECONDS));
-    verify(timeSource, timeout(60_000).times(1)).sleep(2000L);
-    verify(leaseAcquirer, times(1)).acquireLease();
+    verify(leaseAcquirer, timeout(60_000).times(1)).acquireLease();
     verify(leaseAcquirer, times(0)).close();
 
-    assertTrue(timeSource.waitUntilSleeping(60, TimeUnit.SECONDS));
-    timeSource.tickMillis(5000L);
+    while (acquisitions.size() < 2) {
+      assertTrue(timeSource.waitUntilSleeping(60, TimeUnit.SECONDS));
+      timeSource.tickMillis(100L);
+    }
 
-    verify(timeSource, timeout(60_000).times(2)).sleep(2000L); // additional call to sleep
+    // refreshed after a third of the lease
+    assertTrue(acquisitions.get(1) - acquisitions.get(0) >= TimeUnit.MILLISECONDS.toNanos(2000L));
     verify(leaseAcquirer, times(2)).acquireLease();
     verify(leaseAcquirer, times(0)).close();
+    verify(connection, times(0)).close();
 
+    int schedulerCount = LeaseScheduler.getSchedulerCount();
     leaseMaintainer.close();
+    // closing the last tasks of the time source stops its scheduler, so nothing can run anymore
+    assertThat(LeaseScheduler.getSchedulerCount(), is(schedulerCount - 1));
 
-    assertTrue(timeSource.waitUntilSleeping(60, TimeUnit.SECONDS));
     timeSource.tickMillis(5000L);
 
-    verify(timeSource, timeout(60_000).times(2)).sleep(2000L); // no more call to sleep
-    verify(leaseAcquirer, times(2)).acquireLease();
+    verify(leaseAcquirer, times(2)).acquireLease(); // no more refresh
     verify(leaseAcquirer, times(1)).close();
+    verify(connection, times(0)).close();
   }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.lease;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.terracotta.exception.ConnectionClosedException;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LeaseMaintenanceTaskTest {
+  @Mock
+  private LeaseMaintainerImpl leaseMaintainer;
+
+  @Test
+  public void waitsForTheRefreshWaitLength() throws Exception {
+    when(leaseMaintainer.refreshLease()).thenReturn(2000L, 0L);
+
+    LeaseMaintenanceTask task = new LeaseMaintenanceTask(leaseMaintainer);
+
+    assertEquals(2000L, task.run());
+    assertEquals(0L, task.run());
+    verify(leaseMaintainer, times(2)).refreshLease();
+  }
+
+  @Test
+  public void retriesImmediatelyIfInterrupted() throws Exception {
+    when(leaseMaintainer.refreshLease()).thenThrow(new InterruptedException());
+
+    assertEquals(0L, new LeaseMaintenanceTask(leaseMaintainer).run());
+  }
+
+  @Test
+  public void retriesImmediatelyOnLeaseError() throws Exception {
+    when(leaseMaintainer.refreshLease()).thenThrow(new LeaseException("Failed"));
+
+    assertEquals(0L, new LeaseMaintenanceTask(leaseMaintainer).run());
+  }
+
+  @Test
+  public void closedConnectionStopsTheTask() throws Exception {
+    when(leaseMaintainer.refreshLease()).thenThrow(new LeaseException(new ConnectionClosedException("Connection closed")));
+
+    assertEquals(-1L, new LeaseMaintenanceTask(leaseMaintainer).run());
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.lease;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.terracotta.lease.LeaseScheduler.TaskType.EXPIRY_CHECK;
+import static org.terracotta.lease.LeaseScheduler.TaskType.REFRESH;
+
+public class LeaseSchedulerTest {
+  private final BlockingQueue<Long> sleeps = new LinkedBlockingQueue<>();
+  private final TestTimeSource timeSource = new TestTimeSource() {
+    @Override
+    public void sleep(long milliseconds) throws InterruptedException {
+      long end = nanoTime() + TimeUnit.MILLISECONDS.toNanos(milliseconds);
+      sleeps.add(milliseconds);
+      while (nanoTime() - end < 0) {
+        Thread.sleep(10);
+      }
+    }
+  };
+  private final List<Closeable> tasks = new ArrayList<>();
+
+  @After
+  public void after() throws Exception {
+    for (Closeable task : tasks) {
+      task.close();
+    }
+  }
+
+  @Test
+  public void runsTasksAfterTheirWaitLength() throws Exception {
+    BlockingQueue<Long> runs = new ArrayBlockingQueue<>(10);
+    schedule(() -> {
+      runs.add(timeSource.nanoTime());
+      return 1000L;
+    }, EXPIRY_CHECK);
+
+    assertEquals(1L, (long) runs.poll(60, TimeUnit.SECONDS));
+    waitUntilSleeping(1000L);
+
+    timeSource.tickMillis(999L);
+    assertNull(runs.poll(100, TimeUnit.MILLISECONDS));
+
+    timeSource.tickMillis(1L);
+    assertEquals(1L + TimeUnit.MILLISECONDS.toNanos(1000L), (long) runs.poll(60, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void anEarlierTaskWakesTheSchedulerUp() throws Exception {
+    schedule(() -> 60_000L, EXPIRY_CHECK);
+    waitUntilSleeping(60_000L);
+
+    BlockingQueue<Long> runs = new ArrayBlockingQueue<>(10);
+    schedule(() -> {
+      runs.add(timeSource.nanoTime());
+      return 100L;
+    }, EXPIRY_CHECK);
+    assertEquals(1L, (long) runs.poll(60, TimeUnit.SECONDS));
+    waitUntilSleeping(100L);
+
+    timeSource.tickMillis(100L);
+    assertEquals(1L + TimeUnit.MILLISECONDS.toNanos(100L), (long) runs.poll(60, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void tasksShareTheSchedulerOfTheirTimeSource() throws Exception {
+    int schedulerCount = LeaseScheduler.getSchedulerCount();
+    int taskCount = 4 * LeaseScheduler.WORKER_COUNT;
+    CountDownLatch allRan = new CountDownLatch(taskCount);
+    List<String> threadNames = new ArrayList<>();
+    for (int i = 0; i < taskCount; i++) {
+      schedule(() -> {
+        synchronized (threadNames) {
+          threadNames.add(Thread.currentThread().getName());
+        }
+        allRan.countDown();
+        return 1000L;
+      }, EXPIRY_CHECK);
+    }
+
+    assertTrue(allRan.await(60, TimeUnit.SECONDS));
+    assertThat(LeaseScheduler.getSchedulerCount(), is(schedulerCount + 1));
+    assertTrue(threadNames.stream().distinct().count() <= LeaseScheduler.WORKER_COUNT);
+  }
+
+  @Test
+  public void closingTheLastTaskStopsTheScheduler() throws Exception {
+    int schedulerCount = LeaseScheduler.getSchedulerCount();
+    AtomicInteger runs = new AtomicInteger();
+    Closeable first = schedule(() -> {
+      runs.incrementAndGet();
+      return 1000L;
+    }, EXPIRY_CHECK);
+    Closeable second = schedule(() -> 1000L, EXPIRY_CHECK);
+    assertThat(LeaseScheduler.getSchedulerCount(), is(schedulerCount + 1));
+
+    first.close();
+    assertThat(LeaseScheduler.getSchedulerCount(), is(schedulerCount + 1));
+    second.close();
+    assertThat(LeaseScheduler.getSchedulerCount(), is(schedulerCount));
+
+    int runCount = runs.get();
+    timeSource.tickMillis(2000L);
+    Thread.sleep(100L);
+    assertThat(runs.get(), is(runCount));
+  }
+
+  @Test
+  public void aTaskCanStopItself() throws Exception {
+    int schedulerCount = LeaseScheduler.getSchedulerCount();
+    CountDownLatch ran = new CountDownLatch(1);
+    schedule(() -> {
+      ran.countDown();
+      return -1L;
+    }, EXPIRY_CHECK);
+
+    assertTrue(ran.await(60, TimeUnit.SECONDS));
+    long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+    while (LeaseScheduler.getSchedulerCount() != schedulerCount && System.nanoTime() - end < 0) {
+      Thread.sleep(10L);
+    }
+    assertThat(LeaseScheduler.getSchedulerCount(), is(schedulerCount));
+  }
+
+  @Test
+  public void closingAnInterruptibleTaskInterruptsIt() throws Exception {
+    CountDownLatch running = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    Closeable task = schedule(() -> {
+      running.countDown();
+      try {
+        Thread.sleep(TimeUnit.SECONDS.toMillis(60));
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+      }
+      return 0L;
+    }, REFRESH);
+
+    assertTrue(running.await(60, TimeUnit.SECONDS));
+    task.close();
+    assertTrue(interrupted.await(60, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void blockedRefreshesDoNotDelayExpiryChecks() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch blocked = new CountDownLatch(LeaseScheduler.WORKER_COUNT);
+    for (int i = 0; i < LeaseScheduler.WORKER_COUNT; i++) {
+      schedule(() -> {
+        blocked.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          // closed
+        }
+        return -1L;
+      }, REFRESH);
+    }
+    assertTrue(blocked.await(60, TimeUnit.SECONDS));
+
+    CountDownLatch checked = new CountDownLatch(1);
+    schedule(() -> {
+      checked.countDown();
+      return -1L;
+    }, EXPIRY_CHECK);
+    try {
+      assertTrue(checked.await(60, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void blockedRefreshesDoNotDelayOtherRefreshes() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch blocked = new CountDownLatch(LeaseScheduler.WORKER_COUNT);
+    for (int i = 0; i < LeaseScheduler.WORKER_COUNT; i++) {
+      schedule(() -> {
+        blocked.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          // closed
+        }
+        return -1L;
+      }, REFRESH);
+    }
+    assertTrue(blocked.await(60, TimeUnit.SECONDS));
+
+    CountDownLatch refreshed = new CountDownLatch(1);
+    schedule(() -> {
+      refreshed.countDown();
+      return -1L;
+    }, REFRESH);
+    try {
+      assertTrue(refreshed.await(60, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void aFailingTaskIsNotRunAgain() throws Exception {
+    AtomicInteger runs = new AtomicInteger();
+    CountDownLatch ran = new CountDownLatch(1);
+    schedule(() -> {
+      runs.incrementAndGet();
+      ran.countDown();
+      throw new IllegalStateException("Failed");
+    }, EXPIRY_CHECK);
+
+    assertTrue(ran.await(60, TimeUnit.SECONDS));
+    timeSource.tickMillis(1000L);
+    Thread.sleep(100L);
+    assertThat(runs.get(), is(1));
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  private void waitUntilSleeping(long milliseconds) throws InterruptedException {
+    Long sleep;
+    do {
+      sleep = sleeps.poll(60, TimeUnit.SECONDS);
+      assertTrue(sleep != null);
+    } while (sleep != milliseconds);
+  }
+
+  private Closeable schedule(LeaseScheduler.Task task, LeaseScheduler.TaskType type) {
+    Closeable scheduledTask = LeaseScheduler.schedule(timeSource, task, type);
+    tasks.add(scheduledTask);
+    return scheduledTask;
+  }
+}
@@ -23,7 +23,7 @@ import org.terracotta.lease.TimeSource;
  * and the thread dies.
  */
 public class LeaseMonitorThread extends Thread {
-  private static final long LEASE_CHECK_INTERVAL_MILLIS = 200L;
+  private static final long LEASE_CHECK_INTERVAL_MILLIS = LeaseState.TICK_MILLIS;
 
   private final TimeSource timeSource;
   private final LeaseState leaseState;
@@ -24,24 +24,48 @@ import org.terracotta.entity.StateDumpable;
 import org.terracotta.lease.TimeSource;
 import org.terracotta.lease.service.closer.ClientConnectionCloser;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
  * The central component of the connection leasing code. This object holds the state of the leases for each client and
  * allows updates to that state in a thread-safe way.
+ * <p>
+ * The expiry of the valid leases is scheduled on a hashed timer wheel: each lease is added to the bucket of the tick
+ * in which it expires, and checking the leases only processes the buckets of the ticks elapsed since the previous
+ * check. A renewed lease is simply added to its new bucket, the entry of the replaced lease being dropped when its
+ * bucket is processed.
  */
 public class LeaseState implements StateDumpable {
   private static final Logger LOGGER = LoggerFactory.getLogger(LeaseState.class);
 
+  static final long TICK_MILLIS = 50L;
+  private static final int WHEEL_SIZE = 1024; // a power of 2
+  private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+
   private final TimeSource timeSource;
   private final ClientConnectionCloser clientConnectionCloser;
   private final ConcurrentHashMap<ClientDescriptor, Lease> leases = new ConcurrentHashMap<>();
 
+  @SuppressWarnings("unchecked")
+  private final Queue<ScheduledLease>[] wheel = new Queue[WHEEL_SIZE];
+  // leases whose tick was already processed, which are checked on each check until they expire or are replaced
+  private final Queue<ScheduledLease> due = new ConcurrentLinkedQueue<>();
+  // written before the bucket of the tick is processed, so that a lease added to it concurrently is also added to due
+  private volatile long processedTick;
+
   public LeaseState(TimeSource timeSource, ClientConnectionCloser clientConnectionCloser) {
     this.timeSource = timeSource;
     this.clientConnectionCloser = clientConnectionCloser;
+    for (int i = 0; i < WHEEL_SIZE; i++) {
+      wheel[i] = new ConcurrentLinkedQueue<>();
+    }
+    this.processedTick = tick(timeSource.nanoTime()) - 1;
   }
 
   public void disconnected(ClientDescriptor clientDescriptor) {
@@ -62,6 +86,7 @@ public class LeaseState implements StateDumpable {
 
     ValidLease newLease = createLease(leaseLength);
     leases.put(clientDescriptor, newLease);
+    schedule(clientDescriptor, newLease);
   }
 
   public boolean acquireLease(ClientDescriptor clientDescriptor, long leaseLength) {
@@ -73,6 +98,7 @@ public class LeaseState implements StateDumpable {
       if (currentLease == null) {
         Lease existingLease = leases.putIfAbsent(clientDescriptor, newLease);
         if (existingLease == null) {
+          schedule(clientDescriptor, newLease);
           return true;
         }
       } else {
@@ -87,6 +113,7 @@ public class LeaseState implements StateDumpable {
 
         boolean replaced = leases.replace(clientDescriptor, currentLease, newLease);
         if (replaced) {
+          schedule(clientDescriptor, newLease);
           return true;
         }
       }
@@ -98,50 +125,85 @@ public class LeaseState implements StateDumpable {
     return new ValidLease(leaseExpiry);
   }
 
-  void checkLeases() {
-    LOGGER.debug("Checking leases");
-    long now = timeSource.nanoTime();
-
-    // The iterator from ConcurrentHashMap.iterator() is guaranteed not to throw a ConcurrentModificationException
-    // We rely on that guarantee here because we may modify the leases map inside the iteration.
-    for (ClientDescriptor clientDescriptor : leases.keySet()) {
-      checkLease(clientDescriptor, now);
+  private void schedule(ClientDescriptor clientDescriptor, ValidLease lease) {
+    long tick = tick(lease.getLeaseExpiry());
+    ScheduledLease scheduledLease = new ScheduledLease(clientDescriptor, lease, tick);
+    wheel[bucket(tick)].add(scheduledLease);
+    if (tick <= processedTick) {
+      // the bucket may have been processed already
+      due.add(scheduledLease);
     }
   }
 
-  private void checkLease(ClientDescriptor clientDescriptor, long now) {
-    while (true) {
-      Lease lease = leases.get(clientDescriptor);
+  synchronized void checkLeases() {
+    LOGGER.debug("Checking leases");
+    long now = timeSource.nanoTime();
+    long nowTick = tick(now);
 
-      if (lease == null) {
-        return; // Some other thread called checkLeases() and expired the lease
+    List<ScheduledLease> stillDue = new ArrayList<>();
+    for (ScheduledLease scheduledLease = due.poll(); scheduledLease != null; scheduledLease = due.poll()) {
+      if (checkLease(scheduledLease, now)) {
+        stillDue.add(scheduledLease);
       }
+    }
 
-      if (lease instanceof ExpiredLease) {
-        if (LOGGER.isTraceEnabled()) {
-          LOGGER.trace("Lease for client: " + clientDescriptor + " is an ExpiredLease");
+    // the bucket of the current tick is processed on each check, because more leases can expire during that tick
+    long firstTick = Math.max(processedTick, nowTick - WHEEL_SIZE + 1);
+    for (long tick = firstTick; tick <= nowTick; tick++) {
+      processedTick = tick;
+      Queue<ScheduledLease> bucket = wheel[bucket(tick)];
+      List<ScheduledLease> later = new ArrayList<>();
+      for (ScheduledLease scheduledLease = bucket.poll(); scheduledLease != null; scheduledLease = bucket.poll()) {
+        if (scheduledLease.tick > nowTick) {
+          if (leases.get(scheduledLease.clientDescriptor) == scheduledLease.lease) {
+            later.add(scheduledLease); // expires in a later turn of the wheel
+          }
+        } else if (checkLease(scheduledLease, now)) {
+          stillDue.add(scheduledLease);
         }
-        return; // Some other thread is expiring this lease - leave it alone
       }
+      bucket.addAll(later);
+    }
 
-      if (!lease.isExpired(now)) {
-        if (LOGGER.isTraceEnabled()) {
-          LOGGER.trace("Lease for client: " + clientDescriptor + " is still valid: " + lease);
-        }
-        return; // The lease is still valid so no change needed
-      }
+    due.addAll(stillDue);
+  }
 
-      Lease expiredLease = new ExpiredLease();
-      boolean replaced = leases.replace(clientDescriptor, lease, expiredLease);
+  /**
+   * @return true if the lease is still the lease of the client and has not expired yet
+   */
+  private boolean checkLease(ScheduledLease scheduledLease, long now) {
+    ClientDescriptor clientDescriptor = scheduledLease.clientDescriptor;
+    ValidLease lease = scheduledLease.lease;
 
-      if (replaced) {
-        LOGGER.info("Closing connection to client: " + clientDescriptor + " due to lease expiry");
-        clientConnectionCloser.closeClientConnection(clientDescriptor);
-        return;
+    if (leases.get(clientDescriptor) != lease) {
+      return false; // The lease was renewed, or the client disconnected, reconnected or was already expired
+    }
+
+    if (!lease.isExpired(now)) {
+      if (LOGGER.isTraceEnabled()) {
+        LOGGER.trace("Lease for client: " + clientDescriptor + " is still valid: " + lease);
       }
+      return true; // The lease is still valid so no change needed
+    }
+
+    Lease expiredLease = new ExpiredLease();
+    boolean replaced = leases.replace(clientDescriptor, lease, expiredLease);
 
-      // Otherwise loop because another thread updated the lease whilst we looked at it
+    if (replaced) {
+      LOGGER.info("Closing connection to client: " + clientDescriptor + " due to lease expiry");
+      clientConnectionCloser.closeClientConnection(clientDescriptor);
     }
+
+    // Otherwise another thread updated the lease whilst we looked at it, and the new lease is scheduled on its own
+    return false;
+  }
+
+  private static long tick(long nanoTime) {
+    return Math.floorDiv(nanoTime, TICK_NANOS);
+  }
+
+  private static int bucket(long tick) {
+    return (int) (tick & (WHEEL_SIZE - 1));
   }
 
   @Override
@@ -151,4 +213,16 @@ public class LeaseState implements StateDumpable {
       stateDumpCollector.addState(entry.getKey().toString(), leaseState);
     }
   }
+
+  private static class ScheduledLease {
+    private final ClientDescriptor clientDescriptor;
+    private final ValidLease lease;
+    private final long tick;
+
+    private ScheduledLease(ClientDescriptor clientDescriptor, ValidLease lease, long tick) {
+      this.clientDescriptor = clientDescriptor;
+      this.lease = lease;
+      this.tick = tick;
+    }
+  }
 }
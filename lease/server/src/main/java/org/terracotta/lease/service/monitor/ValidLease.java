@@ -26,6 +26,10 @@ class ValidLease implements Lease {
     this.leaseExpiry = leaseExpiry;
   }
 
+  long getLeaseExpiry() {
+    return leaseExpiry;
+  }
+
   @Override
   public boolean isExpired(long now) {
     return leaseExpiry - now < 0;
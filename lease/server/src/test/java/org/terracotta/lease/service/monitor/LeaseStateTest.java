@@ -107,6 +107,56 @@ public class LeaseStateTest {
     leaseState.disconnected(clientDescriptor3);
   }
 
+  @Test
+  public void renewingALeaseDelaysItsExpiry() {
+    assertTrue(leaseState.acquireLease(clientDescriptor1, 100L));
+
+    timeSource.tickMillis(80L);
+    leaseState.checkLeases();
+    assertTrue(leaseState.acquireLease(clientDescriptor1, 100L));
+
+    timeSource.tickMillis(80L);
+    leaseState.checkLeases();
+    verifyNoMoreInteractions(clientConnectionCloser);
+
+    timeSource.tickMillis(30L);
+    leaseState.checkLeases();
+    verify(clientConnectionCloser).closeClientConnection(clientDescriptor1);
+    verifyNoMoreInteractions(clientConnectionCloser);
+  }
+
+  @Test
+  public void expireLeasesLongerThanTheWheel() {
+    long leaseLength = 3 * 1024 * LeaseState.TICK_MILLIS + 10L;
+    assertTrue(leaseState.acquireLease(clientDescriptor1, leaseLength));
+    assertTrue(leaseState.acquireLease(clientDescriptor2, 10L));
+
+    for (long elapsed = 0; elapsed < leaseLength - 100L; elapsed += 100L) {
+      timeSource.tickMillis(100L);
+      leaseState.checkLeases();
+    }
+    verify(clientConnectionCloser).closeClientConnection(clientDescriptor2);
+    verifyNoMoreInteractions(clientConnectionCloser);
+
+    timeSource.tickMillis(200L);
+    leaseState.checkLeases();
+    verify(clientConnectionCloser).closeClientConnection(clientDescriptor1);
+    verifyNoMoreInteractions(clientConnectionCloser);
+  }
+
+  @Test
+  public void expireLeasesAfterMissedChecks() {
+    assertTrue(leaseState.acquireLease(clientDescriptor1, 10L));
+    assertTrue(leaseState.acquireLease(clientDescriptor2, 10_000L));
+    assertTrue(leaseState.acquireLease(clientDescriptor3, 1_000_000L));
+
+    timeSource.tickMillis(500_000L);
+    leaseState.checkLeases();
+    verify(clientConnectionCloser).closeClientConnection(clientDescriptor1);
+    verify(clientConnectionCloser).closeClientConnection(clientDescriptor2);
+    verifyNoMoreInteractions(clientConnectionCloser);
+  }
+
   @Test
   public void reconnectingSetsTheLeaseForTheClientToALeaseThatDoesNotExpire() {
     assertTrue(leaseState.acquireLease(clientDescriptor1, 10L));
@@ -22,12 +22,12 @@ import org.slf4j.LoggerFactory;
 import org.terracotta.entity.ConfigurationException;
 import org.terracotta.entity.ServiceException;
 import org.terracotta.entity.ServiceRegistry;
+import org.terracotta.management.entity.nms.NmsCodec;
 import org.terracotta.management.entity.nms.agent.NmsAgent;
 import org.terracotta.management.entity.nms.agent.ReconnectData;
 import org.terracotta.management.model.message.Message;
 import org.terracotta.management.service.monitoring.ClientMonitoringService;
 import org.terracotta.management.service.monitoring.ClientMonitoringServiceConfiguration;
-import org.terracotta.voltron.proxy.SerializationCodec;
 import org.terracotta.voltron.proxy.server.Messenger;
 import org.terracotta.voltron.proxy.server.ProxyServerEntityService;
 
@@ -42,9 +42,8 @@ public class NmsAgentEntityServerService extends ProxyServerEntityService<Void,
   private static final Logger LOGGER = LoggerFactory.getLogger(NmsAgentEntityServerService.class);
 
   public NmsAgentEntityServerService() {
-    //TODO: MATHIEU - PERF: https://github.com/Terracotta-OSS/terracotta-platform/issues/92
     super(NmsAgent.class, Void.class, new Class<?>[]{Message.class}, null, ReconnectData.class, null);
-    setCodec(new SerializationCodec(compile("^(?:org\\.ehcache\\.shadow|com\\.terracottatech\\.shadow)\\.(org\\.terracotta\\.statistics\\..*)$")));
+    setCodec(new NmsCodec(compile("^(?:org\\.ehcache\\.shadow|com\\.terracottatech\\.shadow)\\.(org\\.terracotta\\.statistics\\..*)$")));
   }
 
   @Override
@@ -0,0 +1,51 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.management.entity.nms;
+
+import org.terracotta.management.model.codec.ModelCodec;
+import org.terracotta.voltron.proxy.Codec;
+import org.terracotta.voltron.proxy.SerializationCodec;
+
+import java.util.regex.Pattern;
+
+/**
+ * Codec of the NMS and NMS agent entities: the management model is encoded with the compact {@link ModelCodec}
+ * format, and the other values with Java serialization, resolving the shaded classes matching the given pattern if
+ * any.
+ */
+public class NmsCodec extends ModelCodec implements Codec {
+
+  private final SerializationCodec serializationCodec;
+
+  public NmsCodec() {
+    this.serializationCodec = new SerializationCodec();
+  }
+
+  public NmsCodec(Pattern shadingPattern) {
+    this.serializationCodec = new SerializationCodec(shadingPattern);
+  }
+
+  @Override
+  protected byte[] serialize(Object value) {
+    return serializationCodec.encode(Object.class, value);
+  }
+
+  @Override
+  protected Object deserialize(byte[] buffer, int offset, int len) {
+    return serializationCodec.decode(Object.class, buffer, offset, len);
+  }
+}
@@ -16,6 +16,7 @@
  */
 package org.terracotta.management.model.cluster;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -64,6 +65,13 @@ public final class Connection extends AbstractNode<Client> {
     return clientEndpoint;
   }
 
+  /**
+   * @return the number of times each server entity id was fetched by this connection
+   */
+  public Map<String, Long> getServerEntityIds() {
+    return Collections.unmodifiableMap(serverEntityIds);
+  }
+
   public Client getClient() {
     return getParent();
   }
@@ -125,7 +125,7 @@ public final class ManagementRegistry implements Serializable {
     return map;
   }
 
-  private Context getRootContext() {
+  public Context getRootContext() {
     // rootContext could be null after an old object is deserialized.
     // This field was added after.
     return rootContext == null ? Context.empty() : rootContext;
@@ -0,0 +1,1075 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.management.model.codec;
+
+import org.terracotta.management.model.call.ContextualCall;
+import org.terracotta.management.model.call.ContextualReturn;
+import org.terracotta.management.model.call.Parameter;
+import org.terracotta.management.model.capabilities.Capability;
+import org.terracotta.management.model.capabilities.DefaultCapability;
+import org.terracotta.management.model.capabilities.context.CapabilityContext;
+import org.terracotta.management.model.capabilities.descriptors.CallDescriptor;
+import org.terracotta.management.model.capabilities.descriptors.Descriptor;
+import org.terracotta.management.model.capabilities.descriptors.Settings;
+import org.terracotta.management.model.capabilities.descriptors.StatisticDescriptor;
+import org.terracotta.management.model.cluster.Client;
+import org.terracotta.management.model.cluster.ClientIdentifier;
+import org.terracotta.management.model.cluster.Cluster;
+import org.terracotta.management.model.cluster.Connection;
+import org.terracotta.management.model.cluster.Endpoint;
+import org.terracotta.management.model.cluster.ManagementRegistry;
+import org.terracotta.management.model.cluster.Server;
+import org.terracotta.management.model.cluster.ServerEntity;
+import org.terracotta.management.model.cluster.ServerEntityIdentifier;
+import org.terracotta.management.model.cluster.Stripe;
+import org.terracotta.management.model.context.Context;
+import org.terracotta.management.model.context.ContextContainer;
+import org.terracotta.management.model.context.Contextual;
+import org.terracotta.management.model.message.DefaultManagementCallMessage;
+import org.terracotta.management.model.message.DefaultMessage;
+import org.terracotta.management.model.notification.ContextualNotification;
+import org.terracotta.management.model.stats.ContextualStatistics;
+import org.terracotta.management.sequence.BoundaryFlakeSequence;
+import org.terracotta.management.sequence.Sequence;
+import org.terracotta.statistics.Sample;
+import org.terracotta.statistics.StatisticType;
+import org.terracotta.statistics.registry.Statistic;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A compact binary codec for the management model types exchanged by the management entities.
+ * <p>
+ * Statistics, notifications, calls, capabilities, messages and the cluster topology are encoded field by field
+ * following a fixed schema, and the strings repeated within a payload (context keys and values, statistic names...)
+ * are only written once. Values of other types, such as the values returned by management calls, are encoded with
+ * Java serialization. Payloads entirely encoded with Java serialization, as written by previous versions, are still
+ * decoded.
+ * <p>
+ * Since previous versions only decode Java serialization, a peer is written to in the format it tells it decodes:
+ * {@link #getFormat(byte[], int, int)} reads it from the payloads received from the peer, and the
+ * {@code encode} methods taking a format fall back to Java serialization for the peers which did not tell they decode
+ * the latest format. The payloads written with Java serialization are followed by a trailer, ignored by previous
+ * versions, telling that this codec decodes the latest format.
+ * <p>
+ * The methods of this class match the ones of the voltron-proxy {@code Codec}, so that the management entities can
+ * use it by simply declaring that interface.
+ */
+public class ModelCodec {
+
+  private static final byte MAGIC = 'M';
+  private static final byte VERSION = 1;
+  private static final byte[] FORMAT_TRAILER = "ModelCodec".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * The latest format, in which the {@code encode} methods without a format write. Format 0 is Java serialization.
+   */
+  public static final int FORMAT = VERSION;
+
+  private static final byte NULL = 0;
+  private static final byte SERIALIZED = 1;
+  private static final byte STRING = 2;
+  private static final byte TRUE = 3;
+  private static final byte FALSE = 4;
+  private static final byte INT = 5;
+  private static final byte LONG = 6;
+  private static final byte DOUBLE = 7;
+  private static final byte ARRAY = 8;
+  private static final byte STRINGS = 9;
+  private static final byte SEQUENCE = 10;
+  private static final byte CONTEXT = 11;
+  private static final byte CONTEXT_CONTAINER = 12;
+  private static final byte STATISTIC = 13;
+  private static final byte CONTEXTUAL_STATISTICS = 14;
+  private static final byte CONTEXTUAL_NOTIFICATION = 15;
+  private static final byte PARAMETER = 16;
+  private static final byte CONTEXTUAL_CALL = 17;
+  private static final byte CONTEXTUAL_RETURN = 18;
+  private static final byte CAPABILITY = 19;
+  private static final byte CALL_DESCRIPTOR = 20;
+  private static final byte STATISTIC_DESCRIPTOR = 21;
+  private static final byte SETTINGS = 22;
+  private static final byte MESSAGE = 23;
+  private static final byte MANAGEMENT_CALL_MESSAGE = 24;
+  private static final byte CLUSTER = 25;
+  private static final byte MANAGEMENT_REGISTRY = 26;
+
+  private static final byte RETURN_NOT_EXECUTED = 0;
+  private static final byte RETURN_VALUE = 1;
+  private static final byte RETURN_ERROR = 2;
+
+  private static final byte LIST = 0;
+  private static final byte SET = 1;
+
+  private static final List<Class<?>> ARRAY_TYPES = Arrays.asList(
+      Object.class,
+      String.class,
+      Contextual.class,
+      ContextualStatistics.class,
+      ContextualNotification.class,
+      ContextualCall.class,
+      ContextualReturn.class,
+      Capability.class,
+      Parameter.class);
+
+  public byte[] encode(Class<?> type, Object value) {
+    checkType(type, value);
+    Writer writer = new Writer();
+    writer.writeValue(value);
+    return writer.toByteArray();
+  }
+
+  public byte[] encode(Class<?>[] types, Object[] values) {
+    if (values == null) {
+      values = new Object[0];
+    }
+    if (types.length != values.length) {
+      throw new IllegalArgumentException();
+    }
+    for (int i = 0; i < values.length; i++) {
+      checkType(types[i], values[i]);
+    }
+    Writer writer = new Writer();
+    writer.writeSize(values.length);
+    for (Object value : values) {
+      writer.writeValue(value);
+    }
+    return writer.toByteArray();
+  }
+
+  /**
+   * Encodes a value in the given format, or in the latest format if it is older.
+   *
+   * @param format the format the peer decodes, as returned by {@link #getFormat(byte[], int, int)} for its payloads
+   */
+  public byte[] encode(int format, Class<?> type, Object value) {
+    if (format >= VERSION) {
+      return encode(type, value);
+    }
+    checkType(type, value);
+    return withFormatTrailer(serialize(value));
+  }
+
+  /**
+   * Encodes values in the given format, or in the latest format if it is older.
+   *
+   * @param format the format the peer decodes, as returned by {@link #getFormat(byte[], int, int)} for its payloads
+   */
+  public byte[] encode(int format, Class<?>[] types, Object[] values) {
+    if (format >= VERSION) {
+      return encode(types, values);
+    }
+    if (values == null) {
+      values = new Object[0];
+    }
+    if (types.length != values.length) {
+      throw new IllegalArgumentException();
+    }
+    for (int i = 0; i < values.length; i++) {
+      checkType(types[i], values[i]);
+    }
+    return withFormatTrailer(serialize(values));
+  }
+
+  /**
+   * @return the latest format the writer of a payload decodes: the format of the payload if it is not Java serialized,
+   * otherwise the one told by its trailer, or 0 if it has none
+   */
+  public int getFormat(byte[] buffer, int offset, int len) {
+    if (len >= 2 && buffer[offset] == MAGIC) {
+      return buffer[offset + 1];
+    }
+    int trailer = offset + len - FORMAT_TRAILER.length - 1;
+    if (!isSerialized(buffer, offset, len) || trailer < offset + 2) {
+      return 0;
+    }
+    for (int i = 0; i < FORMAT_TRAILER.length; i++) {
+      if (buffer[trailer + i] != FORMAT_TRAILER[i]) {
+        return 0;
+      }
+    }
+    return buffer[offset + len - 1];
+  }
+
+  public <T> T decode(Class<T> type, byte[] buffer) {
+    return decode(type, buffer, 0, buffer.length);
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T> T decode(Class<T> type, byte[] buffer, int offset, int len) {
+    Object value;
+    if (len == 0) {
+      value = null;
+    } else if (isSerialized(buffer, offset, len)) {
+      value = deserialize(buffer, offset, len);
+    } else {
+      value = new Reader(buffer, offset, len).readValue();
+    }
+    return type.isPrimitive() ? (T) value : type.cast(value);
+  }
+
+  public Object[] decode(Class<?>[] types, byte[] buffer) {
+    return decode(types, buffer, 0, buffer.length);
+  }
+
+  public Object[] decode(Class<?>[] types, byte[] buffer, int offset, int len) {
+    Object[] values;
+    if (isSerialized(buffer, offset, len)) {
+      values = (Object[]) deserialize(buffer, offset, len);
+    } else {
+      Reader reader = new Reader(buffer, offset, len);
+      values = new Object[reader.readSize()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = reader.readValue();
+      }
+    }
+    for (int i = 0; i < values.length; i++) {
+      values[i] = types[i].isPrimitive() ? values[i] : types[i].cast(values[i]);
+    }
+    return values;
+  }
+
+  /**
+   * Encodes a value which is not part of the schema.
+   */
+  protected byte[] serialize(Object value) {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    try (ObjectOutputStream oout = new ObjectOutputStream(bout)) {
+      oout.writeObject(value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bout.toByteArray();
+  }
+
+  /**
+   * Decodes a value which is not part of the schema, or a payload entirely encoded with Java serialization.
+   */
+  protected Object deserialize(byte[] buffer, int offset, int len) {
+    try (ObjectInputStream oin = new ObjectInputStream(new ByteArrayInputStream(buffer, offset, len))) {
+      return oin.readObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private static byte[] withFormatTrailer(byte[] serialized) {
+    byte[] bytes = Arrays.copyOf(serialized, serialized.length + FORMAT_TRAILER.length + 1);
+    System.arraycopy(FORMAT_TRAILER, 0, bytes, serialized.length, FORMAT_TRAILER.length);
+    bytes[bytes.length - 1] = VERSION;
+    return bytes;
+  }
+
+  private static void checkType(Class<?> type, Object value) {
+    if (value != null && !wrap(type).isInstance(value)) {
+      throw new IllegalArgumentException("Value of type " + value.getClass().getName() + " cannot be encoded as " + type.getName());
+    }
+  }
+
+  private static Class<?> wrap(Class<?> type) {
+    if (!type.isPrimitive()) {
+      return type;
+    }
+    return Array.get(Array.newInstance(type, 1), 0).getClass();
+  }
+
+  private static boolean isSerialized(byte[] buffer, int offset, int len) {
+    // java.io.ObjectStreamConstants.STREAM_MAGIC
+    return len >= 2 && buffer[offset] == (byte) 0xAC && buffer[offset + 1] == (byte) 0xED;
+  }
+
+  private final class Writer {
+    private final Map<String, Integer> strings = new HashMap<>();
+    private byte[] bytes = new byte[256];
+    private int size;
+    private long lastTimestamp;
+
+    Writer() {
+      writeByte(MAGIC);
+      writeByte(VERSION);
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(bytes, size);
+    }
+
+    void writeValue(Object value) {
+      if (value == null) {
+        writeByte(NULL);
+        return;
+      }
+      Class<?> type = value.getClass();
+      if (type == String.class) {
+        writeByte(STRING);
+        writeString((String) value);
+      } else if (type == Boolean.class) {
+        writeByte((Boolean) value ? TRUE : FALSE);
+      } else if (type == Integer.class) {
+        writeByte(INT);
+        writeSignedVarLong((Integer) value);
+      } else if (type == Long.class) {
+        writeByte(LONG);
+        writeSignedVarLong((Long) value);
+      } else if (type == Double.class) {
+        writeByte(DOUBLE);
+        writeLong(Double.doubleToRawLongBits((Double) value));
+      } else if (type.isArray() && ARRAY_TYPES.contains(type.getComponentType())) {
+        writeByte(ARRAY);
+        writeArray(value);
+      } else if (type == BoundaryFlakeSequence.class) {
+        writeByte(SEQUENCE);
+        writeSequence((Sequence) value);
+      } else if (type == Context.class) {
+        writeByte(CONTEXT);
+        writeContext((Context) value);
+      } else if (type == ContextContainer.class) {
+        writeByte(CONTEXT_CONTAINER);
+        writeContextContainer((ContextContainer) value);
+      } else if (type == Statistic.class) {
+        writeByte(STATISTIC);
+        writeStatistic((Statistic<?>) value);
+      } else if (type == ContextualStatistics.class) {
+        writeByte(CONTEXTUAL_STATISTICS);
+        writeContextualStatistics((ContextualStatistics) value);
+      } else if (type == ContextualNotification.class) {
+        writeByte(CONTEXTUAL_NOTIFICATION);
+        writeContextualNotification((ContextualNotification) value);
+      } else if (type == Parameter.class) {
+        writeByte(PARAMETER);
+        writeParameter((Parameter) value);
+      } else if (type == ContextualCall.class) {
+        writeByte(CONTEXTUAL_CALL);
+        writeContextualCall((ContextualCall<?>) value);
+      } else if (type == ContextualReturn.class) {
+        writeByte(CONTEXTUAL_RETURN);
+        writeContextualReturn((ContextualReturn<?>) value);
+      } else if (type == DefaultCapability.class) {
+        writeByte(CAPABILITY);
+        writeCapability((DefaultCapability) value);
+      } else if (type == CallDescriptor.class) {
+        writeByte(CALL_DESCRIPTOR);
+        writeCallDescriptor((CallDescriptor) value);
+      } else if (type == StatisticDescriptor.class) {
+        writeByte(STATISTIC_DESCRIPTOR);
+        writeString(((StatisticDescriptor) value).getName());
+        writeString(((StatisticDescriptor) value).getType());
+      } else if (type == Settings.class) {
+        writeByte(SETTINGS);
+        writeSettings((Settings) value);
+      } else if (type == DefaultMessage.class) {
+        writeByte(MESSAGE);
+        writeMessage((DefaultMessage) value);
+      } else if (type == DefaultManagementCallMessage.class) {
+        writeByte(MANAGEMENT_CALL_MESSAGE);
+        writeString(((DefaultManagementCallMessage) value).getManagementCallIdentifier());
+        writeMessage((DefaultMessage) value);
+      } else if (type == Cluster.class) {
+        writeByte(CLUSTER);
+        writeCluster((Cluster) value);
+      } else if (type == ManagementRegistry.class) {
+        writeByte(MANAGEMENT_REGISTRY);
+        writeManagementRegistry((ManagementRegistry) value);
+      } else {
+        writeByte(SERIALIZED);
+        byte[] serialized = serialize(value);
+        writeSize(serialized.length);
+        writeBytes(serialized, serialized.length);
+      }
+    }
+
+    private void writeArray(Object array) {
+      int length = Array.getLength(array);
+      writeByte((byte) ARRAY_TYPES.indexOf(array.getClass().getComponentType()));
+      writeSize(length);
+      for (int i = 0; i < length; i++) {
+        writeValue(Array.get(array, i));
+      }
+    }
+
+    private void writeSequence(Sequence sequence) {
+      writeTimestamp(sequence.getTimestamp());
+      writeLong(sequence.getNodeId());
+      writeSignedVarLong(sequence.getSequenceId());
+    }
+
+    private void writeContext(Context context) {
+      writeStrings(context);
+    }
+
+    private void writeStrings(Map<String, String> map) {
+      writeSize(map.size());
+      for (Map.Entry<String, String> entry : map.entrySet()) {
+        writeString(entry.getKey());
+        writeString(entry.getValue());
+      }
+    }
+
+    private void writeContextContainer(ContextContainer container) {
+      writeString(container.getName());
+      writeString(container.getValue());
+      Collection<ContextContainer> subContexts = container.getSubContexts();
+      writeByte(subContexts instanceof Set ? SET : LIST);
+      writeSize(subContexts.size());
+      for (ContextContainer subContext : subContexts) {
+        writeContextContainer(subContext);
+      }
+    }
+
+    private void writeStatistic(Statistic<?> statistic) {
+      writeString(statistic.getType().name());
+      List<? extends Sample<?>> samples = statistic.getSamples();
+      writeSize(samples.size());
+      for (Sample<?> sample : samples) {
+        writeTimestamp(sample.getTimestamp());
+        writeValue(sample.getSample());
+      }
+    }
+
+    private void writeContextualStatistics(ContextualStatistics statistics) {
+      writeString(statistics.getCapability());
+      writeContext(statistics.getContext());
+      writeSize(statistics.size());
+      for (Map.Entry<String, Statistic<? extends Serializable>> entry : statistics.getStatistics().entrySet()) {
+        writeString(entry.getKey());
+        writeValue(entry.getValue());
+      }
+    }
+
+    private void writeContextualNotification(ContextualNotification notification) {
+      writeContext(notification.getContext());
+      writeString(notification.getType());
+      writeStrings(notification.getAttributes());
+    }
+
+    private void writeParameter(Parameter parameter) {
+      writeValue(parameter.getValue());
+      writeString(parameter.getClassName());
+    }
+
+    private void writeContextualCall(ContextualCall<?> call) {
+      writeContext(call.getContext());
+      writeString(call.getCapability());
+      writeString(call.getMethodName());
+      writeValue(call.getReturnType());
+      Parameter[] parameters = call.getParameters();
+      writeSize(parameters.length);
+      for (Parameter parameter : parameters) {
+        writeValue(parameter);
+      }
+    }
+
+    private void writeContextualReturn(ContextualReturn<?> contextualReturn) {
+      writeString(contextualReturn.getCapability());
+      writeContext(contextualReturn.getContext());
+      writeString(contextualReturn.getMethodName());
+      if (!contextualReturn.hasExecuted()) {
+        writeByte(RETURN_NOT_EXECUTED);
+      } else {
+        try {
+          Object value = contextualReturn.getValue();
+          writeByte(RETURN_VALUE);
+          writeValue(value);
+        } catch (ExecutionException e) {
+          writeByte(RETURN_ERROR);
+          writeValue(e);
+        }
+      }
+    }
+
+    private void writeCapability(DefaultCapability capability) {
+      writeString(capability.getName());
+      Collection<CapabilityContext.Attribute> attributes = capability.getCapabilityContext().getAttributes();
+      writeSize(attributes.size());
+      for (CapabilityContext.Attribute attribute : attributes) {
+        writeString(attribute.getName());
+        writeByte(attribute.isRequired() ? TRUE : FALSE);
+      }
+      Collection<? extends Descriptor> descriptors = capability.getDescriptors();
+      writeByte(descriptors instanceof Set ? SET : LIST);
+      writeSize(descriptors.size());
+      for (Descriptor descriptor : descriptors) {
+        writeValue(descriptor);
+      }
+    }
+
+    private void writeCallDescriptor(CallDescriptor descriptor) {
+      writeString(descriptor.getName());
+      writeString(descriptor.getReturnType());
+      List<CallDescriptor.Parameter> parameters = descriptor.getParameters();
+      writeSize(parameters.size());
+      for (CallDescriptor.Parameter parameter : parameters) {
+        writeString(parameter.getName());
+        writeString(parameter.getType());
+      }
+    }
+
+    private void writeSettings(Settings settings) {
+      writeSize(settings.size());
+      for (Map.Entry<String, Object> entry : settings.entrySet()) {
+        writeString(entry.getKey());
+        Object value = entry.getValue();
+        if (value instanceof List) {
+          // Settings only holds lists of strings
+          List<?> list = (List<?>) value;
+          writeByte(STRINGS);
+          writeSize(list.size());
+          for (Object item : list) {
+            writeString((String) item);
+          }
+        } else {
+          writeValue(value);
+        }
+      }
+    }
+
+    private void writeMessage(DefaultMessage message) {
+      writeValue(message.getSequence());
+      writeString(message.getType());
+      // the data is written with the type of its array, for the decoded message to be equal
+      Class<? extends Contextual[]> dataType = message.getDataType();
+      writeValue(dataType == null ? null : message.unwrap(Contextual.class).toArray((Contextual[]) Array.newInstance(dataType.getComponentType(), 0)));
+    }
+
+    /**
+     * Stripes and their servers are written before the clients, so that the connections of the clients can be bound to
+     * their server when decoded.
+     */
+    private void writeCluster(Cluster cluster) {
+      writeSize(cluster.getStripeCount());
+      for (Stripe stripe : cluster.getStripes().values()) {
+        writeString(stripe.getName());
+        writeSize(stripe.getServerCount());
+        for (Server server : stripe.getServers().values()) {
+          writeServer(server);
+        }
+      }
+      writeSize(cluster.getClientCount());
+      for (Client client : cluster.getClients().values()) {
+        writeClient(client);
+      }
+    }
+
+    private void writeServer(Server server) {
+      writeString(server.getServerName());
+      writeString(server.getHostName());
+      writeString(server.getHostAddress());
+      writeString(server.getBindAddress());
+      writeSignedVarLong(server.getBindPort());
+      writeSignedVarLong(server.getGroupPort());
+      writeString(server.getState().name());
+      writeString(server.getVersion());
+      writeString(server.getBuildId());
+      writeTimestamp(server.getStartTime());
+      writeSignedVarLong(server.getUpTimeSec());
+      writeTimestamp(server.getActivateTime());
+      writeSize(server.getServerEntityCount());
+      for (ServerEntity serverEntity : server.getServerEntities().values()) {
+        writeString(serverEntity.getName());
+        writeString(serverEntity.getType());
+        writeSignedVarLong(serverEntity.getConsumerId());
+        writeValue(serverEntity.getManagementRegistry().orElse(null));
+      }
+    }
+
+    private void writeClient(Client client) {
+      ClientIdentifier identifier = client.getClientIdentifier();
+      writeSignedVarLong(identifier.getPid());
+      writeString(identifier.getHostAddress());
+      writeString(identifier.getName());
+      writeString(identifier.getConnectionUid());
+      writeString(client.getHostName());
+      writeSize(client.getTags().size());
+      for (String tag : client.getTags()) {
+        writeString(tag);
+      }
+      writeStrings(client.getProperties());
+      writeValue(client.getManagementRegistry().orElse(null));
+      writeSize(client.getConnectionCount());
+      for (Connection connection : client.getConnections().values()) {
+        writeString(connection.getLogicalConnectionUid());
+        writeString(connection.getStripeId());
+        writeString(connection.getServerId());
+        writeString(connection.getClientEndpoint().getAddress());
+        writeSignedVarLong(connection.getClientEndpoint().getPort());
+        Map<String, Long> serverEntityIds = connection.getServerEntityIds();
+        writeSize(serverEntityIds.size());
+        for (Map.Entry<String, Long> entry : serverEntityIds.entrySet()) {
+          writeString(entry.getKey());
+          writeSignedVarLong(entry.getValue());
+        }
+      }
+    }
+
+    private void writeManagementRegistry(ManagementRegistry registry) {
+      writeContext(registry.getRootContext());
+      writeContextContainer(registry.getContextContainer());
+      Collection<Capability> capabilities = registry.getCapabilities();
+      writeSize(capabilities.size());
+      for (Capability capability : capabilities) {
+        writeValue(capability);
+      }
+    }
+
+    /**
+     * Strings are written once per payload, then referenced by their index: 0 is null, 1 a new string and 2 and above
+     * the index of a string already written, plus 2.
+     */
+    void writeString(String s) {
+      if (s == null) {
+        writeSize(0);
+        return;
+      }
+      Integer index = strings.get(s);
+      if (index != null) {
+        writeSize(index + 2);
+      } else {
+        strings.put(s, strings.size());
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        writeSize(1);
+        writeSize(utf8.length);
+        writeBytes(utf8, utf8.length);
+      }
+    }
+
+    /**
+     * The samples of a payload are usually taken at about the same time: their timestamps are written as the
+     * difference with the previous one.
+     */
+    void writeTimestamp(long timestamp) {
+      writeSignedVarLong(timestamp - lastTimestamp);
+      lastTimestamp = timestamp;
+    }
+
+    void writeSize(int size) {
+      writeVarLong(size);
+    }
+
+    void writeSignedVarLong(long value) {
+      writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeVarLong(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      bytes[size++] = (byte) value;
+    }
+
+    void writeLong(long value) {
+      ensureCapacity(Long.BYTES);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        bytes[size++] = (byte) (value >>> shift);
+      }
+    }
+
+    void writeByte(byte b) {
+      ensureCapacity(1);
+      bytes[size++] = b;
+    }
+
+    void writeBytes(byte[] b, int length) {
+      ensureCapacity(length);
+      System.arraycopy(b, 0, bytes, size, length);
+      size += length;
+    }
+
+    private void ensureCapacity(int length) {
+      if (size + length > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, size + length));
+      }
+    }
+  }
+
+  private final class Reader {
+    private final List<String> strings = new ArrayList<>();
+    private final ByteBuffer buffer;
+    private long lastTimestamp;
+
+    Reader(byte[] bytes, int offset, int len) {
+      this.buffer = ByteBuffer.wrap(bytes, offset, len);
+      byte magic = buffer.get();
+      byte version = buffer.get();
+      if (magic != MAGIC || version != VERSION) {
+        throw new IllegalArgumentException("Unsupported encoding: " + magic + "/" + version);
+      }
+    }
+
+    Object readValue() {
+      byte tag = buffer.get();
+      switch (tag) {
+        case NULL:
+          return null;
+        case SERIALIZED: {
+          int length = readSize();
+          int position = buffer.position();
+          buffer.position(position + length);
+          return deserialize(buffer.array(), position, length);
+        }
+        case STRING:
+          return readString();
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case INT:
+          return (int) readSignedVarLong();
+        case LONG:
+          return readSignedVarLong();
+        case DOUBLE:
+          return Double.longBitsToDouble(buffer.getLong());
+        case ARRAY:
+          return readArray();
+        case STRINGS: {
+          String[] strings = new String[readSize()];
+          for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString();
+          }
+          return strings;
+        }
+        case SEQUENCE:
+          return readSequence();
+        case CONTEXT:
+          return readContext();
+        case CONTEXT_CONTAINER:
+          return readContextContainer();
+        case STATISTIC:
+          return readStatistic();
+        case CONTEXTUAL_STATISTICS:
+          return readContextualStatistics();
+        case CONTEXTUAL_NOTIFICATION:
+          return new ContextualNotification(readContext(), readString(), readStrings());
+        case PARAMETER:
+          return new Parameter(readValue(), readString());
+        case CONTEXTUAL_CALL:
+          return readContextualCall();
+        case CONTEXTUAL_RETURN:
+          return readContextualReturn();
+        case CAPABILITY:
+          return readCapability();
+        case CALL_DESCRIPTOR:
+          return readCallDescriptor();
+        case STATISTIC_DESCRIPTOR:
+          return new StatisticDescriptor(readString(), readString());
+        case SETTINGS:
+          return readSettings();
+        case MESSAGE:
+          return new DefaultMessage((Sequence) readValue(), readString(), (Contextual[]) readValue());
+        case MANAGEMENT_CALL_MESSAGE:
+          return new DefaultManagementCallMessage(readString(), (Sequence) readValue(), readString(), (Contextual[]) readValue());
+        case CLUSTER:
+          return readCluster();
+        case MANAGEMENT_REGISTRY:
+          return readManagementRegistry();
+        default:
+          throw new IllegalArgumentException("Unknown tag: " + tag);
+      }
+    }
+
+    private Object readArray() {
+      Class<?> componentType = ARRAY_TYPES.get(buffer.get());
+      Object array = Array.newInstance(componentType, readSize());
+      for (int i = 0, length = Array.getLength(array); i < length; i++) {
+        Array.set(array, i, readValue());
+      }
+      return array;
+    }
+
+    private Sequence readSequence() {
+      ByteBuffer sequence = ByteBuffer.allocate(3 * Long.BYTES);
+      sequence.putLong(readTimestamp());
+      sequence.putLong(buffer.getLong());
+      sequence.putLong(readSignedVarLong());
+      return BoundaryFlakeSequence.fromBytes(sequence.array());
+    }
+
+    private Context readContext() {
+      return Context.create(readStrings());
+    }
+
+    private Map<String, String> readStrings() {
+      int size = readSize();
+      Map<String, String> map = new LinkedHashMap<>(size * 2);
+      for (int i = 0; i < size; i++) {
+        map.put(readString(), readString());
+      }
+      return map;
+    }
+
+    private ContextContainer readContextContainer() {
+      String name = readString();
+      String value = readString();
+      Collection<ContextContainer> subContexts = readCollection();
+      for (int i = 0, size = readSize(); i < size; i++) {
+        subContexts.add(readContextContainer());
+      }
+      return new ContextContainer(name, value, subContexts);
+    }
+
+    private Statistic<?> readStatistic() {
+      StatisticType type = StatisticType.valueOf(readString());
+      int size = readSize();
+      List<Sample<Serializable>> samples = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        long timestamp = readTimestamp();
+        samples.add(new Sample<>(timestamp, (Serializable) readValue()));
+      }
+      return new Statistic<>(type, samples);
+    }
+
+    private ContextualStatistics readContextualStatistics() {
+      String capability = readString();
+      Context context = readContext();
+      int size = readSize();
+      Map<String, Statistic<? extends Serializable>> statistics = new HashMap<>(size * 2);
+      for (int i = 0; i < size; i++) {
+        statistics.put(readString(), (Statistic<?>) readValue());
+      }
+      return new ContextualStatistics(capability, context, statistics);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private ContextualCall<?> readContextualCall() {
+      Context context = readContext();
+      String capability = readString();
+      String methodName = readString();
+      Class returnType = (Class) readValue();
+      Parameter[] parameters = new Parameter[readSize()];
+      for (int i = 0; i < parameters.length; i++) {
+        parameters[i] = (Parameter) readValue();
+      }
+      return new ContextualCall(context, capability, methodName, returnType, parameters);
+    }
+
+    private ContextualReturn<?> readContextualReturn() {
+      String capability = readString();
+      Context context = readContext();
+      String methodName = readString();
+      byte kind = buffer.get();
+      switch (kind) {
+        case RETURN_NOT_EXECUTED:
+          return ContextualReturn.notExecuted(capability, context, methodName);
+        case RETURN_VALUE:
+          return ContextualReturn.of(capability, context, methodName, readValue());
+        case RETURN_ERROR:
+          return ContextualReturn.error(capability, context, methodName, (ExecutionException) readValue());
+        default:
+          throw new IllegalArgumentException("Unknown return: " + kind);
+      }
+    }
+
+    private DefaultCapability readCapability() {
+      String name = readString();
+      int size = readSize();
+      List<CapabilityContext.Attribute> attributes = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        attributes.add(new CapabilityContext.Attribute(readString(), buffer.get() == TRUE));
+      }
+      Collection<Descriptor> descriptors = readCollection();
+      for (int i = 0, count = readSize(); i < count; i++) {
+        descriptors.add((Descriptor) readValue());
+      }
+      return new DefaultCapability(name, new CapabilityContext(attributes), descriptors);
+    }
+
+    private CallDescriptor readCallDescriptor() {
+      String name = readString();
+      String returnType = readString();
+      int size = readSize();
+      List<CallDescriptor.Parameter> parameters = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        parameters.add(new CallDescriptor.Parameter(readString(), readString()));
+      }
+      return new CallDescriptor(name, returnType, parameters);
+    }
+
+    private Settings readSettings() {
+      Settings settings = new Settings();
+      for (int i = 0, size = readSize(); i < size; i++) {
+        String key = readString();
+        Object value = readValue();
+        if (value == null || value instanceof String) {
+          settings.set(key, (String) value);
+        } else if (value instanceof String[]) {
+          settings.set(key, (String[]) value);
+        } else if (value instanceof Boolean) {
+          settings.set(key, (boolean) (Boolean) value);
+        } else if (value instanceof Number) {
+          settings.set(key, (Number) value);
+        } else if (value instanceof Settings) {
+          settings.set(key, (Settings) value);
+        } else {
+          throw new IllegalArgumentException("Unsupported setting: " + key + "=" + value);
+        }
+      }
+      return settings;
+    }
+
+    private Cluster readCluster() {
+      Cluster cluster = new Cluster();
+      for (int i = 0, stripes = readSize(); i < stripes; i++) {
+        Stripe stripe = Stripe.create(readString());
+        cluster.addStripe(stripe);
+        for (int j = 0, servers = readSize(); j < servers; j++) {
+          stripe.addServer(readServer());
+        }
+      }
+      for (int i = 0, clients = readSize(); i < clients; i++) {
+        cluster.addClient(readClient(cluster));
+      }
+      return cluster;
+    }
+
+    private Server readServer() {
+      Server server = Server.create(readString())
+          .setHostName(readString())
+          .setHostAddress(readString())
+          .setBindAddress(readString())
+          .setBindPort((int) readSignedVarLong())
+          .setGroupPort((int) readSignedVarLong())
+          .setState(Server.State.valueOf(readString()))
+          .setVersion(readString())
+          .setBuildId(readString())
+          .setStartTime(readTimestamp())
+          .setUpTimeSec(readSignedVarLong())
+          .setActivateTime(readTimestamp());
+      for (int i = 0, size = readSize(); i < size; i++) {
+        ServerEntity serverEntity = ServerEntity.create(readString(), readString())
+            .setConsumerId(readSignedVarLong());
+        serverEntity.setManagementRegistry((ManagementRegistry) readValue());
+        server.addServerEntity(serverEntity);
+      }
+      return server;
+    }
+
+    private Client readClient(Cluster cluster) {
+      Client client = Client.create(ClientIdentifier.create(readSignedVarLong(), readString(), readString(), readString()))
+          .setHostName(readString());
+      for (int i = 0, size = readSize(); i < size; i++) {
+        client.addTag(readString());
+      }
+      readStrings().forEach(client::addProperty);
+      client.setManagementRegistry((ManagementRegistry) readValue());
+      for (int i = 0, size = readSize(); i < size; i++) {
+        String logicalConnectionUid = readString();
+        String stripeId = readString();
+        String serverId = readString();
+        Endpoint clientEndpoint = Endpoint.create(readString(), (int) readSignedVarLong());
+        Connection connection = Connection.create(logicalConnectionUid, findServer(cluster, stripeId, serverId), clientEndpoint);
+        for (int j = 0, count = readSize(); j < count; j++) {
+          String serverEntityId = readString();
+          int colon = serverEntityId.lastIndexOf(':');
+          ServerEntityIdentifier identifier = ServerEntityIdentifier.create(serverEntityId.substring(0, colon), serverEntityId.substring(colon + 1));
+          for (long fetches = readSignedVarLong(); fetches > 0; fetches--) {
+            connection.fetchServerEntity(identifier);
+          }
+        }
+        client.addConnection(connection);
+      }
+      return client;
+    }
+
+    /**
+     * A connection only keeps the ids of its stripe and server: when its server is no longer in the topology, a detached
+     * one with the same ids is used to re-create it.
+     */
+    private Server findServer(Cluster cluster, String stripeId, String serverId) {
+      return cluster.getStripe(stripeId)
+          .flatMap(stripe -> stripe.getServer(serverId))
+          .orElseGet(() -> {
+            Server server = Server.create(serverId);
+            Stripe.create(stripeId).addServer(server);
+            return server;
+          });
+    }
+
+    private ManagementRegistry readManagementRegistry() {
+      ManagementRegistry registry = ManagementRegistry.create(readContext(), readContextContainer());
+      for (int i = 0, size = readSize(); i < size; i++) {
+        registry.addCapability((Capability) readValue());
+      }
+      return registry;
+    }
+
+    private <T> Collection<T> readCollection() {
+      byte kind = buffer.get();
+      return kind == SET ? new LinkedHashSet<>() : new ArrayList<>();
+    }
+
+    String readString() {
+      int index = readSize();
+      if (index == 0) {
+        return null;
+      }
+      if (index > 1) {
+        return strings.get(index - 2);
+      }
+      int length = readSize();
+      String s = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + length);
+      strings.add(s);
+      return s;
+    }
+
+    long readTimestamp() {
+      lastTimestamp += readSignedVarLong();
+      return lastTimestamp;
+    }
+
+    int readSize() {
+      return (int) readVarLong();
+    }
+
+    long readSignedVarLong() {
+      long value = readVarLong();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    long readVarLong() {
+      long value = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = buffer.get();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+  }
+}
@@ -16,14 +16,31 @@
  */
 package org.terracotta.management.model.context;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
 
 /**
+ * An immutable set of key-value pairs, in insertion order.
+ * <p>
+ * Contexts are small: they are backed by a single array of keys and values,
+ * with a pre-computed hash code, so that they can be cheaply compared and used
+ * as map keys. The well-known keys are shared, so that they are usually found
+ * with an identity check.
+ *
  * @author Ludovic Orban
  * @author Mathieu Carbou
  */
@@ -31,29 +48,72 @@ public class Context extends AbstractMap<String, String> implements Serializable
 
   private static final long serialVersionUID = 1;
 
-  private final Map<String, String> back = new LinkedHashMap<>();
+  // the serialized form is the one of the previous versions, which were backed by a map: a LinkedHashMap in a field
+  // declared as a Map
+  private static final ObjectStreamField[] serialPersistentFields = {new ObjectStreamField("back", Map.class)};
+
+  // only these keys are shared: the other keys and the values come from the callers and are not interned, so they can be collected
+  private static final Map<String, String> KEYS = new HashMap<>();
+
+  static {
+    for (String key : new String[]{
+        "stripeId", "serverId", "serverName", "clientId", "connectionId", "entityId", "entityName", "entityType",
+        "consumerId", "collectorId", "instanceId", "appName", "cacheManagerName", "cacheName", "alias", "type"}) {
+      KEYS.put(key, key);
+    }
+  }
+
+  private static final Context EMPTY = new Context(new String[0]);
 
-  private Context(Map<String, String> back) {
-    this.back.putAll(back);
+  // keys at even indexes, values at odd indexes
+  private final transient String[] entries;
+  private final transient int hash;
+  private transient Set<Entry<String, String>> entrySet;
+  // only set while deserializing, until the context is resolved
+  private transient Map<String, String> back;
+
+  // the keys must already be interned
+  private Context(String[] entries) {
+    int hash = 0;
+    for (int i = 0; i < entries.length; i += 2) {
+      hash += Objects.hashCode(entries[i]) ^ Objects.hashCode(entries[i + 1]);
+    }
+    this.entries = entries;
+    this.hash = hash;
   }
 
   public Map<String, String> toMap() {
-    return Collections.unmodifiableMap(back);
+    return Collections.unmodifiableMap(new LinkedHashMap<>(this));
   }
 
   public Context without(String key) {
-    Context context = new Context(back);
-    context.back.remove(key);
-    return context;
+    int idx = indexOf(key);
+    if (idx == -1) {
+      return this;
+    }
+    String[] copy = new String[entries.length - 2];
+    System.arraycopy(entries, 0, copy, 0, idx);
+    System.arraycopy(entries, idx + 2, copy, idx, entries.length - idx - 2);
+    return new Context(copy);
   }
 
   public Context with(String key, String val) {
     if (val == null) {
       throw new NullPointerException();
     }
-    Context context = new Context(back);
-    context.back.put(key, val);
-    return context;
+    int idx = indexOf(key);
+    if (idx == -1) {
+      String[] copy = Arrays.copyOf(entries, entries.length + 2);
+      copy[entries.length] = intern(key);
+      copy[entries.length + 1] = val;
+      return new Context(copy);
+    }
+    if (val.equals(entries[idx + 1])) {
+      return this;
+    }
+    String[] copy = entries.clone();
+    copy[idx + 1] = val;
+    return new Context(copy);
   }
 
   public Context with(Map<String, String> props) {
@@ -62,24 +122,69 @@ public class Context extends AbstractMap<String, String> implements Serializable
         throw new NullPointerException();
       }
     }
-    Context context = new Context(back);
-    context.back.putAll(props);
-    return context;
+    String[] copy = Arrays.copyOf(entries, entries.length + props.size() * 2);
+    int length = entries.length;
+    for (Entry<String, String> entry : props.entrySet()) {
+      length = put(copy, length, entry.getKey(), entry.getValue());
+    }
+    return new Context(length == copy.length ? copy : Arrays.copyOf(copy, length));
   }
 
   public String get(String key) {
-    return back.get(key);
+    int idx = indexOf(key);
+    return idx == -1 ? null : entries[idx + 1];
+  }
+
+  @Override
+  public String get(Object key) {
+    return key instanceof String ? get((String) key) : null;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof String && indexOf((String) key) != -1;
   }
 
   public int size() {
-    return back.size();
+    return entries.length / 2;
   }
 
-  public boolean isEmpty() {return back.isEmpty();}
+  public boolean isEmpty() {return entries.length == 0;}
 
   @Override
   public Set<Entry<String, String>> entrySet() {
-    return toMap().entrySet();
+    Set<Entry<String, String>> entrySet = this.entrySet;
+    if (entrySet == null) {
+      this.entrySet = entrySet = new AbstractSet<Entry<String, String>>() {
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+          return new Iterator<Entry<String, String>>() {
+            int idx = 0;
+
+            @Override
+            public boolean hasNext() {
+              return idx < entries.length;
+            }
+
+            @Override
+            public Entry<String, String> next() {
+              if (idx >= entries.length) {
+                throw new NoSuchElementException();
+              }
+              Entry<String, String> entry = new SimpleImmutableEntry<>(entries[idx], entries[idx + 1]);
+              idx += 2;
+              return entry;
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return entries.length / 2;
+        }
+      };
+    }
+    return entrySet;
   }
 
   @Override
@@ -87,29 +192,104 @@ public class Context extends AbstractMap<String, String> implements Serializable
     if (this == o) return true;
     if (o == null || getClass() != o.getClass()) return false;
     Context context = (Context) o;
-    return back.equals(context.back);
+    return hash == context.hash && entries.length == context.entries.length && contains(context);
   }
 
   @Override
   public int hashCode() {
-    return back.hashCode();
+    return hash;
   }
 
   @Override
   public String toString() {
-    return back.toString();
+    StringBuilder sb = new StringBuilder("{");
+    for (int i = 0; i < entries.length; i += 2) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(entries[i]).append('=').append(entries[i + 1]);
+    }
+    return sb.append('}').toString();
   }
 
   public boolean contains(Context subCtx) {
-    return back.entrySet().containsAll(subCtx.back.entrySet());
+    String[] sub = subCtx.entries;
+    for (int i = 0; i < sub.length; i += 2) {
+      if (!contains(sub[i], sub[i + 1])) {
+        return false;
+      }
+    }
+    return true;
   }
 
   public boolean contains(String key) {
-    return back.containsKey(key);
+    return indexOf(key) != -1;
   }
 
   public boolean contains(String key, String val) {
-    return back.containsKey(key) && back.get(key).equals(val);
+    int idx = indexOf(key);
+    return idx != -1 && Objects.equals(entries[idx + 1], val);
+  }
+
+  private int indexOf(String key) {
+    String[] entries = this.entries;
+    // keys are interned: try first an identity check, which is enough when the key is a constant
+    for (int i = 0; i < entries.length; i += 2) {
+      if (entries[i] == key) {
+        return i;
+      }
+    }
+    if (key != null) {
+      for (int i = 0; i < entries.length; i += 2) {
+        if (key.equals(entries[i])) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("back", new LinkedHashMap<>(this));
+    out.writeFields();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField fields = in.readFields();
+    back = (Map<String, String>) fields.get("back", null);
+  }
+
+  private Object readResolve() {
+    return back == null ? EMPTY : create(back);
+  }
+
+  private static String intern(String key) {
+    return key == null ? null : KEYS.getOrDefault(key, key);
+  }
+
+  // puts a key-value pair in an array of entries having the given length, and returns the new length
+  private static int put(String[] entries, int length, String key, String val) {
+    for (int i = 0; i < length; i += 2) {
+      if (Objects.equals(entries[i], key)) {
+        entries[i + 1] = val;
+        return length;
+      }
+    }
+    entries[length] = intern(key);
+    entries[length + 1] = val;
+    return length + 2;
+  }
+
+  private static String[] toEntries(Map<String, String> map) {
+    String[] entries = new String[map.size() * 2];
+    int i = 0;
+    for (Entry<String, String> entry : map.entrySet()) {
+      entries[i++] = intern(entry.getKey());
+      entries[i++] = entry.getValue();
+    }
+    return entries;
   }
 
   public static Context create(String key, String val) {
@@ -117,10 +297,10 @@ public class Context extends AbstractMap<String, String> implements Serializable
   }
 
   public static Context create(Map<String, String> map) {
-    return new Context(map);
+    return map.isEmpty() ? EMPTY : new Context(toEntries(map));
   }
 
   public static Context empty() {
-    return new Context(Collections.<String, String>emptyMap());
+    return EMPTY;
   }
 }
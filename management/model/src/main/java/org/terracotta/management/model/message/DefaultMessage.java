@@ -46,6 +46,14 @@ public class DefaultMessage implements Message, Serializable {
     return (List<T>) Arrays.asList(data);
   }
 
+  /**
+   * @return the type of the array holding the data of this message, which is not always the type of its elements
+   */
+  @SuppressWarnings("unchecked")
+  public Class<? extends Contextual[]> getDataType() {
+    return data == null ? null : (Class<? extends Contextual[]>) data.getClass();
+  }
+
   @Override
   public Sequence getSequence() {
     return sequence;
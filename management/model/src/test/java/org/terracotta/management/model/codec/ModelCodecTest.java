@@ -0,0 +1,338 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.management.model.codec;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.terracotta.management.model.call.ContextualCall;
+import org.terracotta.management.model.call.ContextualReturn;
+import org.terracotta.management.model.call.Parameter;
+import org.terracotta.management.model.capabilities.Capability;
+import org.terracotta.management.model.capabilities.DefaultCapability;
+import org.terracotta.management.model.capabilities.context.CapabilityContext;
+import org.terracotta.management.model.capabilities.descriptors.CallDescriptor;
+import org.terracotta.management.model.capabilities.descriptors.Settings;
+import org.terracotta.management.model.capabilities.descriptors.StatisticDescriptor;
+import org.terracotta.management.model.cluster.Client;
+import org.terracotta.management.model.cluster.Cluster;
+import org.terracotta.management.model.cluster.Connection;
+import org.terracotta.management.model.cluster.Endpoint;
+import org.terracotta.management.model.cluster.ManagementRegistry;
+import org.terracotta.management.model.cluster.Server;
+import org.terracotta.management.model.cluster.ServerEntity;
+import org.terracotta.management.model.cluster.Stripe;
+import org.terracotta.management.model.context.Context;
+import org.terracotta.management.model.context.ContextContainer;
+import org.terracotta.management.model.context.Contextual;
+import org.terracotta.management.model.message.DefaultManagementCallMessage;
+import org.terracotta.management.model.message.DefaultMessage;
+import org.terracotta.management.model.message.Message;
+import org.terracotta.management.model.notification.ContextualNotification;
+import org.terracotta.management.model.stats.ContextualStatistics;
+import org.terracotta.management.sequence.BoundaryFlakeSequenceGenerator;
+import org.terracotta.management.sequence.Sequence;
+import org.terracotta.statistics.Sample;
+import org.terracotta.statistics.StatisticType;
+import org.terracotta.statistics.registry.Statistic;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class ModelCodecTest {
+
+  private final ModelCodec codec = new ModelCodec();
+  private final Context context = Context.create("cacheManagerName", "my-cm-1").with("cacheName", "my-cache");
+  private final Sequence sequence = new BoundaryFlakeSequenceGenerator().next();
+
+  @Test
+  public void test_values() {
+    assertNull(copy(null));
+    assertEquals("value", copy("value"));
+    assertEquals(true, copy(true));
+    assertEquals(-1, (int) copy(-1));
+    assertEquals(Long.MAX_VALUE, (long) copy(Long.MAX_VALUE));
+    assertEquals(Double.NaN, copy(Double.NaN), 0);
+    assertEquals(sequence, copy(sequence));
+    assertEquals(context, copy(context));
+    assertArrayEquals(new String[]{"a", null, "a"}, copy(new String[]{"a", null, "a"}));
+  }
+
+  @Test
+  public void test_statistics() {
+    ContextualStatistics statistics = statistics(context);
+    ContextualStatistics copy = copy(statistics);
+    assertEquals(statistics, copy);
+    assertEquals(statistics.getStatistics(), copy.getStatistics());
+  }
+
+  @Test
+  public void test_contextualReturn() {
+    ContextualReturn<Integer> contextualReturn = ContextualReturn.of("capability", context, "method", 1);
+    assertEquals(contextualReturn, copy(contextualReturn));
+
+    ContextualReturn<Integer> notExecuted = ContextualReturn.notExecuted("capability", context, "method");
+    assertEquals(notExecuted, copy(notExecuted));
+
+    ContextualReturn<?> error = copy(ContextualReturn.error("capability", context, "method", new ExecutionException(new IllegalStateException("failed"))));
+    assertTrue(error.errorThrown());
+    try {
+      error.getValue();
+      fail();
+    } catch (ExecutionException e) {
+      assertEquals("failed", e.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void test_contextualCall() {
+    ContextualCall<Integer> call = new ContextualCall<>(context, "capability", "method", Integer.class, new Parameter(1), new Parameter("value", String.class.getName()));
+    ContextualCall<?> copy = copy(call);
+    assertEquals(call.getContext(), copy.getContext());
+    assertEquals(call.getCapability(), copy.getCapability());
+    assertEquals(call.getMethodName(), copy.getMethodName());
+    assertEquals(call.getReturnType(), copy.getReturnType());
+    assertArrayEquals(call.getParameters(), copy.getParameters());
+  }
+
+  @Test
+  public void test_contextualNotification() {
+    ContextualNotification notification = new ContextualNotification(context, "TYPE", Context.create("key", "val"));
+    assertEquals(notification, copy(notification));
+  }
+
+  @Test
+  public void test_contextContainer() {
+    ContextContainer contextContainer = new ContextContainer("cmName", "cm1", new ContextContainer("cacheName", "cache1"), new ContextContainer("cacheName", "cache2"));
+    assertEquals(contextContainer, copy(contextContainer));
+  }
+
+  @Test
+  public void test_capabilities() {
+    Capability[] capabilities = {
+        new DefaultCapability(
+            "ActionsCapability",
+            new CapabilityContext(new CapabilityContext.Attribute("cacheManagerName", true), new CapabilityContext.Attribute("cacheName", true)),
+            new CallDescriptor("clear", Void.TYPE.getName(), new CallDescriptor.Parameter("cache", String.class.getName()))),
+        new DefaultCapability(
+            "StatisticsCapability",
+            new CapabilityContext(new CapabilityContext.Attribute("cacheManagerName", true), new CapabilityContext.Attribute("cacheName", true)),
+            new StatisticDescriptor("Cache:HitCount", "COUNTER"),
+            new StatisticDescriptor("Cache:MissCount", "COUNTER")),
+        new DefaultCapability(
+            "SettingsCapability",
+            new CapabilityContext(),
+            new Settings()
+                .set("cacheManagerName", "my-cm-1")
+                .set("size", 10)
+                .set("enabled", true)
+                .set("aliases", "a", "b")
+                .set("nothing", (String) null)
+                .set("resources", new Settings().set("heap", 1024L)))
+    };
+    assertArrayEquals(capabilities, copy(capabilities));
+  }
+
+  @Test
+  public void test_messages() {
+    DefaultMessage message = new DefaultMessage(sequence, "STATISTICS", statistics(context), statistics(context.with("cacheName", "other")));
+    assertEquals(message, copy(message));
+
+    DefaultMessage notifications = new DefaultMessage(sequence, "NOTIFICATION", new Contextual[]{new ContextualNotification(context, "TYPE")});
+    assertEquals(notifications, copy(notifications));
+
+    DefaultManagementCallMessage callMessage = new DefaultManagementCallMessage("id", sequence, "MANAGEMENT_CALL_RETURN", ContextualReturn.of("capability", context, "method", 1));
+    assertEquals(callMessage, copy(callMessage));
+
+    Message[] messages = {message, callMessage};
+    assertArrayEquals(messages, codec.decode(Message[].class, codec.encode(Message[].class, messages)));
+  }
+
+  @Test
+  public void test_cluster() throws IOException {
+    Cluster cluster = new Cluster();
+    Stripe stripe = Stripe.create("stripe-1");
+    cluster.addStripe(stripe);
+    Server active = Server.create("server-1")
+        .setHostName("hostname-1")
+        .setHostAddress("10.0.0.1")
+        .setBindAddress("0.0.0.0")
+        .setBindPort(9410)
+        .setGroupPort(9430)
+        .setState(Server.State.ACTIVE)
+        .setVersion("5.8.0")
+        .setBuildId("abc")
+        .setStartTime(1_500_000_000_000L)
+        .setUpTimeSec(60)
+        .setActivateTime(1_500_000_001_000L);
+    stripe.addServer(active);
+    stripe.addServer(Server.create("server-2").setState(Server.State.PASSIVE));
+    ServerEntity serverEntity = ServerEntity.create("entity-1", "org.terracotta.Entity").setConsumerId(3);
+    serverEntity.setManagementRegistry(ManagementRegistry.create(context, new ContextContainer("entityName", "entity-1"))
+        .addCapability(new DefaultCapability("ActionsCapability", new CapabilityContext(), new CallDescriptor("clear", Void.TYPE.getName()))));
+    active.addServerEntity(serverEntity);
+
+    Client client = Client.create("12345@127.0.0.1:ehcache:uid")
+        .setHostName("client-host")
+        .addTags("tag-1", "tag-2")
+        .addProperty("key", "value");
+    client.setManagementRegistry(ManagementRegistry.create(Context.empty(), new ContextContainer("cacheManagerName", "my-cm-1")));
+    cluster.addClient(client);
+    Connection connection = Connection.create("uid", active, Endpoint.create("10.10.10.10", 3456));
+    client.addConnection(connection);
+    connection.fetchServerEntity("entity-1", "org.terracotta.Entity");
+    connection.fetchServerEntity("entity-1", "org.terracotta.Entity");
+    connection.fetchServerEntity("removed-entity", "org.terracotta.Entity");
+    // a connection to a server which is not in the topology
+    Server removed = Server.create("server-3");
+    Stripe.create("stripe-2").addServer(removed);
+    client.addConnection(Connection.create("uid", removed, Endpoint.create("10.10.10.10", 3457)));
+
+    Cluster copy = copy(cluster);
+    assertEquals(cluster, copy);
+    assertEquals(client.getTags(), copy.getClient(client.getClientId()).get().getTags());
+    assertEquals(client.getProperties(), copy.getClient(client.getClientId()).get().getProperties());
+    assertEquals(client.getManagementRegistry(), copy.getClient(client.getClientId()).get().getManagementRegistry());
+    assertEquals(serverEntity.getManagementRegistry(), copy.getStripe("stripe-1").get().getServer("server-1").get().getServerEntity(serverEntity.getId()).get().getManagementRegistry());
+    assertEquals(connection.getServerEntityIds(), copy.getClient(client.getClientId()).get().getConnection(connection.getId()).get().getServerEntityIds());
+    assertEquals(cluster.toMap(), copy.toMap());
+    assertTrue(codec.encode(Cluster.class, cluster).length * 2 < serialize(cluster).length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_value_must_match_type() {
+    codec.encode(ContextualStatistics.class, "value");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_values_must_match_types() {
+    codec.encode(new Class<?>[]{String.class, int.class}, new Object[]{"value", "1"});
+  }
+
+  @Test
+  public void test_arguments() {
+    Class<?>[] types = {String.class, ContextualStatistics[].class, Stripe.class, int.class};
+    Object[] values = {"client-1", new ContextualStatistics[]{statistics(context)}, Stripe.create("stripe-1"), 1};
+    Object[] copy = codec.decode(types, codec.encode(types, values));
+    assertEquals(values[0], copy[0]);
+    assertArrayEquals((Object[]) values[1], (Object[]) copy[1]);
+    assertEquals(values[2], copy[2]);
+    assertEquals(values[3], copy[3]);
+
+    assertEquals(0, codec.decode(new Class<?>[0], codec.encode(new Class<?>[0], null)).length);
+  }
+
+  @Test
+  public void test_serialized_payloads_are_decoded() throws IOException {
+    ContextualStatistics statistics = statistics(context);
+    assertEquals(statistics, codec.decode(ContextualStatistics.class, serialize(statistics)));
+
+    Object[] values = {"client-1", statistics};
+    Object[] copy = codec.decode(new Class<?>[]{String.class, ContextualStatistics.class}, serialize(values));
+    assertArrayEquals(values, copy);
+  }
+
+  @Test
+  public void test_format_is_negotiated() throws Exception {
+    ContextualStatistics statistics = statistics(context);
+
+    // a peer which did not tell its format is written to with Java serialization, followed by the format of this codec
+    byte[] legacy = codec.encode(0, ContextualStatistics.class, statistics);
+    assertEquals(statistics, deserialize(legacy));
+    assertEquals(statistics, codec.decode(ContextualStatistics.class, legacy));
+    assertEquals(ModelCodec.FORMAT, codec.getFormat(legacy, 0, legacy.length));
+
+    Class<?>[] types = {String.class, ContextualStatistics.class};
+    Object[] values = {"value", statistics};
+    legacy = codec.encode(0, types, values);
+    assertArrayEquals(values, (Object[]) deserialize(legacy));
+    assertArrayEquals(values, codec.decode(types, legacy));
+    assertEquals(ModelCodec.FORMAT, codec.getFormat(legacy, 0, legacy.length));
+
+    // previous versions only write Java serialization
+    byte[] serialized = serialize(statistics);
+    assertEquals(0, codec.getFormat(serialized, 0, serialized.length));
+
+    byte[] encoded = codec.encode(ModelCodec.FORMAT, ContextualStatistics.class, statistics);
+    assertArrayEquals(codec.encode(ContextualStatistics.class, statistics), encoded);
+    assertEquals(ModelCodec.FORMAT, codec.getFormat(encoded, 0, encoded.length));
+  }
+
+  @Test
+  public void test_statistics_are_smaller_than_serialized() throws IOException {
+    ContextualStatistics[] statistics = new ContextualStatistics[100];
+    for (int i = 0; i < statistics.length; i++) {
+      statistics[i] = statistics(context.with("cacheName", "cache-" + i));
+    }
+    DefaultMessage message = new DefaultMessage(sequence, "STATISTICS", statistics);
+    int encoded = codec.encode(DefaultMessage.class, message).length;
+    int serialized = serialize(message).length;
+    assertTrue(encoded + " >= " + serialized / 2, encoded * 2 < serialized);
+  }
+
+  private ContextualStatistics statistics(Context context) {
+    long now = 1_500_000_000_000L;
+    List<Sample<Long>> hits = new ArrayList<>();
+    List<Sample<Double>> ratios = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      hits.add(new Sample<>(now + i * 1000, (long) i));
+      ratios.add(new Sample<>(now + i * 1000, i / 10d));
+    }
+    Map<String, Statistic<? extends Serializable>> map = new HashMap<>();
+    map.put("Cache:HitCount", new Statistic<>(StatisticType.COUNTER, hits));
+    map.put("Cache:HitRatio", new Statistic<>(StatisticType.RATIO, ratios));
+    map.put("Cache:Empty", new Statistic<>(StatisticType.GAUGE));
+    return new ContextualStatistics("StatisticsCapability", context, map);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T copy(T o) {
+    Class<T> type = o == null ? (Class<T>) Object.class : (Class<T>) o.getClass();
+    return codec.decode(type, codec.encode(type, o));
+  }
+
+  private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return ois.readObject();
+    }
+  }
+
+  private static byte[] serialize(Object o) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+      oos.writeObject(o);
+    }
+    return baos.toByteArray();
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.management.model.context;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ContextTest {
+
+  @Test
+  public void test_with_without() {
+    Context context = Context.create("cacheManagerName", "cm1").with("cacheName", "c1");
+    assertThat(context.size(), is(2));
+    assertThat(context.get("cacheName"), equalTo("c1"));
+    assertThat(context.with("cacheName", "c2").get("cacheName"), equalTo("c2"));
+    assertThat(context.with("cacheName", "c1"), sameInstance(context));
+    assertThat(context.without("cacheName"), equalTo(Context.create("cacheManagerName", "cm1")));
+    assertThat(context.without("unknown"), sameInstance(context));
+    assertThat(context.without("cacheManagerName").without("cacheName"), equalTo(Context.empty()));
+    assertThat(context.toString(), equalTo("{cacheManagerName=cm1, cacheName=c1}"));
+  }
+
+  @Test
+  public void test_equals_hashCode() {
+    Map<String, String> map = new HashMap<>();
+    map.put("cacheName", "c1");
+    map.put("cacheManagerName", "cm1");
+    Context context = Context.create("cacheManagerName", "cm1").with("cacheName", "c1");
+
+    assertThat(Context.create(map), equalTo(context));
+    assertThat(Context.create(map).hashCode(), equalTo(context.hashCode()));
+    assertThat(context.hashCode(), equalTo(map.hashCode()));
+    assertThat(context.toMap(), equalTo(map));
+    assertThat(context.contains(Context.create("cacheName", "c1")), is(true));
+    assertThat(context.contains(Context.create("cacheName", "c2")), is(false));
+    assertThat(Context.empty().with(map).size(), is(2));
+  }
+
+  @Test
+  public void test_only_well_known_keys_are_shared() {
+    String cacheName = new String("cacheName");
+    String unknown = new String("unknown");
+    Context context = Context.create(cacheName, "c1").with(unknown, "u1");
+    String[] keys = context.keySet().toArray(new String[0]);
+
+    assertThat(keys[0], sameInstance("cacheName"));
+    assertThat(keys[0], not(sameInstance(cacheName)));
+    assertThat(keys[1], sameInstance(unknown));
+    assertThat(Context.empty().with(context).keySet().toArray()[1], sameInstance(unknown));
+  }
+
+  @Test
+  public void test_serialization() throws Exception {
+    Context context = Context.create("cacheManagerName", "cm1").with("cacheName", "c1");
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+      oos.writeObject(context);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+      Context copy = (Context) ois.readObject();
+      assertThat(copy, equalTo(context));
+      assertThat(copy.hashCode(), equalTo(context.hashCode()));
+      assertThat(copy.toString(), equalTo(context.toString()));
+    }
+  }
+
+  @Test
+  public void test_serialized_form_of_previous_versions_is_read() throws Exception {
+    // Context.create("cacheManagerName", "cm1").with("cacheName", "c1").with("custom", "value"), serialized by the
+    // previous versions, backed by a LinkedHashMap
+    String serialized = "rO0ABXNyAC9vcmcudGVycmFjb3R0YS5tYW5hZ2VtZW50Lm1vZGVsLmNvbnRleHQuQ29udGV4dAAAAAAAAAABAgABTAAEYmFja3QAD0xq" +
+        "YXZhL3V0aWwvTWFwO3hwc3IAF2phdmEudXRpbC5MaW5rZWRIYXNoTWFwNMBOXBBswPsCAAFaAAthY2Nlc3NPcmRlcnhyABFqYXZhLnV0aWwu" +
+        "SGFzaE1hcAUH2sHDFmDRAwACRgAKbG9hZEZhY3RvckkACXRocmVzaG9sZHhwP0AAAAAAAAN3CAAAAAQAAAADdAAQY2FjaGVNYW5hZ2VyTmFt" +
+        "ZXQAA2NtMXQACWNhY2hlTmFtZXQAAmMxdAAGY3VzdG9tdAAFdmFsdWV4AA==";
+    Context context = Context.create("cacheManagerName", "cm1").with("cacheName", "c1").with("custom", "value");
+
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(serialized)))) {
+      Context copy = (Context) ois.readObject();
+      assertThat(copy, equalTo(context));
+      assertThat(copy.hashCode(), equalTo(context.hashCode()));
+      assertThat(copy.toString(), equalTo(context.toString()));
+      assertThat(copy.keySet().toArray()[0], sameInstance("cacheManagerName"));
+    }
+  }
+
+}
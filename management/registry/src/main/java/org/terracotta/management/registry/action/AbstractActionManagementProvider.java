@@ -22,9 +22,7 @@ import org.terracotta.management.model.capabilities.descriptors.Descriptor;
 import org.terracotta.management.model.context.Context;
 import org.terracotta.management.registry.AbstractManagementProvider;
 import org.terracotta.management.registry.ExposedObject;
-import org.terracotta.management.registry.Named;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -61,15 +59,7 @@ public abstract class AbstractActionManagementProvider<T> extends AbstractManage
   public final Collection<? extends Descriptor> getDescriptors() {
     Collection<CallDescriptor> descriptors = new HashSet<>();
     for (ExposedObject<T> o : getExposedObjects()) {
-      for (Method method : o.getClass().getMethods()) {
-        if (method.isAnnotationPresent(Exposed.class)) {
-          List<CallDescriptor.Parameter> parameters = new ArrayList<>();
-          for (MethodParameter parameter : getParameters(method)) {
-            parameters.add(new CallDescriptor.Parameter(parameter.getName(), parameter.getType().getName()));
-          }
-          descriptors.add(new CallDescriptor(method.getName(), method.getReturnType().getName(), parameters));
-        }
-      }
+      descriptors.addAll(ExposedMethods.of(o.getClass()).getDescriptors());
     }
     List<CallDescriptor> list = new ArrayList<>(descriptors);
     list.sort(CALL_DESCRIPTOR_COMPARATOR);
@@ -92,13 +82,11 @@ public abstract class AbstractActionManagementProvider<T> extends AbstractManage
     }
 
     try {
-      Method method = managedObject.getClass().getMethod(methodName, toClasses(managedObject.getClassLoader(), argClassNames));
-
-      // sanity check
-      if (!method.isAnnotationPresent(Exposed.class)) {
-        throw new IllegalArgumentException("Method not @Exposed : " + methodName + " with arg(s) " + Arrays.toString(argClassNames));
-      }
-      return returnType.isPrimitive() ? (V) method.invoke(managedObject, args) : returnType.cast(method.invoke(managedObject, args));
+      ExposedMethods.ExposedMethod exposedMethod = ExposedMethods.of(managedObject.getClass()).find(methodName, argClassNames);
+      Object result = exposedMethod != null ?
+          exposedMethod.invoke(managedObject, args) :
+          findExposedMethod(managedObject, methodName, argClassNames).invoke(managedObject, args);
+      return returnType.isPrimitive() ? (V) result : returnType.cast(result);
     } catch (NoSuchMethodException e) {
       throw new IllegalArgumentException("No such method : " + methodName + " with arg(s) " + Arrays.toString(argClassNames), e);
     } catch (IllegalAccessException e) {
@@ -108,6 +96,20 @@ public abstract class AbstractActionManagementProvider<T> extends AbstractManage
     }
   }
 
+  /**
+   * Resolves the parameter types in the class loader of the exposed object, which is only needed when the method is
+   * not found among the exposed methods of its class: this is the case of the erroneous calls.
+   */
+  private static Method findExposedMethod(ExposedObject<?> managedObject, String methodName, String[] argClassNames) throws NoSuchMethodException {
+    Method method = managedObject.getClass().getMethod(methodName, toClasses(managedObject.getClassLoader(), argClassNames));
+
+    // sanity check
+    if (!method.isAnnotationPresent(Exposed.class)) {
+      throw new IllegalArgumentException("Method not @Exposed : " + methodName + " with arg(s) " + Arrays.toString(argClassNames));
+    }
+    return method;
+  }
+
   private static Class<?>[] toClasses(ClassLoader classLoader, String[] classNames) {
     Class<?>[] classes = new Class<?>[classNames.length];
     for (int i = 0; i < classNames.length; i++) {
@@ -124,38 +126,4 @@ public abstract class AbstractActionManagementProvider<T> extends AbstractManage
     return classes;
   }
 
-  private static Collection<MethodParameter> getParameters(Method m) {
-    Class<?>[] types = m.getParameterTypes();
-    Collection<MethodParameter> parameters = new ArrayList<>(types.length);
-    for (int i = 0; i < types.length; i++) {
-      parameters.add(new MethodParameter(m, i));
-    }
-    return parameters;
-  }
-
-  private static class MethodParameter {
-
-    private final Method m;
-    private final int idx;
-
-    public MethodParameter(Method m, int idx) {
-      this.m = m;
-      this.idx = idx;
-    }
-
-    String getName() {
-      for (Annotation annotation : m.getParameterAnnotations()[idx]) {
-        if (Named.class == annotation.annotationType()) {
-          return Named.class.cast(annotation).value();
-        }
-      }
-      return "arg" + idx;
-    }
-
-    Class<?> getType() {
-      return m.getParameterTypes()[idx];
-    }
-
-  }
-
 }
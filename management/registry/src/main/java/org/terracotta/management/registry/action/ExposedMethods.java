@@ -0,0 +1,120 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.management.registry.action;
+
+import org.terracotta.management.model.capabilities.descriptors.CallDescriptor;
+import org.terracotta.management.registry.Named;
+import org.terracotta.reflect.MethodInvoker;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link Exposed} methods of a class, introspected once and then shared by all the action providers.
+ */
+final class ExposedMethods {
+
+  private static final ClassValue<ExposedMethods> CACHE = new ClassValue<ExposedMethods>() {
+    @Override
+    protected ExposedMethods computeValue(Class<?> type) {
+      return new ExposedMethods(type);
+    }
+  };
+
+  private final Collection<CallDescriptor> descriptors;
+  private final Map<String, List<ExposedMethod>> methodsByName = new HashMap<>();
+
+  private ExposedMethods(Class<?> type) {
+    List<CallDescriptor> descriptors = new ArrayList<>();
+    for (Method method : type.getMethods()) {
+      if (method.isAnnotationPresent(Exposed.class)) {
+        ExposedMethod exposedMethod = new ExposedMethod(method);
+        methodsByName.computeIfAbsent(method.getName(), name -> new ArrayList<>(1)).add(exposedMethod);
+        descriptors.add(exposedMethod.descriptor);
+      }
+    }
+    this.descriptors = Collections.unmodifiableList(descriptors);
+  }
+
+  static ExposedMethods of(Class<?> type) {
+    return CACHE.get(type);
+  }
+
+  Collection<CallDescriptor> getDescriptors() {
+    return descriptors;
+  }
+
+  /**
+   * @return the exposed method having this name and these parameter types, or null if there is none
+   */
+  ExposedMethod find(String name, String[] parameterTypeNames) {
+    List<ExposedMethod> methods = methodsByName.get(name);
+    if (methods != null) {
+      for (ExposedMethod method : methods) {
+        if (Arrays.equals(method.parameterTypeNames, parameterTypeNames)) {
+          return method;
+        }
+      }
+    }
+    return null;
+  }
+
+  static final class ExposedMethod {
+
+    private final String[] parameterTypeNames;
+    private final CallDescriptor descriptor;
+    private final MethodInvoker invoker;
+
+    private ExposedMethod(Method method) {
+      Class<?>[] parameterTypes = method.getParameterTypes();
+      Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+      this.parameterTypeNames = new String[parameterTypes.length];
+      List<CallDescriptor.Parameter> parameters = new ArrayList<>(parameterTypes.length);
+      for (int i = 0; i < parameterTypes.length; i++) {
+        parameterTypeNames[i] = parameterTypes[i].getName();
+        parameters.add(new CallDescriptor.Parameter(getName(parameterAnnotations[i], i), parameterTypeNames[i]));
+      }
+      this.descriptor = new CallDescriptor(method.getName(), method.getReturnType().getName(), parameters);
+      this.invoker = new MethodInvoker(method);
+    }
+
+    /**
+     * @throws IllegalArgumentException  if the arguments do not match the parameters of the method
+     * @throws InvocationTargetException if the method throws an exception
+     */
+    Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
+      return invoker.invoke(target, args);
+    }
+
+    private static String getName(Annotation[] annotations, int idx) {
+      for (Annotation annotation : annotations) {
+        if (Named.class == annotation.annotationType()) {
+          return Named.class.cast(annotation).value();
+        }
+      }
+      return "arg" + idx;
+    }
+  }
+}
@@ -25,10 +25,15 @@ import org.terracotta.management.registry.CapabilityManagementSupport;
 import org.terracotta.management.registry.ExposedObject;
 import org.terracotta.management.registry.ManagementProvider;
 import org.terracotta.management.registry.ResultSet;
+import org.terracotta.statistics.Sample;
+import org.terracotta.statistics.registry.Statistic;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.RejectedExecutionException;
@@ -37,14 +42,30 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.LongSupplier;
 
+import static java.util.Collections.emptyMap;
+
 /**
+ * Polls the statistics of the providers annotated with {@link StatisticProvider} at a fixed interval, and sends the
+ * samples taken since the last collect to the {@link Collector}.
+ * <p>
+ * In the changes-only mode, the statistics whose samples all have the value last sent are not sent again. It is
+ * enabled on the server and in the sample clients with the {@code terracotta.management.statistics.changesOnly} system
+ * property.
+ * <p>
+ * There is no push mode: the providers only expose their statistics through queries, so they are always polled. The
+ * changes-only mode is what reduces the volume of statistics sent.
+ *
  * @author Mathieu Carbou
  */
 public class DefaultStatisticCollector implements StatisticCollector {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DefaultStatisticCollector.class);
 
+  private final CapabilityManagementSupport managementRegistry;
   private final ScheduledExecutorService scheduledExecutorService;
+  private final Collector collector;
+  private final LongSupplier systemTimeSupplier;
+  private final boolean changesOnly;
   private final Runnable runnable;
 
   private volatile boolean running;
@@ -52,55 +73,34 @@ public class DefaultStatisticCollector implements StatisticCollector {
   private long intervalMs;
   private volatile long lastCollectTime;
 
+  // only accessed by the collecting task: the latest values sent, by capability, context and statistic name
+  private Map<String, Map<Context, Map<String, Serializable>>> lastValues = new HashMap<>();
+
   public DefaultStatisticCollector(final CapabilityManagementSupport managementRegistry,
                                    ScheduledExecutorService scheduledExecutorService,
                                    final Collector collector,
                                    LongSupplier systemTimeSupplier) {
+    this(managementRegistry, scheduledExecutorService, collector, systemTimeSupplier, false);
+  }
 
+  /**
+   * @param changesOnly true to only send the statistics having samples with a value different from the last value
+   *                    sent, false to send all the statistics collected
+   */
+  public DefaultStatisticCollector(final CapabilityManagementSupport managementRegistry,
+                                   ScheduledExecutorService scheduledExecutorService,
+                                   final Collector collector,
+                                   LongSupplier systemTimeSupplier,
+                                   boolean changesOnly) {
+    this.managementRegistry = Objects.requireNonNull(managementRegistry);
     this.scheduledExecutorService = Objects.requireNonNull(scheduledExecutorService);
-
-    Objects.requireNonNull(managementRegistry);
-    Objects.requireNonNull(collector);
-
+    this.collector = Objects.requireNonNull(collector);
+    this.systemTimeSupplier = Objects.requireNonNull(systemTimeSupplier);
+    this.changesOnly = changesOnly;
     this.runnable = () -> {
       try {
         if (running) {
-          Collection<ContextualStatistics> statistics = new ArrayList<>();
-
-          for (String capabilityName : managementRegistry.getCapabilityNames()) {
-
-            Set<Context> allContexts = new LinkedHashSet<>();
-
-            for (ManagementProvider<?> managementProvider : managementRegistry.getManagementProvidersByCapability(capabilityName)) {
-              if (managementProvider.getClass().isAnnotationPresent(StatisticProvider.class)) {
-                for (ExposedObject<?> exposedObject : managementProvider.getExposedObjects()) {
-                  allContexts.add(exposedObject.getContext());
-                }
-              }
-            }
-
-            if (!allContexts.isEmpty()) {
-              CapabilityManagement capabilityManagement = managementRegistry.withCapability(capabilityName);
-              ResultSet<ContextualStatistics> resultSet = capabilityManagement
-                  .queryAllStatistics()
-                  .on(allContexts)
-                  .since(lastCollectTime)
-                  .build()
-                  .execute();
-              for (ContextualStatistics contextualStatistics : resultSet) {
-                statistics.add(contextualStatistics);
-              }
-            }
-          }
-
-          if (running && !statistics.isEmpty()) {
-            collector.onStatistics(statistics);
-
-            // We set the time of last collect after the collector is called.
-            // Thus, if any exception occurs (such as temporary network failure),
-            // the next sending of stat will contain the samples of the last collect.
-            lastCollectTime = systemTimeSupplier.getAsLong();
-          }
+          collect();
         }
       } catch (RuntimeException e) {
         LOGGER.warn("StatisticCollector failed: " + e.getMessage(), e);
@@ -108,6 +108,94 @@ public class DefaultStatisticCollector implements StatisticCollector {
     };
   }
 
+  private void collect() {
+    Collection<ContextualStatistics> statistics = new ArrayList<>();
+
+    for (String capabilityName : managementRegistry.getCapabilityNames()) {
+
+      Set<Context> allContexts = new LinkedHashSet<>();
+
+      for (ManagementProvider<?> managementProvider : managementRegistry.getManagementProvidersByCapability(capabilityName)) {
+        if (managementProvider.getClass().isAnnotationPresent(StatisticProvider.class)) {
+          for (ExposedObject<?> exposedObject : managementProvider.getExposedObjects()) {
+            allContexts.add(exposedObject.getContext());
+          }
+        }
+      }
+
+      if (!allContexts.isEmpty()) {
+        CapabilityManagement capabilityManagement = managementRegistry.withCapability(capabilityName);
+        ResultSet<ContextualStatistics> resultSet = capabilityManagement
+            .queryAllStatistics()
+            .on(allContexts)
+            .since(lastCollectTime)
+            .build()
+            .execute();
+        for (ContextualStatistics contextualStatistics : resultSet) {
+          statistics.add(contextualStatistics);
+        }
+      }
+    }
+
+    if (running && !statistics.isEmpty()) {
+      Map<String, Map<Context, Map<String, Serializable>>> values = null;
+      if (changesOnly) {
+        values = new HashMap<>();
+        statistics = filterChanges(statistics, values);
+      }
+
+      if (!statistics.isEmpty()) {
+        collector.onStatistics(statistics);
+      }
+
+      // We set the time of last collect after the collector is called.
+      // Thus, if any exception occurs (such as temporary network failure),
+      // the next sending of stat will contain the samples of the last collect.
+      lastCollectTime = systemTimeSupplier.getAsLong();
+      if (values != null) {
+        lastValues = values;
+      }
+    }
+  }
+
+  /**
+   * Keeps the statistics having at least one sample with a value different from the last value sent.
+   *
+   * @param values filled with the latest value of all the statistics collected, sent or not, for the next collect
+   */
+  private Collection<ContextualStatistics> filterChanges(Collection<ContextualStatistics> statistics, Map<String, Map<Context, Map<String, Serializable>>> values) {
+    Collection<ContextualStatistics> changes = new ArrayList<>(statistics.size());
+    for (ContextualStatistics contextualStatistics : statistics) {
+      Map<String, Serializable> previous = lastValues
+          .getOrDefault(contextualStatistics.getCapability(), emptyMap())
+          .getOrDefault(contextualStatistics.getContext(), emptyMap());
+      Map<String, Serializable> latest = values
+          .computeIfAbsent(contextualStatistics.getCapability(), capability -> new HashMap<>())
+          .computeIfAbsent(contextualStatistics.getContext(), context -> new HashMap<>(previous));
+
+      Map<String, Statistic<? extends Serializable>> changed = new HashMap<>();
+      for (Map.Entry<String, Statistic<? extends Serializable>> entry : contextualStatistics.getStatistics().entrySet()) {
+        Serializable last = latest.get(entry.getKey());
+        boolean hasChanged = false;
+        for (Sample<? extends Serializable> sample : entry.getValue().getSamples()) {
+          hasChanged |= !Objects.equals(last, sample.getSample());
+          last = sample.getSample();
+        }
+        if (hasChanged) {
+          changed.put(entry.getKey(), entry.getValue());
+          latest.put(entry.getKey(), last);
+        }
+      }
+
+      if (!changed.isEmpty()) {
+        changes.add(changed.size() == contextualStatistics.size() ?
+            contextualStatistics :
+            new ContextualStatistics(contextualStatistics.getCapability(), contextualStatistics.getContext(), changed));
+      }
+    }
+    return changes;
+  }
+
   @Override
   public synchronized void startStatisticCollector(long interval, TimeUnit unit) {
     if (interval <= 0) {
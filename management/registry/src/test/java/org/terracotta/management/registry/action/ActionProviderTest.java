@@ -29,6 +29,7 @@ import org.terracotta.management.registry.ManagementProvider;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.instanceOf;
@@ -107,6 +108,43 @@ public class ActionProviderTest {
     assertThat(n, equalTo(2));
   }
 
+  @Test
+  public void testCallAction_error() throws Exception {
+    managementProvider.register(new MyObject("cache-manager-0", "cache-0"));
+
+    Context context = Context.empty()
+        .with("instanceId", "instance-0")
+        .with("cacheManagerName", "cache-manager-0")
+        .with("cacheName", "cache-0");
+
+    try {
+      managementProvider.callAction(context, "incr", int.class, new Parameter(Integer.MAX_VALUE, "int"));
+      fail("expected ExecutionException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), is(instanceOf(IllegalArgumentException.class)));
+    }
+    assertThat(managementProvider.callAction(context, "incr", int.class, new Parameter(2, "int")), equalTo(3));
+  }
+
+  @Test
+  public void testCallAction_bad_argument() throws Exception {
+    managementProvider.register(new MyObject("cache-manager-0", "cache-0"));
+
+    Context context = Context.empty()
+        .with("instanceId", "instance-0")
+        .with("cacheManagerName", "cache-manager-0")
+        .with("cacheName", "cache-0");
+
+    for (Object value : new Object[]{"1", 1L, null}) {
+      try {
+        managementProvider.callAction(context, "incr", int.class, new Parameter(value, "int"));
+        fail("expected IllegalArgumentException");
+      } catch (IllegalArgumentException iae) {
+        // expected: the method was not called
+      }
+    }
+  }
+
   @Test
   public void testCallAction_bad_context() throws Exception {
     managementProvider.register(new MyObject("cache-manager-0", "cache-0"));
@@ -0,0 +1,189 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.management.registry.collect;
+
+import org.junit.After;
+import org.junit.Test;
+import org.terracotta.management.model.context.Context;
+import org.terracotta.management.model.stats.ContextualStatistics;
+import org.terracotta.management.model.stats.DelegatingStatistic;
+import org.terracotta.management.model.stats.Statistic;
+import org.terracotta.management.registry.AbstractManagementProvider;
+import org.terracotta.management.registry.DefaultExposedObject;
+import org.terracotta.management.registry.DefaultManagementRegistry;
+import org.terracotta.management.registry.ExposedObject;
+import org.terracotta.management.registry.Named;
+import org.terracotta.management.registry.RequiredContext;
+import org.terracotta.statistics.Sample;
+import org.terracotta.statistics.StatisticType;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Collections.singleton;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class DefaultStatisticCollectorTest {
+
+  private final Context context = Context.create("cacheManagerName", "cm1").with("cacheName", "c1");
+  private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+  private final BlockingQueue<Collection<ContextualStatistics>> collected = new LinkedBlockingQueue<>();
+  private final CacheStatisticsProvider provider = new CacheStatisticsProvider();
+  private final DefaultManagementRegistry registry = new DefaultManagementRegistry();
+
+  public DefaultStatisticCollectorTest() {
+    registry.addManagementProvider(provider);
+  }
+
+  @After
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void test_only_changed_statistics_are_sent() throws Exception {
+    DefaultStatisticCollector statisticCollector = new DefaultStatisticCollector(
+        registry,
+        executorService,
+        collected::add,
+        System::currentTimeMillis,
+        true);
+    provider.statistics = statistics("Cache:HitCount", 1L, 2L);
+    registry.register(new Cache(context));
+    statisticCollector.startStatisticCollector(10, TimeUnit.MILLISECONDS);
+
+    Collection<ContextualStatistics> sent = collected.poll(60, TimeUnit.SECONDS);
+    assertThat(sent.size(), is(1));
+    assertThat(sent.iterator().next().getStatistics().keySet(), equalTo(singleton("Cache:HitCount")));
+
+    // only the statistic which has changed is sent
+    Map<String, Statistic<? extends Serializable>> statistics = new HashMap<>();
+    statistics.put("Cache:HitCount", statistic(2L));
+    statistics.put("Cache:MissCount", statistic(5L));
+    provider.statistics = statistics;
+    sent = collected.poll(60, TimeUnit.SECONDS);
+    assertThat(sent.size(), is(1));
+    assertThat(sent.iterator().next().getStatistics().keySet(), equalTo(singleton("Cache:MissCount")));
+
+    // nothing is sent for unchanged statistics
+    provider.statistics = statistics("Cache:HitCount", 2L);
+    provider.awaitCollects(3);
+    provider.statistics = statistics("Cache:HitCount", 3L);
+    sent = collected.poll(60, TimeUnit.SECONDS);
+    assertThat(sent.size(), is(1));
+    assertThat(sent.iterator().next().getLatestSampleValue("Cache:HitCount").get(), equalTo(3L));
+
+    statisticCollector.stopStatisticCollector();
+  }
+
+  @Test
+  public void test_last_collect_time_is_kept_when_nothing_is_collected() throws Exception {
+    AtomicLong time = new AtomicLong();
+    DefaultStatisticCollector statisticCollector = new DefaultStatisticCollector(
+        registry,
+        executorService,
+        collected::add,
+        time::incrementAndGet);
+    provider.statistics = statistics("Cache:HitCount", 1L);
+    statisticCollector.startStatisticCollector(10, TimeUnit.MILLISECONDS);
+
+    // no exposed object: nothing is collected
+    assertThat(provider.lookups.await(60, TimeUnit.SECONDS), is(true));
+
+    registry.register(new Cache(context));
+    assertThat(provider.sinces.poll(60, TimeUnit.SECONDS), is(0L));
+    assertThat(collected.poll(60, TimeUnit.SECONDS).size(), is(1));
+    assertThat(provider.sinces.poll(60, TimeUnit.SECONDS), is(1L));
+
+    statisticCollector.stopStatisticCollector();
+  }
+
+  private static Map<String, Statistic<? extends Serializable>> statistics(String name, Long... values) {
+    Map<String, Statistic<? extends Serializable>> statistics = new HashMap<>();
+    statistics.put(name, statistic(values));
+    return statistics;
+  }
+
+  private static Statistic<Long> statistic(Long... values) {
+    List<Sample<Long>> samples = new ArrayList<>();
+    for (Long value : values) {
+      samples.add(new Sample<>(System.currentTimeMillis(), value));
+    }
+    return new DelegatingStatistic<>(new org.terracotta.statistics.registry.Statistic<>(StatisticType.COUNTER, samples));
+  }
+
+  static class Cache {
+    final Context context;
+
+    Cache(Context context) {
+      this.context = context;
+    }
+  }
+
+  @Named("StatisticsCapability")
+  @RequiredContext({@Named("cacheManagerName"), @Named("cacheName")})
+  @StatisticProvider
+  static class CacheStatisticsProvider extends AbstractManagementProvider<Cache> {
+
+    final BlockingQueue<Long> sinces = new LinkedBlockingQueue<>();
+    final CountDownLatch lookups = new CountDownLatch(3);
+
+    volatile Map<String, Statistic<? extends Serializable>> statistics;
+
+    CacheStatisticsProvider() {
+      super(Cache.class);
+    }
+
+    @Override
+    public Collection<ExposedObject<Cache>> getExposedObjects() {
+      lookups.countDown();
+      return super.getExposedObjects();
+    }
+
+    @Override
+    public Map<String, Statistic<? extends Serializable>> collectStatistics(Context context, Collection<String> statisticNames, long since) {
+      sinces.add(since);
+      return statistics;
+    }
+
+    @Override
+    protected ExposedObject<Cache> wrap(Cache cache) {
+      return new DefaultExposedObject<>(cache, cache.context);
+    }
+
+    void awaitCollects(int count) throws InterruptedException {
+      sinces.clear();
+      for (int i = 0; i < count; i++) {
+        sinces.take();
+      }
+    }
+  }
+
+}
@@ -31,13 +31,12 @@ import org.terracotta.management.model.context.Contextual;
 import org.terracotta.management.model.message.ManagementCallMessage;
 import org.terracotta.management.model.message.Message;
 
-import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
  * @author Mathieu Carbou
@@ -49,12 +48,17 @@ class DefaultManagementService implements ManagementService, TopologyEventListen
   private final long consumerId;
   private final DefaultFiringService firingService;
   private final TopologyService topologyService;
-  private final Map<ClientDescriptor, Collection<String>> managementCallRequests = new ConcurrentHashMap<>();
+  private final String collectorId;
+  // the callers of the management calls in progress, by call identifier
+  private final Map<String, ClientDescriptor> managementCallRequests = new ConcurrentHashMap<>();
+  // the identifiers of the management calls in progress, by caller
+  private final Map<ClientDescriptor, Set<String>> managementCallRequestsByCaller = new ConcurrentHashMap<>();
 
   private volatile ManagementExecutor managementExecutor;
 
   DefaultManagementService(long consumerId, TopologyService topologyService, DefaultFiringService firingService) {
     this.consumerId = consumerId;
+    this.collectorId = String.valueOf(consumerId);
     this.topologyService = Objects.requireNonNull(topologyService);
     this.firingService = Objects.requireNonNull(firingService);
 
@@ -71,7 +75,7 @@ class DefaultManagementService implements ManagementService, TopologyEventListen
   @Override
   public Cluster readTopology() {
     LOGGER.trace("[{}] readTopology()", consumerId);
-    return topologyService.getClusterCopy();
+    return topologyService.getClusterSnapshot();
   }
 
   @Override
@@ -114,14 +118,17 @@ class DefaultManagementService implements ManagementService, TopologyEventListen
   @Override
   public void onBecomeActive(String serverName) {
     LOGGER.trace("[{}] onBecomeActive()", this.consumerId);
+    managementCallRequestsByCaller.clear();
     managementCallRequests.clear();
   }
 
   @Override
   public void onUnfetch(long consumerId, ClientDescriptor clientDescriptor) {
     if (consumerId == this.consumerId) {
-      if (managementCallRequests.remove(clientDescriptor) != null) {
+      Set<String> managementCallIdentifiers = managementCallRequestsByCaller.remove(clientDescriptor);
+      if (managementCallIdentifiers != null) {
         LOGGER.trace("[{}] onUnfetch({})", this.consumerId, clientDescriptor);
+        managementCallIdentifiers.forEach(managementCallRequests::remove);
       }
     }
   }
@@ -136,18 +143,8 @@ class DefaultManagementService implements ManagementService, TopologyEventListen
         break;
 
       case "STATISTICS":
-        if (managementExecutor != null) {
-          String cid = "" + consumerId;
-          // The statistic collector collects all statistics from the shared management registry (entities)
-          // plus 1 management entity (which contains this collector).
-          // Here, we only accept groups of stats that are collected by the collector that have the same
-          // consumerId (same NMS entity)
-          boolean accepted = message.unwrap(Contextual.class).stream()
-              .map(Contextual::getContext)
-              .anyMatch(context -> context.contains(Client.KEY) || context.contains("collectorId", cid));
-          if (accepted) {
-            managementExecutor.sendMessageToClients(message);
-          }
+        if (managementExecutor != null && isAccepted(message)) {
+          managementExecutor.sendMessageToClients(message);
         }
         break;
 
@@ -176,33 +173,65 @@ class DefaultManagementService implements ManagementService, TopologyEventListen
     }
   }
 
+  /**
+   * The statistic collector collects all statistics from the shared management registry (entities)
+   * plus 1 management entity (which contains this collector).
+   * Here, we only accept groups of stats that are collected by the collector that have the same
+   * consumerId (same NMS entity), or the client stats.
+   * <p>
+   * A group of stats comes either from a client or from a single collector, which marks all the stats it collects:
+   * the first marked stats decide.
+   */
+  private boolean isAccepted(Message message) {
+    for (Contextual contextual : message.unwrap(Contextual.class)) {
+      Context context = contextual.getContext();
+      if (context.contains(Client.KEY)) {
+        return true;
+      }
+      String statCollectorId = context.get("collectorId");
+      if (statCollectorId != null) {
+        assert isCollectedBy(message, statCollectorId) : "Statistics not all marked by collector " + statCollectorId + ": " + message;
+        return statCollectorId.equals(collectorId);
+      }
+    }
+    return false;
+  }
+
+  private static boolean isCollectedBy(Message message, String collectorId) {
+    return message.unwrap(Contextual.class).stream().allMatch(contextual -> collectorId.equals(contextual.getContext().get("collectorId")));
+  }
+
   private void track(ClientDescriptor caller, String managementCallIdentifier) {
-    managementCallRequests
-        .computeIfAbsent(caller, clientDescriptor -> new ConcurrentSkipListSet<>())
-        .add(managementCallIdentifier);
+    managementCallRequestsByCaller.compute(caller, (clientDescriptor, managementCallIdentifiers) -> {
+      if (managementCallIdentifiers == null) {
+        managementCallIdentifiers = ConcurrentHashMap.newKeySet();
+      }
+      managementCallIdentifiers.add(managementCallIdentifier);
+      managementCallRequests.put(managementCallIdentifier, clientDescriptor);
+      return managementCallIdentifiers;
+    });
   }
 
   private Optional<ClientDescriptor> unTrack(String managementCallIdentifier) {
-    for (Map.Entry<ClientDescriptor, Collection<String>> entry : managementCallRequests.entrySet()) {
-      if (entry.getValue().remove(managementCallIdentifier)) {
-        return Optional.of(entry.getKey());
-      }
+    ClientDescriptor caller = managementCallRequests.remove(managementCallIdentifier);
+    if (caller == null) {
+      return Optional.empty();
     }
-    return Optional.empty();
+    managementCallRequestsByCaller.computeIfPresent(caller, (clientDescriptor, managementCallIdentifiers) -> {
+      managementCallIdentifiers.remove(managementCallIdentifier);
+      return managementCallIdentifiers.isEmpty() ? null : managementCallIdentifiers;
+    });
+    return Optional.of(caller);
   }
 
   private boolean isTracked(String managementCallIdentifier) {
-    for (Map.Entry<ClientDescriptor, Collection<String>> entry : managementCallRequests.entrySet()) {
-      if (entry.getValue().contains(managementCallIdentifier)) {
-        return true;
-      }
-    }
-    return false;
+    return managementCallRequests.containsKey(managementCallIdentifier);
   }
 
   @Override
   public void close() {
     LOGGER.info("[{}] Closing management service", this.consumerId);
+    managementCallRequestsByCaller.clear();
     managementCallRequests.clear();
     topologyService.removeTopologyEventListener(this);
     firingService.removeManagementService(this);
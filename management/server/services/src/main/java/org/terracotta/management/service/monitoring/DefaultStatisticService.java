@@ -44,6 +44,9 @@ class DefaultStatisticService implements StatisticService, Closeable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DefaultStatisticService.class);
 
+  // only send the statistics which changed since they were last sent, instead of all the statistics collected
+  private static final boolean CHANGES_ONLY = Boolean.getBoolean("terracotta.management.statistics.changesOnly");
+
   private static final AtomicLong managementSchedulerCount = new AtomicLong();
 
   private final ScheduledExecutorService managementScheduler = Executors.unconfigurableScheduledExecutorService(new ScheduledThreadPoolExecutor(
@@ -91,7 +94,8 @@ class DefaultStatisticService implements StatisticService, Closeable {
           list.forEach(stats -> stats.setContext(stats.getContext().with("collectorId", "" + consumerId)));
           monitoringService.pushStatistics(list.toArray(new ContextualStatistics[0]));
         },
-        timeSource::getTimestamp
+        timeSource::getTimestamp,
+        CHANGES_ONLY
     );
 
     // add a collector service, not started by default, but that can be started through a remote management call
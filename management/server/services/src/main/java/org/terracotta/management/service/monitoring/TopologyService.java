@@ -57,6 +57,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -90,6 +91,11 @@ class TopologyService implements PlatformListener {
 
   private volatile Server currentActive;
 
+  // incremented after each change made to the cluster
+  private final AtomicLong topologyVersion = new AtomicLong();
+  // copy of the cluster taken at a given version, shared by all the readers until the cluster changes
+  private volatile Snapshot snapshot = new Snapshot(-1, null);
+
   TopologyService(FiringService firingService, PlatformConfiguration platformConfiguration) {
     this.firingService = Objects.requireNonNull(firingService);
     this.platformConfiguration = platformConfiguration;
@@ -139,6 +145,8 @@ class TopologyService implements PlatformListener {
 
       serverStateChanged(self, new ServerState("ACTIVE", now, now));
     }
+
+    topologyChanged();
   }
 
   @Override
@@ -167,6 +175,8 @@ class TopologyService implements PlatformListener {
 
       firingService.fireNotification(new ContextualNotification(server.getContext(), SERVER_JOINED.name(), attrs));
     }
+
+    topologyChanged();
   }
 
   @Override
@@ -189,6 +199,8 @@ class TopologyService implements PlatformListener {
 
       firingService.fireNotification(new ContextualNotification(context, SERVER_LEFT.name(), attrs));
     });
+
+    topologyChanged();
   }
 
   @Override
@@ -221,6 +233,8 @@ class TopologyService implements PlatformListener {
         }
       });
     }
+
+    topologyChanged();
   }
 
   @Override
@@ -270,6 +284,8 @@ class TopologyService implements PlatformListener {
           firingService.fireNotification(new ContextualNotification(context, SERVER_ENTITY_DESTROYED.name()));
         });
     }
+
+    topologyChanged();
   }
 
   @Override
@@ -290,6 +306,8 @@ class TopologyService implements PlatformListener {
             }
         });
     }
+
+    topologyChanged();
   }
 
   @Override
@@ -307,6 +325,8 @@ class TopologyService implements PlatformListener {
               });
         });
     }
+
+    topologyChanged();
   }
 
   @Override
@@ -325,6 +345,8 @@ class TopologyService implements PlatformListener {
               });
         });
     }
+
+    topologyChanged();
   }
 
   @Override
@@ -345,6 +367,8 @@ class TopologyService implements PlatformListener {
             topologyEventListeners.forEach(listener -> listener.onFetch(platformEntity.consumerID, clientDescriptor));
           })));
     }
+
+    topologyChanged();
   }
 
   @Override
@@ -367,6 +391,8 @@ class TopologyService implements PlatformListener {
               topologyEventListeners.forEach(listener -> listener.onUnfetch(platformEntity.consumerID, clientDescriptor));
             })));
     }
+
+    topologyChanged();
   }
 
   @Override
@@ -399,6 +425,8 @@ class TopologyService implements PlatformListener {
 
       firingService.fireNotification(new ContextualNotification(server.getContext(), SERVER_STATE_CHANGED.name(), attrs));
     });
+
+    topologyChanged();
   }
 
   // ======================================================================
@@ -439,7 +467,10 @@ class TopologyService implements PlatformListener {
 
     whenFetchClient(consumerId, clientDescriptor).executeOrDelay("client-registry", client -> {
       if (!newRegistry.equals(client.getManagementRegistry().orElse(null))) {
-        client.setManagementRegistry(newRegistry);
+        synchronized (this) {
+          client.setManagementRegistry(newRegistry);
+          topologyChanged();
+        }
         firingService.fireNotification(new ContextualNotification(client.getContext(), Notification.CLIENT_REGISTRY_AVAILABLE.name()));
       }
     });
@@ -455,7 +486,10 @@ class TopologyService implements PlatformListener {
       Set<String> currtags = new HashSet<>(client.getTags());
       Set<String> newTags = new HashSet<>(Arrays.asList(tags));
       if (!currtags.equals(newTags)) {
-        client.setTags(tags);
+        synchronized (this) {
+          client.setTags(tags);
+          topologyChanged();
+        }
         firingService.fireNotification(new ContextualNotification(client.getContext(), Notification.CLIENT_TAGS_UPDATED.name()));
       }
     });
@@ -503,7 +537,10 @@ class TopologyService implements PlatformListener {
 
     whenServerEntity(consumerId, serverName).executeOrDelay("entity-registry", serverEntity -> {
       if (!newRegistry.equals(serverEntity.getManagementRegistry().orElse(null))) {
-        serverEntity.setManagementRegistry(newRegistry);
+        synchronized (this) {
+          serverEntity.setManagementRegistry(newRegistry);
+          topologyChanged();
+        }
         firingService.fireNotification(new ContextualNotification(serverEntity.getContext(), Notification.ENTITY_REGISTRY_AVAILABLE.name()));
       }
     });
@@ -539,7 +576,30 @@ class TopologyService implements PlatformListener {
         .map(Client::getContext);
   }
 
-  synchronized Cluster getClusterCopy() {
+  /**
+   * @return a copy of the current topology, shared by all the readers until the topology changes: it must not be modified.
+   * Readers do not lock as long as the topology has not changed since the last copy.
+   */
+  Cluster getClusterSnapshot() {
+    Snapshot snapshot = this.snapshot;
+    if (snapshot.version == topologyVersion.get()) {
+      return snapshot.cluster;
+    }
+    synchronized (this) {
+      snapshot = this.snapshot;
+      long version = topologyVersion.get();
+      if (snapshot.version != version) {
+        this.snapshot = snapshot = new Snapshot(version, copyCluster());
+      }
+      return snapshot.cluster;
+    }
+  }
+
+  private void topologyChanged() {
+    topologyVersion.incrementAndGet();
+  }
+
+  private Cluster copyCluster() {
     try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
       try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
         oos.writeObject(cluster);
@@ -589,6 +649,16 @@ class TopologyService implements PlatformListener {
     return entities.computeIfAbsent(consumerId, key -> new ExecutionChain<>());
   }
 
+  private static final class Snapshot {
+    final long version;
+    final Cluster cluster;
+
+    Snapshot(long version, Cluster cluster) {
+      this.version = version;
+      this.cluster = cluster;
+    }
+  }
+
   private static ClientIdentifier toClientIdentifier(PlatformConnectedClient connection) {
     return ClientIdentifier.create(
         connection.clientPID,
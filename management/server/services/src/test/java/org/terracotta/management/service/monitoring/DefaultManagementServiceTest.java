@@ -0,0 +1,185 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.management.service.monitoring;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.terracotta.entity.ClientDescriptor;
+import org.terracotta.management.model.call.ContextualCall;
+import org.terracotta.management.model.call.ContextualReturn;
+import org.terracotta.management.model.cluster.Server;
+import org.terracotta.management.model.cluster.ServerEntity;
+import org.terracotta.management.model.context.Context;
+import org.terracotta.management.model.message.Message;
+import org.terracotta.management.model.notification.ContextualNotification;
+import org.terracotta.management.model.stats.ContextualStatistics;
+import org.terracotta.management.sequence.BoundaryFlakeSequenceGenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class DefaultManagementServiceTest {
+
+  private final DefaultFiringService firingService = new DefaultFiringService(new BoundaryFlakeSequenceGenerator());
+  private final TopologyService topologyService = mock(TopologyService.class);
+  private final Context entityContext = Context.create(Server.NAME_KEY, "server-1").with(ServerEntity.CONSUMER_ID, "2");
+
+  private final List<String> executedCalls = new ArrayList<>();
+  private final List<Message> sentToClients = new ArrayList<>();
+  private final List<ClientDescriptor> callers = new ArrayList<>();
+
+  private DefaultManagementService managementService;
+
+  @Before
+  public void setUp() {
+    when(topologyService.getManageableEntityContext(anyString(), anyLong())).thenReturn(Optional.of(entityContext.with("entityName", "entity-1")));
+    managementService = new DefaultManagementService(1, topologyService, firingService);
+    managementService.setManagementExecutor(new ManagementExecutorAdapter() {
+      @Override
+      public void executeManagementCallOnServer(String managementCallIdentifier, ContextualCall<?> call) {
+        executedCalls.add(managementCallIdentifier);
+      }
+
+      @Override
+      public void sendMessageToClients(Message message) {
+        sentToClients.add(message);
+      }
+
+      @Override
+      public void sendMessageToClient(Message message, ClientDescriptor to) {
+        callers.add(to);
+      }
+    });
+  }
+
+  @Test
+  public void test_management_call_answer_is_routed_to_its_caller() {
+    ClientDescriptor caller = mock(ClientDescriptor.class);
+    String id = managementService.sendManagementCallRequest(caller, entityContext, "capability", "method", Void.class);
+    assertThat(executedCalls, equalTo(Collections.singletonList(id)));
+
+    answer(id);
+    assertThat(callers.size(), equalTo(1));
+    assertThat(callers.get(0), sameInstance(caller));
+
+    // the call is no longer tracked once answered
+    answer(id);
+    assertThat(callers.size(), equalTo(1));
+  }
+
+  @Test
+  public void test_untracked_management_calls_are_ignored() {
+    firingService.fireManagementCallRequest("unknown", new ContextualCall<>(entityContext, "capability", "method", Void.class));
+    answer("unknown");
+    assertThat(executedCalls.isEmpty(), equalTo(true));
+    assertThat(callers.isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void test_unfetch_removes_the_calls_of_the_caller() {
+    ClientDescriptor caller1 = mock(ClientDescriptor.class);
+    ClientDescriptor caller2 = mock(ClientDescriptor.class);
+    String id1 = managementService.sendManagementCallRequest(caller1, entityContext, "capability", "method", Void.class);
+    String id2 = managementService.sendManagementCallRequest(caller1, entityContext, "capability", "method", Void.class);
+    String id3 = managementService.sendManagementCallRequest(caller2, entityContext, "capability", "method", Void.class);
+
+    // another consumer
+    managementService.onUnfetch(2, caller1);
+    answer(id1);
+    assertThat(callers, equalTo(Collections.singletonList(caller1)));
+
+    managementService.onUnfetch(1, caller1);
+    answer(id2);
+    answer(id3);
+    assertThat(callers.size(), equalTo(2));
+    assertThat(callers.get(1), sameInstance(caller2));
+  }
+
+  @Test
+  public void test_become_active_and_close_remove_all_calls() {
+    ClientDescriptor caller = mock(ClientDescriptor.class);
+    String id1 = managementService.sendManagementCallRequest(caller, entityContext, "capability", "method", Void.class);
+    managementService.onBecomeActive("server-1");
+    answer(id1);
+    assertThat(callers.isEmpty(), equalTo(true));
+
+    String id2 = managementService.sendManagementCallRequest(caller, entityContext, "capability", "method", Void.class);
+    managementService.close();
+    answer(id2);
+    firingService.fireNotification(new ContextualNotification(entityContext, "TYPE"));
+    assertThat(callers.isEmpty(), equalTo(true));
+    assertThat(sentToClients.isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void test_notifications_are_sent_to_clients() {
+    firingService.fireNotification(new ContextualNotification(entityContext, "TYPE"));
+    assertThat(sentToClients.size(), equalTo(1));
+  }
+
+  @Test
+  public void test_only_the_statistics_of_this_collector_or_of_clients_are_sent() {
+    firingService.fireStatistics(new ContextualStatistics[]{statistics(entityContext.with("collectorId", "1")), statistics(entityContext.with("collectorId", "1"))});
+    assertThat(sentToClients.size(), equalTo(1));
+
+    firingService.fireStatistics(new ContextualStatistics[]{statistics(entityContext.with("collectorId", "2"))});
+    assertThat(sentToClients.size(), equalTo(1));
+
+    firingService.fireStatistics(new ContextualStatistics[]{statistics(entityContext)});
+    assertThat(sentToClients.size(), equalTo(1));
+
+    firingService.fireStatistics(new ContextualStatistics[]{statistics(Context.create("clientId", "12345@127.0.0.1:name:uid"))});
+    assertThat(sentToClients.size(), equalTo(2));
+  }
+
+  @Test
+  public void test_statistics_are_all_marked_by_one_collector() {
+    boolean assertionsEnabled = false;
+    //noinspection AssertWithSideEffects
+    assert assertionsEnabled = true;
+    if (assertionsEnabled) {
+      try {
+        firingService.fireStatistics(new ContextualStatistics[]{statistics(entityContext.with("collectorId", "1")), statistics(entityContext.with("collectorId", "2"))});
+        fail();
+      } catch (AssertionError e) {
+        // expected
+      }
+    }
+  }
+
+  private void answer(String managementCallIdentifier) {
+    firingService.fireManagementCallAnswer(managementCallIdentifier, ContextualReturn.of("capability", entityContext, "method", null));
+  }
+
+  private static ContextualStatistics statistics(Context context) {
+    return new ContextualStatistics("StatisticsCapability", context, Collections.emptyMap());
+  }
+}
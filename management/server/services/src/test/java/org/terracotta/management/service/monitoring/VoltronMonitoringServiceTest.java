@@ -61,6 +61,8 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -369,6 +371,27 @@ public class VoltronMonitoringServiceTest {
     assertThat(activeEntityMonitoringService.getConsumerId(), equalTo(1L));
   }
 
+  @Test
+  public void test_topology_snapshot_is_rebuilt_on_change() throws Exception {
+    Cluster snapshot = managementService.readTopology();
+    assertThat(managementService.readTopology(), sameInstance(snapshot));
+
+    // platform change
+    activePlatformListener.addNode(active, FETCHED_PATH, "fetch-1-1", new PlatformClientFetchedEntity("client-1", "entity-1", new FakeDesc("1-1")));
+    Cluster fetched = managementService.readTopology();
+    assertThat(fetched, not(sameInstance(snapshot)));
+    assertThat(fetched, not(equalTo(snapshot)));
+    assertThat(managementService.readTopology(), sameInstance(fetched));
+
+    // change made from an execution chain
+    clientMonitoringService.exposeTags(new FakeDesc("1-1"), "tags1");
+    Cluster tagged = managementService.readTopology();
+    assertThat(tagged, not(sameInstance(fetched)));
+    assertThat(tagged.getClient("111@127.0.0.1:name:uuid-1").get().getTags().contains("tags1"), equalTo(true));
+    assertThat(fetched.getClient("111@127.0.0.1:name:uuid-1").get().getTags().isEmpty(), equalTo(true));
+    assertThat(managementService.readTopology(), sameInstance(tagged));
+  }
+
   @Test
   public void test_notifs_and_stats() throws Exception {
     test_fetch_entity();
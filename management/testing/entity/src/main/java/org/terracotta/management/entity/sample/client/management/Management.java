@@ -41,6 +41,7 @@ import java.util.concurrent.TimeUnit;
 public class Management {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(Management.class);
+  private static final boolean CHANGES_ONLY = Boolean.getBoolean("terracotta.management.statistics.changesOnly");
 
   private final ExecutorService executorService = Executors.newCachedThreadPool();
   private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
@@ -65,7 +66,8 @@ public class Management {
         managementRegistry,
         scheduledExecutorService,
         statistics -> nmsAgentService.pushStatistics(statistics),
-        System::currentTimeMillis);
+        System::currentTimeMillis,
+        CHANGES_ONLY);
 
     // register the collector in the registry so that we can manage it
     managementRegistry.register(statisticCollector);
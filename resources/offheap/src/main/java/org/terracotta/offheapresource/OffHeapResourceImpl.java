@@ -28,11 +28,21 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.Consumer;
 
 /**
  * An implementation of {@link OffHeapResource}.
+ * <p>
+ * The free space is kept in a single counter that reservations decrement with a CAS, never below zero, which
+ * guarantees that the capacity is never exceeded. Releases are instead added to striped counters, and are only
+ * collected back into the free space when a reservation does not fit, or when the capacity or the listeners change.
+ * Collections are serialized, and add a released size to the free space before removing it from its stripe, so that
+ * the sum of the counters never misses a released size.
+ * Neither path allocates: the usage listeners are only checked when the usage crosses the bounds computed from their
+ * thresholds, and the Tripwire monitor is sampled at most every {@link #SAMPLE_INTERVAL_NANOS}.
  */
 final class OffHeapResourceImpl implements OffHeapResource, AutoCloseable {
 
@@ -43,6 +53,9 @@ final class OffHeapResourceImpl implements OffHeapResource, AutoCloseable {
   private static final String OFFHEAP_WARN_KEY = "offheap.warn";
   private static final String DEFAULT_MESSAGE = "Offheap allocation for resource \"{}\" reached {}%, you may run out of memory if allocation continues.";
   private static final Properties MESSAGE_PROPERTIES;
+  private static final int STRIPES = Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+  private static final int STRIPE_PADDING = 8; // longs per stripe, so that stripes do not share cache lines
+  private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
   private final Map<UUID, OffHeapUsageListener> listenerMap = new ConcurrentHashMap<>();
 
   static {
@@ -66,12 +79,24 @@ final class OffHeapResourceImpl implements OffHeapResource, AutoCloseable {
     }
   }
 
-  private final AtomicReference<OffHeapResourceState> state;
   private final String identifier;
   private final CapacityChangeHandler onCapacityChanged;
   private final OffHeapResourceBinding managementBinding;
   private final MemoryMonitor monitor;
 
+  // the free space, not counting the releases not collected yet
+  private final AtomicLong remaining;
+  private final AtomicLongArray releases = new AtomicLongArray(STRIPES * STRIPE_PADDING);
+  // guards the collection of the releases
+  private final Object collectLock = new Object();
+  private final AtomicLong nextSample = new AtomicLong(System.nanoTime());
+  // guards the capacity changes and the firing of the listeners
+  private final Object lock = new Object();
+  private volatile long capacity;
+  // usages at or above which an unfired listener, and below which a fired listener, may have to fire
+  private volatile long risingBound = Long.MAX_VALUE;
+  private volatile long fallingBound = Long.MIN_VALUE;
+
   /**
    * Creates a resource of the given initial size.
    *
@@ -88,7 +113,8 @@ final class OffHeapResourceImpl implements OffHeapResource, AutoCloseable {
       throw new IllegalArgumentException("Resource size cannot be negative");
     }
 
-    this.state = new AtomicReference<>(new OffHeapResourceState(size));
+    this.capacity = size;
+    this.remaining = new AtomicLong(size);
     this.identifier = identifier;
     monitor = TripwireFactory.createMemoryMonitor(identifier);
     monitor.register();
@@ -140,63 +166,18 @@ final class OffHeapResourceImpl implements OffHeapResource, AutoCloseable {
     }
 
     while (true) {
-      OffHeapResourceState currentState = state.get();
-      OffHeapResourceState newState = currentState.reserve(size);
-
-      if (newState.isOverflowed()) {
-        return false;
-      }
-
-      if (state.compareAndSet(currentState, newState)) {
-        stateUpdated(currentState, newState);
-        return true;
-      }
-    }
-  }
-
-  private void stateUpdated(OffHeapResourceState prevState, OffHeapResourceState newState) {
-    long capacity = newState.getCapacity();
-    long used = newState.getUsed();
-    long prevUsed = prevState.getUsed();
-    long prevCapacity = prevState.getCapacity();
-
-    if (used > prevUsed || capacity < prevCapacity) {
-      // check for rising event.
-      float occupancy = (used * 1.0f) / capacity;
-      OffHeapUsageEvent offHeapUsageEvent = null;
-      for (OffHeapUsageListener offHeapUsageListener : listenerMap.values()) {
-        if (!offHeapUsageListener.isFired() && (Float.compare(offHeapUsageListener.getThreshold(), occupancy) <= 0)) {
-          if (offHeapUsageEvent == null) {
-            offHeapUsageEvent = new OffHeapUsageEventImpl(used, newState.getRemaining(), capacity, OffHeapUsageEventType.RISING);
-          }
-          if (Float.compare(offHeapUsageListener.getThreshold(), 0.9f) == 0) {
-            LOGGER.warn(MESSAGE_PROPERTIES.getProperty(OFFHEAP_WARN_KEY), identifier, (used * 100L) / capacity);
-          } else if (Float.compare(offHeapUsageListener.getThreshold(), 0.75f) == 0) {
-            LOGGER.info(MESSAGE_PROPERTIES.getProperty(OFFHEAP_INFO_KEY), identifier, (used * 100L) / capacity);
-          }
-          offHeapUsageListener.getConsumer().accept(offHeapUsageEvent);
-          offHeapUsageListener.setFiringStatus(true);
-        }
-      }
-    } else if (used < prevUsed || capacity > prevCapacity) {
-      // check for falling event.
-      float occupancy = (used * 1.0f) / capacity;
-      OffHeapUsageEvent offHeapUsageEvent = null;
-      for (OffHeapUsageListener offHeapUsageListener : listenerMap.values()) {
-        if (offHeapUsageListener.isFired() && (Float.compare(offHeapUsageListener.getThreshold(), occupancy) > 0)) {
-          if (offHeapUsageEvent == null) {
-            offHeapUsageEvent = new OffHeapUsageEventImpl(used, newState.getRemaining(), capacity, OffHeapUsageEventType.FALLING);
-          }
-          if (Float.compare(offHeapUsageListener.getThreshold(), 0.75f) == 0) {
-            LOGGER.info(MESSAGE_PROPERTIES.getProperty(OFFHEAP_INFO_KEY), identifier, (used * 100L) / capacity);
-          }
-          offHeapUsageListener.getConsumer().accept(offHeapUsageEvent);
-          offHeapUsageListener.setFiringStatus(false);
+      long current = remaining.get();
+      if (current < size) {
+        // a concurrent collection may have completed while waiting for our own, in which case the free space changed
+        if (collectReleases() == 0 && remaining.get() == current) {
+          return false;
         }
+      } else if (remaining.compareAndSet(current, current - size)) {
+        // the uncollected releases make this an overestimate, corrected when checking the thresholds
+        usageChanged(capacity - current + size);
+        return true;
       }
     }
-
-    monitor.sample(capacity - used, used);
   }
 
   /**
@@ -209,14 +190,12 @@ final class OffHeapResourceImpl implements OffHeapResource, AutoCloseable {
       throw new IllegalArgumentException("Released size cannot be negative");
     }
 
-    while (true) {
-      OffHeapResourceState currentState = state.get();
-      OffHeapResourceState newState = currentState.release(size);
-
-      if (state.compareAndSet(currentState, newState)) {
-        stateUpdated(currentState, newState);
-        return;
-      }
+    releases.getAndAdd(stripe(), size);
+    if (fallingBound == Long.MIN_VALUE) {
+      // no listener can fire
+      maybeSample();
+    } else {
+      usageChanged(capacity - available());
     }
   }
 
@@ -225,12 +204,17 @@ final class OffHeapResourceImpl implements OffHeapResource, AutoCloseable {
    */
   @Override
   public long available() {
-    return state.get().getRemaining();
+    // the stripes are read before the free space: a size seen removed from its stripe was then already collected
+    long available = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      available += releases.get(i * STRIPE_PADDING);
+    }
+    return available + remaining.get();
   }
 
   @Override
   public long capacity() {
-    return state.get().getCapacity();
+    return capacity;
   }
 
   @Override
@@ -239,85 +223,155 @@ final class OffHeapResourceImpl implements OffHeapResource, AutoCloseable {
       throw new IllegalArgumentException("New capacity size cannot be negative");
     }
 
-    while (true) {
-      OffHeapResourceState currentState = state.get();
-      OffHeapResourceState newState = currentState.withCapacity(size);
-
-      if (newState.isOverflowed()) {
-        return false;
-      }
-
-      if (state.compareAndSet(currentState, newState)) {
-        onCapacityChanged.onCapacityChanged(this, currentState.getCapacity(), newState.getCapacity());
-        stateUpdated(currentState, newState);
-        return true;
+    long previousCapacity;
+    synchronized (lock) {
+      collectReleases();
+      previousCapacity = capacity;
+      long delta = size - previousCapacity;
+      while (true) {
+        long current = remaining.get();
+        if (current + delta < 0) {
+          return false;
+        }
+        if (remaining.compareAndSet(current, current + delta)) {
+          break;
+        }
       }
+      capacity = size;
     }
+
+    onCapacityChanged.onCapacityChanged(this, previousCapacity, size);
+    checkThresholds();
+    return true;
   }
 
   @Override
   public void addUsageListener(UUID listenerUUID, float threshold, Consumer<OffHeapUsageEvent> consumer) {
     OffHeapUsageListener offHeapUsageListener = new OffHeapUsageListener(threshold, consumer);
-    listenerMap.put(listenerUUID, offHeapUsageListener);
-    // check for rising event if current usage already is above threshold.
-    OffHeapResourceState offHeapResourceState = state.get();
-    long used = offHeapResourceState.used;
-    long capacity = offHeapResourceState.capacity;
-    float occupancy = (used * 1.0f) / capacity;
-    if ((Float.compare(offHeapUsageListener.getThreshold(), occupancy) <= 0)) {
-      OffHeapUsageEvent offHeapUsageEvent = new OffHeapUsageEventImpl(used, offHeapResourceState.getRemaining(), capacity, OffHeapUsageEventType.RISING);
-      offHeapUsageListener.getConsumer().accept(offHeapUsageEvent);
-      offHeapUsageListener.setFiringStatus(true);
+    synchronized (lock) {
+      listenerMap.put(listenerUUID, offHeapUsageListener);
+      // check for rising event if current usage already is above threshold.
+      collectReleases();
+      long capacity = this.capacity;
+      long used = capacity - remaining.get();
+      float occupancy = (used * 1.0f) / capacity;
+      if ((Float.compare(offHeapUsageListener.getThreshold(), occupancy) <= 0)) {
+        OffHeapUsageEvent offHeapUsageEvent = new OffHeapUsageEventImpl(used, capacity - used, capacity, OffHeapUsageEventType.RISING);
+        offHeapUsageListener.getConsumer().accept(offHeapUsageEvent);
+        offHeapUsageListener.setFiringStatus(true);
+      }
+      updateBounds(capacity);
     }
   }
 
   @Override
   public void removeUsageListener(UUID listenerUUID) throws IllegalArgumentException {
-    if (listenerMap.remove(listenerUUID) == null) {
-      throw new IllegalArgumentException("Unknown listener: " + listenerUUID);
+    synchronized (lock) {
+      if (listenerMap.remove(listenerUUID) == null) {
+        throw new IllegalArgumentException("Unknown listener: " + listenerUUID);
+      }
+      updateBounds(capacity);
     }
   }
 
-  private static class OffHeapResourceState {
-    private final long capacity;
-    private final long used;
-
-    public OffHeapResourceState(long capacity) {
-      this.capacity = capacity;
-      this.used = 0;
-    }
-
-    private OffHeapResourceState(long capacity, long used) {
-      this.capacity = capacity;
-      this.used = used;
-    }
-
-    public long getCapacity() {
-      return capacity;
+  private void usageChanged(long used) {
+    if (used >= risingBound || used < fallingBound) {
+      checkThresholds();
+    } else {
+      maybeSample();
     }
+  }
 
-    public long getUsed() {
-      return used;
-    }
+  private void checkThresholds() {
+    synchronized (lock) {
+      collectReleases();
+      long capacity = this.capacity;
+      long used = capacity - remaining.get();
+      float occupancy = (used * 1.0f) / capacity;
+      OffHeapUsageEvent risingEvent = null;
+      OffHeapUsageEvent fallingEvent = null;
+      for (OffHeapUsageListener offHeapUsageListener : listenerMap.values()) {
+        if (!offHeapUsageListener.isFired() && (Float.compare(offHeapUsageListener.getThreshold(), occupancy) <= 0)) {
+          if (risingEvent == null) {
+            risingEvent = new OffHeapUsageEventImpl(used, capacity - used, capacity, OffHeapUsageEventType.RISING);
+          }
+          if (Float.compare(offHeapUsageListener.getThreshold(), 0.9f) == 0) {
+            LOGGER.warn(MESSAGE_PROPERTIES.getProperty(OFFHEAP_WARN_KEY), identifier, (used * 100L) / capacity);
+          } else if (Float.compare(offHeapUsageListener.getThreshold(), 0.75f) == 0) {
+            LOGGER.info(MESSAGE_PROPERTIES.getProperty(OFFHEAP_INFO_KEY), identifier, (used * 100L) / capacity);
+          }
+          offHeapUsageListener.getConsumer().accept(risingEvent);
+          offHeapUsageListener.setFiringStatus(true);
+        } else if (offHeapUsageListener.isFired() && (Float.compare(offHeapUsageListener.getThreshold(), occupancy) > 0)) {
+          if (fallingEvent == null) {
+            fallingEvent = new OffHeapUsageEventImpl(used, capacity - used, capacity, OffHeapUsageEventType.FALLING);
+          }
+          if (Float.compare(offHeapUsageListener.getThreshold(), 0.75f) == 0) {
+            LOGGER.info(MESSAGE_PROPERTIES.getProperty(OFFHEAP_INFO_KEY), identifier, (used * 100L) / capacity);
+          }
+          offHeapUsageListener.getConsumer().accept(fallingEvent);
+          offHeapUsageListener.setFiringStatus(false);
+        }
+      }
+      updateBounds(capacity);
 
-    public long getRemaining() {
-      return capacity - used;
+      nextSample.set(System.nanoTime() + SAMPLE_INTERVAL_NANOS);
+      monitor.sample(capacity - used, used);
     }
+  }
 
-    public boolean isOverflowed() {
-      return used > capacity;
+  /**
+   * Computes the usage bounds within which no listener can fire. They are widened by a byte, so that rounding never
+   * lets a crossing go unnoticed: crossings are then confirmed by comparing the occupancy with the thresholds.
+   */
+  private void updateBounds(long capacity) {
+    long rising = Long.MAX_VALUE;
+    long falling = Long.MIN_VALUE;
+    for (OffHeapUsageListener offHeapUsageListener : listenerMap.values()) {
+      double threshold = offHeapUsageListener.getThreshold() * (double) capacity;
+      if (offHeapUsageListener.isFired()) {
+        falling = Math.max(falling, (long) Math.ceil(threshold) + 1);
+      } else {
+        rising = Math.min(rising, (long) Math.floor(threshold) - 1);
+      }
     }
+    risingBound = rising;
+    fallingBound = falling;
+  }
 
-    public OffHeapResourceState reserve(long size) {
-      return new OffHeapResourceState(capacity, used + size);
+  private void maybeSample() {
+    long now = System.nanoTime();
+    long next = nextSample.get();
+    if (now - next >= 0 && nextSample.compareAndSet(next, now + SAMPLE_INTERVAL_NANOS)) {
+      long available = available();
+      monitor.sample(available, capacity - available);
     }
+  }
 
-    public OffHeapResourceState release(long size) {
-      return new OffHeapResourceState(capacity, used - size);
+  /**
+   * Moves the releases accumulated in the stripes back to the free space.
+   *
+   * @return the size collected
+   */
+  private long collectReleases() {
+    synchronized (collectLock) {
+      long collected = 0;
+      for (int i = 0; i < STRIPES; i++) {
+        int index = i * STRIPE_PADDING;
+        long released = releases.get(index);
+        if (released != 0) {
+          // the releases made meanwhile stay in the stripe, which only the collector decrements
+          remaining.addAndGet(released);
+          releases.addAndGet(index, -released);
+          collected += released;
+        }
+      }
+      return collected;
     }
+  }
 
-    public OffHeapResourceState withCapacity(long newCapacity) {
-      return new OffHeapResourceState(newCapacity, used);
-    }
+  private static int stripe() {
+    long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+    return ((int) (id >>> 32) & (STRIPES - 1)) * STRIPE_PADDING;
   }
 }
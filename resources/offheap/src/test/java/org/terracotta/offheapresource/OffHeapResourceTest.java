@@ -21,6 +21,12 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -161,4 +167,127 @@ public class OffHeapResourceTest {
     assertThat(ohr.available(), is(6L));
     verifyNoMoreInteractions(onCapacityChange);
   }
+
+  @Test
+  public void testThresholdCrossingEvents() {
+    List<OffHeapUsageEvent> events = new ArrayList<>();
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 100L, events::add);
+    ohr.reserve(74L);
+    assertThat(events.isEmpty(), is(true));
+
+    ohr.reserve(1L);
+    ohr.reserve(10L);
+    assertThat(events.size(), is(1));
+    assertThat(events.get(0).getEventType(), is(OffHeapUsageEventType.RISING));
+    assertThat(events.get(0).getUsed(), is(75L));
+
+    ohr.reserve(5L);
+    assertThat(events.size(), is(2));
+    assertThat(events.get(1).getEventType(), is(OffHeapUsageEventType.RISING));
+    assertThat(events.get(1).getUsed(), is(90L));
+
+    ohr.release(1L);
+    assertThat(events.size(), is(3));
+    assertThat(events.get(2).getEventType(), is(OffHeapUsageEventType.FALLING));
+    assertThat(events.get(2).getUsed(), is(89L));
+
+    ohr.release(14L);
+    assertThat(events.size(), is(3));
+    ohr.release(1L);
+    assertThat(events.size(), is(4));
+    assertThat(events.get(3).getEventType(), is(OffHeapUsageEventType.FALLING));
+    assertThat(events.get(3).getUsed(), is(74L));
+  }
+
+  @Test
+  public void testCapacityChangeCrossingThreshold() {
+    List<OffHeapUsageEvent> events = new ArrayList<>();
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 100L, events::add);
+    ohr.reserve(60L);
+    assertThat(ohr.setCapacity(80L), is(true));
+    assertThat(events.size(), is(1));
+    assertThat(events.get(0).getEventType(), is(OffHeapUsageEventType.RISING));
+
+    assertThat(ohr.setCapacity(100L), is(true));
+    assertThat(events.size(), is(2));
+    assertThat(events.get(1).getEventType(), is(OffHeapUsageEventType.FALLING));
+  }
+
+  @Test
+  public void testReleasedSizeCanBeReserved() {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 20L);
+    assertThat(ohr.reserve(20L), is(true));
+    ohr.release(5L);
+    ohr.release(5L);
+    assertThat(ohr.available(), is(10L));
+    assertThat(ohr.reserve(10L), is(true));
+    assertThat(ohr.reserve(1L), is(false));
+    assertThat(ohr.available(), is(0L));
+  }
+
+  @Test
+  public void testConcurrentReservationsNeverExceedCapacity() throws Exception {
+    long capacity = 1000L;
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, capacity);
+    AtomicLong reserved = new AtomicLong();
+    AtomicLong maxReserved = new AtomicLong();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            long size = 1 + (i % 17);
+            if (ohr.reserve(size)) {
+              maxReserved.accumulateAndGet(reserved.addAndGet(size), Math::max);
+              reserved.addAndGet(-size);
+              ohr.release(size);
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(maxReserved.get() <= capacity, is(true));
+    assertThat(ohr.available(), is(capacity));
+    assertThat(ohr.reserve(capacity), is(true));
+  }
+
+  @Test
+  public void testConcurrentReservationsWithinCapacityNeverFail() throws Exception {
+    int threads = 8;
+    long maxSize = 17L;
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, threads * maxSize);
+    AtomicLong failures = new AtomicLong();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            long size = 1 + (i % maxSize);
+            // the others never hold more than the rest of the capacity, even while their releases are collected
+            if (ohr.reserve(size)) {
+              ohr.release(size);
+            } else {
+              failures.incrementAndGet();
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(failures.get(), is(0L));
+    assertThat(ohr.available(), is(threads * maxSize));
+  }
 }
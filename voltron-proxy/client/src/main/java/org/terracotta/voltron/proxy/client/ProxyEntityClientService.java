@@ -71,7 +71,8 @@ public abstract class ProxyEntityClientService<T extends Entity & ServerMessageA
     if (configType == Void.TYPE) {
       return new byte[0];
     }
-    return messageCodec.getCodec().encode(configType, configuration);
+    // the server may not decode the latest format of the codec yet
+    return messageCodec.getCodec().encode(0, configType, configuration);
   }
 
   protected void setCodec(Codec codec) {
@@ -70,6 +70,8 @@ class VoltronProxyInvocationHandler implements InvocationHandler {
   private final ConcurrentMap<Class<?>, CopyOnWriteArrayList<MessageListener<?>>> listeners;
 
   private volatile EndpointListener endpointListener;
+  // the format the server answers in, which is the one to write to it
+  private volatile int format;
 
   VoltronProxyInvocationHandler(final EntityClientEndpoint<ProxyEntityMessage, ProxyEntityResponse> entityClientEndpoint, Collection<Class<?>> events, final Codec codec) {
     this.entityClientEndpoint = entityClientEndpoint;
@@ -87,6 +89,7 @@ class VoltronProxyInvocationHandler implements InvocationHandler {
         @Override
         public void handleMessage(ProxyEntityResponse response) {
           try {
+            format = response.getFormat();
             handler.execute(() -> {
               final Class<?> aClass = response.getResponseType();
               try {
@@ -112,7 +115,7 @@ class VoltronProxyInvocationHandler implements InvocationHandler {
             if (state == null) {
               return null;
             }
-            return codec.encode(state.getClass(), state);
+            return codec.encode(format, state.getClass(), state);
           }
         }
 
@@ -152,7 +155,7 @@ class VoltronProxyInvocationHandler implements InvocationHandler {
 
     final MethodDescriptor methodDescriptor = MethodDescriptor.of(method);
 
-    final Invocation<ProxyEntityResponse> builder = entityClientEndpoint.message(new ProxyEntityMessage(methodDescriptor, args, MessageType.MESSAGE));
+    final Invocation<ProxyEntityResponse> builder = entityClientEndpoint.message(new ProxyEntityMessage(methodDescriptor, args, MessageType.MESSAGE, format));
 
     if (methodDescriptor.isAsync()) {
       return new ProxiedInvokeFuture<>(builder.invoke());
@@ -165,17 +168,18 @@ class VoltronProxyInvocationHandler implements InvocationHandler {
     }
   }
 
-  private static Object getResponse(ProxyEntityResponse proxyEntityResponse) throws EntityUserException {
+  private Object getResponse(ProxyEntityResponse proxyEntityResponse) throws EntityUserException {
     if (proxyEntityResponse == null) {
       return null;
     }
+    format = proxyEntityResponse.getFormat();
     if (proxyEntityResponse.getMessageType() == MessageType.ERROR) {
       throw (EntityUserException) proxyEntityResponse.getResponse();
     }
     return proxyEntityResponse.getResponse();
   }
 
-  private static class ProxiedInvokeFuture<T> implements Future<T> {
+  private class ProxiedInvokeFuture<T> implements Future<T> {
 
     private final Future<ProxyEntityResponse> future;
 
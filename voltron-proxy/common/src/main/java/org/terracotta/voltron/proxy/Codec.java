@@ -38,4 +38,30 @@ public interface Codec {
   Object[] decode(Class<?>[] types, byte[] buffer);
 
   Object[] decode(Class<?>[] types, byte[] buffer, int offset, int len);
+
+  /**
+   * Codecs able to write several formats negotiate them with their peer: each payload tells the latest format its writer
+   * is able to decode, and is answered in that format. Format 0 is the one a peer unaware of the negotiation decodes.
+   *
+   * @return the latest format the writer of this payload is able to decode
+   */
+  default int getFormat(byte[] buffer, int offset, int len) {
+    return 0;
+  }
+
+  /**
+   * Encodes a value in a format the peer is known to decode, or in the latest format of this codec if it is older.
+   * Delegates to {@link #encode(Class, Object)} by default.
+   */
+  default byte[] encode(int format, Class<?> type, Object value) {
+    return encode(type, value);
+  }
+
+  /**
+   * Encodes values in a format the peer is known to decode, or in the latest format of this codec if it is older.
+   * Delegates to {@link #encode(Class[], Object[])} by default.
+   */
+  default byte[] encode(int format, Class<?>[] types, Object[] values) {
+    return encode(types, values);
+  }
 }
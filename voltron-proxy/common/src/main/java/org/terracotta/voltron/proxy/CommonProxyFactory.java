@@ -19,6 +19,7 @@ package org.terracotta.voltron.proxy;
 import java.lang.reflect.Method;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedSet;
@@ -31,10 +32,31 @@ import static java.util.Collections.unmodifiableMap;
  * @author Alex Snaps
  */
 public class CommonProxyFactory {
-  private static final Comparator<MethodDescriptor> METHOD_COMPARATOR = Comparator.comparing(MethodDescriptor::toGenericString);
+  private static final Comparator<Method> METHOD_COMPARATOR = Comparator.comparing(Method::toGenericString);
 
   private static final Comparator<Class<?>> CLASS_COMPARATOR = Comparator.comparing(Class::getName);
 
+  // descriptors are expensive to create: they are created once per class, in the order of their identifiers.
+  // An invalid method is mapped to null, so that it only fails when it is itself described, and keeps its identifier.
+  private static final ClassValue<Map<Method, MethodDescriptor>> METHOD_DESCRIPTORS = new ClassValue<Map<Method, MethodDescriptor>>() {
+    @Override
+    protected Map<Method, MethodDescriptor> computeValue(Class<?> type) {
+      Map<Method, MethodDescriptor> descriptors = new LinkedHashMap<>();
+      int id = 0;
+      for (Method method : getSortedMethods(type)) {
+        MethodDescriptor descriptor;
+        try {
+          descriptor = new MethodDescriptor(method, id);
+        } catch (RuntimeException e) {
+          descriptor = null;
+        }
+        descriptors.put(method, descriptor);
+        id++;
+      }
+      return unmodifiableMap(descriptors);
+    }
+  };
+
   public static <T, U> Map<U, T> invert(Map<T, U> map) {
     Map<U, T> inversion = new HashMap<>();
     for (Entry<T, U> e : map.entrySet()) {
@@ -46,16 +68,37 @@ public class CommonProxyFactory {
   }
 
   public static Map<Byte, MethodDescriptor> createMethodMappings(final Class<?> proxyType) {
-    SortedSet<MethodDescriptor> methods = getSortedMethods(proxyType);
-
     final HashMap<Byte, MethodDescriptor> map = new HashMap<>();
-    byte index = 0;
-    for (final MethodDescriptor method : methods) {
-      map.put(index++, method);
+    for (final MethodDescriptor method : createMethodTable(proxyType)) {
+      map.put((byte) method.getId(), method);
     }
     return map;
   }
 
+  /**
+   * @return the descriptors of the methods of a proxied type, indexed by their identifier
+   */
+  public static MethodDescriptor[] createMethodTable(final Class<?> proxyType) {
+    if (proxyType == null) {
+      return new MethodDescriptor[0];
+    }
+    Map<Method, MethodDescriptor> descriptors = getMethodDescriptors(proxyType);
+    if (descriptors.size() > 256) {
+      throw new IllegalArgumentException("Can't proxy that many methods on a single instance!");
+    }
+    MethodDescriptor[] methods = new MethodDescriptor[descriptors.size()];
+    int id = 0;
+    for (Entry<Method, MethodDescriptor> e : descriptors.entrySet()) {
+      // describing an invalid method again reports why it can't be proxied
+      methods[id++] = e.getValue() == null ? MethodDescriptor.of(e.getKey()) : e.getValue();
+    }
+    return methods;
+  }
+
+  static Map<Method, MethodDescriptor> getMethodDescriptors(Class<?> type) {
+    return METHOD_DESCRIPTORS.get(type);
+  }
+
   public static Map<Class<?>, Byte> createResponseTypeMappings(Class<?> proxyType) {
     return createResponseTypeMappings(proxyType, null);
   }
@@ -63,7 +106,7 @@ public class CommonProxyFactory {
   public static Map<Class<?>, Byte> createResponseTypeMappings(Class<?> proxyType, Class<?>[] events) {
     final HashMap<Class<?>, Byte> map = new HashMap<>();
     byte index = 0;
-    for (MethodDescriptor m : getSortedMethods(proxyType)) {
+    for (MethodDescriptor m : createMethodTable(proxyType)) {
       Class<?> responseType = m.getMessageType();
       if (!map.containsKey(responseType)) {
         map.put(responseType, index++);
@@ -79,22 +122,12 @@ public class CommonProxyFactory {
     return unmodifiableMap(map);
   }
 
-  private static SortedSet<MethodDescriptor> getSortedMethods(final Class<?> type) {
-    SortedSet<MethodDescriptor> methods = new TreeSet<>(METHOD_COMPARATOR);
-
-    if (type == null) {
-      return methods;
-    }
-
-    final Method[] declaredMethods = type.getDeclaredMethods();
-
-    if (declaredMethods.length > 256) {
-      throw new IllegalArgumentException("Can't proxy that many methods on a single instance!");
-    }
+  private static SortedSet<Method> getSortedMethods(final Class<?> type) {
+    SortedSet<Method> methods = new TreeSet<>(METHOD_COMPARATOR);
 
-    for (Method declaredMethod : declaredMethods) {
+    for (Method declaredMethod : type.getDeclaredMethods()) {
       if (!declaredMethod.isSynthetic()) {
-        methods.add(MethodDescriptor.of(declaredMethod));
+        methods.add(declaredMethod);
       }
     }
 
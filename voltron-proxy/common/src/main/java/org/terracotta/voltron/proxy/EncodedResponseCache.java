@@ -0,0 +1,54 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.voltron.proxy;
+
+import com.tc.classloader.CommonComponent;
+
+/**
+ * Keeps the bytes a response was last encoded to, so that a response sent to several clients is only encoded once.
+ * <p>
+ * The bytes are kept for one codec only, compared by identity, and are shared by all the recipients of the response:
+ * they must not be modified.
+ */
+@CommonComponent
+public final class EncodedResponseCache {
+
+  private volatile Encoded encoded;
+
+  /**
+   * @param codec the codec, compared by identity
+   * @return the bytes the response was last encoded to by the given codec, or null
+   */
+  public byte[] get(Object codec) {
+    Encoded encoded = this.encoded;
+    return encoded != null && encoded.codec == codec ? encoded.bytes : null;
+  }
+
+  public void put(Object codec, byte[] bytes) {
+    this.encoded = new Encoded(codec, bytes);
+  }
+
+  private static final class Encoded {
+    private final Object codec;
+    private final byte[] bytes;
+
+    Encoded(Object codec, byte[] bytes) {
+      this.codec = codec;
+      this.bytes = bytes;
+    }
+  }
+}
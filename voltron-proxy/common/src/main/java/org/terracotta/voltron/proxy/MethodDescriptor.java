@@ -16,6 +16,9 @@
  */
 package org.terracotta.voltron.proxy;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.terracotta.reflect.MethodInvoker;
+
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.lang.reflect.GenericArrayType;
@@ -25,6 +28,7 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.lang.reflect.WildcardType;
+import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -36,11 +40,32 @@ public final class MethodDescriptor {
   private final boolean async;
   private final Class<?> messageType;
   private final Method method;
+  private final int id;
+  private final Class<?>[] parameterTypes;
+  private final int[] clientIdIndexes;
+  private final MethodInvoker invoker;
   private final ExecutionStrategy.Location location;
   private final int concurrencyKey;
 
-  private MethodDescriptor(Method method) {
+  MethodDescriptor(Method method, int id) {
     this.method = method;
+    this.id = id;
+    this.parameterTypes = method.getParameterTypes();
+    this.invoker = new MethodInvoker(method);
+
+    // @ClientId
+    Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+    int[] indexes = new int[parameterAnnotations.length];
+    int count = 0;
+    for (int i = 0; i < parameterAnnotations.length; i++) {
+      for (Annotation annotation : parameterAnnotations[i]) {
+        if (annotation.annotationType() == ClientId.class) {
+          indexes[count++] = i;
+          break;
+        }
+      }
+    }
+    clientIdIndexes = Arrays.copyOf(indexes, count);
 
     // @Async
     async = method.getAnnotation(Async.class) != null;
@@ -82,8 +107,19 @@ public final class MethodDescriptor {
     return messageType;
   }
 
+  /**
+   * @return the identifier of this method within the methods declared by its class, or -1 if it is not proxied
+   */
+  public int getId() {
+    return id;
+  }
+
+  /**
+   * Returns the descriptor of a method, which is created once and shared by all the proxies and codecs of its class.
+   */
   public static MethodDescriptor of(Method method) {
-    return new MethodDescriptor(method);
+    MethodDescriptor descriptor = CommonProxyFactory.getMethodDescriptors(method.getDeclaringClass()).get(method);
+    return descriptor == null ? new MethodDescriptor(method, -1) : descriptor;
   }
 
   public String toGenericString() {
@@ -108,16 +144,24 @@ public final class MethodDescriptor {
     return method.hashCode();
   }
 
+  @SuppressFBWarnings("EI_EXPOSE_REP")
   public Class<?>[] getParameterTypes() {
-    return method.getParameterTypes();
+    return parameterTypes;
   }
 
   public Annotation[][] getParameterAnnotations() {
     return method.getParameterAnnotations();
   }
 
+  /**
+   * @return the indexes of the parameters annotated with {@link ClientId}
+   */
+  int[] getClientIdIndexes() {
+    return clientIdIndexes;
+  }
+
   public Object invoke(Object target, Object... args) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
-    Object ret = method.invoke(target, args);
+    Object ret = invoker.invoke(target, args);
     if (async) {
       try {
         ret = ((Future<?>) ret).get();
@@ -19,7 +19,6 @@ package org.terracotta.voltron.proxy;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.terracotta.entity.EntityMessage;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 
 /**
@@ -31,12 +30,23 @@ public class ProxyEntityMessage implements EntityMessage {
   private final Object[] args;
 
   private final MessageType type;
+  private final int format;
 
   @SuppressFBWarnings("EI_EXPOSE_REP")
   public ProxyEntityMessage(final MethodDescriptor method, final Object[] args, MessageType type) {
+    this(method, args, type, 0);
+  }
+
+  /**
+   * @param format the format of the codec to encode the arguments in, or that they were decoded from
+   * @see Codec#getFormat(byte[], int, int)
+   */
+  @SuppressFBWarnings("EI_EXPOSE_REP")
+  public ProxyEntityMessage(final MethodDescriptor method, final Object[] args, MessageType type, int format) {
     this.method = method;
     this.args = args;
     this.type = type;
+    this.format = format;
   }
 
   public MethodDescriptor getMethod() {
@@ -50,14 +60,8 @@ public class ProxyEntityMessage implements EntityMessage {
 
   public Object invoke(final Object target, final Object clientDescriptor) throws InvocationTargetException, IllegalAccessException {
     if (clientDescriptor != null) {
-      final Annotation[][] allAnnotations = method.getParameterAnnotations();
-      for (int i = 0; i < allAnnotations.length; i++) {
-        for (Annotation parameterAnnotation : allAnnotations[i]) {
-          if (parameterAnnotation.annotationType() == ClientId.class) {
-            args[i] = clientDescriptor;
-            break;
-          }
-        }
+      for (int i : method.getClientIdIndexes()) {
+        args[i] = clientDescriptor;
       }
     }
 
@@ -83,4 +87,8 @@ public class ProxyEntityMessage implements EntityMessage {
   public MessageType getType() {
     return type;
   }
+
+  public int getFormat() {
+    return format;
+  }
 }
@@ -27,7 +27,7 @@ import org.terracotta.entity.EntityUserException;
 public final class ProxyEntityResponse implements EntityResponse {
 
   public static ProxyEntityResponse response(MessageType messageType, Class<?> responseType, Object response) {
-    return new ProxyEntityResponse(messageType, responseType, response);
+    return new ProxyEntityResponse(messageType, responseType, response, 0);
   }
 
   public static ProxyEntityResponse messageResponse(Class<?> responseType, Object response) {
@@ -49,11 +49,24 @@ public final class ProxyEntityResponse implements EntityResponse {
   private final MessageType messageType;
   private final Class<?> responseType;
   private final Object response;
+  private final int format;
 
-  private ProxyEntityResponse(MessageType messageType, Class<?> responseType, Object response) {
+  private final EncodedResponseCache encoded = new EncodedResponseCache();
+
+  private ProxyEntityResponse(MessageType messageType, Class<?> responseType, Object response, int format) {
     this.messageType = messageType;
     this.responseType = responseType;
     this.response = response;
+    this.format = format;
+  }
+
+  /**
+   * @param format the format of the codec to encode this response in, usually the one of the message it answers
+   * @return a copy of this response, encoded in the given format
+   * @see Codec#getFormat(byte[], int, int)
+   */
+  public ProxyEntityResponse withFormat(int format) {
+    return format == this.format ? this : new ProxyEntityResponse(messageType, responseType, response, format);
   }
 
   public MessageType getMessageType() {
@@ -67,4 +80,23 @@ public final class ProxyEntityResponse implements EntityResponse {
   public Object getResponse() {
     return response;
   }
+
+  public int getFormat() {
+    return format;
+  }
+
+  /**
+   * @param codec the codec, compared by identity
+   * @return the bytes this response was last encoded to by the given codec, or null
+   */
+  public byte[] getEncoded(Object codec) {
+    return encoded.get(codec);
+  }
+
+  /**
+   * Records the encoded form of this response, so that a response fired to several clients is only encoded once.
+   */
+  public void setEncoded(Object codec, byte[] bytes) {
+    encoded.put(codec, bytes);
+  }
 }
@@ -22,7 +22,6 @@ import org.terracotta.entity.MessageCodecException;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
-import java.lang.annotation.Annotation;
 import java.util.EnumMap;
 import java.util.Map;
 
@@ -31,8 +30,8 @@ import java.util.Map;
  */
 public class ProxyMessageCodec implements MessageCodec<ProxyEntityMessage, ProxyEntityResponse> {
 
-  private final EnumMap<MessageType, Map<Byte, MethodDescriptor>> methodMappings = new EnumMap<>(MessageType.class);
-  private final EnumMap<MessageType, Map<MethodDescriptor, Byte>> reverseMethodMappings = new EnumMap<>(MessageType.class);
+  // the methods of each message type, indexed by the identifier sent on the wire
+  private final EnumMap<MessageType, MethodDescriptor[]> methodTables = new EnumMap<>(MessageType.class);
   private final EnumMap<MessageType, Map<Class<?>, Byte>> responseMappings = new EnumMap<>(MessageType.class);
   private final EnumMap<MessageType, Map<Byte, Class<?>>> reverseResponseMappings = new EnumMap<>(MessageType.class);
 
@@ -48,21 +47,18 @@ public class ProxyMessageCodec implements MessageCodec<ProxyEntityMessage, Proxy
 
   public ProxyMessageCodec(Class<?> proxyType, Class<?>[] eventTypes, Class<?> messengerType, Class<?> synchronizerType) {
     // type == message
-    this.methodMappings.put(MessageType.MESSAGE, CommonProxyFactory.createMethodMappings(proxyType));
-    this.reverseMethodMappings.put(MessageType.MESSAGE, CommonProxyFactory.invert(methodMappings.get(MessageType.MESSAGE)));
+    this.methodTables.put(MessageType.MESSAGE, CommonProxyFactory.createMethodTable(proxyType));
     this.responseMappings.put(MessageType.MESSAGE, CommonProxyFactory.createResponseTypeMappings(proxyType, eventTypes));
     this.reverseResponseMappings.put(MessageType.MESSAGE, CommonProxyFactory.invert(responseMappings.get(MessageType.MESSAGE)));
     // type == sync
     if (synchronizerType != null) {
-      this.methodMappings.put(MessageType.SYNC, CommonProxyFactory.createMethodMappings(synchronizerType));
-      this.reverseMethodMappings.put(MessageType.SYNC, CommonProxyFactory.invert(methodMappings.get(MessageType.SYNC)));
+      this.methodTables.put(MessageType.SYNC, CommonProxyFactory.createMethodTable(synchronizerType));
       this.responseMappings.put(MessageType.SYNC, CommonProxyFactory.createResponseTypeMappings(synchronizerType));
       this.reverseResponseMappings.put(MessageType.SYNC, CommonProxyFactory.invert(responseMappings.get(MessageType.SYNC)));
     }
     // type == messenger
     if (messengerType != null) {
-      this.methodMappings.put(MessageType.MESSENGER, CommonProxyFactory.createMethodMappings(messengerType));
-      this.reverseMethodMappings.put(MessageType.MESSENGER, CommonProxyFactory.invert(methodMappings.get(MessageType.MESSENGER)));
+      this.methodTables.put(MessageType.MESSENGER, CommonProxyFactory.createMethodTable(messengerType));
       this.responseMappings.put(MessageType.MESSENGER, CommonProxyFactory.createResponseTypeMappings(messengerType));
       this.reverseResponseMappings.put(MessageType.MESSENGER, CommonProxyFactory.invert(responseMappings.get(MessageType.MESSENGER)));
     }
@@ -81,18 +77,25 @@ public class ProxyMessageCodec implements MessageCodec<ProxyEntityMessage, Proxy
     if (r == null) {
       return new byte[0];
     }
+    byte[] encoded = r.getEncoded(this);
+    if (encoded != null) {
+      // the encoded bytes are shared by all the recipients of the response: they must not be modified
+      return encoded;
+    }
     MessageType messageType = r.getMessageType();
     ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
     DataOutputStream output = new DataOutputStream(byteOut);
     try {
       output.writeByte(messageType.ordinal());
       output.writeByte(messageType == MessageType.ERROR ? 0 : getMessageTypeIdentifier(r));
-      output.write(codec.encode(r.getResponseType(), r.getResponse()));
+      output.write(codec.encode(r.getFormat(), r.getResponseType(), r.getResponse()));
       output.close();
     } catch (Exception e) {
       throw new MessageCodecException("Error encoding ProxyEntityResponse", e);
     }
-    return byteOut.toByteArray();
+    encoded = byteOut.toByteArray();
+    r.setEncoded(this, encoded);
+    return encoded;
   }
 
   @Override
@@ -104,7 +107,7 @@ public class ProxyMessageCodec implements MessageCodec<ProxyEntityMessage, Proxy
       MessageType messageType = MessageType.values()[buffer[0]];
       Class<?> responseType = messageType == MessageType.ERROR ? EntityUserException.class : getResponseType(messageType, buffer[1]);
       Object o = codec.decode(responseType, buffer, 2, buffer.length - 2);
-      return ProxyEntityResponse.response(messageType, responseType, o);
+      return ProxyEntityResponse.response(messageType, responseType, o).withFormat(codec.getFormat(buffer, 2, buffer.length - 2));
     } catch (Exception e) {
       throw new MessageCodecException("Error decoding ProxyEntityResponse", e);
     }
@@ -115,17 +118,11 @@ public class ProxyMessageCodec implements MessageCodec<ProxyEntityMessage, Proxy
     try {
       MessageType messageType = message.getType();
       MethodDescriptor method = message.getMethod();
-      Byte methodIdentifier = getMethodIdentifier(message);
+      byte methodIdentifier = getMethodIdentifier(message);
 
       Object[] args = message.getArguments();
-      final Annotation[][] parameterAnnotations = method.getParameterAnnotations();
-      for (int i = 0, parameterAnnotationsLength = parameterAnnotations.length; i < parameterAnnotationsLength; i++) {
-        final Annotation[] parameterAnnotation = parameterAnnotations[i];
-        for (Annotation annotation : parameterAnnotation) {
-          if (annotation.annotationType() == ClientId.class) {
-            args[i] = null;
-          }
-        }
+      for (int i : method.getClientIdIndexes()) {
+        args[i] = null;
       }
 
       ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
@@ -133,7 +130,7 @@ public class ProxyMessageCodec implements MessageCodec<ProxyEntityMessage, Proxy
 
       output.writeByte(messageType.ordinal()); // first, message type
       output.writeByte(methodIdentifier); // then method mapping
-      output.write(codec.encode(method.getParameterTypes(), args));
+      output.write(codec.encode(message.getFormat(), method.getParameterTypes(), args));
 
       output.close();
       return byteOut.toByteArray();
@@ -147,24 +144,25 @@ public class ProxyMessageCodec implements MessageCodec<ProxyEntityMessage, Proxy
     try {
       MessageType messageType = MessageType.values()[buffer[0]];
       MethodDescriptor method = getMethod(messageType, buffer[1]);
-      return new ProxyEntityMessage(method, codec.decode(method.getParameterTypes(), buffer, 2, buffer.length - 2), messageType);
+      Object[] args = codec.decode(method.getParameterTypes(), buffer, 2, buffer.length - 2);
+      return new ProxyEntityMessage(method, args, messageType, codec.getFormat(buffer, 2, buffer.length - 2));
     } catch (Exception ex) {
       throw new MessageCodecException("Error decoding ProxyEntityMessage", ex);
     }
   }
 
-  private MethodDescriptor getMethod(MessageType messageType, Byte b) {
-    Map<Byte, MethodDescriptor> mapping = methodMappings.get(messageType);
-    if (mapping == null) {
+  private MethodDescriptor getMethod(MessageType messageType, byte b) {
+    MethodDescriptor[] table = methodTables.get(messageType);
+    if (table == null) {
       throw new AssertionError("No mapping for " + messageType);
     }
 
-    MethodDescriptor method = mapping.get(b);
-    if (method == null) {
+    int id = b & 0xFF;
+    if (id >= table.length) {
       throw new AssertionError("No mapping for method " + b + " for messageType " + messageType);
     }
 
-    return method;
+    return table[id];
   }
 
   private Class<?> getResponseType(MessageType messageType, Byte b) {
@@ -181,18 +179,18 @@ public class ProxyMessageCodec implements MessageCodec<ProxyEntityMessage, Proxy
     return responseType;
   }
 
-  private Byte getMethodIdentifier(ProxyEntityMessage message) {
-    Map<MethodDescriptor, Byte> mapping = reverseMethodMappings.get(message.getType());
-    if (mapping == null) {
+  private byte getMethodIdentifier(ProxyEntityMessage message) {
+    MethodDescriptor[] table = methodTables.get(message.getType());
+    if (table == null) {
       throw new AssertionError("No mapping for " + message.getType());
     }
 
-    Byte methodIdentifier = mapping.get(message.getMethod());
-    if (methodIdentifier == null) {
+    int id = message.getMethod().getId();
+    if (id < 0 || id >= table.length || !table[id].equals(message.getMethod())) {
       throw new AssertionError("No mapping for " + message.getMethod().toGenericString());
     }
 
-    return methodIdentifier;
+    return (byte) id;
   }
 
   private Byte getMessageTypeIdentifier(ProxyEntityResponse response) {
@@ -23,9 +23,11 @@ import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Future;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * @author Mathieu Carbou
@@ -55,6 +57,31 @@ public class CommonProxyFactoryTest {
     }
   }
 
+  @Test
+  public void test_invalid_method_does_not_prevent_describing_the_others() throws Throwable {
+    MethodDescriptor valid = MethodDescriptor.of(InvalidEntity.class.getMethod("valid"));
+    assertThat(valid.getId(), is(1));
+
+    try {
+      MethodDescriptor.of(InvalidEntity.class.getMethod("invalid"));
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), containsString("invalid()"));
+    }
+
+    try {
+      CommonProxyFactory.createMethodTable(InvalidEntity.class);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), containsString("invalid()"));
+    }
+  }
+
+  interface InvalidEntity {
+    @Async String invalid();
+    Future<String> valid();
+  }
+
   @SuppressWarnings("rawtypes")
   interface AsyncEntity<V> {
     @Async Future<String> test1();
@@ -0,0 +1,135 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.voltron.proxy;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MethodDescriptorTest {
+
+  @Test
+  public void test_descriptors_are_shared_and_indexed_by_id() throws Exception {
+    MethodDescriptor[] table = CommonProxyFactory.createMethodTable(Calculator.class);
+    assertThat(table.length, is(3));
+    for (int i = 0; i < table.length; i++) {
+      assertThat(table[i].getId(), is(i));
+      assertThat(MethodDescriptor.of(table[i].getMethod()), sameInstance(table[i]));
+      assertThat(CommonProxyFactory.createMethodMappings(Calculator.class).get((byte) i), sameInstance(table[i]));
+    }
+  }
+
+  @Test
+  public void test_invoke() throws Exception {
+    Calculator calculator = new Calculator() {
+      @Override
+      public String add(Object clientId, int a, int b) {
+        return clientId + ":" + (a + b);
+      }
+
+      @Override
+      public void fail() {
+        throw new IllegalStateException("failed");
+      }
+    };
+
+    MethodDescriptor add = MethodDescriptor.of(Calculator.class.getMethod("add", Object.class, int.class, int.class));
+    assertThat(new ProxyEntityMessage(add, new Object[]{null, 1, 2}, MessageType.MESSAGE).invoke(calculator, "client-1"), is("client-1:3"));
+    assertThat(add.invoke(calculator, "client-2", 3, 4), is("client-2:7"));
+
+    MethodDescriptor fail = MethodDescriptor.of(Calculator.class.getMethod("fail"));
+    try {
+      new ProxyEntityMessage(fail, null, MessageType.MESSAGE).invoke(calculator);
+      fail();
+    } catch (InvocationTargetException e) {
+      assertThat(e.getTargetException(), instanceOf(IllegalStateException.class));
+    }
+
+    assertThat(MethodDescriptor.of(Calculator.class.getMethod("zero")).invoke(null), is(0));
+  }
+
+  @Test
+  public void test_invoke_with_bad_arguments() throws Exception {
+    Calculator calculator = new Calculator() {
+      @Override
+      public String add(Object clientId, int a, int b) {
+        return clientId + ":" + (a + b);
+      }
+
+      @Override
+      public void fail() {
+      }
+    };
+    MethodDescriptor add = MethodDescriptor.of(Calculator.class.getMethod("add", Object.class, int.class, int.class));
+
+    // widening conversions are applied like Method#invoke does
+    assertThat(add.invoke(calculator, "client-1", (short) 1, 'a'), is("client-1:98"));
+
+    assertIllegalArgument(() -> add.invoke(calculator, "client-1", 1L, 2));
+    assertIllegalArgument(() -> add.invoke(calculator, "client-1", null, 2));
+    assertIllegalArgument(() -> add.invoke(calculator, "client-1", 1));
+    assertIllegalArgument(() -> add.invoke("not a calculator", "client-1", 1, 2));
+    try {
+      add.invoke(null, "client-1", 1, 2);
+      fail();
+    } catch (NullPointerException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void test_client_id_is_not_encoded() throws Exception {
+    ProxyMessageCodec codec = new ProxyMessageCodec(Calculator.class);
+    MethodDescriptor add = MethodDescriptor.of(Calculator.class.getMethod("add", Object.class, int.class, int.class));
+    ProxyEntityMessage message = codec.decodeMessage(codec.encodeMessage(new ProxyEntityMessage(add, new Object[]{"client-1", 1, 2}, MessageType.MESSAGE)));
+    assertThat(message.getMethod(), sameInstance(add));
+    assertThat(message.getArguments()[0], is(nullValue()));
+    assertThat(message.getArguments()[2], is(2));
+  }
+
+  private static void assertIllegalArgument(Invocation invocation) throws Exception {
+    try {
+      invocation.invoke();
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected: not reported as an InvocationTargetException
+    }
+  }
+
+  @FunctionalInterface
+  private interface Invocation {
+    Object invoke() throws Exception;
+  }
+
+  public interface Calculator {
+    String add(@ClientId Object clientId, int a, int b);
+
+    void fail();
+
+    static int zero() {
+      return 0;
+    }
+  }
+
+}
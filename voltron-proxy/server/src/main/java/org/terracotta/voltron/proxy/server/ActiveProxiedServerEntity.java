@@ -68,6 +68,7 @@ public abstract class ActiveProxiedServerEntity<S, R, M extends Messenger> imple
         R state = null;
         if (extendedReconnectData != null && extendedReconnectData.length > 0) {
           state = codec.decode(reconnectDataType, extendedReconnectData);
+          entityInvoker.setFormat(clientDescriptor, codec.getFormat(extendedReconnectData, 0, extendedReconnectData.length));
         }
         onReconnect(clientDescriptor, state);
       }
@@ -28,9 +28,12 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * @author Alex Snaps
@@ -38,7 +41,10 @@ import java.util.Set;
 class ProxyInvoker<T> implements MessageFiring {
 
   private final T target;
-  private final Set<ClientDescriptor> clients = Collections.synchronizedSet(new HashSet<>());
+  // clients come and go far less often than messages are fired to them
+  private final Set<ClientDescriptor> clients = new CopyOnWriteArraySet<>();
+  // the format each client is answered in, which is the one of the last message received from it
+  private final Map<ClientDescriptor, Integer> formats = new ConcurrentHashMap<>();
   private final ThreadLocal<InvocationContext> invocationContext = new ThreadLocal<>();
 
   private Set<Class<?>> messageTypes;
@@ -50,9 +56,10 @@ class ProxyInvoker<T> implements MessageFiring {
 
   ProxyEntityResponse invoke(ActiveInvokeContext<ProxyEntityResponse> context, final ProxyEntityMessage message) {
     ClientDescriptor clientDescriptor = context.getClientDescriptor();
+    setFormat(clientDescriptor, message.getFormat());
     try {
       invocationContext.set(new InvocationContext(clientDescriptor));
-      return ProxyEntityResponse.response(message.getType(), message.messageType(), message.invoke(target, clientDescriptor));
+      return ProxyEntityResponse.response(message.getType(), message.messageType(), message.invoke(target, clientDescriptor)).withFormat(message.getFormat());
     } catch (IllegalAccessException e) {
       throw new IllegalArgumentException(e);
     } catch (InvocationTargetException e) {
@@ -66,7 +73,7 @@ class ProxyInvoker<T> implements MessageFiring {
           .append(": ")
           .append(targetException.getMessage());
       EntityUserException entityUserException = new EntityUserException(errorMessage.toString(), targetException);
-      return ProxyEntityResponse.error(entityUserException);
+      return ProxyEntityResponse.error(entityUserException).withFormat(message.getFormat());
     } finally {
       invocationContext.remove();
     }
@@ -96,10 +103,13 @@ class ProxyInvoker<T> implements MessageFiring {
     }
     final InvocationContext invocationContext = this.invocationContext.get();
     final ClientDescriptor caller = invocationContext == null ? null : invocationContext.caller;
+    // a single response is encoded once per format by the codec, and its bytes sent to every client reading this format
+    final Map<Integer, ProxyEntityResponse> responses = new HashMap<>();
     for (ClientDescriptor client : clients) {
       if (echo || !client.equals(caller)) {
         try {
-          clientCommunicator.sendNoResponse(client, ProxyEntityResponse.messageResponse(type, message));
+          ProxyEntityResponse response = responses.computeIfAbsent(getFormat(client), format -> ProxyEntityResponse.messageResponse(type, message).withFormat(format));
+          clientCommunicator.sendNoResponse(client, response);
         } catch (MessageCodecException ex) {
           handleExceptionOnSend(ex);
         }
@@ -112,9 +122,11 @@ class ProxyInvoker<T> implements MessageFiring {
     if (!messageTypes.contains(type)) {
       throw new IllegalArgumentException("Event type '" + type + "' isn't supported");
     }
+    final Map<Integer, ProxyEntityResponse> responses = new HashMap<>();
     for (ClientDescriptor client : clients) {
       try {
-        clientCommunicator.sendNoResponse(client, ProxyEntityResponse.messageResponse(type, message));
+        ProxyEntityResponse response = responses.computeIfAbsent(getFormat(client), format -> ProxyEntityResponse.messageResponse(type, message).withFormat(format));
+        clientCommunicator.sendNoResponse(client, response);
       } catch (MessageCodecException ex) {
         handleExceptionOnSend(ex);
       }
@@ -127,6 +139,19 @@ class ProxyInvoker<T> implements MessageFiring {
 
   void removeClient(ClientDescriptor descriptor) {
     clients.remove(descriptor);
+    formats.remove(descriptor);
+  }
+
+  void setFormat(ClientDescriptor descriptor, int format) {
+    if (format == 0) {
+      formats.remove(descriptor);
+    } else {
+      formats.put(descriptor, format);
+    }
+  }
+
+  int getFormat(ClientDescriptor descriptor) {
+    return formats.getOrDefault(descriptor, 0);
   }
 
   public Collection<ClientDescriptor> getClients() {
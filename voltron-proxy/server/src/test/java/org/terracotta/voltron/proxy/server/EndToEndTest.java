@@ -28,8 +28,11 @@ import org.terracotta.entity.EntityResponse;
 import org.terracotta.entity.Invocation;
 import org.terracotta.entity.InvocationCallback;
 import org.terracotta.entity.MessageCodec;
+import org.terracotta.entity.MessageCodecException;
 import org.terracotta.voltron.proxy.ClientId;
 import org.terracotta.voltron.proxy.MessageListener;
+import org.terracotta.voltron.proxy.MessageType;
+import org.terracotta.voltron.proxy.MethodDescriptor;
 import org.terracotta.voltron.proxy.ProxyEntityMessage;
 import org.terracotta.voltron.proxy.ProxyEntityResponse;
 import org.terracotta.voltron.proxy.ProxyMessageCodec;
@@ -38,6 +41,10 @@ import org.terracotta.voltron.proxy.client.ClientProxyFactory;
 import org.terracotta.voltron.proxy.client.ServerMessageAware;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -51,7 +58,9 @@ import java.util.concurrent.atomic.AtomicReference;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
@@ -151,6 +160,79 @@ public class EndToEndTest {
     assertThat(messageReceived.get(5, TimeUnit.SECONDS), equalTo(message));
   }
 
+  @Test
+  public void testFiredMessageIsEncodedOnce() throws Exception {
+    final ProxyMessageCodec messageCodec = new ProxyMessageCodec(Comparable.class, new Class[] {String.class});
+    final List<byte[]> sent = new ArrayList<>();
+    final ProxyInvoker<Comparable> proxyInvoker = new ProxyInvoker<Comparable>(o -> 42).activateEvents(new ClientCommunicator() {
+      @Override
+      public void closeClientConnection(ClientDescriptor clientDescriptor) {
+      }
+
+      public void sendNoResponse(final ClientDescriptor clientDescriptor, final EntityResponse message) throws MessageCodecException {
+        sent.add(messageCodec.encodeResponse((ProxyEntityResponse) message));
+      }
+
+      public Future<Void> send(final ClientDescriptor clientDescriptor, final EntityResponse message) {
+        throw new UnsupportedOperationException("Implement me!");
+      }
+    }, new Class[] {String.class});
+    proxyInvoker.addClient(new MyClientDescriptor());
+    proxyInvoker.addClient(new MyClientDescriptor());
+    proxyInvoker.addClient(new MyClientDescriptor());
+
+    proxyInvoker.fireMessage(String.class, "Hello world!", true);
+
+    assertThat(sent.size(), is(3));
+    assertThat(sent.get(1), sameInstance(sent.get(0)));
+    assertThat(sent.get(2), sameInstance(sent.get(0)));
+    assertThat(messageCodec.decodeResponse(sent.get(0)).getResponse(), equalTo("Hello world!"));
+
+    proxyInvoker.fireMessage(String.class, "Hello again!", true);
+
+    assertThat(sent.size(), is(6));
+    assertThat(sent.get(3), not(sameInstance(sent.get(0))));
+    assertThat(messageCodec.decodeResponse(sent.get(5)).getResponse(), equalTo("Hello again!"));
+  }
+
+  @Test
+  public void testClientsAreAnsweredInTheFormatOfTheirMessages() throws Exception {
+    final Map<ClientDescriptor, Integer> formats = new HashMap<>();
+    final ProxyInvoker<ClientIdAware> proxyInvoker = new ProxyInvoker<ClientIdAware>(new FiringClientIdAware()).activateEvents(new ClientCommunicator() {
+      @Override
+      public void closeClientConnection(ClientDescriptor clientDescriptor) {
+      }
+
+      public void sendNoResponse(final ClientDescriptor clientDescriptor, final EntityResponse message) {
+        formats.put(clientDescriptor, ((ProxyEntityResponse) message).getFormat());
+      }
+
+      public Future<Void> send(final ClientDescriptor clientDescriptor, final EntityResponse message) {
+        throw new UnsupportedOperationException("Implement me!");
+      }
+    }, new Class[] {Integer.class});
+    final MyClientDescriptor latest = new MyClientDescriptor();
+    final MyClientDescriptor legacy = new MyClientDescriptor();
+    proxyInvoker.addClient(latest);
+    proxyInvoker.addClient(legacy);
+
+    final ActiveInvokeContext context = mock(ActiveInvokeContext.class);
+    when(context.getClientDescriptor()).thenReturn(latest);
+    final MethodDescriptor nothing = MethodDescriptor.of(ClientIdAware.class.getMethod("nothing"));
+    final ProxyEntityResponse response = proxyInvoker.invoke(context, new ProxyEntityMessage(nothing, new Object[0], MessageType.MESSAGE, 1));
+    assertThat(response.getFormat(), is(1));
+
+    proxyInvoker.fireMessage(Integer.class, 1, true);
+    assertThat(formats.get(latest), is(1));
+    assertThat(formats.get(legacy), is(0));
+
+    // the format is forgotten with the client
+    proxyInvoker.removeClient(latest);
+    proxyInvoker.addClient(latest);
+    proxyInvoker.fireMessage(Integer.class, 2, true);
+    assertThat(formats.get(latest), is(0));
+  }
+
   @Test
   public void testClientInvokeInitiatedMessageFiring() throws ExecutionException, InterruptedException {
     final SerializationCodec codec = new SerializationCodec();